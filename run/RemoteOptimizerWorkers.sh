@@ -0,0 +1,34 @@
+#!/bin/bash
+
+# Starts one or more remote optimizer workers on this machine, listening on consecutive ports.
+# Usage: RemoteOptimizerWorkers.sh <data file> [number of workers] [first port]
+# The workers are then specified in the advanced optimization options as localhost:7100, localhost:7101, ...
+
+cd $(dirname "$0")/..
+
+if [ -z "$1" ]; then
+    echo "Usage: $0 <data file> [number of workers] [first port]"
+    exit 1
+fi
+
+DATA_FILE=$1
+WORKERS=${2:-1}
+FIRST_PORT=${3:-7100}
+
+CLASSPATH="$(pwd)/resources"
+
+for JAR in $(pwd)/lib/*.jar
+do
+    CLASSPATH=$JAR:$CLASSPATH
+done
+
+mkdir -p bin
+find bin    -name "*.class" | xargs rm -f
+find source -name "*.java"  | xargs javac -cp "$CLASSPATH" -d bin
+
+for ((WORKER = 0; WORKER < WORKERS; WORKER++))
+do
+    java -cp "$CLASSPATH:$(pwd)/bin" com.jbooktrader.platform.optimizer.RemoteOptimizerWorker "$(pwd)" $((FIRST_PORT + WORKER)) "$DATA_FILE" &
+done
+
+wait
@@ -21,7 +21,7 @@ public class BalanceAcceleration extends Indicator {
 
     @Override
     public void calculate() {
-        double balance = marketBook.getSnapshot().getBalance();
+        double balance = marketBook.getBalance();
         fast += (balance - fast) * fastMultiplier;
         interm += (balance - interm) * intermMultiplier;
         slow += (balance - slow) * slowMultiplier;
@@ -17,7 +17,7 @@ public class BalanceEMA extends Indicator {
 
     @Override
     public void calculate() {
-        double balance = marketBook.getSnapshot().getBalance();
+        double balance = marketBook.getBalance();
         value += (balance - value) * multiplier;
     }
 
@@ -19,7 +19,7 @@ public class BalanceVelocity extends Indicator {
 
     @Override
     public void calculate() {
-        double balance = marketBook.getSnapshot().getBalance();
+        double balance = marketBook.getBalance();
         fast += (balance - fast) * fastMultiplier;
         slow += (balance - slow) * slowMultiplier;
 
@@ -18,7 +18,7 @@ public class BalanceVolatility extends Indicator {
 
     @Override
     public void calculate() {
-        balances.add(marketBook.getSnapshot().getBalance());
+        balances.add(marketBook.getBalance());
         if (balances.isFull()) {
             value = balances.getStdev() / 10;
         }
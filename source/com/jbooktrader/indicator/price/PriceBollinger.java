@@ -41,7 +41,7 @@ public class PriceBollinger extends Indicator {
 
     @Override
     public void calculate() {
-        double price = marketBook.getSnapshot().getPrice();
+        double price = marketBook.getPrice();
         prices.add(price);
 
         if (prices.isFull()) {
@@ -77,4 +77,12 @@ public class PriceBollinger extends Indicator {
         return sigma * multiple * 2;
     }
 
+    /**
+     * The bands are not part of the value, so this indicator has to be calculated by each strategy.
+     */
+    @Override
+    public boolean isPrecomputable() {
+        return false;
+    }
+
 }
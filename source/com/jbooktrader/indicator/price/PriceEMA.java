@@ -18,12 +18,12 @@ public class PriceEMA extends Indicator {
 
     @Override
     public void reset() {
-        value = marketBook.getSnapshot().getPrice();
+        value = marketBook.getPrice();
     }
 
     @Override
     public void calculate() {
-        double price = marketBook.getSnapshot().getPrice();
+        double price = marketBook.getPrice();
         value += alpha * (price - value);
     }
 
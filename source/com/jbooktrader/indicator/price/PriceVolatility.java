@@ -18,7 +18,7 @@ public class PriceVolatility extends Indicator {
 
     @Override
     public void calculate() {
-        prices.add(marketBook.getSnapshot().getPrice());
+        prices.add(marketBook.getPrice());
         if (prices.isFull()) {
             value = prices.getStdev();
         }
@@ -21,7 +21,7 @@ public class VolumeAcceleration extends Indicator {
 
     @Override
     public void calculate() {
-        double volume = marketBook.getSnapshot().getVolume();
+        double volume = marketBook.getVolume();
         fast += (volume - fast) * fastMultiplier;
         interm += (volume - interm) * intermMutiplier;
         slow += (volume - slow) * slowMultiplier;
@@ -30,6 +30,6 @@ public class VolumeAcceleration extends Indicator {
 
     @Override
     public void reset() {
-        fast = slow = interm = marketBook.getSnapshot().getVolume();
+        fast = slow = interm = marketBook.getVolume();
     }
 }
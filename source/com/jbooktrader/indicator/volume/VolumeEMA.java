@@ -17,13 +17,13 @@ public class VolumeEMA extends Indicator {
 
     @Override
     public void calculate() {
-        int volume = marketBook.getSnapshot().getVolume();
+        int volume = marketBook.getVolume();
         value += (volume - value) * multiplier;
     }
 
     @Override
     public void reset() {
-        value = marketBook.getSnapshot().getVolume();
+        value = marketBook.getVolume();
     }
 
 }
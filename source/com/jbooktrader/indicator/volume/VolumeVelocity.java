@@ -19,7 +19,7 @@ public class VolumeVelocity extends Indicator {
 
     @Override
     public void calculate() {
-        double volume = marketBook.getSnapshot().getVolume();
+        double volume = marketBook.getVolume();
         fast += (volume - fast) * fastMultiplier;
         slow += (volume - slow) * slowMultiplier;
 
@@ -28,6 +28,6 @@ public class VolumeVelocity extends Indicator {
 
     @Override
     public void reset() {
-        fast = slow = marketBook.getSnapshot().getVolume();
+        fast = slow = marketBook.getVolume();
     }
 }
@@ -19,7 +19,7 @@ public class VolumeVelocitySMA extends Indicator {
 
     @Override
     public void calculate() {
-        int volume = marketBook.getSnapshot().getVolume();
+        int volume = marketBook.getVolume();
         fast.add(volume);
         slow.add(volume);
 
@@ -0,0 +1,186 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Reads a binary data file containing historical market snapshots. Each snapshot is stored
+ * as a fixed-width record of time, balance, price, and volume columns, so the file is
+ * memory-mapped and decoded directly, without any text parsing.
+ * <p/>
+ * File layout:
+ * -- header of HEADER_SIZE bytes: magic number, format version, time zone ID
+ * -- records of RECORD_SIZE bytes: time (long), balance (double), price (double), volume (int)
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestBinaryFileReader {
+    public static final String EXTENSION = ".jbt";
+    public static final int MAGIC = 0x4A42544D; // "JBTM"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 28;
+    // largest memory-mapped region which holds a whole number of records
+    private static final long MAX_REGION_SIZE = (Integer.MAX_VALUE / RECORD_SIZE) * (long) RECORD_SIZE;
+    private final String fileName;
+    private final TimeZone timeZone;
+    private final long records;
+
+    public BackTestBinaryFileReader(String fileName) throws JBookTraderException {
+        this.fileName = fileName;
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            timeZone = readHeader(file, fileName);
+            records = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+        } catch (FileNotFoundException fnfe) {
+            throw new JBookTraderException("Could not find file: " + fileName);
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file " + fileName, ioe);
+        }
+    }
+
+    /**
+     * Returns true if the specified file starts with the binary snapshot file signature.
+     */
+    public static boolean isBinary(String fileName) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    static TimeZone readHeader(RandomAccessFile file, String fileName) throws IOException, JBookTraderException {
+        if (file.length() < HEADER_SIZE) {
+            throw new JBookTraderException("Data file " + fileName + " is too short to contain a valid header.");
+        }
+
+        file.seek(0);
+        if (file.readInt() != MAGIC) {
+            throw new JBookTraderException("Data file " + fileName + " is not a binary snapshot file.");
+        }
+
+        int version = file.readInt();
+        if (version != VERSION) {
+            throw new JBookTraderException("Binary snapshot file version " + version + " is not supported.");
+        }
+
+        String timeZoneId = file.readUTF();
+        TimeZone tz = TimeZone.getTimeZone(timeZoneId);
+        if (!tz.getID().equals(timeZoneId)) {
+            throw new JBookTraderException("The time zone " + "\"" + timeZoneId + "\"" + " in data file " + fileName + " does not exist.");
+        }
+
+        return tz;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public long size() {
+        return records;
+    }
+
+    /**
+     * Returns the time of the specified record.
+     */
+    public long getTime(long record) throws JBookTraderException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            file.seek(HEADER_SIZE + record * RECORD_SIZE);
+            return file.readLong();
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file " + fileName, ioe);
+        }
+    }
+
+    /**
+     * Returns the number of the first record whose time is equal to or later than the specified time,
+     * or size() if there is no such record. Since the records have a fixed width and are ordered by time,
+     * the record is located by a binary search, which reads only a few records regardless of the file size.
+     */
+    public long indexOf(long time) throws JBookTraderException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            long low = 0, high = records;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                file.seek(HEADER_SIZE + middle * RECORD_SIZE);
+                if (file.readLong() < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file " + fileName, ioe);
+        }
+    }
+
+    /**
+     * Loads the snapshots within the date range of the filter, or all snapshots if the filter is null.
+     * Only the records within the date range are read.
+     */
+    public SnapshotSeries load(ProgressListener progressListener, MarketSnapshotFilter filter) throws JBookTraderException {
+        if (filter == null) {
+            return load(progressListener, 0, records);
+        }
+        long firstRecord = indexOf(filter.getFromDate());
+        long endRecord = Math.max(firstRecord, indexOf(filter.getToDate() + 1));
+        return load(progressListener, firstRecord, endRecord);
+    }
+
+    /**
+     * Loads the records from "firstRecord" (inclusive) to "endRecord" (exclusive). The progress
+     * listener may be null, in which case the progress is not reported.
+     */
+    SnapshotSeries load(ProgressListener progressListener, long firstRecord, long endRecord) throws JBookTraderException {
+        long count = endRecord - firstRecord;
+        SnapshotSeries snapshots = new SnapshotSeries((int) Math.min(count, Integer.MAX_VALUE - 8));
+        long previousTime = 0;
+        long record = firstRecord;
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            FileChannel channel = file.getChannel();
+            long dataStart = HEADER_SIZE + firstRecord * RECORD_SIZE;
+            long dataSize = count * RECORD_SIZE;
+
+            for (long regionStart = 0; regionStart < dataSize; regionStart += MAX_REGION_SIZE) {
+                long regionSize = Math.min(MAX_REGION_SIZE, dataSize - regionStart);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + regionStart, regionSize);
+
+                while (buffer.hasRemaining()) {
+                    if (progressListener != null && (record - firstRecord) % 50000 == 0) {
+                        progressListener.setProgress(record - firstRecord, count, "Loading historical data file");
+                        if (progressListener.isCancelled()) {
+                            return snapshots;
+                        }
+                    }
+
+                    long time = buffer.getLong();
+                    double balance = buffer.getDouble();
+                    double price = buffer.getDouble();
+                    int volume = buffer.getInt();
+                    record++;
+
+                    if (time <= previousTime) {
+                        String msg = "Timestamp of record #" + record + " is before or the same as the timestamp of the previous record.";
+                        throw new JBookTraderException(msg);
+                    }
+                    previousTime = time;
+                    snapshots.add(time, balance, price, volume);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file " + fileName, ioe);
+        }
+
+        snapshots.trimToSize();
+        return snapshots;
+    }
+}
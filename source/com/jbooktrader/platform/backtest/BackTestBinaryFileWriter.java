@@ -0,0 +1,77 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.util.*;
+
+import static com.jbooktrader.platform.backtest.BackTestBinaryFileReader.*;
+
+/**
+ * Writes historical market snapshots to a binary data file, in the format read by
+ * BackTestBinaryFileReader. If the file already exists, new snapshots are appended to it.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestBinaryFileWriter {
+    private final DataOutputStream out;
+    private final TimeZone timeZone;
+
+    public BackTestBinaryFileWriter(String fileName, TimeZone timeZone) throws JBookTraderException {
+        try {
+            File file = new File(fileName);
+            if (file.exists() && file.length() > 0) {
+                try (RandomAccessFile existingFile = new RandomAccessFile(file, "rw")) {
+                    this.timeZone = readHeader(existingFile, fileName);
+                    // discard a partially written record, if any
+                    long records = (existingFile.length() - HEADER_SIZE) / RECORD_SIZE;
+                    existingFile.setLength(HEADER_SIZE + records * RECORD_SIZE);
+                }
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            } else {
+                this.timeZone = timeZone;
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                writeHeader();
+            }
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not write to file " + fileName);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_SIZE);
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(MAGIC);
+        headerOut.writeInt(VERSION);
+        headerOut.writeUTF(timeZone.getID());
+        if (header.size() > HEADER_SIZE) {
+            throw new IOException("Time zone ID " + timeZone.getID() + " does not fit in the file header.");
+        }
+        byte[] headerBytes = Arrays.copyOf(header.toByteArray(), HEADER_SIZE);
+        out.write(headerBytes);
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public void write(MarketSnapshot marketSnapshot) throws IOException {
+        write(marketSnapshot.getTime(), marketSnapshot.getBalance(), marketSnapshot.getPrice(), marketSnapshot.getVolume());
+    }
+
+    public void write(long time, double balance, double price, int volume) throws IOException {
+        out.writeLong(time);
+        out.writeDouble(balance);
+        out.writeDouble(price);
+        out.writeInt(volume);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
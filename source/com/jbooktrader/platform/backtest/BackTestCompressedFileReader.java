@@ -0,0 +1,361 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads a compressed data file containing historical market snapshots. The snapshots are stored in
+ * independent blocks, and each snapshot is encoded as the difference from the previous one:
+ * <p/>
+ * -- the time as a delta, in multiples of the smallest time step in the block (normally 1 second)
+ * -- the price as a delta, in multiples of the smallest price change in the block (normally 1 tick)
+ * -- the balance and the volume as variable-length integers, omitted if unchanged
+ * -- consecutive 1-step snapshots in which nothing has changed as a single run length
+ * <p/>
+ * The balances and prices are stored as decimal integers with a per-block number of decimal places,
+ * so that they decode to exactly the same values as the text file they were converted from. If there
+ * is no such number of decimal places, the raw double values are stored instead.
+ * <p/>
+ * File layout:
+ * -- header of HEADER_SIZE bytes: magic number, format version, time zone ID
+ * -- blocks of BLOCK_HEADER_SIZE bytes: payload length (int), number of snapshots (int),
+ * first time (long), last time (long), followed by the payload:
+ * -- balance decimal places (byte, -1 for raw), price decimal places (byte, -1 for raw),
+ * time step (varint), price step (varint), snapshots
+ * <p/>
+ * Each snapshot starts with a varint whose 3 low bits are the BALANCE, PRICE, and VOLUME flags,
+ * and whose other bits are the time delta, followed by the flagged fields. If none of the flags
+ * is set, the other bits are the length of a run of unchanged snapshots instead.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestCompressedFileReader {
+    public static final String EXTENSION = ".jbz";
+    public static final int MAGIC = 0x4A42545A; // "JBTZ"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int BLOCK_HEADER_SIZE = 24;
+    public static final int BALANCE = 1, PRICE = 2, VOLUME = 4, FLAG_BITS = 3;
+    public static final int RAW = -1;
+    static final double[] POWERS_OF_TEN = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+    private final String fileName;
+    private final TimeZone timeZone;
+    private final List<Long> blockPositions;
+    private final List<Integer> blockSizes;
+    private final List<Long> blockFirstTimes, blockLastTimes;
+    private final long dataEnd;
+    private long records;
+
+    public BackTestCompressedFileReader(String fileName) throws JBookTraderException {
+        this.fileName = fileName;
+        blockPositions = new ArrayList<>();
+        blockSizes = new ArrayList<>();
+        blockFirstTimes = new ArrayList<>();
+        blockLastTimes = new ArrayList<>();
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            timeZone = readHeader(file, fileName);
+
+            // a partially written block at the end of the file, if any, is ignored
+            long position = HEADER_SIZE;
+            while (position + BLOCK_HEADER_SIZE <= file.length()) {
+                file.seek(position);
+                int length = file.readInt();
+                int count = file.readInt();
+                long firstTime = file.readLong();
+                long lastTime = file.readLong();
+                long blockEnd = position + BLOCK_HEADER_SIZE + length;
+                if (length < 0 || count <= 0 || blockEnd > file.length()) {
+                    break;
+                }
+                blockPositions.add(position);
+                blockSizes.add(count);
+                blockFirstTimes.add(firstTime);
+                blockLastTimes.add(lastTime);
+                records += count;
+                position = blockEnd;
+            }
+            dataEnd = position;
+        } catch (FileNotFoundException fnfe) {
+            throw new JBookTraderException("Could not find file: " + fileName);
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file " + fileName, ioe);
+        }
+    }
+
+    /**
+     * Returns true if the specified file starts with the compressed snapshot file signature.
+     */
+    public static boolean isCompressed(String fileName) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    static TimeZone readHeader(RandomAccessFile file, String fileName) throws IOException, JBookTraderException {
+        if (file.length() < HEADER_SIZE) {
+            throw new JBookTraderException("Data file " + fileName + " is too short to contain a valid header.");
+        }
+
+        file.seek(0);
+        if (file.readInt() != MAGIC) {
+            throw new JBookTraderException("Data file " + fileName + " is not a compressed snapshot file.");
+        }
+
+        int version = file.readInt();
+        if (version != VERSION) {
+            throw new JBookTraderException("Compressed snapshot file version " + version + " is not supported.");
+        }
+
+        String timeZoneId = file.readUTF();
+        TimeZone tz = TimeZone.getTimeZone(timeZoneId);
+        if (!tz.getID().equals(timeZoneId)) {
+            throw new JBookTraderException("The time zone " + "\"" + timeZoneId + "\"" + " in data file " + fileName + " does not exist.");
+        }
+
+        return tz;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public long size() {
+        return records;
+    }
+
+    /**
+     * Returns the time of the last snapshot, or 0 if there are no snapshots.
+     */
+    public long getLastTime() {
+        return blockLastTimes.isEmpty() ? 0 : blockLastTimes.get(blockLastTimes.size() - 1);
+    }
+
+    public int getBlocks() {
+        return blockPositions.size();
+    }
+
+    /**
+     * Returns the position following the last complete block.
+     */
+    long getDataEnd() {
+        return dataEnd;
+    }
+
+    /**
+     * Returns the position of the specified block.
+     */
+    long getBlockPosition(int block) {
+        return (block < blockPositions.size()) ? blockPositions.get(block) : dataEnd;
+    }
+
+    /**
+     * Returns the number of the first block whose last snapshot is at or after the specified time,
+     * or getBlocks() if there is no such block.
+     */
+    int firstBlockOf(long time) {
+        int block = 0;
+        while (block < blockLastTimes.size() && blockLastTimes.get(block) < time) {
+            block++;
+        }
+        return block;
+    }
+
+    /**
+     * Returns the number of the first block whose first snapshot is after the specified time,
+     * or getBlocks() if there is no such block.
+     */
+    int endBlockOf(long time) {
+        int block = blockFirstTimes.size();
+        while (block > 0 && blockFirstTimes.get(block - 1) > time) {
+            block--;
+        }
+        return block;
+    }
+
+    /**
+     * Loads the snapshots within the date range of the filter, or all snapshots if the filter is null.
+     * Only the blocks which overlap the date range are read and decoded.
+     */
+    public SnapshotSeries load(ProgressListener progressListener, MarketSnapshotFilter filter) throws JBookTraderException {
+        if (filter == null) {
+            return load(progressListener, 0, getBlocks());
+        }
+
+        int firstBlock = firstBlockOf(filter.getFromDate());
+        int endBlock = Math.max(firstBlock, endBlockOf(filter.getToDate()));
+        SnapshotSeries snapshots = load(progressListener, firstBlock, endBlock);
+        if (snapshots.isEmpty()) {
+            return snapshots;
+        }
+
+        // the first and the last blocks may extend beyond the date range
+        SnapshotSeries filteredSnapshots = filter.apply(snapshots);
+        SnapshotSeries copy = new SnapshotSeries(filteredSnapshots.size());
+        copy.addAll(filteredSnapshots);
+        return copy;
+    }
+
+    /**
+     * Loads the blocks from "firstBlock" (inclusive) to "endBlock" (exclusive). The progress
+     * listener may be null, in which case the progress is not reported.
+     */
+    SnapshotSeries load(ProgressListener progressListener, int firstBlock, int endBlock) throws JBookTraderException {
+        long count = 0;
+        for (int block = firstBlock; block < endBlock; block++) {
+            count += blockSizes.get(block);
+        }
+
+        SnapshotSeries snapshots = new SnapshotSeries((int) Math.min(count, Integer.MAX_VALUE - 8));
+        long dataStart = getBlockPosition(firstBlock);
+        long dataSize = getBlockPosition(endBlock) - dataStart;
+        long previousTime = 0;
+        long record = 0;
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            byte[] payload = new byte[0];
+            for (int block = firstBlock; block < endBlock; block++) {
+                if (progressListener != null) {
+                    progressListener.setProgress(getBlockPosition(block) - dataStart, dataSize, "Loading historical data file");
+                    if (progressListener.isCancelled()) {
+                        return snapshots;
+                    }
+                }
+
+                file.seek(blockPositions.get(block));
+                int length = file.readInt();
+                file.skipBytes(BLOCK_HEADER_SIZE - 4);
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                file.readFully(payload, 0, length);
+
+                int blockSize = blockSizes.get(block);
+                try {
+                    decode(payload, length, blockSize, blockFirstTimes.get(block), snapshots);
+                } catch (RuntimeException re) {
+                    throw new JBookTraderException("Block #" + (block + 1) + " of data file " + fileName + " is corrupted.", re);
+                }
+
+                if (snapshots.getTime((int) record) <= previousTime) {
+                    String msg = "Timestamp of record #" + (record + 1) + " is before or the same as the timestamp of the previous record.";
+                    throw new JBookTraderException(msg);
+                }
+                for (int index = 1; index < blockSize; index++) {
+                    if (snapshots.getTime((int) record + index) <= snapshots.getTime((int) record + index - 1)) {
+                        String msg = "Timestamp of record #" + (record + index + 1) + " is before or the same as the timestamp of the previous record.";
+                        throw new JBookTraderException(msg);
+                    }
+                }
+                record += blockSize;
+                previousTime = snapshots.getTime((int) record - 1);
+            }
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file " + fileName, ioe);
+        }
+
+        snapshots.trimToSize();
+        return snapshots;
+    }
+
+    /**
+     * Decodes the payload of a block of "count" snapshots, the first of which is at "firstTime",
+     * and adds them to the series.
+     */
+    private void decode(byte[] payload, int length, int count, long firstTime, SnapshotSeries snapshots) {
+        VarIntDecoder in = new VarIntDecoder(payload);
+        long time = firstTime;
+        int balanceScale = payload[in.position++];
+        int priceScale = payload[in.position++];
+        long timeStep = in.readLong();
+        long priceStep = in.readLong();
+        double balanceDivisor = (balanceScale == RAW) ? 0 : POWERS_OF_TEN[balanceScale];
+        double priceDivisor = (priceScale == RAW) ? 0 : POWERS_OF_TEN[priceScale];
+
+        long priceUnits = 0;
+        double balance = 0, price = 0;
+        int volume = 0;
+        int decoded = 0;
+
+        while (decoded < count) {
+            long header = in.readLong();
+            int flags = (int) (header & ((1 << FLAG_BITS) - 1));
+            long value = header >>> FLAG_BITS;
+
+            if (flags == 0) {
+                // a run of snapshots in which nothing has changed, each one time step after the previous one
+                for (long run = 0; run < value; run++) {
+                    time += timeStep;
+                    snapshots.add(time, balance, price, volume);
+                }
+                decoded += value;
+                continue;
+            }
+
+            time += value * timeStep;
+            if ((flags & BALANCE) != 0) {
+                if (balanceScale == RAW) {
+                    balance = Double.longBitsToDouble(in.readFixedLong());
+                } else {
+                    balance = in.readSignedLong() / balanceDivisor;
+                }
+            }
+            if ((flags & PRICE) != 0) {
+                if (priceScale == RAW) {
+                    price = Double.longBitsToDouble(in.readFixedLong());
+                } else {
+                    priceUnits += in.readSignedLong() * priceStep;
+                    price = priceUnits / priceDivisor;
+                }
+            }
+            if ((flags & VOLUME) != 0) {
+                volume = (int) in.readSignedLong();
+            }
+            snapshots.add(time, balance, price, volume);
+            decoded++;
+        }
+
+        if (decoded != count || in.position != length) {
+            throw new IllegalStateException("Expected " + count + " snapshots in " + length + " bytes, decoded " + decoded + " in " + in.position + " bytes.");
+        }
+    }
+
+    private static class VarIntDecoder {
+        private final byte[] bytes;
+        private int position;
+
+        private VarIntDecoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private long readLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private long readSignedLong() {
+            long value = readLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readFixedLong() {
+            long value = 0;
+            for (int index = 0; index < 8; index++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.util.*;
+
+import static com.jbooktrader.platform.backtest.BackTestCompressedFileReader.*;
+
+/**
+ * Writes historical market snapshots to a compressed data file, in the format read by
+ * BackTestCompressedFileReader. The snapshots are buffered and written in blocks of up to
+ * BLOCK_SIZE snapshots, or whenever flush() is called. If the file already exists, new blocks
+ * are appended to it.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestCompressedFileWriter {
+    public static final int BLOCK_SIZE = 16 * 1024;
+    private static final long MAX_EXACT_UNITS = 1L << 53;
+    private final DataOutputStream out;
+    private final TimeZone timeZone;
+    private final long[] times;
+    private final double[] balances, prices;
+    private final int[] volumes;
+    private final VarIntEncoder encoder;
+    private int count;
+    private long lastTime;
+
+    public BackTestCompressedFileWriter(String fileName, TimeZone timeZone) throws JBookTraderException {
+        times = new long[BLOCK_SIZE];
+        balances = new double[BLOCK_SIZE];
+        prices = new double[BLOCK_SIZE];
+        volumes = new int[BLOCK_SIZE];
+        encoder = new VarIntEncoder();
+
+        try {
+            File file = new File(fileName);
+            if (file.exists() && file.length() > 0) {
+                BackTestCompressedFileReader reader = new BackTestCompressedFileReader(fileName);
+                this.timeZone = reader.getTimeZone();
+                lastTime = reader.getLastTime();
+                // discard a partially written block, if any
+                try (RandomAccessFile existingFile = new RandomAccessFile(file, "rw")) {
+                    existingFile.setLength(reader.getDataEnd());
+                }
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            } else {
+                this.timeZone = timeZone;
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                writeHeader();
+            }
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not write to file " + fileName);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_SIZE);
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(MAGIC);
+        headerOut.writeInt(VERSION);
+        headerOut.writeUTF(timeZone.getID());
+        if (header.size() > HEADER_SIZE) {
+            throw new IOException("Time zone ID " + timeZone.getID() + " does not fit in the file header.");
+        }
+        byte[] headerBytes = Arrays.copyOf(header.toByteArray(), HEADER_SIZE);
+        out.write(headerBytes);
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public void write(MarketSnapshot marketSnapshot) throws IOException {
+        write(marketSnapshot.getTime(), marketSnapshot.getBalance(), marketSnapshot.getPrice(), marketSnapshot.getVolume());
+    }
+
+    public void write(long time, double balance, double price, int volume) throws IOException {
+        if (time <= lastTime) {
+            throw new IOException("Timestamp " + time + " is before or the same as the timestamp of the previous snapshot.");
+        }
+        lastTime = time;
+
+        times[count] = time;
+        balances[count] = balance;
+        prices[count] = price;
+        volumes[count] = volume;
+        count++;
+        if (count == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the buffered snapshots as a block.
+     */
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        int balanceScale = getScale(balances);
+        int priceScale = getScale(prices);
+        long[] priceUnits = new long[count];
+        long timeStep = 0, priceStep = 0;
+        for (int index = 0; index < count; index++) {
+            if (priceScale != RAW) {
+                priceUnits[index] = Math.round(prices[index] * POWERS_OF_TEN[priceScale]);
+                priceStep = gcd(priceStep, Math.abs(priceUnits[index] - (index == 0 ? 0 : priceUnits[index - 1])));
+            }
+            if (index > 0) {
+                timeStep = gcd(timeStep, times[index] - times[index - 1]);
+            }
+        }
+        timeStep = Math.max(1, timeStep);
+        priceStep = Math.max(1, priceStep);
+
+        encoder.reset();
+        encoder.writeByte(balanceScale);
+        encoder.writeByte(priceScale);
+        encoder.writeLong(timeStep);
+        encoder.writeLong(priceStep);
+
+        long run = 0;
+        for (int index = 0; index < count; index++) {
+            int flags = 0;
+            long timeDelta = 0;
+            if (index == 0) {
+                flags = BALANCE | PRICE | VOLUME;
+            } else {
+                timeDelta = (times[index] - times[index - 1]) / timeStep;
+                if (Double.doubleToLongBits(balances[index]) != Double.doubleToLongBits(balances[index - 1])) {
+                    flags |= BALANCE;
+                }
+                if (Double.doubleToLongBits(prices[index]) != Double.doubleToLongBits(prices[index - 1])) {
+                    flags |= PRICE;
+                }
+                if (volumes[index] != volumes[index - 1] || (flags == 0 && timeDelta != 1)) {
+                    flags |= VOLUME;
+                }
+            }
+
+            if (flags == 0) {
+                run++;
+                continue;
+            }
+            if (run > 0) {
+                encoder.writeLong(run << FLAG_BITS);
+                run = 0;
+            }
+
+            encoder.writeLong((timeDelta << FLAG_BITS) | flags);
+            if ((flags & BALANCE) != 0) {
+                if (balanceScale == RAW) {
+                    encoder.writeFixedLong(Double.doubleToRawLongBits(balances[index]));
+                } else {
+                    encoder.writeSignedLong(Math.round(balances[index] * POWERS_OF_TEN[balanceScale]));
+                }
+            }
+            if ((flags & PRICE) != 0) {
+                if (priceScale == RAW) {
+                    encoder.writeFixedLong(Double.doubleToRawLongBits(prices[index]));
+                } else {
+                    encoder.writeSignedLong((priceUnits[index] - (index == 0 ? 0 : priceUnits[index - 1])) / priceStep);
+                }
+            }
+            if ((flags & VOLUME) != 0) {
+                encoder.writeSignedLong(volumes[index]);
+            }
+        }
+        if (run > 0) {
+            encoder.writeLong(run << FLAG_BITS);
+        }
+
+        out.writeInt(encoder.size());
+        out.writeInt(count);
+        out.writeLong(times[0]);
+        out.writeLong(times[count - 1]);
+        out.write(encoder.getBytes(), 0, encoder.size());
+        count = 0;
+    }
+
+    /**
+     * Returns the smallest number of decimal places with which all the buffered values can be stored
+     * as integers and decoded to exactly the same values, or RAW if there is no such number.
+     */
+    private int getScale(double[] values) {
+        for (int scale = 0; scale < POWERS_OF_TEN.length; scale++) {
+            double multiplier = POWERS_OF_TEN[scale];
+            boolean isExact = true;
+            for (int index = 0; index < count && isExact; index++) {
+                double value = values[index];
+                double scaledValue = value * multiplier;
+                if (Math.abs(scaledValue) >= MAX_EXACT_UNITS) {
+                    return RAW;
+                }
+                long units = Math.round(scaledValue);
+                isExact = Double.doubleToLongBits(units / multiplier) == Double.doubleToLongBits(value);
+            }
+            if (isExact) {
+                return scale;
+            }
+        }
+        return RAW;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    private static class VarIntEncoder {
+        private byte[] bytes = new byte[64 * 1024];
+        private int size;
+
+        private void reset() {
+            size = 0;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private byte[] getBytes() {
+            return bytes;
+        }
+
+        private void ensureCapacity(int extraBytes) {
+            if (size + extraBytes > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extraBytes));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeSignedLong(long value) {
+            writeLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeFixedLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+    }
+}
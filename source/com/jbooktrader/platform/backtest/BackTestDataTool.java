@@ -0,0 +1,622 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Slices text data files containing historical market depth records:
+ * <p/>
+ * -- strip: keeps only the records within the specified hours of the day
+ * -- cut: keeps only the records within the specified range of dates
+ * -- split: splits a file into daily files, in a directory which can be read as a data set
+ * -- merge: joins several files covering consecutive periods into one file
+ * <p/>
+ * The input file is split into byte ranges on line boundaries, which are processed concurrently.
+ * Only the date and time columns of the market depth lines are examined, and the selected lines
+ * are copied byte for byte. Each range is written to a temporary part file, and the part files
+ * are then concatenated in order with FileChannel.transferTo().
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestDataTool {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+    private static final int DROP = -1;
+    private final String fileNameIn;
+    private final BackTestFileReader reader;
+
+    /**
+     * Determines where each line of the input file goes.
+     */
+    private interface LineRouter {
+        /**
+         * Returns the key of the output of the market depth line, or DROP if the line is not selected.
+         */
+        int route(BackTestLineParser parser, byte[] bytes, int from, int to) throws JBookTraderException;
+
+        /**
+         * Returns true if the lines other than market depth lines, such as comments, go to the output
+         * of the following market depth line, rather than to the output with the key 0.
+         */
+        boolean isFollowing();
+    }
+
+    public static void main(String[] args) throws JBookTraderException, IOException {
+        String command = (args.length == 0) ? "" : args[0];
+        long lines;
+
+        if (command.equals("strip") && args.length == 5) {
+            lines = new BackTestDataTool(args[1]).strip(args[2], Integer.valueOf(args[3]), Integer.valueOf(args[4]));
+        } else if (command.equals("cut") && args.length == 5) {
+            lines = new BackTestDataTool(args[1]).cut(args[2], Integer.valueOf(args[3]), Integer.valueOf(args[4]));
+        } else if (command.equals("split") && args.length == 3) {
+            lines = new BackTestDataTool(args[1]).split(args[2]);
+        } else if (command.equals("merge") && args.length >= 4) {
+            lines = merge(args[1], Arrays.asList(args).subList(2, args.length));
+        } else {
+            System.out.println("Usage:");
+            System.out.println("  strip <fileNameIn> <fileNameOut> <start hour> <end hour>");
+            System.out.println("  cut <fileNameIn> <fileNameOut> <from date yyyyMMdd> <to date yyyyMMdd>");
+            System.out.println("  split <fileNameIn> <directoryOut>");
+            System.out.println("  merge <fileNameOut> <fileNameIn> <fileNameIn> ...");
+            System.exit(1);
+            return;
+        }
+
+        System.out.println("Written " + lines + " market depth lines. Completed.");
+    }
+
+    public BackTestDataTool(String fileNameIn) throws JBookTraderException {
+        this.fileNameIn = fileNameIn;
+        reader = new BackTestFileReader(fileNameIn, null);
+        reader.readHeader();
+    }
+
+    /**
+     * Sets the smallest byte range of the input file which is processed as a separate chunk.
+     */
+    public void setMinChunkSize(long minChunkSize) {
+        reader.setMinChunkSize(minChunkSize);
+    }
+
+    /**
+     * Writes the records whose time of day is between the start hour and the end hour (inclusive) to
+     * the output file. All the other lines, such as the header, are copied. Returns the number of
+     * written records.
+     */
+    public long strip(String fileNameOut, int startHour, int endHour) throws JBookTraderException {
+        final int startSecond = startHour * BackTestFileStripper.SECONDS_IN_HOUR;
+        final int endSecond = endHour * BackTestFileStripper.SECONDS_IN_HOUR;
+
+        return process(new File(fileNameOut), null, new LineRouter() {
+            public int route(BackTestLineParser parser, byte[] bytes, int from, int to) throws JBookTraderException {
+                int secondOfDay = BackTestLineParser.parseSecondOfDay(bytes, from, to);
+                return (secondOfDay >= startSecond && secondOfDay <= endSecond) ? 0 : DROP;
+            }
+
+            public boolean isFollowing() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Writes the records whose date, in the yyyyMMdd form, is between the specified dates (inclusive) to
+     * the output file. All the other lines, such as the header, are copied. Returns the number of written
+     * records.
+     */
+    public long cut(String fileNameOut, final int fromDate, final int toDate) throws JBookTraderException {
+        return process(new File(fileNameOut), null, new LineRouter() {
+            public int route(BackTestLineParser parser, byte[] bytes, int from, int to) throws JBookTraderException {
+                int date = parser.parseDate(bytes, from, to);
+                return (date >= fromDate && date <= toDate) ? 0 : DROP;
+            }
+
+            public boolean isFollowing() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Writes the records of each day to a separate file in the output directory, with a copy of the header
+     * of the input file, and creates the manifest of the data set. The other lines after the header go to
+     * the file of the following record. Returns the number of written records.
+     */
+    public long split(String directoryOut) throws JBookTraderException {
+        File directory = new File(directoryOut);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new JBookTraderException("Could not create directory " + directory);
+        }
+
+        String baseName = new File(fileNameIn).getName();
+        int extensionStart = baseName.lastIndexOf('.');
+        String extension = (extensionStart == -1) ? ".txt" : baseName.substring(extensionStart);
+        baseName = (extensionStart == -1) ? baseName : baseName.substring(0, extensionStart);
+
+        BackTestDataset dataset = new BackTestDataset(directory);
+        if (BackTestDataset.isDataset(directory)) {
+            dataset.load();
+        } else {
+            dataset.setTimeZone(reader.getTimeZone());
+        }
+        if (!dataset.getTimeZone().equals(reader.getTimeZone())) {
+            throw new JBookTraderException("The time zone of " + fileNameIn + " is different from the time zone of the data set.");
+        }
+
+        long lines = process(null, new DayFiles(directory, baseName, extension, dataset), new LineRouter() {
+            public int route(BackTestLineParser parser, byte[] bytes, int from, int to) throws JBookTraderException {
+                return parser.parseDate(bytes, from, to);
+            }
+
+            public boolean isFollowing() {
+                return true;
+            }
+        });
+
+        dataset.save();
+        return lines;
+    }
+
+    /**
+     * Names the output files of the split command, and adds them to the data set.
+     */
+    private static class DayFiles {
+        private final File directory;
+        private final String baseName, extension;
+        private final BackTestDataset dataset;
+
+        private DayFiles(File directory, String baseName, String extension, BackTestDataset dataset) {
+            this.directory = directory;
+            this.baseName = baseName;
+            this.extension = extension;
+            this.dataset = dataset;
+        }
+
+        private File getFile(int day) throws JBookTraderException {
+            String fileName = baseName + "-" + day + extension;
+            File file = new File(directory, fileName);
+            if (file.exists()) {
+                throw new JBookTraderException("File " + file + " already exists.");
+            }
+            dataset.setFileName(String.valueOf(day), fileName);
+            return file;
+        }
+    }
+
+    /**
+     * Routes the lines of the input file to the outputs, and returns the number of written market depth
+     * lines. If the output file is specified, all the outputs go to this file. Otherwise, each output
+     * goes to the file of its day.
+     */
+    private long process(File fileOut, DayFiles dayFiles, LineRouter router) throws JBookTraderException {
+        if (fileOut != null && fileOut.exists()) {
+            throw new JBookTraderException("File " + fileOut + " already exists.");
+        }
+
+        File partsDirectory = (fileOut != null) ? fileOut.getAbsoluteFile().getParentFile() : dayFiles.directory;
+        List<Long> boundaries = reader.getChunkBoundaries(reader.getDataStart(), reader.getFileSize());
+        List<Chunk> chunks = new ArrayList<>();
+        for (int index = 0; index < boundaries.size() - 1; index++) {
+            chunks.add(new Chunk(boundaries.get(index), boundaries.get(index + 1), router, partsDirectory));
+        }
+
+        int threads = Math.max(1, Math.min(chunks.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Chunk>> futures = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                futures.add(executor.submit(chunk));
+            }
+
+            long lineNumber = reader.getHeaderLines();
+            for (Future<Chunk> future : futures) {
+                Chunk chunk = future.get();
+                if (chunk.errorDescription != null) {
+                    String msg = "Problem parsing line #" + (lineNumber + chunk.errorLineNumber) + ": " + chunk.errorLine;
+                    throw new JBookTraderException(msg + System.getProperty("line.separator") + chunk.errorDescription);
+                }
+                lineNumber += chunk.lines;
+            }
+
+            return assemble(fileOut, dayFiles, chunks);
+        } catch (InterruptedException ie) {
+            throw new JBookTraderException(ie);
+        } catch (ExecutionException ee) {
+            throw new JBookTraderException("Could not process data file " + fileNameIn, ee.getCause());
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not process data file " + fileNameIn, ioe);
+        } finally {
+            executor.shutdownNow();
+            for (Chunk chunk : chunks) {
+                chunk.deleteParts();
+            }
+        }
+    }
+
+    /**
+     * Concatenates the part files of the chunks in order, preceded by the header of the input file.
+     */
+    private long assemble(File fileOut, DayFiles dayFiles, List<Chunk> chunks) throws IOException, JBookTraderException {
+        SortedSet<Integer> keys = new TreeSet<>();
+        long lines = 0;
+        for (Chunk chunk : chunks) {
+            keys.addAll(chunk.parts.keySet());
+            lines += chunk.writtenLines;
+        }
+
+        // the other lines at the end of a chunk go to the output of the following market depth line,
+        // which is in a later chunk, or to the output of the last one if there is no following line
+        ByteArrayOutputStream pendingLines = new ByteArrayOutputStream();
+        Chunk lastRoutedChunk = null;
+        for (Chunk chunk : chunks) {
+            if (chunk.firstKey != DROP) {
+                chunk.leadingLines = pendingLines.toByteArray();
+                pendingLines.reset();
+                lastRoutedChunk = chunk;
+            }
+            chunk.pendingLines.writeTo(pendingLines);
+        }
+        if (lastRoutedChunk != null) {
+            lastRoutedChunk.trailingLines = pendingLines.toByteArray();
+        }
+        if (fileOut != null) {
+            // the header is copied even if no records are selected
+            keys.add(0);
+        }
+
+        try (FileChannel in = new RandomAccessFile(fileNameIn, "r").getChannel()) {
+            FileChannel out = null;
+            try {
+                for (int key : keys) {
+                    if (out == null || fileOut == null) {
+                        if (out != null) {
+                            out.close();
+                        }
+                        File file = (fileOut != null) ? fileOut : dayFiles.getFile(key);
+                        out = new FileOutputStream(file).getChannel();
+                        transfer(in, 0, reader.getDataStart(), out);
+                    }
+
+                    for (Chunk chunk : chunks) {
+                        if (key == chunk.firstKey) {
+                            write(chunk.leadingLines, out);
+                        }
+                        File part = chunk.parts.get(key);
+                        if (part != null) {
+                            try (FileChannel partChannel = new FileInputStream(part).getChannel()) {
+                                transfer(partChannel, 0, partChannel.size(), out);
+                            }
+                        }
+                        if (key == chunk.lastKey) {
+                            write(chunk.trailingLines, out);
+                        }
+                    }
+                }
+            } finally {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+
+        return lines;
+    }
+
+    private static void write(byte[] bytes, FileChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            transferred += in.transferTo(position + transferred, count - transferred, out);
+        }
+    }
+
+    /**
+     * Joins the files, which must have the same time zone and cover consecutive periods, into the output
+     * file. The files are ordered by the time of their first record. The header of the first file and the
+     * market depth lines of all the files are copied byte for byte. Returns the number of written records.
+     */
+    public static long merge(String fileNameOut, List<String> fileNamesIn) throws JBookTraderException {
+        final File fileOut = new File(fileNameOut);
+        if (fileOut.exists()) {
+            throw new JBookTraderException("File " + fileOut + " already exists.");
+        }
+
+        List<MergedFile> files = new ArrayList<>();
+        for (String fileNameIn : fileNamesIn) {
+            files.add(new MergedFile(fileNameIn));
+        }
+        Collections.sort(files, new Comparator<MergedFile>() {
+            public int compare(MergedFile file1, MergedFile file2) {
+                // the files without records go last, so that the header is taken from a file with records
+                if (file1.hasData != file2.hasData) {
+                    return file1.hasData ? -1 : 1;
+                }
+                return Long.compare(file1.firstTime, file2.firstTime);
+            }
+        });
+
+        TimeZone timeZone = files.get(0).reader.getTimeZone();
+        long lines = 0;
+        for (int index = 0; index < files.size(); index++) {
+            MergedFile file = files.get(index);
+            if (!file.reader.getTimeZone().equals(timeZone)) {
+                throw new JBookTraderException("The time zone of " + file.fileName + " is different from the time zone of " + files.get(0).fileName + ".");
+            }
+            if (index > 0 && file.hasData && file.firstTime <= files.get(index - 1).lastTime) {
+                throw new JBookTraderException("Data file " + file.fileName + " overlaps data file " + files.get(index - 1).fileName + ".");
+            }
+            lines += file.records;
+        }
+
+        try (FileChannel out = new FileOutputStream(fileOut).getChannel()) {
+            for (int index = 0; index < files.size(); index++) {
+                MergedFile file = files.get(index);
+                try (FileChannel in = new RandomAccessFile(file.fileName, "r").getChannel()) {
+                    long dataStart = file.reader.getDataStart();
+                    if (index == 0) {
+                        transfer(in, 0, dataStart, out);
+                    }
+                    transfer(in, dataStart, in.size() - dataStart, out);
+                    if (!file.isTerminated) {
+                        out.write(ByteBuffer.wrap(System.getProperty("line.separator").getBytes(StandardCharsets.ISO_8859_1)));
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            fileOut.delete();
+            throw new JBookTraderException("Could not write to file " + fileOut, ioe);
+        }
+
+        return lines;
+    }
+
+    /**
+     * An input file of the merge command. Its market depth lines are counted without being parsed,
+     * and only the first and the last of them are parsed, to find the period covered by the file.
+     */
+    private static class MergedFile {
+        private final String fileName;
+        private final BackTestFileReader reader;
+        private long firstTime, lastTime, records;
+        private long firstLineStart = -1, lastLineStart;
+        private int firstLineLength, lastLineLength;
+        private boolean hasData, isTerminated;
+
+        private MergedFile(String fileName) throws JBookTraderException {
+            this.fileName = fileName;
+            reader = new BackTestFileReader(fileName, null);
+            reader.readHeader();
+
+            byte[] bytes = new byte[BUFFER_SIZE];
+            try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+                FileChannel channel = file.getChannel();
+                long position = reader.getDataStart();
+                int carry = 0;
+                isTerminated = true;
+                while (true) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes, carry, bytes.length - carry);
+                    int count = channel.read(buffer, position);
+                    if (count <= 0) {
+                        break;
+                    }
+                    long bufferStart = position - carry;
+                    position += count;
+                    int length = carry + count;
+                    int lineStart = 0;
+                    for (int index = 0; index < length; index++) {
+                        if (bytes[index] == '\n') {
+                            countLine(bytes, lineStart, index, bufferStart);
+                            lineStart = index + 1;
+                        }
+                    }
+                    carry = length - lineStart;
+                    if (carry == bytes.length) {
+                        throw new JBookTraderException("Data file " + fileName + " contains a line longer than " + BUFFER_SIZE + " bytes.");
+                    }
+                    System.arraycopy(bytes, lineStart, bytes, 0, carry);
+                }
+                if (carry > 0) {
+                    countLine(bytes, 0, carry, position - carry);
+                    isTerminated = false;
+                }
+
+                hasData = (records > 0);
+                if (hasData) {
+                    firstTime = parseLine(file, firstLineStart, firstLineLength);
+                    lastTime = parseLine(file, lastLineStart, lastLineLength);
+                }
+            } catch (IOException ioe) {
+                throw new JBookTraderException("Could not read data file " + fileName, ioe);
+            }
+        }
+
+        private void countLine(byte[] bytes, int from, int to, long bufferStart) {
+            if (to > from && bytes[to - 1] == '\r') {
+                to--;
+            }
+            if (BackTestLineParser.isMarketDepthLine(bytes, from, to)) {
+                records++;
+                if (firstLineStart == -1) {
+                    firstLineStart = bufferStart + from;
+                    firstLineLength = to - from;
+                }
+                lastLineStart = bufferStart + from;
+                lastLineLength = to - from;
+            }
+        }
+
+        private long parseLine(RandomAccessFile file, long lineStart, int lineLength) throws IOException, JBookTraderException {
+            byte[] line = new byte[lineLength];
+            file.seek(lineStart);
+            file.readFully(line);
+            BackTestLineParser parser = new BackTestLineParser(reader.getTimeZone());
+            try {
+                parser.parse(line, 0, lineLength);
+            } catch (JBookTraderException jbte) {
+                String msg = "Problem parsing line " + new String(line, StandardCharsets.ISO_8859_1) + " of " + fileName + ": ";
+                throw new JBookTraderException(msg + jbte.getMessage());
+            }
+            return parser.getTime();
+        }
+    }
+
+    /**
+     * Routes the lines of a byte range of the input file to the part files, one part file per output.
+     * The other lines which follow the last routed market depth line of the range are kept in memory,
+     * since their output is determined by the following ranges.
+     */
+    private class Chunk implements Callable<Chunk> {
+        private final long start, end;
+        private final LineRouter router;
+        private final File partsDirectory;
+        private final Map<Integer, File> parts;
+        private final Map<Integer, OutputStream> outputs;
+        private final ByteArrayOutputStream pendingLines;
+        private long lines, writtenLines;
+        private int firstKey, lastKey;
+        private byte[] leadingLines, trailingLines;
+        private long errorLineNumber;
+        private String errorLine, errorDescription;
+
+        private Chunk(long start, long end, LineRouter router, File partsDirectory) {
+            this.start = start;
+            this.end = end;
+            this.router = router;
+            this.partsDirectory = partsDirectory;
+            parts = new HashMap<>();
+            outputs = new HashMap<>();
+            pendingLines = new ByteArrayOutputStream();
+            firstKey = lastKey = DROP;
+            leadingLines = trailingLines = new byte[0];
+        }
+
+        public Chunk call() throws IOException {
+            BackTestLineParser parser = new BackTestLineParser(reader.getTimeZone());
+            byte[] bytes = new byte[BUFFER_SIZE];
+
+            try (FileChannel channel = new RandomAccessFile(fileNameIn, "r").getChannel()) {
+                long position = start;
+                int carry = 0;
+
+                while (position < end) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes, carry, (int) Math.min(BUFFER_SIZE - carry, end - position));
+                    int count = channel.read(buffer, position);
+                    if (count <= 0) {
+                        break;
+                    }
+                    position += count;
+
+                    int length = carry + count;
+                    int lineStart = 0;
+                    for (int index = 0; index < length; index++) {
+                        if (bytes[index] == '\n') {
+                            if (!routeLine(parser, bytes, lineStart, index + 1)) {
+                                return this;
+                            }
+                            lineStart = index + 1;
+                        }
+                    }
+
+                    carry = length - lineStart;
+                    if (carry == BUFFER_SIZE) {
+                        setError(lines + 1, "", "The line is longer than " + BUFFER_SIZE + " bytes.");
+                        return this;
+                    }
+                    System.arraycopy(bytes, lineStart, bytes, 0, carry);
+                }
+
+                if (carry > 0) {
+                    // the last line of the file is not terminated
+                    if (!routeLine(parser, bytes, 0, carry)) {
+                        return this;
+                    }
+                }
+            } finally {
+                for (OutputStream output : outputs.values()) {
+                    output.close();
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Routes the line from "from" to "to", including the line terminator, if any.
+         */
+        private boolean routeLine(BackTestLineParser parser, byte[] bytes, int from, int to) throws IOException {
+            lines++;
+            int contentEnd = to;
+            while (contentEnd > from && (bytes[contentEnd - 1] == '\n' || bytes[contentEnd - 1] == '\r')) {
+                contentEnd--;
+            }
+
+            if (!BackTestLineParser.isMarketDepthLine(bytes, from, contentEnd)) {
+                if (router.isFollowing()) {
+                    pendingLines.write(bytes, from, to - from);
+                } else {
+                    getOutput(0).write(bytes, from, to - from);
+                }
+                return true;
+            }
+
+            int key;
+            try {
+                key = router.route(parser, bytes, from, contentEnd);
+            } catch (JBookTraderException jbte) {
+                setError(lines, new String(bytes, from, contentEnd - from, StandardCharsets.ISO_8859_1), jbte.getMessage());
+                return false;
+            }
+
+            if (key != DROP) {
+                OutputStream output = getOutput(key);
+                if (pendingLines.size() > 0) {
+                    pendingLines.writeTo(output);
+                    pendingLines.reset();
+                }
+                output.write(bytes, from, to - from);
+                writtenLines++;
+                if (firstKey == DROP) {
+                    firstKey = key;
+                }
+                lastKey = key;
+            }
+            return true;
+        }
+
+        private OutputStream getOutput(int key) throws IOException {
+            OutputStream output = outputs.get(key);
+            if (output == null) {
+                File part = File.createTempFile("jbt", ".part", partsDirectory);
+                parts.put(key, part);
+                output = new BufferedOutputStream(new FileOutputStream(part), OUTPUT_BUFFER_SIZE);
+                outputs.put(key, output);
+            }
+            return output;
+        }
+
+        private void setError(long lineNumber, String line, String description) {
+            errorLineNumber = lineNumber;
+            errorLine = line;
+            errorDescription = description;
+        }
+
+        private void deleteParts() {
+            for (File part : parts.values()) {
+                part.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.startup.*;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+
+/**
+ * A directory of historical market data recorded in daily files. The manifest file in the
+ * directory defines the time zone of the data set and maps each day to its data file:
+ * <p/>
+ * timeZone=America/New_York
+ * 20130304=ES-20130304.txt
+ * 20130305=ES-20130305.txt
+ * <p/>
+ * The days are in the time zone of the data set, so that only the files of the days
+ * within the date range of a filter need to be read.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestDataset {
+    public static final String MANIFEST_FILE_NAME = "manifest.txt";
+    private static final String LINE_SEP = System.getProperty("line.separator");
+    private final File directory, manifestFile;
+    private final SortedMap<String, String> days;
+    private TimeZone timeZone;
+    private SimpleDateFormat dayFormat;
+
+    public BackTestDataset(File directory) {
+        this.directory = directory;
+        manifestFile = new File(directory, MANIFEST_FILE_NAME);
+        days = new TreeMap<>();
+    }
+
+    /**
+     * Returns true if the specified file is a directory with a manifest file.
+     */
+    public static boolean isDataset(File file) {
+        return file.isDirectory() && new File(file, MANIFEST_FILE_NAME).isFile();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+        dayFormat = new SimpleDateFormat("yyyyMMdd");
+        dayFormat.setTimeZone(timeZone);
+        dayFormat.setLenient(false);
+    }
+
+    /**
+     * Returns the day of the specified time, in the yyyyMMdd format.
+     */
+    public String getDay(long time) {
+        return dayFormat.format(new Date(time));
+    }
+
+    /**
+     * Returns the days of the data set, in chronological order.
+     */
+    public Set<String> getDays() {
+        return days.keySet();
+    }
+
+    /**
+     * Sets the name of the data file of the specified day, relative to the data set directory.
+     */
+    public void setFileName(String day, String fileName) {
+        days.put(day, fileName);
+    }
+
+    /**
+     * Returns the data files of the days which overlap the date range of the filter, or all
+     * the data files if the filter is null, in chronological order.
+     */
+    public List<File> getFiles(MarketSnapshotFilter filter) throws JBookTraderException {
+        List<File> files = new ArrayList<>();
+        Calendar calendar = Calendar.getInstance(timeZone);
+
+        for (Map.Entry<String, String> day : days.entrySet()) {
+            if (filter != null) {
+                try {
+                    calendar.setTime(dayFormat.parse(day.getKey()));
+                } catch (ParseException pe) {
+                    throw new JBookTraderException("Day " + day.getKey() + " in " + manifestFile + " is not in the yyyyMMdd format.");
+                }
+                long dayStart = calendar.getTimeInMillis();
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+                long nextDayStart = calendar.getTimeInMillis();
+                if (nextDayStart <= filter.getFromDate() || dayStart > filter.getToDate()) {
+                    continue;
+                }
+            }
+            files.add(new File(directory, day.getValue()));
+        }
+
+        return files;
+    }
+
+    /**
+     * Reads the manifest file.
+     */
+    public void load() throws JBookTraderException {
+        days.clear();
+        timeZone = null;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(manifestFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int separator = line.indexOf('=');
+                if (separator == -1) {
+                    throw new JBookTraderException("Line " + "\"" + line + "\"" + " in " + manifestFile + " is not valid.");
+                }
+                String key = line.substring(0, separator).trim();
+                String value = line.substring(separator + 1).trim();
+
+                if (key.equals("timeZone")) {
+                    TimeZone tz = TimeZone.getTimeZone(value);
+                    if (!tz.getID().equals(value)) {
+                        throw new JBookTraderException("The time zone " + "\"" + value + "\"" + " in " + manifestFile + " does not exist.");
+                    }
+                    setTimeZone(tz);
+                } else {
+                    days.put(key, value);
+                }
+            }
+        } catch (FileNotFoundException fnfe) {
+            throw new JBookTraderException("Could not find file: " + manifestFile);
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read file " + manifestFile, ioe);
+        }
+
+        if (timeZone == null) {
+            throw new JBookTraderException("Property " + "\"timeZone\"" + " is not defined in " + manifestFile + ".");
+        }
+    }
+
+    /**
+     * Writes the manifest file. The manifest is written to a temporary file first, so that
+     * a complete manifest is always present.
+     */
+    public void save() throws JBookTraderException {
+        File tempFile = new File(directory, MANIFEST_FILE_NAME + ".tmp");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(tempFile)))) {
+            writer.print("# This manifest was created by " + JBookTrader.APP_NAME + LINE_SEP);
+            writer.print("# Each line maps a day in the yyyyMMdd format to the data file of that day." + LINE_SEP);
+            writer.print("timeZone=" + timeZone.getID() + LINE_SEP);
+            for (Map.Entry<String, String> day : days.entrySet()) {
+                writer.print(day.getKey() + "=" + day.getValue() + LINE_SEP);
+            }
+            if (writer.checkError()) {
+                throw new IOException("Could not write the manifest.");
+            }
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not write to file " + tempFile, ioe);
+        }
+
+        manifestFile.delete();
+        if (!tempFile.renameTo(manifestFile)) {
+            throw new JBookTraderException("Could not write to file " + manifestFile);
+        }
+    }
+}
@@ -29,7 +29,7 @@ public class BackTestDialog extends JBTDialog implements ProgressListener {
     private JButton cancelButton, backTestButton, selectFileButton;
     private JTextField fileNameText;
     private JTextFieldDateEditor fromDateEditor, toDateEditor;
-    private JCheckBox useDateRangeCheckBox;
+    private JCheckBox useDateRangeCheckBox, streamingCheckBox, parallelCheckBox;
     private JPanel fromDatePanel, toDatePanel;
     private JComboBox<String> barSizeCombo;
     private JLabel toLabel;
@@ -85,6 +85,8 @@ public class BackTestDialog extends JBTDialog implements ProgressListener {
                     prefs.set(DateRangeEnd, toDateEditor.getText());
                     prefs.set(UseDateRange, (useDateRangeCheckBox.isSelected() ? "true" : "false"));
                     prefs.set(PerformanceChartBarSize, barSizeCombo.getSelectedItem());
+                    prefs.set(BackTestStreaming, (streamingCheckBox.isSelected() ? "true" : "false"));
+                    prefs.set(BackTestParallel, (parallelCheckBox.isSelected() ? "true" : "false"));
                     String historicalFileName = fileNameText.getText();
                     File file = new File(historicalFileName);
                     if (!file.exists()) {
@@ -111,6 +113,23 @@ public class BackTestDialog extends JBTDialog implements ProgressListener {
             }
         });
 
+        // the sessions can only be simulated in parallel when the whole data file is in memory
+        streamingCheckBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (streamingCheckBox.isSelected()) {
+                    parallelCheckBox.setSelected(false);
+                }
+            }
+        });
+
+        parallelCheckBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (parallelCheckBox.isSelected()) {
+                    streamingCheckBox.setSelected(false);
+                }
+            }
+        });
+
         cancelButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 isCancelled = true;
@@ -129,6 +148,8 @@ public class BackTestDialog extends JBTDialog implements ProgressListener {
             public void actionPerformed(ActionEvent e) {
                 JFileChooser fileChooser = new JFileChooser(Dispatcher.getInstance().getMarketDataDir());
                 fileChooser.setDialogTitle("Select Historical Data File");
+                // a directory of daily data files can also be selected as a data set
+                fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 
                 String filename = getFileName();
                 if (filename.length() != 0) {
@@ -202,8 +223,19 @@ public class BackTestDialog extends JBTDialog implements ProgressListener {
         JLabel barSizeLabel = new JLabel("Bar size for chart: ");
         barSizeLabel.setLabelFor(barSizeCombo);
 
+        streamingCheckBox = new JCheckBox("Stream data file", prefs.get(BackTestStreaming).equals("true"));
+        streamingCheckBox.setToolTipText("Run the back test while the data file is being read, without loading it into memory");
+
+        parallelCheckBox = new JCheckBox("Simulate sessions in parallel", prefs.get(BackTestParallel).equals("true"));
+        parallelCheckBox.setToolTipText("Run the trading sessions separated by the gaps in data on all processors");
+        if (streamingCheckBox.isSelected()) {
+            parallelCheckBox.setSelected(false);
+        }
+
         barSizePanel.add(barSizeLabel);
         barSizePanel.add(barSizeCombo);
+        barSizePanel.add(streamingCheckBox);
+        barSizePanel.add(parallelCheckBox);
         SpringUtilities.makeOneLineGrid(barSizePanel);
 
 
@@ -235,7 +267,7 @@ public class BackTestDialog extends JBTDialog implements ProgressListener {
         add(southPanel, BorderLayout.SOUTH);
 
         getRootPane().setDefaultButton(backTestButton);
-        setMinimumSize(new Dimension(650, 250));
+        setMinimumSize(new Dimension(750, 250));
         setPreferredSize(getMinimumSize());
     }
 
@@ -247,6 +279,14 @@ public class BackTestDialog extends JBTDialog implements ProgressListener {
         return BarSize.getBarSize((String) barSizeCombo.getSelectedItem());
     }
 
+    public boolean isStreaming() {
+        return streamingCheckBox.isSelected();
+    }
+
+    public boolean isParallel() {
+        return parallelCheckBox.isSelected();
+    }
+
     public MarketSnapshotFilter getDateFilter() {
         return useDateRangeCheckBox.isSelected() ? new MarketSnapshotFilter(fromDateEditor, toDateEditor) : null;
     }
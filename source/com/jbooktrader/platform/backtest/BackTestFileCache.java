@@ -0,0 +1,192 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Persistent cache of the parsed snapshots of a text data file, kept next to the data file,
+ * so that the file does not need to be parsed again after a restart. The snapshots are stored
+ * in the binary snapshot format, and a metadata file identifies the part of the data file which
+ * they were parsed from: its length and a checksum of its contents, along with the size and
+ * the modification time of the whole data file when it was cached.
+ * <p/>
+ * When the data file has only been appended to since it was cached, the cached snapshots remain
+ * valid and only the tail of the file needs to be parsed and appended to the cache. Any other
+ * change to the cached part of the file, detected by the checksum, invalidates the cache. Only complete,
+ * newline-terminated lines are cached, because the last line of a file which is being recorded
+ * may not be completely written yet.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileCache {
+    public static final String EXTENSION = ".cache";
+    private static final String METADATA_EXTENSION = ".meta";
+    private static final int MAGIC = 0x4A42544B; // "JBTK"
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final String dataFileName, cacheFileName, metadataFileName;
+    private long dataLength, records, lines;
+    private long fileSize, lastModified, lastTime;
+    private CRC32 checksum;
+    private long checksumLength;
+
+    public BackTestFileCache(String dataFileName) {
+        this.dataFileName = dataFileName;
+        cacheFileName = dataFileName + EXTENSION;
+        metadataFileName = cacheFileName + METADATA_EXTENSION;
+    }
+
+    /**
+     * Returns the length of the part of the data file covered by the cache.
+     */
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * Returns the number of lines in the part of the data file covered by the cache.
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the time of the last cached snapshot, or 0 if there are no cached snapshots.
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Loads the cached snapshots within the date range of the filter, or all of them if the filter is null.
+     * Returns null if there is no cache for the data file, or if the part of the data file covered by the
+     * cache has changed since it was cached.
+     */
+    public SnapshotSeries load(long currentFileSize, long currentLastModified, ProgressListener progressListener,
+                               MarketSnapshotFilter filter) {
+        if (!new File(metadataFileName).isFile() || !new File(cacheFileName).isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(metadataFileName)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            dataLength = in.readLong();
+            long storedChecksum = in.readLong();
+            records = in.readLong();
+            lines = in.readLong();
+            fileSize = in.readLong();
+            lastModified = in.readLong();
+
+            if (currentFileSize < dataLength) {
+                return null;
+            }
+            if (currentFileSize != fileSize || currentLastModified != lastModified) {
+                // the file may only have grown, and the part which is cached must not have changed
+                if (currentFileSize == fileSize || getChecksum(dataLength) != storedChecksum) {
+                    return null;
+                }
+            }
+
+            BackTestBinaryFileReader reader = new BackTestBinaryFileReader(cacheFileName);
+            if (reader.size() != records) {
+                return null;
+            }
+            lastTime = (records == 0) ? 0 : reader.getTime(records - 1);
+            return reader.load(progressListener, filter);
+        } catch (IOException | JBookTraderException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the cache with the first "count" snapshots of the series, which were parsed from
+     * the first "dataLength" bytes of the data file, consisting of "lines" lines.
+     */
+    public void save(SnapshotSeries snapshots, int count, TimeZone timeZone, long dataLength, long lines,
+                     long fileSize, long lastModified) throws JBookTraderException {
+        delete();
+        records = 0;
+        checksum = null;
+        append(snapshots, count, timeZone, dataLength, lines, fileSize, lastModified);
+    }
+
+    /**
+     * Appends the first "count" snapshots of the series to the cache, which now covers the first
+     * "dataLength" bytes of the data file, consisting of "lines" lines.
+     */
+    public void append(SnapshotSeries snapshots, int count, TimeZone timeZone, long dataLength, long lines,
+                       long fileSize, long lastModified) throws JBookTraderException {
+        // the cache is invalid while it is being written
+        new File(metadataFileName).delete();
+
+        try {
+            BackTestBinaryFileWriter writer = new BackTestBinaryFileWriter(cacheFileName, timeZone);
+            try {
+                for (int index = 0; index < count; index++) {
+                    writer.write(snapshots.getTime(index), snapshots.getBalance(index), snapshots.getPrice(index), snapshots.getVolume(index));
+                }
+            } finally {
+                writer.close();
+            }
+
+            this.dataLength = dataLength;
+            this.lines = lines;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            records += count;
+            if (count > 0) {
+                lastTime = snapshots.getTime(count - 1);
+            }
+            long dataChecksum = getChecksum(dataLength);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(metadataFileName)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(dataLength);
+                out.writeLong(dataChecksum);
+                out.writeLong(records);
+                out.writeLong(lines);
+                out.writeLong(fileSize);
+                out.writeLong(lastModified);
+            }
+        } catch (IOException ioe) {
+            delete();
+            throw new JBookTraderException("Could not write to file " + cacheFileName, ioe);
+        }
+    }
+
+    public void delete() {
+        new File(metadataFileName).delete();
+        new File(cacheFileName).delete();
+    }
+
+    /**
+     * Computes the checksum of the first "length" bytes of the data file. The checksum is kept
+     * between the calls, so that only the bytes appended since the previous call are read.
+     */
+    private long getChecksum(long length) throws IOException {
+        if (checksum == null || checksumLength > length) {
+            checksum = new CRC32();
+            checksumLength = 0;
+        }
+
+        byte[] bytes = new byte[BUFFER_SIZE];
+        try (RandomAccessFile file = new RandomAccessFile(dataFileName, "r")) {
+            file.seek(checksumLength);
+            while (checksumLength < length) {
+                int size = (int) Math.min(bytes.length, length - checksumLength);
+                file.readFully(bytes, 0, size);
+                checksum.update(bytes, 0, size);
+                checksumLength += size;
+            }
+        }
+
+        return checksum.getValue();
+    }
+}
@@ -0,0 +1,208 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Parses a range of bytes of a historical data file. The range must start at the beginning
+ * of a line and end at the beginning of a line (or at the end of the file), so that chunks
+ * covering adjacent ranges can be parsed concurrently and concatenated afterwards.
+ * <p/>
+ * Parsing errors are not thrown, but recorded along with the chunk-relative line number, so
+ * that the reader can report them with the line number relative to the whole file.
+ * <p/>
+ * If a queue of blocks is specified, the parsed snapshots are not accumulated, but passed to
+ * the queue in blocks of BackTestFileStream.BLOCK_SIZE snapshots as soon as they are parsed.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileChunk implements Callable<BackTestFileChunk> {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private final String fileName;
+    private final long start, end;
+    private final TimeZone timeZone;
+    private final AtomicLong bytesRead;
+    private final AtomicBoolean cancelled;
+    private final BlockingQueue<SnapshotSeries> blocks;
+    private SnapshotSeries snapshots;
+    private long lines, firstDataLineNumber;
+    private long firstTime, lastTime;
+    private String firstDataLine;
+    private long errorLineNumber;
+    private String errorLine, errorDescription;
+
+    public BackTestFileChunk(String fileName, long start, long end, TimeZone timeZone, AtomicLong bytesRead,
+                             AtomicBoolean cancelled, BlockingQueue<SnapshotSeries> blocks) {
+        this.fileName = fileName;
+        this.start = start;
+        this.end = end;
+        this.timeZone = timeZone;
+        this.bytesRead = bytesRead;
+        this.cancelled = cancelled;
+        this.blocks = blocks;
+        snapshots = (blocks == null) ? new SnapshotSeries() : new SnapshotSeries(BackTestFileStream.BLOCK_SIZE);
+    }
+
+    public BackTestFileChunk(String fileName, long start, long end, TimeZone timeZone, AtomicLong bytesRead,
+                             AtomicBoolean cancelled) {
+        this(fileName, start, end, timeZone, bytesRead, cancelled, null);
+    }
+
+    public BackTestFileChunk call() throws IOException {
+        BackTestLineParser parser = new BackTestLineParser(timeZone);
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            FileChannel channel = file.getChannel();
+            long position = start;
+            int carry = 0;
+
+            while (position < end && !cancelled.get()) {
+                buffer.limit((int) Math.min(BUFFER_SIZE, carry + (end - position)));
+                buffer.position(carry);
+                int count = channel.read(buffer, position);
+                if (count <= 0) {
+                    break;
+                }
+                position += count;
+                bytesRead.addAndGet(count);
+
+                int length = carry + count;
+                int lineStart = 0;
+                for (int index = 0; index < length; index++) {
+                    if (bytes[index] == '\n') {
+                        if (!parseLine(parser, bytes, lineStart, index)) {
+                            return this;
+                        }
+                        lineStart = index + 1;
+                    }
+                }
+
+                carry = length - lineStart;
+                if (carry == BUFFER_SIZE) {
+                    setError(lines + 1, "", "The line is longer than " + BUFFER_SIZE + " bytes.");
+                    return this;
+                }
+                System.arraycopy(bytes, lineStart, bytes, 0, carry);
+            }
+
+            if (carry > 0 && !cancelled.get()) {
+                // the last line of the file is not terminated
+                if (!parseLine(parser, bytes, 0, carry)) {
+                    return this;
+                }
+            }
+        }
+
+        if (blocks != null && !snapshots.isEmpty() && !cancelled.get()) {
+            publish();
+        }
+
+        return this;
+    }
+
+    /**
+     * Passes the current block of snapshots to the queue, waiting for space in the queue if necessary.
+     */
+    private boolean publish() {
+        try {
+            blocks.put(snapshots);
+            snapshots = new SnapshotSeries(BackTestFileStream.BLOCK_SIZE);
+            return true;
+        } catch (InterruptedException ie) {
+            cancelled.set(true);
+            return false;
+        }
+    }
+
+    private boolean parseLine(BackTestLineParser parser, byte[] bytes, int from, int to) {
+        lines++;
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+
+        if (BackTestLineParser.isMarketDepthLine(bytes, from, to)) {
+            try {
+                parser.parse(bytes, from, to);
+                long time = parser.getTime();
+                if (firstDataLine == null) {
+                    firstDataLine = new String(bytes, from, to - from, StandardCharsets.ISO_8859_1);
+                    firstDataLineNumber = lines;
+                    firstTime = time;
+                }
+                lastTime = time;
+                snapshots.add(time, parser.getBalance(), parser.getPrice(), parser.getVolume());
+                if (blocks != null && snapshots.size() == BackTestFileStream.BLOCK_SIZE) {
+                    return publish();
+                }
+            } catch (Exception e) {
+                String description = e.getMessage();
+                if (description == null) {
+                    description = e.toString();
+                }
+                setError(lines, new String(bytes, from, to - from, StandardCharsets.ISO_8859_1), description);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void setError(long lineNumber, String line, String description) {
+        errorLineNumber = lineNumber;
+        errorLine = line;
+        errorDescription = description;
+    }
+
+    public SnapshotSeries getSnapshots() {
+        return snapshots;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public boolean hasData() {
+        return firstDataLine != null;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public String getFirstDataLine() {
+        return firstDataLine;
+    }
+
+    public long getFirstDataLineNumber() {
+        return firstDataLineNumber;
+    }
+
+    public boolean hasError() {
+        return errorDescription != null;
+    }
+
+    public long getErrorLineNumber() {
+        return errorLineNumber;
+    }
+
+    public String getErrorLine() {
+        return errorLine;
+    }
+
+    public String getErrorDescription() {
+        return errorDescription;
+    }
+}
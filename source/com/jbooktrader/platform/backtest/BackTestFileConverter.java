@@ -0,0 +1,85 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+
+/**
+ * Converts a data file containing historical market depth records into the binary
+ * snapshot format, which loads without text parsing, or into the compressed snapshot
+ * format if the name of the output file has the ".jbz" extension. The input file
+ * can be in any of the formats.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileConverter {
+    private final String fileNameIn, fileNameOut;
+
+    public static void main(String[] args) throws JBookTraderException, IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: <fileNameIn> <fileNameOut>");
+            System.exit(1);
+        }
+
+        BackTestFileConverter btfc = new BackTestFileConverter(args[0], args[1]);
+        long snapshots = btfc.process();
+        System.out.println("Converted " + snapshots + " snapshots. Completed.");
+    }
+
+    public BackTestFileConverter(String fileNameIn, String fileNameOut) throws JBookTraderException {
+        this.fileNameIn = fileNameIn;
+        this.fileNameOut = fileNameOut;
+        if (new File(fileNameOut).exists()) {
+            throw new JBookTraderException("File " + fileNameOut + " already exists.");
+        }
+    }
+
+    public long process() throws JBookTraderException, IOException {
+        BackTestFileReader reader = new BackTestFileReader(fileNameIn, null);
+        SnapshotSeries snapshots = reader.load(new ConsoleProgressListener());
+
+        if (fileNameOut.endsWith(BackTestCompressedFileReader.EXTENSION)) {
+            BackTestCompressedFileWriter writer = new BackTestCompressedFileWriter(fileNameOut, reader.getTimeZone());
+            try {
+                for (int index = 0; index < snapshots.size(); index++) {
+                    writer.write(snapshots.getTime(index), snapshots.getBalance(index), snapshots.getPrice(index), snapshots.getVolume(index));
+                }
+            } finally {
+                writer.close();
+            }
+        } else {
+            BackTestBinaryFileWriter writer = new BackTestBinaryFileWriter(fileNameOut, reader.getTimeZone());
+            try {
+                for (int index = 0; index < snapshots.size(); index++) {
+                    writer.write(snapshots.getTime(index), snapshots.getBalance(index), snapshots.getPrice(index), snapshots.getVolume(index));
+                }
+            } finally {
+                writer.close();
+            }
+        }
+
+        return snapshots.size();
+    }
+
+    private static class ConsoleProgressListener implements ProgressListener {
+        private int previousDecile = -1;
+
+        public void setProgress(String progressText) {
+            System.out.println(progressText);
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+            int percent = (int) (100 * (count / (double) iterations));
+            int decile = percent / 10;
+            if (decile != previousDecile) {
+                System.out.println(progressText + ": " + percent + "% completed");
+                previousDecile = decile;
+            }
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -2,165 +2,584 @@ package com.jbooktrader.platform.backtest;
 
 import com.jbooktrader.platform.marketbook.*;
 import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.report.*;
 
 import java.io.*;
-import java.text.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * Reads and validates a data file containing historical market depth records.
  * The data file is used for back testing and optimization of trading strategies.
+ * <p/>
+ * Large text files are split into byte ranges on line boundaries, which are parsed
+ * concurrently and then concatenated in the original order. The parsed snapshots are
+ * kept in a persistent cache next to the text file (see BackTestFileCache).
+ * <p/>
+ * The file name may also be a directory of daily data files (see BackTestDataset),
+ * in which case only the days within the date range of the filter are read.
  *
  * @author Eugene Kononov
  */
 public class BackTestFileReader {
     public static final int COLUMNS = 5;
     private static final String LINE_SEP = System.getProperty("line.separator");
-    private final BufferedReader reader;
+    private static final long MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int CHUNKS_PER_PROCESSOR = 4;
+    private final String fileName;
+    private final boolean isBinary, isCompressed;
     private final MarketSnapshotFilter filter;
-    private final long fileSize;
-    private long previousTime, time;
-    private SimpleDateFormat sdf;
-    private String previousDateTimeWithoutSeconds;
-    private final static Map<String, List<MarketSnapshot>> cache = new HashMap<>();
-    private String cacheKey;
+    private final File file;
+    private final BackTestDataset dataset;
+    private final List<File> datasetFiles;
+    private final long fileSize, lastModified;
+    private TimeZone timeZone;
+    private long dataStart, headerLines, minChunkSize = MIN_CHUNK_SIZE;
+    private boolean isPartialLoad;
 
     public BackTestFileReader(String fileName, MarketSnapshotFilter filter) throws JBookTraderException {
+        this.fileName = fileName;
         this.filter = filter;
-        previousDateTimeWithoutSeconds = "";
 
-        cacheKey = fileName;
-        if (filter != null) {
-            cacheKey += "," + filter.toString();
-        }
-
-        try {
-            reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
-            fileSize = new File(fileName).length();
-        } catch (FileNotFoundException fnf) {
-            throw new JBookTraderException("Could not find file: " + fileName);
+        file = new File(fileName);
+        if (BackTestDataset.isDataset(file)) {
+            dataset = new BackTestDataset(file);
+            dataset.load();
+            timeZone = dataset.getTimeZone();
+            datasetFiles = dataset.getFiles(filter);
+            long totalSize = 0, latestModified = 0;
+            for (File datasetFile : datasetFiles) {
+                if (!datasetFile.isFile()) {
+                    throw new JBookTraderException("Could not find file: " + datasetFile);
+                }
+                totalSize += datasetFile.length();
+                latestModified = Math.max(latestModified, datasetFile.lastModified());
+            }
+            fileSize = totalSize;
+            lastModified = latestModified;
+        } else {
+            if (!file.isFile()) {
+                throw new JBookTraderException("Could not find file: " + fileName);
+            }
+            dataset = null;
+            datasetFiles = null;
+            fileSize = file.length();
+            lastModified = file.lastModified();
         }
+        isBinary = BackTestBinaryFileReader.isBinary(fileName);
+        isCompressed = BackTestCompressedFileReader.isCompressed(fileName);
     }
 
     private void setTimeZone(String line) throws JBookTraderException {
-        String timeZone = line.substring(line.indexOf('=') + 1);
-        TimeZone tz = TimeZone.getTimeZone(timeZone);
-        if (!tz.getID().equals(timeZone)) {
-            String msg = "The specified time zone " + "\"" + timeZone + "\"" + " does not exist." + LINE_SEP;
+        String timeZoneId = line.substring(line.indexOf('=') + 1);
+        TimeZone tz = TimeZone.getTimeZone(timeZoneId);
+        if (!tz.getID().equals(timeZoneId)) {
+            String msg = "The specified time zone " + "\"" + timeZoneId + "\"" + " does not exist." + LINE_SEP;
             msg += "Examples of valid time zones: " + " America/New_York, Europe/London, Asia/Singapore.";
             throw new JBookTraderException(msg);
         }
-        sdf = new SimpleDateFormat("MMddyyHHmmss");
-        // Enforce strict interpretation of date and time formats
-        sdf.setLenient(false);
-        sdf.setTimeZone(tz);
+        timeZone = tz;
     }
 
-    public List<MarketSnapshot> load(ProgressListener progressListener) throws JBookTraderException {
-
-        if (cache.containsKey(cacheKey)) {
-            return cache.get(cacheKey);
-        }
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
 
+    /**
+     * Sets the smallest byte range of the text file which is parsed as a separate chunk. The default
+     * keeps small files in a single chunk, so this is mostly useful to exercise the concurrent parsing.
+     */
+    public void setMinChunkSize(long minChunkSize) {
+        this.minChunkSize = Math.max(1, minChunkSize);
+    }
 
-        String line = "";
-        int lineSeparatorSize = System.getProperty("line.separator").length();
-        long sizeRead = 0, lineNumber = 0;
+    /**
+     * Returns the position of the first market depth line, as determined by readHeader().
+     */
+    long getDataStart() {
+        return dataStart;
+    }
 
-        List<MarketSnapshot> snapshots = new ArrayList<>();
+    /**
+     * Returns the number of lines before the first market depth line, as determined by readHeader().
+     */
+    long getHeaderLines() {
+        return headerLines;
+    }
 
-        try {
-            while ((line = reader.readLine()) != null) {
-                if (lineNumber % 50000 == 0) {
-                    progressListener.setProgress(sizeRead, fileSize, "Loading historical data file");
-                    if (progressListener.isCancelled()) {
-                        break;
-                    }
+    /**
+     * Reads the header of the text file, up to the first market depth line, and sets
+     * the properties defined there.
+     */
+    void readHeader() throws JBookTraderException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(fileName))) {
+            ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+            long position = 0;
+            int b;
+            do {
+                b = in.read();
+                if (b != -1) {
+                    position++;
                 }
-                lineNumber++;
-                sizeRead += line.length() + lineSeparatorSize;
-                boolean isComment = line.startsWith("#");
-                boolean isProperty = line.contains("=");
-                boolean isBlankLine = (line.trim().length() == 0);
-                boolean isMarketDepthLine = !(isComment || isProperty || isBlankLine);
-                if (isMarketDepthLine) {
-                    MarketSnapshot marketSnapshot = toMarketDepth(line);
-                    if (filter == null || filter.contains(time)) {
-                        snapshots.add(marketSnapshot);
+                if (b == '\n' || (b == -1 && lineBytes.size() > 0)) {
+                    String line = new String(lineBytes.toByteArray(), StandardCharsets.ISO_8859_1).trim();
+                    lineBytes.reset();
+                    if (BackTestLineParser.isMarketDepthLine(line)) {
+                        break;
                     }
-                    previousTime = time;
-                } else if (isProperty) {
-                    if (line.startsWith("timeZone")) {
+                    headerLines++;
+                    dataStart = position;
+                    if (line.contains("=") && line.startsWith("timeZone")) {
                         setTimeZone(line);
                     }
+                } else if (b != -1) {
+                    lineBytes.write(b);
                 }
-            }
+            } while (b != -1);
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file");
+        }
 
-            if (sdf == null) {
-                String msg = "Property " + "\"timeZone\"" + " is not defined in the data file." + LINE_SEP;
-                throw new JBookTraderException(msg);
-            }
+        if (timeZone == null) {
+            String msg = "Property " + "\"timeZone\"" + " is not defined in the data file." + LINE_SEP;
+            throw new JBookTraderException(msg);
+        }
+    }
 
+    /**
+     * Returns the position following the last newline character found at or after the specified
+     * position, or the specified position itself if there is no newline character there.
+     */
+    private long getCompleteDataEnd(long from) throws JBookTraderException {
+        byte[] bytes = new byte[8192];
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            long blockEnd = fileSize;
+            while (blockEnd > from) {
+                long blockStart = Math.max(from, blockEnd - bytes.length);
+                int length = (int) (blockEnd - blockStart);
+                file.seek(blockStart);
+                file.readFully(bytes, 0, length);
+                for (int index = length - 1; index >= 0; index--) {
+                    if (bytes[index] == '\n') {
+                        return blockStart + index + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
         } catch (IOException ioe) {
             throw new JBookTraderException("Could not read data file");
-        } catch (Exception e) {
-            String errorMsg = "Problem parsing line #" + lineNumber + ": " + line + LINE_SEP;
-            String description = e.getMessage();
-            if (description == null) {
-                description = e.toString();
+        }
+        return from;
+    }
+
+    /**
+     * Splits the byte range of the file from "from" to "to" into byte ranges, each of which starts
+     * at the beginning of a line. The unterminated last line, if any, is placed in a separate range.
+     */
+    List<Long> getChunkBoundaries(long from, long to) throws JBookTraderException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(from);
+
+        long dataSize = to - from;
+        int maxChunks = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR;
+        int chunks = (int) Math.max(1, Math.min(maxChunks, dataSize / minChunkSize));
+        long chunkSize = dataSize / chunks;
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            for (int chunk = 1; chunk < chunks; chunk++) {
+                long position = Math.max(from + chunk * chunkSize, boundaries.get(boundaries.size() - 1));
+                file.seek(position);
+                int b;
+                while ((b = file.read()) != -1 && b != '\n') {
+                    position++;
+                }
+                long boundary = position + 1;
+                if (boundary < to && boundary > boundaries.get(boundaries.size() - 1)) {
+                    boundaries.add(boundary);
+                }
             }
-            errorMsg += description;
-            throw new RuntimeException(errorMsg);
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read data file");
         }
 
-        if (!progressListener.isCancelled()) {
-            cache.put(cacheKey, snapshots);
+        if (to > from) {
+            boundaries.add(to);
         }
-        return snapshots;
+        if (fileSize > to) {
+            boundaries.add(fileSize);
+        }
+        return boundaries;
+    }
 
+    /**
+     * Loads the snapshots within the date range of the filter. The full data set of the file is kept
+     * in the snapshot cache, so that subsequent loads of the same file, with the same or a different
+     * date range, are served from memory.
+     * <p/>
+     * If the full data set is not in memory, and the snapshots are available in the binary format,
+     * either because the file is binary or because it is a text file with a valid persistent cache,
+     * only the records within the date range are read. These are located by a binary search over the
+     * fixed-width records, so that a narrow date range loads quickly regardless of the file size.
+     * Similarly, only the blocks which overlap the date range are decoded from a compressed file.
+     */
+    public SnapshotSeries load(ProgressListener progressListener) throws JBookTraderException {
+        if (dataset != null) {
+            return loadDataset(progressListener);
+        }
+
+        SnapshotCache cache = SnapshotCache.getInstance();
+        SnapshotCache.Entry entry = cache.get(file, lastModified, fileSize);
+
+        SnapshotSeries snapshots;
+        if (entry != null) {
+            timeZone = entry.getTimeZone();
+            snapshots = entry.getSnapshots();
+        } else {
+            if (isBinary) {
+                BackTestBinaryFileReader binaryReader = new BackTestBinaryFileReader(fileName);
+                timeZone = binaryReader.getTimeZone();
+                snapshots = binaryReader.load(progressListener, filter);
+                isPartialLoad = (filter != null);
+            } else if (isCompressed) {
+                BackTestCompressedFileReader compressedReader = new BackTestCompressedFileReader(fileName);
+                timeZone = compressedReader.getTimeZone();
+                snapshots = compressedReader.load(progressListener, filter);
+                isPartialLoad = (filter != null);
+            } else {
+                snapshots = loadText(progressListener);
+            }
+
+            if (progressListener.isCancelled()) {
+                return new SnapshotSeries(0);
+            }
+            if (isPartialLoad) {
+                // only the full data sets are kept in the snapshot cache
+                return snapshots;
+            }
+            cache.put(file, lastModified, fileSize, snapshots, timeZone);
+        }
+
+        return (filter == null) ? snapshots : filter.apply(snapshots);
     }
 
-    private MarketSnapshot toMarketDepth(String line) throws JBookTraderException, ParseException {
-        List<String> tokens = fastSplit(line);
+    /**
+     * Starts reading the snapshots within the date range of the filter in a background thread. Unlike
+     * load(), the snapshots are not kept in memory, but passed to the consumer in blocks as they are read.
+     */
+    public BackTestFileStream stream() {
+        BackTestFileStream stream = new BackTestFileStream(this, filter);
+        stream.start();
+        return stream;
+    }
 
-        if (tokens.size() != COLUMNS) {
-            String msg = "The line should contain exactly " + COLUMNS + " comma-separated columns.";
-            throw new JBookTraderException(msg);
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Reads all the snapshots of the file and passes them to the queue in blocks.
+     */
+    void read(BlockingQueue<SnapshotSeries> blocks, AtomicLong bytesRead, AtomicBoolean cancelled)
+            throws JBookTraderException, IOException, InterruptedException {
+        if (dataset != null) {
+            long completedBytes = 0;
+            for (File datasetFile : datasetFiles) {
+                if (cancelled.get()) {
+                    return;
+                }
+                BackTestFileReader dayReader = new BackTestFileReader(datasetFile.getPath(), filter);
+                dayReader.read(blocks, new AtomicLong(), cancelled);
+                completedBytes += datasetFile.length();
+                bytesRead.set(completedBytes);
+            }
+            return;
+        }
+
+        SnapshotCache.Entry entry = SnapshotCache.getInstance().get(file, lastModified, fileSize);
+        if (entry != null) {
+            timeZone = entry.getTimeZone();
+            SnapshotSeries snapshots = entry.getSnapshots();
+            for (int from = 0; from < snapshots.size() && !cancelled.get(); from += BackTestFileStream.BLOCK_SIZE) {
+                int to = Math.min(snapshots.size(), from + BackTestFileStream.BLOCK_SIZE);
+                blocks.put(snapshots.subSeries(from, to));
+                bytesRead.set(fileSize * to / snapshots.size());
+            }
+        } else if (isBinary) {
+            BackTestBinaryFileReader binaryReader = new BackTestBinaryFileReader(fileName);
+            timeZone = binaryReader.getTimeZone();
+            long firstRecord = 0, endRecord = binaryReader.size();
+            if (filter != null) {
+                firstRecord = binaryReader.indexOf(filter.getFromDate());
+                endRecord = Math.max(firstRecord, binaryReader.indexOf(filter.getToDate() + 1));
+            }
+            for (long from = firstRecord; from < endRecord && !cancelled.get(); from += BackTestFileStream.BLOCK_SIZE) {
+                long to = Math.min(endRecord, from + BackTestFileStream.BLOCK_SIZE);
+                blocks.put(binaryReader.load(null, from, to));
+                bytesRead.set(fileSize * (to - firstRecord) / (endRecord - firstRecord));
+            }
+        } else if (isCompressed) {
+            BackTestCompressedFileReader compressedReader = new BackTestCompressedFileReader(fileName);
+            timeZone = compressedReader.getTimeZone();
+            int firstBlock = 0, endBlock = compressedReader.getBlocks();
+            if (filter != null) {
+                firstBlock = compressedReader.firstBlockOf(filter.getFromDate());
+                endBlock = Math.max(firstBlock, compressedReader.endBlockOf(filter.getToDate()));
+            }
+            for (int block = firstBlock; block < endBlock && !cancelled.get(); block++) {
+                blocks.put(compressedReader.load(null, block, block + 1));
+                bytesRead.set(compressedReader.getBlockPosition(block + 1));
+            }
+        } else {
+            readHeader();
+            bytesRead.set(dataStart);
+            BackTestFileChunk chunk = new BackTestFileChunk(fileName, dataStart, fileSize, timeZone, bytesRead, cancelled, blocks);
+            chunk.call();
+            if (chunk.hasError()) {
+                throw parsingError(headerLines + chunk.getErrorLineNumber(), chunk.getErrorLine(), chunk.getErrorDescription());
+            }
         }
+    }
+
+    /**
+     * Loads the snapshots of a text file. The snapshots cached in the persistent file cache are reused
+     * if the file has not changed or has only been appended to, in which case only the new lines are
+     * parsed. The cache is then updated with the newly parsed lines. If the cache is valid and there
+     * is a date filter, only the cached snapshots within the date range are read.
+     */
+    private SnapshotSeries loadText(ProgressListener progressListener) throws JBookTraderException {
+        readHeader();
 
-        String dateTime = tokens.get(0) + tokens.get(1);
-        String dateTimeWithoutSeconds = dateTime.substring(0, 10);
+        BackTestFileCache fileCache = new BackTestFileCache(fileName);
+        SnapshotSeries cachedSnapshots = fileCache.load(fileSize, lastModified, progressListener, filter);
+        if (progressListener.isCancelled()) {
+            return new SnapshotSeries(0);
+        }
 
-        if (dateTimeWithoutSeconds.equals(previousDateTimeWithoutSeconds)) {
-            // only seconds need to be set
-            int milliSeconds = 1000 * Integer.parseInt(dateTime.substring(10));
-            long previousMilliSeconds = previousTime % 60000;
-            time = previousTime + (milliSeconds - previousMilliSeconds);
+        long from = dataStart, lineNumber = headerLines, previousTime = 0;
+        if (cachedSnapshots != null) {
+            from = fileCache.getDataLength();
+            lineNumber = fileCache.getLines();
+            previousTime = fileCache.getLastTime();
+            isPartialLoad = (filter != null);
         } else {
-            time = sdf.parse(dateTime).getTime();
-            previousDateTimeWithoutSeconds = dateTimeWithoutSeconds;
+            cachedSnapshots = new SnapshotSeries(0);
         }
 
-        if (time <= previousTime) {
-            String msg = "Timestamp of this line is before or the same as the timestamp of the previous line.";
-            throw new JBookTraderException(msg);
+        long completeDataEnd = getCompleteDataEnd(from);
+        List<BackTestFileChunk> chunks = parse(progressListener, getChunkBoundaries(from, completeDataEnd));
+        if (chunks == null) {
+            return new SnapshotSeries(0);
+        }
+        SnapshotSeries snapshots = concatenate(chunks, lineNumber, previousTime);
+
+        // the unterminated last line is parsed, but not cached
+        int newRecords = snapshots.size();
+        long newLines = 0;
+        for (BackTestFileChunk chunk : chunks) {
+            newLines += chunk.getLines();
+        }
+        if (completeDataEnd < fileSize) {
+            BackTestFileChunk lastChunk = chunks.get(chunks.size() - 1);
+            newRecords -= lastChunk.getSnapshots().size();
+            newLines -= lastChunk.getLines();
+        }
+
+        try {
+            if (from == dataStart) {
+                fileCache.save(snapshots, newRecords, timeZone, completeDataEnd, lineNumber + newLines, fileSize, lastModified);
+            } else if (completeDataEnd > from) {
+                fileCache.append(snapshots, newRecords, timeZone, completeDataEnd, lineNumber + newLines, fileSize, lastModified);
+            }
+        } catch (JBookTraderException jbte) {
+            // the cache only speeds up the subsequent loads, so the data file can still be used
+            EventReport eventReport = Dispatcher.getInstance().getEventReport();
+            if (eventReport != null) {
+                eventReport.report(jbte);
+            }
+        }
+
+        if (isPartialLoad) {
+            snapshots = filter.apply(snapshots);
+        }
+        return join(cachedSnapshots, snapshots);
+    }
+
+    /**
+     * Loads the data files of the selected days of the data set concurrently, and concatenates
+     * them in chronological order.
+     */
+    private SnapshotSeries loadDataset(final ProgressListener progressListener) throws JBookTraderException {
+        int days = datasetFiles.size();
+        if (days == 0) {
+            return new SnapshotSeries(0);
+        }
+
+        // the progress is reported per day, so the day readers only check for cancellation
+        final ProgressListener dayProgressListener = new ProgressListener() {
+            public void setProgress(String progressText) {
+            }
+
+            public void setProgress(long count, long iterations, String progressText) {
+            }
+
+            public boolean isCancelled() {
+                return progressListener.isCancelled();
+            }
+        };
+
+        int threads = Math.min(days, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SnapshotSeries>> futures = new ArrayList<>();
+            for (final File datasetFile : datasetFiles) {
+                futures.add(executor.submit(new Callable<SnapshotSeries>() {
+                    public SnapshotSeries call() throws JBookTraderException {
+                        BackTestFileReader dayReader = new BackTestFileReader(datasetFile.getPath(), filter);
+                        SnapshotSeries snapshots = dayReader.load(dayProgressListener);
+                        if (!timeZone.equals(dayReader.getTimeZone())) {
+                            String msg = "The time zone of data file " + datasetFile + " is different from the time zone of the data set.";
+                            throw new JBookTraderException(msg);
+                        }
+                        return snapshots;
+                    }
+                }));
+            }
+
+            List<SnapshotSeries> daySnapshots = new ArrayList<>();
+            int size = 0;
+            for (int day = 0; day < days; day++) {
+                progressListener.setProgress(day, days, "Loading historical data set");
+                SnapshotSeries snapshots = futures.get(day).get();
+                if (progressListener.isCancelled()) {
+                    return new SnapshotSeries(0);
+                }
+                daySnapshots.add(snapshots);
+                size += snapshots.size();
+            }
+
+            SnapshotSeries snapshots = new SnapshotSeries(size);
+            for (int day = 0; day < days; day++) {
+                SnapshotSeries daySeries = daySnapshots.get(day);
+                if (!daySeries.isEmpty() && !snapshots.isEmpty() && daySeries.getTime(0) <= snapshots.getTime(snapshots.size() - 1)) {
+                    String msg = "Data file " + datasetFiles.get(day) + " overlaps the data file of the previous day.";
+                    throw new JBookTraderException(msg);
+                }
+                snapshots.addAll(daySeries);
+            }
+            return snapshots;
+        } catch (InterruptedException ie) {
+            throw new JBookTraderException(ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof JBookTraderException) {
+                throw (JBookTraderException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new JBookTraderException("Could not read data set", cause);
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        double balance = Double.parseDouble(tokens.get(2));
-        double price = Double.parseDouble(tokens.get(3));
-        int volume = Integer.parseInt(tokens.get(4));
-        return new MarketSnapshot(time, balance, price, volume);
+    private SnapshotSeries join(SnapshotSeries first, SnapshotSeries second) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        if (first.isEmpty()) {
+            return second;
+        }
+
+        SnapshotSeries snapshots = new SnapshotSeries(first.size() + second.size());
+        snapshots.addAll(first);
+        snapshots.addAll(second);
+        return snapshots;
     }
 
-    private List<String> fastSplit(String s) {
-        ArrayList<String> tokens = new ArrayList<>();
-        int index, lastIndex = 0;
-        while ((index = s.indexOf(',', lastIndex)) != -1) {
-            tokens.add(s.substring(lastIndex, index));
-            lastIndex = index + 1;
+    /**
+     * Parses the byte ranges between the boundaries concurrently. Returns null if the parsing is cancelled.
+     */
+    private List<BackTestFileChunk> parse(ProgressListener progressListener, List<Long> boundaries) throws JBookTraderException {
+        int chunksCount = boundaries.size() - 1;
+        List<BackTestFileChunk> chunks = new ArrayList<>();
+        if (chunksCount == 0) {
+            return chunks;
         }
-        tokens.add(s.substring(lastIndex));
-        return tokens;
+
+        AtomicLong bytesRead = new AtomicLong(boundaries.get(0));
+        AtomicBoolean cancelled = new AtomicBoolean();
+        int threads = Math.min(chunksCount, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<BackTestFileChunk>> futures = new ArrayList<>();
+            for (int chunk = 0; chunk < chunksCount; chunk++) {
+                long start = boundaries.get(chunk);
+                long end = boundaries.get(chunk + 1);
+                futures.add(executor.submit(new BackTestFileChunk(fileName, start, end, timeZone, bytesRead, cancelled)));
+            }
+
+            for (Future<BackTestFileChunk> future : futures) {
+                BackTestFileChunk chunk = null;
+                while (chunk == null) {
+                    progressListener.setProgress(bytesRead.get(), fileSize, "Loading historical data file");
+                    if (progressListener.isCancelled()) {
+                        cancelled.set(true);
+                        return null;
+                    }
+                    try {
+                        chunk = future.get(250, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        // keep reporting progress while the chunk is being parsed
+                    }
+                }
+                chunks.add(chunk);
+            }
+
+            return chunks;
+        } catch (InterruptedException ie) {
+            throw new JBookTraderException(ie);
+        } catch (ExecutionException ee) {
+            throw new JBookTraderException("Could not read data file", ee.getCause());
+        } finally {
+            cancelled.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    private SnapshotSeries concatenate(List<BackTestFileChunk> chunks, long lineNumber, long previousTime) {
+        int size = 0;
+        for (BackTestFileChunk chunk : chunks) {
+            size += chunk.getSnapshots().size();
+        }
+
+        SnapshotSeries snapshots = new SnapshotSeries(size);
+
+        for (BackTestFileChunk chunk : chunks) {
+            if (chunk.hasData() && chunk.getFirstTime() <= previousTime) {
+                String msg = "Timestamp of this line is before or the same as the timestamp of the previous line.";
+                throw parsingError(lineNumber + chunk.getFirstDataLineNumber(), chunk.getFirstDataLine(), msg);
+            }
+            if (chunk.hasError()) {
+                throw parsingError(lineNumber + chunk.getErrorLineNumber(), chunk.getErrorLine(), chunk.getErrorDescription());
+            }
+
+            snapshots.addAll(chunk.getSnapshots());
+            lineNumber += chunk.getLines();
+            if (chunk.hasData()) {
+                previousTime = chunk.getLastTime();
+            }
+        }
+
+        return snapshots;
     }
 
+    private RuntimeException parsingError(long lineNumber, String line, String description) {
+        String errorMsg = "Problem parsing line #" + lineNumber + ": " + line + LINE_SEP;
+        errorMsg += description;
+        return new RuntimeException(errorMsg);
+    }
 }
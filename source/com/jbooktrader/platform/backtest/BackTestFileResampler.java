@@ -0,0 +1,226 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.util.format.*;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+
+/**
+ * Resamples historical market data to a coarser resolution, such as 5, 15 or 60 seconds, so that
+ * the first exploratory runs of an optimization can be made on a fraction of the snapshots, before
+ * the results are confirmed on the full resolution data.
+ * <p/>
+ * The snapshots are aggregated in intervals which are aligned to the start of the day. The snapshot
+ * of an interval is timestamped at the last second of the interval, so that it contains no data
+ * from the future. Its volume is the sum of the volumes in the interval, its price is the last price,
+ * and its balance is the time-weighted average of the balances, where each balance is weighted by the
+ * time until the next snapshot or the end of the interval. Intervals without snapshots are skipped.
+ * <p/>
+ * The input can be a data file in any of the formats, or a data set directory, in which case each
+ * daily file is resampled to a data set with the same layout. The output is written as text, or in
+ * the binary or compressed snapshot format if the output file name has the ".jbt" or ".jbz" extension,
+ * and loads through BackTestFileReader like any other data file. Note that the indicator periods
+ * are measured in snapshots, so the strategy parameters should be scaled accordingly.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileResampler {
+    private static final String LINE_SEP = System.getProperty("line.separator");
+    private static final int SECONDS_IN_DAY = 24 * 60 * 60;
+    private final String fileNameIn, fileNameOut;
+    private final int seconds;
+    private final long interval;
+    private SnapshotWriter writer;
+    private TimeZone timeZone;
+    private long intervalStart, lastTime, snapshots;
+    private long volume;
+    private double balance, price, weightedBalance;
+    private long weight;
+
+    private interface SnapshotWriter {
+        void write(long time, double balance, double price, int volume) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    public static void main(String[] args) throws JBookTraderException, IOException {
+        if (args.length != 3) {
+            System.out.println("Usage: <fileNameIn> <fileNameOut> <seconds>");
+            System.exit(1);
+        }
+
+        BackTestFileResampler btfr = new BackTestFileResampler(args[0], args[1], Integer.valueOf(args[2]));
+        long snapshots = btfr.process();
+        System.out.println("Written " + snapshots + " " + args[2] + "-second snapshots. Completed.");
+    }
+
+    public BackTestFileResampler(String fileNameIn, String fileNameOut, int seconds) throws JBookTraderException {
+        this.fileNameIn = fileNameIn;
+        this.fileNameOut = fileNameOut;
+        this.seconds = seconds;
+        if (seconds < 2 || SECONDS_IN_DAY % seconds != 0) {
+            throw new JBookTraderException("The resampling interval must be a divisor of the number of seconds in a day, greater than 1 second.");
+        }
+        if (new File(fileNameOut).exists()) {
+            throw new JBookTraderException("File " + fileNameOut + " already exists.");
+        }
+        interval = seconds * 1000L;
+    }
+
+    /**
+     * Resamples the data file or the data set, and returns the number of snapshots written.
+     */
+    public long process() throws JBookTraderException, IOException {
+        File fileIn = new File(fileNameIn);
+        if (!BackTestDataset.isDataset(fileIn)) {
+            return resample(fileNameIn, fileNameOut);
+        }
+
+        BackTestDataset datasetIn = new BackTestDataset(fileIn);
+        datasetIn.load();
+        File directoryOut = new File(fileNameOut);
+        if (!directoryOut.mkdirs()) {
+            throw new JBookTraderException("Could not create directory " + directoryOut);
+        }
+        BackTestDataset datasetOut = new BackTestDataset(directoryOut);
+        datasetOut.setTimeZone(datasetIn.getTimeZone());
+
+        long totalSnapshots = 0;
+        List<File> files = datasetIn.getFiles(null);
+        Iterator<File> fileIterator = files.iterator();
+        for (String day : datasetIn.getDays()) {
+            File file = fileIterator.next();
+            File dayFileOut = new File(directoryOut, file.getName());
+            totalSnapshots += resample(file.getPath(), dayFileOut.getPath());
+            datasetOut.setFileName(day, dayFileOut.getName());
+        }
+        datasetOut.save();
+
+        return totalSnapshots;
+    }
+
+    private long resample(String fileNameIn, String fileNameOut) throws JBookTraderException, IOException {
+        BackTestFileReader reader = new BackTestFileReader(fileNameIn, null);
+        BackTestFileStream stream = reader.stream();
+        intervalStart = Long.MIN_VALUE;
+        snapshots = 0;
+
+        try {
+            SnapshotSeries block;
+            while ((block = stream.take()) != null) {
+                if (writer == null) {
+                    timeZone = reader.getTimeZone();
+                    writer = createWriter(fileNameOut, timeZone);
+                }
+                for (int index = 0; index < block.size(); index++) {
+                    add(block.getTime(index), block.getBalance(index), block.getPrice(index), block.getVolume(index));
+                }
+            }
+            if (writer == null) {
+                writer = createWriter(fileNameOut, reader.getTimeZone());
+            }
+            if (intervalStart != Long.MIN_VALUE) {
+                writeInterval();
+            }
+        } finally {
+            stream.close();
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+
+        return snapshots;
+    }
+
+    private void add(long time, double balance, double price, int volume) throws IOException {
+        long localTime = time + timeZone.getOffset(time);
+        long start = time - ((localTime % interval) + interval) % interval;
+        if (start != intervalStart) {
+            if (intervalStart != Long.MIN_VALUE) {
+                writeInterval();
+            }
+            intervalStart = start;
+            weightedBalance = 0;
+            weight = 0;
+            this.volume = 0;
+        } else {
+            long duration = time - lastTime;
+            weightedBalance += this.balance * duration;
+            weight += duration;
+        }
+
+        lastTime = time;
+        this.balance = balance;
+        this.price = price;
+        this.volume += volume;
+    }
+
+    private void writeInterval() throws IOException {
+        long intervalEnd = intervalStart + interval;
+        long duration = intervalEnd - lastTime;
+        weightedBalance += balance * duration;
+        weight += duration;
+
+        double averageBalance = Math.round(100 * weightedBalance / weight) / 100d;
+        int totalVolume = (int) Math.min(volume, Integer.MAX_VALUE);
+        writer.write(intervalEnd - 1000, averageBalance, price, totalVolume);
+        snapshots++;
+    }
+
+    private SnapshotWriter createWriter(final String fileName, TimeZone timeZone) throws JBookTraderException, IOException {
+        if (fileName.endsWith(BackTestBinaryFileReader.EXTENSION)) {
+            final BackTestBinaryFileWriter binaryWriter = new BackTestBinaryFileWriter(fileName, timeZone);
+            return new SnapshotWriter() {
+                public void write(long time, double balance, double price, int volume) throws IOException {
+                    binaryWriter.write(time, balance, price, volume);
+                }
+
+                public void close() throws IOException {
+                    binaryWriter.close();
+                }
+            };
+        }
+
+        if (fileName.endsWith(BackTestCompressedFileReader.EXTENSION)) {
+            final BackTestCompressedFileWriter compressedWriter = new BackTestCompressedFileWriter(fileName, timeZone);
+            return new SnapshotWriter() {
+                public void write(long time, double balance, double price, int volume) throws IOException {
+                    compressedWriter.write(time, balance, price, volume);
+                }
+
+                public void close() throws IOException {
+                    compressedWriter.close();
+                }
+            };
+        }
+
+        final PrintWriter textWriter = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+        final DecimalFormat decimalFormat = NumberFormatterFactory.getNumberFormatter(5);
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("MMddyy,HHmmss");
+        dateFormat.setTimeZone(timeZone);
+        textWriter.print("# The snapshots in this file were resampled to " + seconds + "-second intervals." + LINE_SEP);
+        textWriter.println(BackTestFileWriter.getHeader(timeZone));
+
+        return new SnapshotWriter() {
+            public void write(long time, double balance, double price, int volume) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(dateFormat.format(time)).append(",");
+                sb.append(balance).append(",");
+                sb.append(decimalFormat.format(price)).append(",");
+                sb.append(volume);
+                textWriter.println(sb);
+            }
+
+            public void close() throws IOException {
+                textWriter.close();
+                if (textWriter.checkError()) {
+                    throw new IOException("Could not write to file " + fileName);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Reads the snapshots of a historical data file in a background thread, and passes them to the
+ * consumer in blocks through a bounded queue. The consumer can start processing the snapshots as
+ * soon as the first block is read, and the memory in use is limited to a few blocks, regardless
+ * of the size of the data file.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileStream implements Runnable {
+    public static final int BLOCK_SIZE = 64 * 1024;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final SnapshotSeries END_OF_STREAM = new SnapshotSeries(0);
+    private final BackTestFileReader backTestFileReader;
+    private final MarketSnapshotFilter filter;
+    private final BlockingQueue<SnapshotSeries> blocks;
+    private final AtomicLong bytesRead;
+    private final AtomicBoolean cancelled;
+    private volatile Throwable error;
+    private Thread thread;
+    private boolean isFinished;
+
+    BackTestFileStream(BackTestFileReader backTestFileReader, MarketSnapshotFilter filter) {
+        this.backTestFileReader = backTestFileReader;
+        this.filter = filter;
+        blocks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        bytesRead = new AtomicLong();
+        cancelled = new AtomicBoolean();
+    }
+
+    void start() {
+        thread = new Thread(this, "BackTestFileStream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void run() {
+        try {
+            backTestFileReader.read(blocks, bytesRead, cancelled);
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            if (!cancelled.get()) {
+                try {
+                    blocks.put(END_OF_STREAM);
+                } catch (InterruptedException ie) {
+                    // the stream was closed by the consumer
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next non-empty block of snapshots within the date range of the filter, waiting for it to be
+     * read if necessary, or null if there are no more snapshots.
+     */
+    public SnapshotSeries take() throws JBookTraderException {
+        while (!isFinished) {
+            SnapshotSeries block;
+            try {
+                block = blocks.take();
+            } catch (InterruptedException ie) {
+                throw new JBookTraderException(ie);
+            }
+
+            if (block == END_OF_STREAM) {
+                isFinished = true;
+                if (error instanceof JBookTraderException) {
+                    throw (JBookTraderException) error;
+                }
+                if (error instanceof RuntimeException) {
+                    throw (RuntimeException) error;
+                }
+                if (error != null) {
+                    throw new JBookTraderException(error);
+                }
+            } else {
+                if (filter != null) {
+                    block = filter.apply(block);
+                }
+                if (!block.isEmpty()) {
+                    return block;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Stops reading the data file.
+     */
+    public void close() {
+        cancelled.set(true);
+        if (thread != null) {
+            thread.interrupt();
+        }
+        blocks.clear();
+    }
+}
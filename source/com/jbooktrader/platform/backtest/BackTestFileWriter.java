@@ -2,46 +2,259 @@ package com.jbooktrader.platform.backtest;
 
 import com.jbooktrader.platform.marketbook.*;
 import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.preferences.*;
+import com.jbooktrader.platform.report.*;
 import com.jbooktrader.platform.startup.*;
 import com.jbooktrader.platform.util.format.*;
 
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
 
 /**
  * Writes historical market data to a file which is used for
- * back testing and optimization of trading strategies.
+ * back testing and optimization of trading strategies. Depending on the
+ * "Market data file format" preference, the data is written as text, in the
+ * binary snapshot format, or in the compressed snapshot format. If the
+ * "Market data partitioning" preference is set to "Daily", the data is written
+ * to a separate file for each day, in a directory named after the strategy,
+ * which is read as a data set (see BackTestDataset).
+ * <p/>
+ * The snapshots are only queued by write(), which is called from the strategy
+ * thread, and are formatted and written to the file by a dedicated writer thread.
+ * The writer thread wakes up once every FLUSH_INTERVAL, writes all the queued
+ * snapshots as a batch, and flushes the file, so that at most FLUSH_INTERVAL of
+ * data is lost if the application terminates abnormally. The compressed snapshots
+ * are flushed in blocks of COMPRESSED_BLOCK_SNAPSHOTS instead. The queue is drained
+ * when the writer is closed, or when the application exits.
  *
  * @author Eugene Kononov
  */
-public class BackTestFileWriter {
+public class BackTestFileWriter implements Runnable {
     private static final String LINE_SEP = System.getProperty("line.separator");
+    private static final long FLUSH_INTERVAL = 2 * 1000;// 2 seconds
+    private static final long METRICS_INTERVAL = 60 * 60 * 1000;// 1 hour
+    private static final int COMPRESSED_BLOCK_SNAPSHOTS = 60;
     private final DecimalFormat decimalFormat;
     private final SimpleDateFormat dateFormat;
+    private final String strategyName;
+    private final String fileFormat;
+    private final TimeZone timeZone;
+    private final Queue<QueuedSnapshot> queue;
+    private final AtomicInteger queueDepth;
+    private final Thread writerThread;
     private PrintWriter writer;
+    private BackTestBinaryFileWriter binaryWriter;
+    private BackTestCompressedFileWriter compressedWriter;
+    private BackTestDataset dataset;
+    private String currentDay;
+    private int unflushedSnapshots;
+    private volatile boolean isClosed;
+    private volatile int maxQueueDepth;
+    private volatile long writtenSnapshots, batches, errors, totalLatency, maxLatency, totalWriteTime;
+
+    private static class QueuedSnapshot {
+        private final MarketSnapshot marketSnapshot;
+        private final long queuedTime;
+
+        private QueuedSnapshot(MarketSnapshot marketSnapshot) {
+            this.marketSnapshot = marketSnapshot;
+            queuedTime = System.nanoTime();
+        }
+    }
 
     public BackTestFileWriter(String strategyName, TimeZone timeZone) throws JBookTraderException {
+        this.strategyName = strategyName;
+        this.timeZone = timeZone;
         decimalFormat = NumberFormatterFactory.getNumberFormatter(5);
         dateFormat = new SimpleDateFormat("MMddyy,HHmmss");
         dateFormat.setTimeZone(timeZone);
+        queue = new ConcurrentLinkedQueue<>();
+        queueDepth = new AtomicInteger();
+
+        String fileNameBase = Dispatcher.getInstance().getMarketDataDir() + strategyName;
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        fileFormat = prefs.get(JBTPreferences.MarketDataFileFormat);
+        if (prefs.get(JBTPreferences.MarketDataPartitioning).equals("Daily")) {
+            File directory = new File(fileNameBase);
+            if (!directory.isDirectory() && !directory.mkdir()) {
+                throw new JBookTraderException("Could not create directory " + directory);
+            }
+            dataset = new BackTestDataset(directory);
+            if (BackTestDataset.isDataset(directory)) {
+                dataset.load();
+            } else {
+                dataset.setTimeZone(timeZone);
+            }
+        } else {
+            openFile(fileNameBase);
+        }
+
+        writerThread = new Thread(this, "BackTestFileWriter-" + strategyName);
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Opens the data file for writing, and returns its name.
+     */
+    private String openFile(String fileNameBase) throws JBookTraderException {
+        if (fileFormat.equals("Binary")) {
+            String fileName = fileNameBase + BackTestBinaryFileReader.EXTENSION;
+            binaryWriter = new BackTestBinaryFileWriter(fileName, timeZone);
+            return fileName;
+        }
+        if (fileFormat.equals("Compressed")) {
+            String fileName = fileNameBase + BackTestCompressedFileReader.EXTENSION;
+            compressedWriter = new BackTestCompressedFileWriter(fileName, timeZone);
+            return fileName;
+        }
 
-        String fileName = Dispatcher.getInstance().getMarketDataDir() + strategyName + ".txt";
+        String fileName = fileNameBase + ".txt";
         try {
             boolean fileExisted = new File(fileName).exists();
             writer = new PrintWriter(new BufferedWriter(new FileWriter(fileName, true)));
             if (!fileExisted) {
-                StringBuilder header = getHeader();
+                StringBuilder header = getHeader(timeZone);
                 writer.println(header);
             }
         } catch (IOException ioe) {
             throw new JBookTraderException("Could not write to file " + fileName);
         }
+        return fileName;
     }
 
+    /**
+     * Closes the data file of the previous day, if any, and opens the data file of the specified day.
+     */
+    private void startDay(String day) throws JBookTraderException {
+        closeFile();
+        String fileName = openFile(new File(dataset.getDirectory(), strategyName + "-" + day).getPath());
+        currentDay = day;
+        dataset.setFileName(day, new File(fileName).getName());
+        dataset.save();
+    }
 
+    /**
+     * Queues the snapshot to be written by the writer thread. This method does not block.
+     */
     public void write(MarketSnapshot marketSnapshot) {
+        if (isClosed) {
+            return;
+        }
+        queue.offer(new QueuedSnapshot(marketSnapshot));
+        int depth = queueDepth.incrementAndGet();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    /**
+     * Writes the queued snapshots and closes the file. The snapshots passed to write() after
+     * this method is called are discarded.
+     */
+    public void close() {
+        isClosed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void run() {
+        long lastFlushTime = System.currentTimeMillis();
+        long lastMetricsTime = lastFlushTime;
+
+        while (true) {
+            // read the flag before draining, so that all the snapshots queued before close() are written
+            boolean isClosing = isClosed;
+            long writeStart = System.nanoTime();
+            if (writeQueuedSnapshots() > 0) {
+                totalWriteTime += System.nanoTime() - writeStart;
+            }
+
+            long now = System.currentTimeMillis();
+            if (isClosing) {
+                closeFile();
+            } else if (now - lastFlushTime >= FLUSH_INTERVAL) {
+                flush();
+                lastFlushTime = now;
+            }
+            if (isClosing) {
+                return;
+            }
+            if (now - lastMetricsTime >= METRICS_INTERVAL) {
+                reportMetrics();
+                lastMetricsTime = now;
+            }
+
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(lastFlushTime + FLUSH_INTERVAL - now));
+        }
+    }
+
+    /**
+     * Writes the snapshots waiting in the queue, and returns their number.
+     */
+    private int writeQueuedSnapshots() {
+        int batchSize = 0;
+        QueuedSnapshot queuedSnapshot;
+        while ((queuedSnapshot = queue.poll()) != null) {
+            queueDepth.decrementAndGet();
+            try {
+                writeSnapshot(queuedSnapshot.marketSnapshot);
+            } catch (Exception e) {
+                errors++;
+                report(e);
+                continue;
+            }
+
+            long latency = System.nanoTime() - queuedSnapshot.queuedTime;
+            totalLatency += latency;
+            if (latency > maxLatency) {
+                maxLatency = latency;
+            }
+            writtenSnapshots++;
+            batchSize++;
+        }
+
+        if (batchSize > 0) {
+            batches++;
+        }
+        return batchSize;
+    }
+
+    private void writeSnapshot(MarketSnapshot marketSnapshot) throws IOException, JBookTraderException {
+        if (dataset != null) {
+            String day = dataset.getDay(marketSnapshot.getTime());
+            if (!day.equals(currentDay)) {
+                startDay(day);
+            }
+        }
+
+        if (binaryWriter != null) {
+            binaryWriter.write(marketSnapshot);
+            return;
+        }
+
+        if (compressedWriter != null) {
+            compressedWriter.write(marketSnapshot);
+            unflushedSnapshots++;
+            return;
+        }
+
         StringBuilder sb = new StringBuilder();
         sb.append(dateFormat.format(marketSnapshot.getTime())).append(",");
         sb.append(marketSnapshot.getBalance()).append(",");
@@ -49,10 +262,122 @@ public class BackTestFileWriter {
         sb.append(marketSnapshot.getVolume());
 
         writer.println(sb);
-        writer.flush();
     }
 
-    private StringBuilder getHeader() {
+    private void flush() {
+        try {
+            if (binaryWriter != null) {
+                binaryWriter.flush();
+            } else if (compressedWriter != null) {
+                if (unflushedSnapshots >= COMPRESSED_BLOCK_SNAPSHOTS) {
+                    compressedWriter.flush();
+                    unflushedSnapshots = 0;
+                }
+            } else if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException ioe) {
+            errors++;
+            report(ioe);
+        }
+    }
+
+    private void closeFile() {
+        try {
+            if (binaryWriter != null) {
+                binaryWriter.close();
+            } else if (compressedWriter != null) {
+                compressedWriter.close();
+            } else if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException ioe) {
+            errors++;
+            report(ioe);
+        } finally {
+            binaryWriter = null;
+            compressedWriter = null;
+            writer = null;
+            unflushedSnapshots = 0;
+        }
+    }
+
+    private void report(Exception e) {
+        EventReport eventReport = Dispatcher.getInstance().getEventReport();
+        if (eventReport != null) {
+            eventReport.report(e);
+        }
+    }
+
+    private void reportMetrics() {
+        EventReport eventReport = Dispatcher.getInstance().getEventReport();
+        if (eventReport != null) {
+            eventReport.report(JBookTrader.APP_NAME, "Market data recorder for " + strategyName + ": " + getMetrics());
+        }
+    }
+
+    /**
+     * Returns the number of snapshots waiting to be written.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getWrittenSnapshots() {
+        return writtenSnapshots;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the average time, in milliseconds, which the writer thread takes to write a batch. The time
+     * to flush the file, and the wake-ups which find the queue empty, are not included.
+     */
+    public double getAverageWriteTime() {
+        long batchesWritten = batches;
+        return (batchesWritten == 0) ? 0 : totalWriteTime / (batchesWritten * 1000000.0);
+    }
+
+    /**
+     * Returns the average time, in milliseconds, between queueing a snapshot and writing it to the file.
+     */
+    public double getAverageLatency() {
+        long written = writtenSnapshots;
+        return (written == 0) ? 0 : totalLatency / (written * 1000000.0);
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, between queueing a snapshot and writing it to the file.
+     */
+    public double getMaxLatency() {
+        return maxLatency / 1000000.0;
+    }
+
+    public String getMetrics() {
+        DecimalFormat df = NumberFormatterFactory.getNumberFormatter(1);
+        StringBuilder metrics = new StringBuilder();
+        metrics.append("written snapshots: ").append(writtenSnapshots);
+        metrics.append(", batches: ").append(batches);
+        metrics.append(", queue depth: ").append(getQueueDepth());
+        metrics.append(", max queue depth: ").append(maxQueueDepth);
+        metrics.append(", average batch write time: ").append(df.format(getAverageWriteTime())).append(" ms");
+        metrics.append(", average latency: ").append(df.format(getAverageLatency())).append(" ms");
+        metrics.append(", max latency: ").append(df.format(getMaxLatency())).append(" ms");
+        metrics.append(", errors: ").append(errors);
+        return metrics.toString();
+    }
+
+    static StringBuilder getHeader(TimeZone timeZone) {
         StringBuilder header = new StringBuilder();
         header.append("# This historical data file was created by ").append(JBookTrader.APP_NAME).append(LINE_SEP);
         header.append("# Each line represents a 1-second snapshot of the market and contains ").append(BackTestFileReader.COLUMNS).append(" columns:").append(LINE_SEP);
@@ -62,7 +387,7 @@ public class BackTestFileWriter {
         header.append("# 4. price").append(LINE_SEP);
         header.append("# 5. volume").append(LINE_SEP);
         header.append(LINE_SEP);
-        header.append("timeZone=").append(dateFormat.getTimeZone().getID()).append(LINE_SEP);
+        header.append("timeZone=").append(timeZone.getID()).append(LINE_SEP);
         return header;
     }
 }
@@ -0,0 +1,325 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.model.*;
+
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Parses lines of a historical data file into market snapshot values. The parser works
+ * directly on the bytes of a line and does not allocate any objects for well-formed lines:
+ * the timestamp is computed from the MMddyy and HHmmss columns using the time zone offset
+ * cached for the current day, and the numeric columns are parsed in place.
+ * <p/>
+ * The parser keeps the timestamp of the previously parsed line, so that a separate instance
+ * is needed for every sequence of lines parsed independently.
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestLineParser {
+    private static final long MILLIS_IN_DAY = 24 * 60 * 60 * 1000L;
+    private static final double[] POWERS_OF_TEN = new double[23];
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private final TimeZone timeZone;
+    private final Calendar calendar;
+    private final int centuryStartYear;
+    private final int[] commas;
+    private int cachedDay;
+    private long cachedDayStart;
+    private boolean isTransitionDay;
+    private long previousTime;
+
+    private long time;
+    private double balance, price;
+    private int volume;
+
+    static {
+        double power = 1;
+        for (int exponent = 0; exponent < POWERS_OF_TEN.length; exponent++) {
+            POWERS_OF_TEN[exponent] = power;
+            power *= 10;
+        }
+    }
+
+    public BackTestLineParser(TimeZone timeZone) {
+        this.timeZone = timeZone;
+        calendar = Calendar.getInstance(timeZone);
+        // Enforce strict interpretation of date and time formats
+        calendar.setLenient(false);
+        // two-digit years are resolved the same way as SimpleDateFormat does it
+        centuryStartYear = Calendar.getInstance().get(Calendar.YEAR) - 80;
+        cachedDay = -1;
+        commas = new int[BackTestFileReader.COLUMNS - 1];
+    }
+
+    public static boolean isMarketDepthLine(String line) {
+        boolean isComment = line.startsWith("#");
+        boolean isProperty = line.contains("=");
+        boolean isBlankLine = (line.trim().length() == 0);
+        return !(isComment || isProperty || isBlankLine);
+    }
+
+    public static boolean isMarketDepthLine(byte[] bytes, int from, int to) {
+        if (from < to && bytes[from] == '#') {
+            return false;
+        }
+
+        boolean isBlankLine = true;
+        for (int index = from; index < to; index++) {
+            byte b = bytes[index];
+            if (b == '=') {
+                return false;
+            }
+            isBlankLine = isBlankLine && (b <= ' ' && b >= 0);
+        }
+
+        return !isBlankLine;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getVolume() {
+        return volume;
+    }
+
+    /**
+     * Parses the line occupying the bytes from index "from" (inclusive) to index "to" (exclusive).
+     * The parsed values are available from the getters until the next line is parsed.
+     */
+    public void parse(byte[] bytes, int from, int to) throws JBookTraderException {
+        int commaCount = 0;
+        for (int index = from; index < to; index++) {
+            if (bytes[index] == ',') {
+                if (commaCount == commas.length) {
+                    commaCount++;
+                    break;
+                }
+                commas[commaCount++] = index;
+            }
+        }
+
+        if (commaCount != commas.length) {
+            String msg = "The line should contain exactly " + BackTestFileReader.COLUMNS + " comma-separated columns.";
+            throw new JBookTraderException(msg);
+        }
+
+        time = parseTime(bytes, from, commas[0], commas[1]);
+        if (time <= previousTime) {
+            String msg = "Timestamp of this line is before or the same as the timestamp of the previous line.";
+            throw new JBookTraderException(msg);
+        }
+        previousTime = time;
+
+        balance = parseDouble(bytes, commas[1] + 1, commas[2]);
+        price = parseDouble(bytes, commas[2] + 1, commas[3]);
+        volume = parseInt(bytes, commas[3] + 1, to);
+    }
+
+    private long parseTime(byte[] bytes, int dateStart, int dateEnd, int timeEnd) throws JBookTraderException {
+        int timeStart = dateEnd + 1;
+        if (dateEnd - dateStart != 6 || timeEnd - timeStart != 6) {
+            throw new JBookTraderException("Date and time must be specified in the MMddyy and HHmmss formats.");
+        }
+
+        int month = parseTwoDigits(bytes, dateStart);
+        int day = parseTwoDigits(bytes, dateStart + 2);
+        int year = getYear(parseTwoDigits(bytes, dateStart + 4));
+
+        int hour = parseTwoDigits(bytes, timeStart);
+        int minute = parseTwoDigits(bytes, timeStart + 2);
+        int second = parseTwoDigits(bytes, timeStart + 4);
+
+        if (month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)) {
+            throw new JBookTraderException("Date " + new String(bytes, dateStart, 6, StandardCharsets.ISO_8859_1) + " is not valid.");
+        }
+        if (hour > 23 || minute > 59 || second > 59) {
+            throw new JBookTraderException("Time " + new String(bytes, timeStart, 6, StandardCharsets.ISO_8859_1) + " is not valid.");
+        }
+
+        int dayKey = (year * 100 + month) * 100 + day;
+        if (dayKey != cachedDay) {
+            setDay(year, month, day);
+            cachedDay = dayKey;
+        }
+
+        if (isTransitionDay) {
+            // the time zone offset changes during this day, so resolve the local time explicitly
+            try {
+                calendar.clear();
+                calendar.set(year, month - 1, day, hour, minute, second);
+                return calendar.getTimeInMillis();
+            } catch (IllegalArgumentException iae) {
+                throw new JBookTraderException("Time does not exist in time zone " + timeZone.getID() + ": " + iae.getMessage());
+            }
+        }
+
+        return cachedDayStart + ((hour * 60 + minute) * 60 + second) * 1000L;
+    }
+
+    private int getYear(int twoDigitYear) {
+        int year = centuryStartYear / 100 * 100 + twoDigitYear;
+        if (year < centuryStartYear) {
+            year += 100;
+        }
+        return year;
+    }
+
+    private static void checkDateAndTimeColumns(byte[] bytes, int from, int to) throws JBookTraderException {
+        if (to - from < 14 || bytes[from + 6] != ',' || bytes[from + 13] != ',') {
+            throw new JBookTraderException("Date and time must be specified in the MMddyy and HHmmss formats.");
+        }
+    }
+
+    /**
+     * Returns the date of a market depth line in the yyyyMMdd form, without parsing the other columns.
+     */
+    public int parseDate(byte[] bytes, int from, int to) throws JBookTraderException {
+        checkDateAndTimeColumns(bytes, from, to);
+        int month = parseTwoDigits(bytes, from);
+        int day = parseTwoDigits(bytes, from + 2);
+        int year = getYear(parseTwoDigits(bytes, from + 4));
+        if (month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)) {
+            throw new JBookTraderException("Date " + new String(bytes, from, 6, StandardCharsets.ISO_8859_1) + " is not valid.");
+        }
+        return (year * 100 + month) * 100 + day;
+    }
+
+    /**
+     * Returns the number of seconds since the local midnight of a market depth line, without parsing
+     * the other columns.
+     */
+    public static int parseSecondOfDay(byte[] bytes, int from, int to) throws JBookTraderException {
+        checkDateAndTimeColumns(bytes, from, to);
+        int timeStart = from + 7;
+        int hour = parseTwoDigits(bytes, timeStart);
+        int minute = parseTwoDigits(bytes, timeStart + 2);
+        int second = parseTwoDigits(bytes, timeStart + 4);
+        if (hour > 23 || minute > 59 || second > 59) {
+            throw new JBookTraderException("Time " + new String(bytes, timeStart, 6, StandardCharsets.ISO_8859_1) + " is not valid.");
+        }
+        return (hour * 60 + minute) * 60 + second;
+    }
+
+    /**
+     * Caches the UTC time of the local midnight of the specified day, and determines whether
+     * the time zone offset changes during that day.
+     */
+    private void setDay(int year, int month, int day) {
+        long localMidnight = getDaysSinceEpoch(year, month, day) * MILLIS_IN_DAY;
+        long dayStart = toUTC(localMidnight);
+        long nextDayStart = toUTC(localMidnight + MILLIS_IN_DAY);
+        cachedDayStart = dayStart;
+        isTransitionDay = (nextDayStart - dayStart != MILLIS_IN_DAY);
+    }
+
+    private long toUTC(long localTime) {
+        int offset = timeZone.getOffset(localTime - timeZone.getRawOffset());
+        int adjustedOffset = timeZone.getOffset(localTime - offset);
+        return localTime - adjustedOffset;
+    }
+
+    private static long getDaysSinceEpoch(int year, int month, int day) {
+        // civil calendar to day number conversion, with March as the first month of the year
+        int y = (month <= 2) ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int monthIndex = (month + 9) % 12;
+        int dayOfYear = (153 * monthIndex + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    private static int parseTwoDigits(byte[] bytes, int index) throws JBookTraderException {
+        int high = bytes[index] - '0';
+        int low = bytes[index + 1] - '0';
+        if (high < 0 || high > 9 || low < 0 || low > 9) {
+            throw new JBookTraderException("Date and time must be specified in the MMddyy and HHmmss formats.");
+        }
+        return high * 10 + low;
+    }
+
+    /**
+     * Parses a decimal number in the [sign]digits[.digits] form. Numbers in any other form,
+     * such as the scientific notation, are delegated to Double.parseDouble().
+     */
+    private static double parseDouble(byte[] bytes, int from, int to) {
+        int index = from;
+        boolean isNegative = false;
+        if (index < to && (bytes[index] == '-' || bytes[index] == '+')) {
+            isNegative = (bytes[index] == '-');
+            index++;
+        }
+
+        long mantissa = 0;
+        int digits = 0, fractionDigits = 0;
+        boolean isFraction = false;
+        for (; index < to; index++) {
+            int digit = bytes[index] - '0';
+            if (digit >= 0 && digit <= 9) {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+                if (isFraction) {
+                    fractionDigits++;
+                }
+            } else if (bytes[index] == '.' && !isFraction) {
+                isFraction = true;
+            } else {
+                break;
+            }
+        }
+
+        boolean isExact = (index == to && digits > 0 && digits <= 18);
+        isExact = isExact && mantissa < MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length;
+        if (!isExact) {
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+
+        // both operands are exactly representable, so the division is correctly rounded
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return isNegative ? -value : value;
+    }
+
+    private static int parseInt(byte[] bytes, int from, int to) {
+        int index = from;
+        boolean isNegative = false;
+        if (index < to && (bytes[index] == '-' || bytes[index] == '+')) {
+            isNegative = (bytes[index] == '-');
+            index++;
+        }
+
+        int digits = to - index;
+        int value = 0;
+        for (; index < to; index++) {
+            int digit = bytes[index] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+        }
+
+        if (index != to || digits == 0 || digits > 9) {
+            return Integer.parseInt(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+
+        return isNegative ? -value : value;
+    }
+}
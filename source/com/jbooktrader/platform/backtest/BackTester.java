@@ -6,10 +6,14 @@ import com.jbooktrader.platform.indicator.*;
 import com.jbooktrader.platform.marketbook.*;
 import com.jbooktrader.platform.model.*;
 import com.jbooktrader.platform.model.ModelListener.*;
+import com.jbooktrader.platform.optimizer.*;
+import com.jbooktrader.platform.position.*;
 import com.jbooktrader.platform.schedule.*;
 import com.jbooktrader.platform.strategy.*;
 
+import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * This class is responsible for running the strategy against historical market data
@@ -20,6 +24,12 @@ public class BackTester {
     private final Strategy strategy;
     private final BackTestFileReader backTestFileReader;
     private final BackTestDialog backTestDialog;
+    private BarSize barSize;
+    private MarketBook marketBook;
+    private IndicatorManager indicatorManager;
+    private List<Indicator> indicators;
+    private TradingSchedule tradingSchedule;
+    private PerformanceChartData performanceChartData;
 
     public BackTester(Strategy strategy, BackTestFileReader backTestFileReader, BackTestDialog backTestDialog) {
         this.strategy = strategy;
@@ -27,34 +37,50 @@ public class BackTester {
         this.backTestDialog = backTestDialog;
     }
 
+    /**
+     * Creates a back tester which runs the strategy on the snapshots passed to run() or runParallel().
+     */
+    public BackTester(Strategy strategy, BarSize barSize) {
+        this(strategy, null, null);
+        init(barSize);
+    }
+
+    private void init(BarSize barSize) {
+        this.barSize = barSize;
+        marketBook = strategy.getMarketBook();
+        indicatorManager = strategy.getIndicatorManager();
+        strategy.getPerformanceManager().createPerformanceChartData(barSize, indicatorManager.getIndicators());
+
+        indicators = indicatorManager.getIndicators();
+        tradingSchedule = strategy.getTradingSchedule();
+        performanceChartData = strategy.getPerformanceManager().getPerformanceChartData();
+    }
+
     public void execute() throws JBookTraderException {
-        List<MarketSnapshot> snapshots = backTestFileReader.load(backTestDialog);
+        init(backTestDialog.getBarSize());
 
-        MarketBook marketBook = strategy.getMarketBook();
-        IndicatorManager indicatorManager = strategy.getIndicatorManager();
-        strategy.getPerformanceManager().createPerformanceChartData(backTestDialog.getBarSize(), indicatorManager.getIndicators());
+        if (backTestDialog.isStreaming()) {
+            executeStreaming();
+        } else if (backTestDialog.isParallel()) {
+            runParallel(backTestFileReader.load(backTestDialog), backTestDialog);
+        } else {
+            executeInMemory();
+        }
 
-        List<Indicator> indicators = indicatorManager.getIndicators();
-        TradingSchedule tradingSchedule = strategy.getTradingSchedule();
-        PerformanceChartData performanceChartData = strategy.getPerformanceManager().getPerformanceChartData();
+        if (!backTestDialog.isCancelled()) {
+            // go flat at the end of the test period to finalize the run
+            strategy.closePosition();
+            Dispatcher.getInstance().fireModelChanged(Event.StrategyUpdate, strategy);
+        }
+    }
 
-        long snapshotsCount = snapshots.size();
-        for (int count = 0; count < snapshotsCount; count++) {
-            MarketSnapshot marketSnapshot = snapshots.get(count);
-            marketBook.setSnapshot(marketSnapshot);
-            performanceChartData.update(marketSnapshot);
-            indicatorManager.updateIndicators();
-            long instant = marketSnapshot.getTime();
-
-            boolean isInSchedule = tradingSchedule.contains(instant);
-            if (count < snapshotsCount - 1) {
-                isInSchedule = isInSchedule && !marketBook.isGapping(snapshots.get(count + 1));
-            }
+    private void executeInMemory() throws JBookTraderException {
+        SnapshotSeries snapshots = backTestFileReader.load(backTestDialog);
 
-            strategy.processInstant(isInSchedule);
-            if (indicatorManager.hasValidIndicators()) {
-                performanceChartData.update(indicators, instant);
-            }
+        int snapshotsCount = snapshots.size();
+        for (int count = 0; count < snapshotsCount; count++) {
+            boolean hasNext = (count < snapshotsCount - 1);
+            process(snapshots, count, hasNext, hasNext ? snapshots.getTime(count + 1) : 0);
 
             if (count % 100000 == 0) {
                 backTestDialog.setProgress(count, snapshotsCount, "Running back test");
@@ -63,11 +89,171 @@ public class BackTester {
                 }
             }
         }
+    }
 
-        if (!backTestDialog.isCancelled()) {
-            // go flat at the end of the test period to finalize the run
-            strategy.closePosition();
-            Dispatcher.getInstance().fireModelChanged(Event.StrategyUpdate, strategy);
+    /**
+     * Runs the back test while the data file is being read, so that only a few blocks of snapshots
+     * are kept in memory at any time.
+     */
+    private void executeStreaming() throws JBookTraderException {
+        BackTestFileStream stream = backTestFileReader.stream();
+        long fileSize = backTestFileReader.getFileSize();
+
+        try {
+            long count = 0;
+            SnapshotSeries block = stream.take();
+            while (block != null) {
+                SnapshotSeries nextBlock = null;
+                int blockSize = block.size();
+                for (int index = 0; index < blockSize; index++) {
+                    boolean hasNext;
+                    long nextTime = 0;
+                    if (index < blockSize - 1) {
+                        hasNext = true;
+                        nextTime = block.getTime(index + 1);
+                    } else {
+                        // look ahead into the next block for the gap detection
+                        nextBlock = stream.take();
+                        hasNext = (nextBlock != null);
+                        if (hasNext) {
+                            nextTime = nextBlock.getTime(0);
+                        }
+                    }
+                    process(block, index, hasNext, nextTime);
+
+                    if (count++ % 100000 == 0) {
+                        backTestDialog.setProgress(stream.getBytesRead(), fileSize, "Running back test");
+                        if (backTestDialog.isCancelled()) {
+                            return;
+                        }
+                    }
+                }
+                block = nextBlock;
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Runs the strategy on the snapshots from index "from" (inclusive) to index "to" (exclusive)
+     * of the series. The snapshot at index "to", if any, is only used for the gap detection.
+     */
+    public void run(SnapshotSeries snapshots, int from, int to) {
+        for (int index = from; index < to; index++) {
+            boolean hasNext = (index < snapshots.size() - 1);
+            process(snapshots, index, hasNext, hasNext ? snapshots.getTime(index + 1) : 0);
+        }
+    }
+
+    /**
+     * Runs the strategy on the snapshots by simulating its trading sessions in parallel. The sessions
+     * are separated by the gaps in the data longer than the gap size of the market book, before which
+     * the strategy is forced to go flat, and after which the indicators are reset, so that the sessions
+     * are independent of each other. Each session is simulated by a fresh instance of the strategy,
+     * whose executions are recorded rather than reported. The executions are then replayed by the
+     * position manager of this strategy in time order, and the chart data of the sessions is appended,
+     * so that the results are exactly the same as if the sessions were run one after another.
+     * <p/>
+     * The strategies must not keep any state other than their indicators and positions from one session
+     * to the next.
+     */
+    public void runParallel(final SnapshotSeries snapshots, ProgressListener progressListener) throws JBookTraderException {
+        final Constructor<? extends Strategy> strategyConstructor;
+        try {
+            strategyConstructor = strategy.getClass().getConstructor(StrategyParams.class);
+        } catch (NoSuchMethodException nsme) {
+            throw new JBookTraderException("Could not find strategy constructor for " + strategy.getClass().getName());
+        }
+
+        List<Integer> sessionStarts = getSessionStarts(snapshots);
+        int sessions = sessionStarts.size();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            List<Future<Strategy>> sessionStrategies = new ArrayList<>();
+            for (int session = 0; session < sessions; session++) {
+                final int from = sessionStarts.get(session);
+                final int to = (session < sessions - 1) ? sessionStarts.get(session + 1) : snapshots.size();
+                sessionStrategies.add(executor.submit(new Callable<Strategy>() {
+                    public Strategy call() throws Exception {
+                        Strategy sessionStrategy = strategyConstructor.newInstance(new StrategyParams(strategy.getParams()));
+                        sessionStrategy.setMarketBook(new MarketBook());
+                        sessionStrategy.setIndicatorManager(new IndicatorManager());
+                        sessionStrategy.setIndicators();
+                        sessionStrategy.getPositionManager().recordExecutions();
+                        new BackTester(sessionStrategy, barSize).run(snapshots, from, to);
+                        return sessionStrategy;
+                    }
+                }));
+            }
+
+            PositionManager positionManager = strategy.getPositionManager();
+            for (int session = 0; session < sessions; session++) {
+                if (progressListener.isCancelled()) {
+                    return;
+                }
+
+                Strategy sessionStrategy;
+                try {
+                    sessionStrategy = sessionStrategies.get(session).get();
+                } catch (ExecutionException ee) {
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof InvocationTargetException) {
+                        cause = cause.getCause();
+                    }
+                    throw new JBookTraderException(cause);
+                } catch (InterruptedException ie) {
+                    throw new JBookTraderException(ie);
+                }
+
+                performanceChartData.append(sessionStrategy.getPerformanceManager().getPerformanceChartData());
+                for (RecordedExecution execution : sessionStrategy.getPositionManager().getRecordedExecutions()) {
+                    positionManager.replay(execution);
+                }
+
+                int completedSnapshots = (session < sessions - 1) ? sessionStarts.get(session + 1) : snapshots.size();
+                progressListener.setProgress(completedSnapshots, snapshots.size(), "Running back test");
+            }
+
+            if (!snapshots.isEmpty()) {
+                marketBook.setSnapshot(snapshots, snapshots.size() - 1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the indexes of the first snapshots of the trading sessions.
+     */
+    public static List<Integer> getSessionStarts(SnapshotSeries snapshots) {
+        List<Integer> sessionStarts = new ArrayList<>();
+        MarketBook marketBook = new MarketBook();
+        int snapshotsCount = snapshots.size();
+        for (int index = 0; index < snapshotsCount; index++) {
+            if (index == 0 || marketBook.isGapping(snapshots.getTime(index))) {
+                sessionStarts.add(index);
+            }
+            marketBook.setSnapshot(snapshots, index);
+        }
+        return sessionStarts;
+    }
+
+    private void process(SnapshotSeries snapshots, int index, boolean hasNext, long nextTime) {
+        marketBook.setSnapshot(snapshots, index);
+        long instant = marketBook.getTime();
+        performanceChartData.update(instant, marketBook.getPrice());
+        indicatorManager.updateIndicators();
+
+        boolean isInSchedule = tradingSchedule.contains(instant);
+        if (hasNext) {
+            isInSchedule = isInSchedule && !marketBook.isGapping(nextTime);
+        }
+
+        strategy.processInstant(isInSchedule);
+        if (indicatorManager.hasValidIndicators()) {
+            performanceChartData.update(indicators, instant);
         }
     }
 }
@@ -0,0 +1,136 @@
+package com.jbooktrader.platform.backtest;
+
+import com.jbooktrader.platform.marketbook.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Keeps the snapshots of recently loaded data files in memory, so that repeated back tests and
+ * optimizations on the same file do not reload it. One full data set is kept per file, and
+ * date-filtered views of it are served without copying. The cache is bounded by a fraction of
+ * the maximum heap size, and the least recently used data sets are evicted first.
+ * <p/>
+ * An entry is discarded when the modification time or the size of its file changes.
+ *
+ * @author Eugene Kononov
+ */
+public class SnapshotCache {
+    private static final double MAX_MEMORY_FRACTION = 0.5;
+    private static final int BYTES_PER_SNAPSHOT = 28; // long time, double balance, double price, int volume
+    private static SnapshotCache instance;
+    private final Map<String, Entry> entries;
+    private final long capacity;
+    private long usedBytes;
+
+    public static class Entry {
+        private final SnapshotSeries snapshots;
+        private final TimeZone timeZone;
+        private final long lastModified, length;
+
+        private Entry(SnapshotSeries snapshots, TimeZone timeZone, long lastModified, long length) {
+            this.snapshots = snapshots;
+            this.timeZone = timeZone;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        public SnapshotSeries getSnapshots() {
+            return snapshots;
+        }
+
+        public TimeZone getTimeZone() {
+            return timeZone;
+        }
+
+        private long getBytes() {
+            return (long) snapshots.size() * BYTES_PER_SNAPSHOT;
+        }
+    }
+
+    public SnapshotCache(long capacity) {
+        this.capacity = capacity;
+        // access order makes the least recently used entry the first one
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public static synchronized SnapshotCache getInstance() {
+        if (instance == null) {
+            instance = new SnapshotCache((long) (Runtime.getRuntime().maxMemory() * MAX_MEMORY_FRACTION));
+        }
+        return instance;
+    }
+
+    private static String getKey(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException ioe) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Returns the cached data set of the specified file, or null if the file is not cached,
+     * or if it has changed since it was cached.
+     */
+    public synchronized Entry get(File file, long lastModified, long length) {
+        String key = getKey(file);
+        Entry entry = entries.get(key);
+        if (entry != null && (entry.lastModified != lastModified || entry.length != length)) {
+            remove(key);
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the full data set of the specified file, evicting the least recently used data sets
+     * as necessary. A data set which is larger than the capacity of the cache is not cached. The
+     * arrays of the data set are trimmed to its size.
+     */
+    public synchronized void put(File file, long lastModified, long length, SnapshotSeries snapshots, TimeZone timeZone) {
+        String key = getKey(file);
+        remove(key);
+
+        // the unused capacity of the arrays would be held by the cache, but not counted against it
+        snapshots.trimToSize();
+        Entry entry = new Entry(snapshots, timeZone, lastModified, length);
+        long bytes = entry.getBytes();
+        if (bytes > capacity) {
+            return;
+        }
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (usedBytes + bytes > capacity && iterator.hasNext()) {
+            usedBytes -= iterator.next().getBytes();
+            iterator.remove();
+        }
+
+        entries.put(key, entry);
+        usedBytes += bytes;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            usedBytes -= entry.getBytes();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+}
@@ -80,10 +80,8 @@ public class PerformanceChartData {
             }
 
             if (barTime > indicatorBar.getTime()) {
-                Date date = new Date(indicatorBar.getTime());
-                OHLCDataItem item = new OHLCDataItem(date, indicatorBar.getOpen(), indicatorBar.getHigh(), indicatorBar.getLow(), indicatorBar.getClose(), 0);
                 List<OHLCDataItem> ind = indicators.get(indicator.getKey());
-                ind.add(item);
+                ind.add(toItem(indicatorBar));
                 indicatorBar = new Bar(barTime, value);
                 indicatorBars.put(indicator.getKey(), indicatorBar);
             }
@@ -95,9 +93,11 @@ public class PerformanceChartData {
     }
 
     public void update(MarketSnapshot marketSnapshot) {
+        update(marketSnapshot.getTime(), marketSnapshot.getPrice());
+    }
+
+    public void update(long time, double price) {
         long frequency = barSize.getSize();
-        long time = marketSnapshot.getTime();
-        double price = marketSnapshot.getPrice();
 
         // Integer division gives us the number of whole periods
         long completedPeriods = time / frequency;
@@ -108,9 +108,7 @@ public class PerformanceChartData {
         }
 
         if (barTime > priceBar.getTime()) {
-            Date date = new Date(priceBar.getTime());
-            OHLCDataItem item = new OHLCDataItem(date, priceBar.getOpen(), priceBar.getHigh(), priceBar.getLow(), priceBar.getClose(), 0);
-            prices.add(item);
+            prices.add(toItem(priceBar));
             priceBar = new Bar(barTime, price);
         }
 
@@ -119,6 +117,36 @@ public class PerformanceChartData {
         priceBar.setHigh(Math.max(price, priceBar.getHigh()));
     }
 
+    /**
+     * Appends the price and indicator bars of the chart data of the following time period, as if
+     * they were updated by this chart data. The first bar of the following period must be later than
+     * the last bar of this period. The profits are not appended.
+     */
+    public void append(PerformanceChartData next) {
+        if (next.priceBar != null) {
+            if (priceBar != null) {
+                prices.add(toItem(priceBar));
+            }
+            prices.addAll(next.prices);
+            priceBar = next.priceBar;
+        }
+
+        for (Map.Entry<String, Bar> entry : next.indicatorBars.entrySet()) {
+            String key = entry.getKey();
+            List<OHLCDataItem> ind = indicators.get(key);
+            Bar indicatorBar = indicatorBars.get(key);
+            if (indicatorBar != null) {
+                ind.add(toItem(indicatorBar));
+            }
+            ind.addAll(next.indicators.get(key));
+            indicatorBars.put(key, entry.getValue());
+        }
+    }
+
+    private static OHLCDataItem toItem(Bar bar) {
+        return new OHLCDataItem(new Date(bar.getTime()), bar.getOpen(), bar.getHigh(), bar.getLow(), bar.getClose(), 0);
+    }
+
     public OHLCDataset getPriceDataset() {
         return new DefaultOHLCDataset("", prices.toArray(new OHLCDataItem[prices.size()]));
     }
@@ -0,0 +1,54 @@
+package com.jbooktrader.platform.chart;
+
+import org.jfree.chart.*;
+import org.jfree.chart.plot.*;
+import org.jfree.data.time.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Equity curve of a walk-forward optimization, stitched from the out-of-sample periods of its
+ * windows. The start of each out-of-sample period is marked on the time axis.
+ *
+ * @author Eugene Kononov
+ */
+public class WalkForwardChart {
+    private final JDialog parent;
+    private final String strategyName;
+    private final List<TimedValue> equity;
+    private final List<Long> windowStarts;
+
+    public WalkForwardChart(JDialog parent, String strategyName, List<TimedValue> equity, List<Long> windowStarts) {
+        this.parent = parent;
+        this.strategyName = strategyName;
+        this.equity = equity;
+        this.windowStarts = windowStarts;
+    }
+
+    public JDialog getChartFrame() {
+        TimeSeries netProfit = new TimeSeries("Out-of-sample net profit");
+        for (TimedValue value : equity) {
+            netProfit.addOrUpdate(new Second(new Date(value.getTime())), value.getValue());
+        }
+
+        JFreeChart chart = ChartFactory.createTimeSeriesChart(null, null, "Net profit", new TimeSeriesCollection(netProfit), false, true, false);
+        XYPlot plot = chart.getXYPlot();
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setDomainGridlinePaint(Color.LIGHT_GRAY);
+        plot.setRangeGridlinePaint(Color.LIGHT_GRAY);
+        for (long windowStart : windowStarts) {
+            plot.addDomainMarker(new ValueMarker(windowStart, Color.GRAY, new BasicStroke(1)));
+        }
+
+        JDialog chartFrame = new JDialog(parent);
+        chartFrame.setTitle("Walk-Forward Equity - " + strategyName);
+        chartFrame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        chartFrame.getContentPane().add(new ChartPanel(chart));
+        chartFrame.setSize(900, 500);
+        chartFrame.setLocationRelativeTo(parent);
+        return chartFrame;
+    }
+}
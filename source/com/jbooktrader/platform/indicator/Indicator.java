@@ -53,4 +53,13 @@ public abstract class Indicator {
     public double getValue() {
         return value;
     }
+
+    /**
+     * Returns true if the state of the indicator is fully described by its value, so that its values
+     * can be precomputed once and shared by all the strategies in an optimization run. Indicators which
+     * expose other state to the strategies must override this method to return false.
+     */
+    public boolean isPrecomputable() {
+        return true;
+    }
 }
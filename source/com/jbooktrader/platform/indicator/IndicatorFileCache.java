@@ -0,0 +1,313 @@
+package com.jbooktrader.platform.indicator;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Persistent cache of precomputed indicator values, so that the optimizations of different strategies
+ * over the same data do not have to calculate the same indicators again. The values of each indicator
+ * are stored in a separate file, named after the indicator key and the fingerprint of the snapshots
+ * which the values were calculated from, and are read back as a memory-mapped buffer.
+ * <p/>
+ * The file header records the fingerprint of the bytecode of the indicator class and of the classes
+ * it uses, such as the moving windows, so that the cached values are discarded when the indicator
+ * is changed. When the total size of the files exceeds the
+ * limit, the least recently used files are deleted.
+ *
+ * @author Eugene Kononov
+ */
+public class IndicatorFileCache {
+    public static final String EXTENSION = ".jbi";
+    private static final int MAGIC = 0x4A425449; // "JBTI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] CODE_PACKAGES = {"com.jbooktrader.indicator.", "com.jbooktrader.platform.indicator.", "com.jbooktrader.platform.util."};
+    private static final Map<Class<?>, Long> codeFingerprints = new ConcurrentHashMap<>();
+    private final File directory;
+    private final long maxSize;
+
+    public IndicatorFileCache(File directory, long maxSize) throws JBookTraderException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new JBookTraderException("Could not create directory " + directory);
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the contents of the snapshot series.
+     */
+    public static long getFingerprint(SnapshotSeries snapshots) {
+        long fingerprint = 0xCBF29CE484222325L;
+        int size = snapshots.size();
+        for (int index = 0; index < size; index++) {
+            fingerprint = (fingerprint ^ snapshots.getTime(index)) * 0x100000001B3L;
+            fingerprint = (fingerprint ^ Double.doubleToLongBits(snapshots.getBalance(index))) * 0x100000001B3L;
+            fingerprint = (fingerprint ^ Double.doubleToLongBits(snapshots.getPrice(index))) * 0x100000001B3L;
+            fingerprint = (fingerprint ^ snapshots.getVolume(index)) * 0x100000001B3L;
+        }
+        return (fingerprint ^ size) * 0x100000001B3L;
+    }
+
+    /**
+     * Returns the cached values of the indicator calculated from the snapshots with the specified
+     * fingerprint, or null if they are not in the cache.
+     */
+    public DoubleBuffer load(Indicator indicator, long fingerprint, int count) {
+        File file = getFile(indicator, fingerprint);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) == -1) {
+                    throw new EOFException();
+                }
+            }
+            header.flip();
+
+            boolean isValid = header.getInt() == MAGIC && header.getInt() == VERSION;
+            isValid = isValid && header.getLong() == getCodeFingerprint(indicator.getClass());
+            isValid = isValid && header.getLong() == fingerprint && header.getInt() == count;
+            isValid = isValid && channel.size() == HEADER_SIZE + 8L * count;
+            if (isValid) {
+                MappedByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 8L * count);
+                file.setLastModified(System.currentTimeMillis());
+                return values.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        } catch (IOException ioe) {
+            return null;
+        }
+
+        // the stale file is deleted once its channel is closed
+        file.delete();
+        return null;
+    }
+
+    /**
+     * Writes the values of the indicator calculated from the snapshots with the specified fingerprint
+     * to the cache, and returns them as a memory-mapped buffer, or null if they could not be cached.
+     */
+    public DoubleBuffer save(Indicator indicator, long fingerprint, double[] values) {
+        File file = getFile(indicator, fingerprint);
+        File tempFile = null;
+
+        try {
+            long codeFingerprint = getCodeFingerprint(indicator.getClass());
+            tempFile = File.createTempFile("indicator", ".tmp", directory);
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(codeFingerprint).putLong(fingerprint);
+                buffer.putInt(values.length).putInt(0);
+                for (double value : values) {
+                    if (!buffer.hasRemaining()) {
+                        write(channel, buffer);
+                    }
+                    buffer.putDouble(value);
+                }
+                write(channel, buffer);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return null;
+        }
+
+        evict();
+        return load(indicator, fingerprint, values.length);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Deletes the least recently used files until the total size of the files is within the limit.
+     */
+    private synchronized void evict() {
+        File[] files = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(EXTENSION);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        final Map<File, Long> lastUsed = new HashMap<>();
+        for (File file : files) {
+            size += file.length();
+            lastUsed.put(file, file.lastModified());
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                return lastUsed.get(file1).compareTo(lastUsed.get(file2));
+            }
+        });
+
+        for (int index = 0; index < files.length && size > maxSize; index++) {
+            long fileSize = files[index].length();
+            if (files[index].delete()) {
+                size -= fileSize;
+            }
+        }
+    }
+
+    private File getFile(Indicator indicator, long fingerprint) {
+        return new File(directory, indicator.getKey() + "-" + Long.toHexString(fingerprint) + EXTENSION);
+    }
+
+    /**
+     * Computes the fingerprint of the bytecode of the classes which determine the indicator values,
+     * as returned by getCode().
+     */
+    private static long getCodeFingerprint(Class<?> indicatorClass) throws IOException {
+        Long fingerprint = codeFingerprints.get(indicatorClass);
+        if (fingerprint == null) {
+            CRC32 crc = new CRC32();
+            for (byte[] bytecode : getCode(indicatorClass).values()) {
+                crc.update(bytecode);
+            }
+            fingerprint = crc.getValue();
+            codeFingerprints.put(indicatorClass, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the bytecode of the indicator class and its superclasses, and of the indicator manager,
+     * which resets the indicators on the gaps in the data, keyed by the class name. The classes which
+     * these use from the indicator and utility packages, such as the moving windows, are included as
+     * well, along with the classes which those use in turn.
+     */
+    public static SortedMap<String, byte[]> getCode(Class<?> indicatorClass) throws IOException {
+        String indicatorPackage = indicatorClass.getName().substring(0, indicatorClass.getName().lastIndexOf('.') + 1);
+        Deque<String> classNames = new ArrayDeque<>();
+        classNames.add(IndicatorManager.class.getName());
+        for (Class<?> clazz = indicatorClass; clazz != Object.class; clazz = clazz.getSuperclass()) {
+            classNames.add(clazz.getName());
+        }
+
+        SortedMap<String, byte[]> code = new TreeMap<>();
+        while (!classNames.isEmpty()) {
+            String className = classNames.poll();
+            if (code.containsKey(className)) {
+                continue;
+            }
+            byte[] bytecode = readBytecode(indicatorClass.getClassLoader(), className);
+            code.put(className, bytecode);
+            for (String usedClassName : getUsedClasses(bytecode)) {
+                boolean isCodePackage = usedClassName.startsWith(indicatorPackage);
+                for (String codePackage : CODE_PACKAGES) {
+                    isCodePackage = isCodePackage || usedClassName.startsWith(codePackage);
+                }
+                if (isCodePackage && !code.containsKey(usedClassName)) {
+                    classNames.add(usedClassName);
+                }
+            }
+        }
+        return code;
+    }
+
+    private static byte[] readBytecode(ClassLoader classLoader, String className) throws IOException {
+        String resourceName = className.replace('.', '/') + ".class";
+        try (InputStream in = classLoader.getResourceAsStream(resourceName)) {
+            if (in == null) {
+                throw new IOException("Could not find the bytecode of " + className);
+            }
+            ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = in.read(bytes)) != -1) {
+                bytecode.write(bytes, 0, length);
+            }
+            return bytecode.toByteArray();
+        }
+    }
+
+    /**
+     * Returns the names of the classes referenced from the constant pool of the class file.
+     */
+    private static List<String> getUsedClasses(byte[] bytecode) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytecode));
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Invalid class file");
+        }
+        in.skipBytes(4);// minor and major versions
+
+        int count = in.readUnsignedShort();
+        String[] strings = new String[count];
+        List<Integer> classNameIndexes = new ArrayList<>();
+        for (int index = 1; index < count; index++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:// Utf8
+                    strings[index] = in.readUTF();
+                    break;
+                case 7:// Class
+                    classNameIndexes.add(in.readUnsignedShort());
+                    break;
+                case 8:// String
+                case 16:// MethodType
+                case 19:// Module
+                case 20:// Package
+                    in.skipBytes(2);
+                    break;
+                case 15:// MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3:// Integer
+                case 4:// Float
+                case 9:// Fieldref
+                case 10:// Methodref
+                case 11:// InterfaceMethodref
+                case 12:// NameAndType
+                case 17:// Dynamic
+                case 18:// InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+                case 5:// Long
+                case 6:// Double
+                    in.skipBytes(8);
+                    index++;// takes two entries
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag " + tag);
+            }
+        }
+
+        List<String> classNames = new ArrayList<>();
+        for (int classNameIndex : classNameIndexes) {
+            String className = strings[classNameIndex];
+            // array classes are named by their descriptors, such as [Lcom/jbooktrader/SomeClass;
+            int elementStart = className.lastIndexOf('[') + 1;
+            if (elementStart > 0) {
+                if (className.charAt(elementStart) != 'L') {
+                    continue;
+                }
+                className = className.substring(elementStart + 1, className.length() - 1);
+            }
+            classNames.add(className.replace('/', '.'));
+        }
+        return classNames;
+    }
+}
@@ -1,7 +1,9 @@
 package com.jbooktrader.platform.indicator;
 
 import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
 
+import java.nio.*;
 import java.util.*;
 
 /**
@@ -11,6 +13,10 @@ public class IndicatorManager {
     private static final long GAP_SIZE = 5 * 60 * 1000;// 5 minutes
     private static final long MIN_SAMPLE_SIZE = 1 * 60 * 60;// 1 hour worth of samples
     private final List<Indicator> indicators;
+    private final List<Indicator> calculatedIndicators;
+    private Indicator[] precomputedIndicators;
+    private DoubleBuffer[] precomputedValues;
+    private IndicatorSeriesCache indicatorSeriesCache;
 
     private MarketBook marketBook;
     private long previousSnapshotTime;
@@ -25,6 +31,7 @@ public class IndicatorManager {
         }
 
         indicators.add(newIndicator);
+        calculatedIndicators.add(newIndicator);
         newIndicator.setMarketBook(marketBook);
 
         return newIndicator;
@@ -33,6 +40,9 @@ public class IndicatorManager {
 
     public IndicatorManager() {
         indicators = new ArrayList<>();
+        calculatedIndicators = new ArrayList<>();
+        precomputedIndicators = new Indicator[0];
+        precomputedValues = new DoubleBuffer[0];
     }
 
     public void setMarketBook(MarketBook marketBook) {
@@ -50,14 +60,86 @@ public class IndicatorManager {
         return indicators;
     }
 
+    /**
+     * Acquires the precomputed values of the precomputable indicators from the cache. From then on,
+     * these indicators take their values from the cache in updateIndicators(int), and only the rest
+     * of the indicators are calculated. The values must be released by releasePrecomputedValues().
+     */
+    public void acquirePrecomputedValues(IndicatorSeriesCache indicatorSeriesCache) throws JBookTraderException {
+        releasePrecomputedValues();
+        this.indicatorSeriesCache = indicatorSeriesCache;
+
+        List<Indicator> indicatorsWithValues = new ArrayList<>();
+        List<DoubleBuffer> values = new ArrayList<>();
+        try {
+            for (Indicator indicator : indicators) {
+                if (indicator.isPrecomputable()) {
+                    DoubleBuffer indicatorValues = indicatorSeriesCache.acquire(indicator);
+                    if (indicatorValues != null) {
+                        indicatorsWithValues.add(indicator);
+                        values.add(indicatorValues);
+                    }
+                }
+            }
+        } catch (JBookTraderException jbte) {
+            for (Indicator indicator : indicatorsWithValues) {
+                indicatorSeriesCache.release(indicator.getKey());
+            }
+            throw jbte;
+        }
+
+        calculatedIndicators.removeAll(indicatorsWithValues);
+        precomputedIndicators = indicatorsWithValues.toArray(new Indicator[indicatorsWithValues.size()]);
+        precomputedValues = values.toArray(new DoubleBuffer[values.size()]);
+    }
+
+    /**
+     * Releases the precomputed values acquired by acquirePrecomputedValues(), so that all the indicators
+     * are calculated again.
+     */
+    public void releasePrecomputedValues() {
+        for (Indicator indicator : precomputedIndicators) {
+            indicatorSeriesCache.release(indicator.getKey());
+        }
+        precomputedIndicators = new Indicator[0];
+        precomputedValues = new DoubleBuffer[0];
+        calculatedIndicators.clear();
+        calculatedIndicators.addAll(indicators);
+    }
+
     public void updateIndicators() {
-        MarketSnapshot snapshot = marketBook.getSnapshot();
-        if (snapshot == null) {
-            return;
+        if (updateSamples()) {
+            for (Indicator indicator : indicators) {
+                indicator.calculate();
+            }
+        }
+    }
+
+    /**
+     * Updates the indicators for the snapshot at the specified index of the snapshot series
+     * from which the precomputed values were calculated.
+     */
+    public void updateIndicators(int index) {
+        if (updateSamples()) {
+            for (Indicator indicator : calculatedIndicators) {
+                indicator.calculate();
+            }
+            for (int i = 0; i < precomputedIndicators.length; i++) {
+                precomputedIndicators[i].value = precomputedValues[i].get(index);
+            }
         }
-        long lastSnapshotTime = snapshot.getTime();
+    }
+
+    /**
+     * Counts the samples since the last gap in the data, and resets the indicators on a gap.
+     * Returns false if there is no snapshot to update the indicators with.
+     */
+    private boolean updateSamples() {
+        if (marketBook.isEmpty()) {
+            return false;
+        }
+        long lastSnapshotTime = marketBook.getTime();
         samples++;
-        int size = indicators.size();
 
         if (lastSnapshotTime - previousSnapshotTime > GAP_SIZE) {
             samples = 0;
@@ -66,9 +148,6 @@ public class IndicatorManager {
             }
         }
         previousSnapshotTime = lastSnapshotTime;
-
-        for (Indicator indicator : indicators) {
-            indicator.calculate();
-        }
+        return true;
     }
 }
@@ -0,0 +1,183 @@
+package com.jbooktrader.platform.indicator;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Holds the values of indicators precomputed over a snapshot series, so that an indicator which is
+ * used by the strategies of several optimizer workers is calculated only once, rather than once by
+ * each worker. The values are shared read-only by the workers, and are identified by the indicator key.
+ * <p/>
+ * The first worker which acquires the values of an indicator calculates them, and the other workers
+ * which acquire the same indicator in the meantime wait for the calculation to complete. The values
+ * are discarded when the last worker using them releases them. Since the optimizer assigns strategies
+ * with similar parameters to the consecutive workers, the workers running at the same time tend to use
+ * the same indicators. The memory taken by the values is limited to a fraction of the maximum heap size,
+ * and the indicators which do not fit are calculated by the workers as before. The caches used at the
+ * same time, such as those of the windows of a walk-forward optimization, may share this limit, by
+ * sharing the counter of the memory taken by their values.
+ * <p/>
+ * If a file cache is specified, the values are read from it when they were calculated from the same
+ * snapshots by a previous run, and the calculated values are written to it for the next runs.
+ *
+ * @author Eugene Kononov
+ */
+public class IndicatorSeriesCache {
+    private static final double MEMORY_FRACTION = 0.25;
+    private final SnapshotSeries snapshots;
+    private final IndicatorFileCache indicatorFileCache;
+    private final long fingerprint;
+    private final Map<String, Entry> entries;
+    private final long seriesSize, maxSize;
+    private final AtomicLong usedMemory;
+
+    private static class Entry {
+        private final FutureTask<DoubleBuffer> task;
+        private int users;
+
+        private Entry(FutureTask<DoubleBuffer> task) {
+            this.task = task;
+        }
+    }
+
+    public IndicatorSeriesCache(SnapshotSeries snapshots) {
+        this(snapshots, null);
+    }
+
+    public IndicatorSeriesCache(SnapshotSeries snapshots, IndicatorFileCache indicatorFileCache) {
+        this(snapshots, indicatorFileCache, new AtomicLong());
+    }
+
+    /**
+     * Creates a cache whose values count towards the memory limit along with the values of the other
+     * caches created with the same counter of the used memory.
+     */
+    public IndicatorSeriesCache(SnapshotSeries snapshots, IndicatorFileCache indicatorFileCache, AtomicLong usedMemory) {
+        this.snapshots = snapshots;
+        this.usedMemory = usedMemory;
+        this.indicatorFileCache = indicatorFileCache;
+        fingerprint = (indicatorFileCache == null) ? 0 : IndicatorFileCache.getFingerprint(snapshots);
+        entries = new HashMap<>();
+        seriesSize = 8L * snapshots.size();
+        maxSize = (long) (Runtime.getRuntime().maxMemory() * MEMORY_FRACTION);
+    }
+
+    /**
+     * Returns the values of the indicator for each snapshot of the series, calculating them if they are
+     * not yet in the cache, or null if there is not enough memory for them. The values must be released
+     * when they are no longer in use.
+     */
+    public DoubleBuffer acquire(final Indicator indicator) throws JBookTraderException {
+        String key = indicator.getKey();
+        Entry entry;
+        boolean isCalculating = false;
+
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                if (!reserveMemory()) {
+                    return null;
+                }
+                entry = new Entry(new FutureTask<>(new Callable<DoubleBuffer>() {
+                    public DoubleBuffer call() {
+                        return getValues(indicator);
+                    }
+                }));
+                entries.put(key, entry);
+                isCalculating = true;
+            }
+            entry.users++;
+        }
+
+        if (isCalculating) {
+            entry.task.run();
+        }
+
+        try {
+            return entry.task.get();
+        } catch (InterruptedException ie) {
+            release(key);
+            throw new JBookTraderException(ie);
+        } catch (ExecutionException ee) {
+            release(key);
+            throw new JBookTraderException(ee.getCause());
+        }
+    }
+
+    /**
+     * Releases the values of the indicator with the specified key, which were acquired by acquire().
+     */
+    public synchronized void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && --entry.users == 0) {
+            entries.remove(key);
+            usedMemory.addAndGet(-seriesSize);
+        }
+    }
+
+    private boolean reserveMemory() {
+        while (true) {
+            long used = usedMemory.get();
+            if (used + seriesSize > maxSize) {
+                return false;
+            }
+            if (usedMemory.compareAndSet(used, used + seriesSize)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indicators whose values are in the cache.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private DoubleBuffer getValues(Indicator indicator) {
+        if (indicatorFileCache == null) {
+            return DoubleBuffer.wrap(calculate(indicator));
+        }
+
+        DoubleBuffer values = indicatorFileCache.load(indicator, fingerprint, snapshots.size());
+        if (values == null) {
+            double[] calculatedValues = calculate(indicator);
+            values = indicatorFileCache.save(indicator, fingerprint, calculatedValues);
+            if (values == null) {
+                values = DoubleBuffer.wrap(calculatedValues);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Calculates the values of the indicator exactly as the IndicatorManager of a worker would,
+     * including the resets on the gaps in the data.
+     */
+    private double[] calculate(Indicator indicator) {
+        MarketBook indicatorMarketBook = indicator.marketBook;
+        MarketBook marketBook = new MarketBook();
+        IndicatorManager indicatorManager = new IndicatorManager();
+        indicatorManager.setMarketBook(marketBook);
+        indicatorManager.addIndicator(indicator);
+
+        int snapshotsCount = snapshots.size();
+        double[] values = new double[snapshotsCount];
+        try {
+            for (int index = 0; index < snapshotsCount; index++) {
+                marketBook.setSnapshot(snapshots, index);
+                indicatorManager.updateIndicators();
+                values[index] = indicator.getValue();
+            }
+        } finally {
+            indicator.setMarketBook(indicatorMarketBook);
+        }
+
+        return values;
+    }
+}
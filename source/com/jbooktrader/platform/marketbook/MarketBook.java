@@ -14,6 +14,10 @@ import java.util.*;
 public class MarketBook {
     private static final long GAP_SIZE = 60 * 60 * 1000;// 1 hour
     private MarketSnapshot marketSnapshot;
+    private boolean hasSnapshot;
+    private long time;
+    private double balance, price;
+    private int volume;
     private final MarketDepth marketDepth;
     private final String name;
     private final TimeZone timeZone;
@@ -47,11 +51,31 @@ public class MarketBook {
     }
 
     public boolean isEmpty() {
-        return marketSnapshot == null;
+        return !hasSnapshot;
     }
 
     public void setSnapshot(MarketSnapshot marketSnapshot) {
         this.marketSnapshot = marketSnapshot;
+        hasSnapshot = (marketSnapshot != null);
+        if (hasSnapshot) {
+            time = marketSnapshot.getTime();
+            balance = marketSnapshot.getBalance();
+            price = marketSnapshot.getPrice();
+            volume = marketSnapshot.getVolume();
+        }
+    }
+
+    /**
+     * Sets the current snapshot to the one at the specified index of the series, without
+     * creating a MarketSnapshot object, unless one is later requested by getSnapshot().
+     */
+    public void setSnapshot(SnapshotSeries series, int index) {
+        marketSnapshot = null;
+        hasSnapshot = true;
+        time = series.getTime(index);
+        balance = series.getBalance(index);
+        price = series.getPrice(index);
+        volume = series.getVolume(index);
     }
 
     public boolean isExchangeOpen() {
@@ -63,16 +87,39 @@ public class MarketBook {
     }
 
     public boolean isGapping(MarketSnapshot newMarketSnapshot) {
+        return isGapping(newMarketSnapshot.getTime());
+    }
+
+    public boolean isGapping(long newTime) {
         if (isEmpty()) {
             return false;
         }
-        return (newMarketSnapshot.getTime() - marketSnapshot.getTime() > GAP_SIZE);
+        return (newTime - time > GAP_SIZE);
     }
 
     public MarketSnapshot getSnapshot() {
+        if (marketSnapshot == null && hasSnapshot) {
+            marketSnapshot = new MarketSnapshot(time, balance, price, volume);
+        }
         return marketSnapshot;
     }
 
+    public long getTime() {
+        return time;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getVolume() {
+        return volume;
+    }
+
     public void takeMarketSnapshot(long time) {
         MarketSnapshot snapshot = marketDepth.takeMarketSnapshot(time);
         if (snapshot != null) {
@@ -32,11 +32,36 @@ public class MarketSnapshotFilter {
         }
     }
 
+    public MarketSnapshotFilter(long fromDate, long toDate) {
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        if (fromDate > toDate) {
+            throw new RuntimeException("The \"from\" date must be before or the same as the \"to\" date.");
+        }
+    }
+
+    public long getFromDate() {
+        return fromDate;
+    }
+
+    public long getToDate() {
+        return toDate;
+    }
+
 
     public boolean contains(long time) {
         return (time >= fromDate && time <= toDate);
     }
 
+    /**
+     * Returns a view of the snapshots in the series which are within the filter's date range.
+     */
+    public SnapshotSeries apply(SnapshotSeries series) {
+        int from = series.indexOf(fromDate);
+        int to = series.indexOf(toDate + 1);
+        return series.subSeries(from, Math.max(from, to));
+    }
+
     @Override
     public String toString() {
         return "MarketSnapshotFilter{" + "fromDate=" + fromDate + ", toDate=" + toDate + '}';
@@ -0,0 +1,150 @@
+package com.jbooktrader.platform.marketbook;
+
+import java.util.*;
+
+/**
+ * Series of market snapshots stored column-wise in primitive arrays. Compared to a list of
+ * MarketSnapshot objects, the series takes a fraction of the heap and is iterated sequentially
+ * in memory. Snapshots are accessed by index, which runs from 0 to size() - 1.
+ * <p/>
+ * A series created with subSeries() is a view which shares the arrays of the series it was
+ * created from. Snapshots can only be added to a series which is not a view.
+ *
+ * @author Eugene Kononov
+ */
+public class SnapshotSeries {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private long[] times;
+    private double[] balances, prices;
+    private int[] volumes;
+    private final int offset;
+    private final boolean isView;
+    private int size;
+
+    public SnapshotSeries(int capacity) {
+        capacity = Math.max(capacity, 1);
+        times = new long[capacity];
+        balances = new double[capacity];
+        prices = new double[capacity];
+        volumes = new int[capacity];
+        offset = 0;
+        isView = false;
+    }
+
+    public SnapshotSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    private SnapshotSeries(SnapshotSeries series, int offset, int size) {
+        times = series.times;
+        balances = series.balances;
+        prices = series.prices;
+        volumes = series.volumes;
+        this.offset = offset;
+        this.size = size;
+        isView = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTime(int index) {
+        return times[offset + index];
+    }
+
+    public double getBalance(int index) {
+        return balances[offset + index];
+    }
+
+    public double getPrice(int index) {
+        return prices[offset + index];
+    }
+
+    public int getVolume(int index) {
+        return volumes[offset + index];
+    }
+
+    public MarketSnapshot getSnapshot(int index) {
+        int position = offset + index;
+        return new MarketSnapshot(times[position], balances[position], prices[position], volumes[position]);
+    }
+
+    public void add(long time, double balance, double price, int volume) {
+        ensureCapacity(size + 1);
+        times[size] = time;
+        balances[size] = balance;
+        prices[size] = price;
+        volumes[size] = volume;
+        size++;
+    }
+
+    public void add(MarketSnapshot marketSnapshot) {
+        add(marketSnapshot.getTime(), marketSnapshot.getBalance(), marketSnapshot.getPrice(), marketSnapshot.getVolume());
+    }
+
+    public void addAll(SnapshotSeries series) {
+        ensureCapacity(size + series.size);
+        System.arraycopy(series.times, series.offset, times, size, series.size);
+        System.arraycopy(series.balances, series.offset, balances, size, series.size);
+        System.arraycopy(series.prices, series.offset, prices, size, series.size);
+        System.arraycopy(series.volumes, series.offset, volumes, size, series.size);
+        size += series.size;
+    }
+
+    /**
+     * Returns a view of the snapshots from index "from" (inclusive) to index "to" (exclusive).
+     */
+    public SnapshotSeries subSeries(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + size);
+        }
+        return new SnapshotSeries(this, offset + from, to - from);
+    }
+
+    /**
+     * Returns the index of the first snapshot whose time is equal to or later than the specified time,
+     * or size() if there is no such snapshot. The times in the series must be increasing.
+     */
+    public int indexOf(long time) {
+        int low = offset, high = offset + size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - offset;
+    }
+
+    /**
+     * Releases the unused capacity of the arrays.
+     */
+    public void trimToSize() {
+        if (!isView && times.length > size) {
+            resize(size);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (isView) {
+            throw new UnsupportedOperationException("Snapshots cannot be added to a view of a series.");
+        }
+        if (capacity > times.length) {
+            resize(Math.max(capacity, times.length + (times.length >> 1)));
+        }
+    }
+
+    private void resize(int capacity) {
+        times = Arrays.copyOf(times, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+    }
+}
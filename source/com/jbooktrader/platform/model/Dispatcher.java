@@ -139,7 +139,7 @@ public class Dispatcher {
             }
         }
 
-        if (this.mode != mode) {
+        if (this.mode != mode && mode != null) {
             eventReport.report(JBookTrader.APP_NAME, "Running mode changed to: " + mode.getName());
         }
 
@@ -18,7 +18,12 @@ public class AdvancedOptimizationOptionsDialog extends JBTDialog {
     private static final Dimension FIELD_DIMENSION = new Dimension(Integer.MAX_VALUE, 22);
     private final PreferencesHolder prefs;
     private JSlider divideAndConquerCoverageSlider;
-    private JTextField strategiesPerProcessorText;
+    private JTextField strategiesPerProcessorText, indicatorCacheSizeText, remoteOptimizerWorkersText;
+    private JTextField geneticPopulationSizeText, geneticGenerationsText, geneticCrossoverRateText, geneticMutationRateText, geneticElitismText;
+    private JTextField surrogateBudgetText, surrogateBatchSizeText;
+    private JTextField halvingReductionFactorText, halvingRungsText;
+    private JTextField pruningMaxDrawdownText, pruningCheckpointText, pruningNetProfitFloorText;
+    private JTextField walkForwardInSampleSessionsText, walkForwardOutOfSampleSessionsText;
 
     public AdvancedOptimizationOptionsDialog(JFrame parent) {
         super(parent);
@@ -72,6 +77,14 @@ public class AdvancedOptimizationOptionsDialog extends JBTDialog {
         strategiesPerProcessorText.setHorizontalAlignment(SwingConstants.RIGHT);
         add(contentPanel, StrategiesPerProcessor, strategiesPerProcessorText);
 
+        indicatorCacheSizeText = new JTextField();
+        indicatorCacheSizeText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, IndicatorCacheSize, indicatorCacheSizeText);
+
+        remoteOptimizerWorkersText = new JTextField();
+        remoteOptimizerWorkersText.setToolTipText("Comma-separated host:port addresses of the remote optimizer workers");
+        add(contentPanel, RemoteOptimizerWorkers, remoteOptimizerWorkersText);
+
 
         int min = 200;
         int max = 10000;
@@ -91,13 +104,85 @@ public class AdvancedOptimizationOptionsDialog extends JBTDialog {
         divideAndConquerCoverageSlider.setPaintLabels(true);
         add(contentPanel, DivideAndConquerCoverage, divideAndConquerCoverageSlider);
 
-        SpringUtilities.makeCompactGrid(contentPanel, 2, 2, 12, 12, 6, 8);
+        geneticPopulationSizeText = new JTextField();
+        geneticPopulationSizeText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, GeneticPopulationSize, geneticPopulationSizeText);
+
+        geneticGenerationsText = new JTextField();
+        geneticGenerationsText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, GeneticGenerations, geneticGenerationsText);
+
+        geneticCrossoverRateText = new JTextField();
+        geneticCrossoverRateText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, GeneticCrossoverRate, geneticCrossoverRateText);
+
+        geneticMutationRateText = new JTextField();
+        geneticMutationRateText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, GeneticMutationRate, geneticMutationRateText);
+
+        geneticElitismText = new JTextField();
+        geneticElitismText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, GeneticElitism, geneticElitismText);
+
+        surrogateBudgetText = new JTextField();
+        surrogateBudgetText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, SurrogateBudget, surrogateBudgetText);
+
+        surrogateBatchSizeText = new JTextField();
+        surrogateBatchSizeText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, SurrogateBatchSize, surrogateBatchSizeText);
+
+        halvingReductionFactorText = new JTextField();
+        halvingReductionFactorText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, HalvingReductionFactor, halvingReductionFactorText);
+
+        halvingRungsText = new JTextField();
+        halvingRungsText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, HalvingRungs, halvingRungsText);
+
+        pruningMaxDrawdownText = new JTextField();
+        pruningMaxDrawdownText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, PruningMaxDrawdown, pruningMaxDrawdownText);
+
+        pruningCheckpointText = new JTextField();
+        pruningCheckpointText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, PruningCheckpoint, pruningCheckpointText);
+
+        pruningNetProfitFloorText = new JTextField();
+        pruningNetProfitFloorText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, PruningNetProfitFloor, pruningNetProfitFloorText);
+
+        walkForwardInSampleSessionsText = new JTextField();
+        walkForwardInSampleSessionsText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, WalkForwardInSampleSessions, walkForwardInSampleSessionsText);
+
+        walkForwardOutOfSampleSessionsText = new JTextField();
+        walkForwardOutOfSampleSessionsText.setHorizontalAlignment(SwingConstants.RIGHT);
+        add(contentPanel, WalkForwardOutOfSampleSessions, walkForwardOutOfSampleSessionsText);
+
+        SpringUtilities.makeCompactGrid(contentPanel, 18, 2, 12, 12, 6, 8);
 
 
         okButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 prefs.set(DivideAndConquerCoverage, divideAndConquerCoverageSlider.getValue());
                 prefs.set(StrategiesPerProcessor, strategiesPerProcessorText.getText());
+                prefs.set(IndicatorCacheSize, indicatorCacheSizeText.getText());
+                prefs.set(RemoteOptimizerWorkers, remoteOptimizerWorkersText.getText());
+                prefs.set(GeneticPopulationSize, geneticPopulationSizeText.getText());
+                prefs.set(GeneticGenerations, geneticGenerationsText.getText());
+                prefs.set(GeneticCrossoverRate, geneticCrossoverRateText.getText());
+                prefs.set(GeneticMutationRate, geneticMutationRateText.getText());
+                prefs.set(GeneticElitism, geneticElitismText.getText());
+                prefs.set(SurrogateBudget, surrogateBudgetText.getText());
+                prefs.set(SurrogateBatchSize, surrogateBatchSizeText.getText());
+                prefs.set(HalvingReductionFactor, halvingReductionFactorText.getText());
+                prefs.set(HalvingRungs, halvingRungsText.getText());
+                prefs.set(PruningMaxDrawdown, pruningMaxDrawdownText.getText());
+                prefs.set(PruningCheckpoint, pruningCheckpointText.getText());
+                prefs.set(PruningNetProfitFloor, pruningNetProfitFloorText.getText());
+                prefs.set(WalkForwardInSampleSessions, walkForwardInSampleSessionsText.getText());
+                prefs.set(WalkForwardOutOfSampleSessions, walkForwardOutOfSampleSessionsText.getText());
                 dispose();
             }
         });
@@ -110,7 +195,7 @@ public class AdvancedOptimizationOptionsDialog extends JBTDialog {
 
 
         getRootPane().setDefaultButton(okButton);
-        setPreferredSize(new Dimension(650, 380));
+        setPreferredSize(new Dimension(650, 1000));
     }
 
 }
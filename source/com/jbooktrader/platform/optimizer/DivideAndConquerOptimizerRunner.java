@@ -41,6 +41,7 @@ public class DivideAndConquerOptimizerRunner extends OptimizerRunner {
         PreferencesHolder prefs = PreferencesHolder.getInstance();
         int chunkSize = 100 * prefs.getInt(JBTPreferences.DivideAndConquerCoverage);
         int numberOfCandidates = Math.max(1, (int) (chunkSize / Math.pow(divider, dimensions)));
+        topResults.ensureCapacity(numberOfCandidates);
         int filteredTasksSize;
 
         do {
@@ -73,16 +74,17 @@ public class DivideAndConquerOptimizerRunner extends OptimizerRunner {
             iterationsRemaining = Math.max(1, --iterationsRemaining);
             completedSteps += snapshotCount * filteredTasksSize;
 
-            if (optimizationResults.isEmpty() && !cancelled.get()) {
+            if (topResults.isEmpty() && !cancelled.get()) {
                 throw new JBookTraderException("No strategies found within the specified parameter boundaries.");
             }
 
 
             topParams.clear();
 
-            int maxIndex = Math.min(numberOfCandidates, optimizationResults.size());
+            List<OptimizationResult> sortedResults = topResults.getSortedResults();
+            int maxIndex = Math.min(numberOfCandidates, sortedResults.size());
             for (int index = 0; index < maxIndex; index++) {
-                StrategyParams params = optimizationResults.get(index).getParams();
+                StrategyParams params = sortedResults.get(index).getParams();
                 for (StrategyParam param : params.getAll()) {
                     String name = param.getName();
                     int value = param.getValue();
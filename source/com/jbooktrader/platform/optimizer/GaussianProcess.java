@@ -0,0 +1,199 @@
+package com.jbooktrader.platform.optimizer;
+
+/**
+ * Gaussian process regression with the squared exponential kernel, used as the surrogate model of
+ * the performance of the strategies in the parameter space. The points are expected to be scaled to
+ * the unit hypercube. The observed values are standardized, and the length scale of the kernel and
+ * the noise variance are chosen from a grid of values by the maximum marginal likelihood.
+ *
+ * @author Eugene Kononov
+ */
+public class GaussianProcess {
+    private static final double[] LENGTH_SCALES = {0.05, 0.1, 0.2, 0.4, 0.8};
+    private static final double[] NOISE_VARIANCES = {1e-4, 1e-2, 1e-1};
+    private static final double MIN_VARIANCE = 1e-12;
+    private double[][] points, cholesky;
+    private double[] alpha;
+    private double mean, scale, lengthScale, noiseVariance;
+
+    /**
+     * Fits the model to the values observed at the points.
+     */
+    public void fit(double[][] points, double[] values) {
+        int size = values.length;
+        this.points = points;
+
+        mean = 0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= size;
+        double variance = 0;
+        for (double value : values) {
+            variance += (value - mean) * (value - mean);
+        }
+        scale = (variance > 0) ? Math.sqrt(variance / size) : 1;
+
+        double[] standardizedValues = new double[size];
+        for (int index = 0; index < size; index++) {
+            standardizedValues[index] = (values[index] - mean) / scale;
+        }
+
+        double maxLikelihood = Double.NEGATIVE_INFINITY;
+        for (double candidateLengthScale : LENGTH_SCALES) {
+            for (double candidateNoiseVariance : NOISE_VARIANCES) {
+                double[][] candidateCholesky = decompose(getCovariance(candidateLengthScale, candidateNoiseVariance));
+                if (candidateCholesky == null) {
+                    continue;
+                }
+                double[] candidateAlpha = solveTransposed(candidateCholesky, solve(candidateCholesky, standardizedValues));
+
+                // the log of the marginal likelihood, without the constant term
+                double likelihood = 0;
+                for (int index = 0; index < size; index++) {
+                    likelihood -= 0.5 * standardizedValues[index] * candidateAlpha[index] + Math.log(candidateCholesky[index][index]);
+                }
+
+                if (likelihood > maxLikelihood) {
+                    maxLikelihood = likelihood;
+                    lengthScale = candidateLengthScale;
+                    noiseVariance = candidateNoiseVariance;
+                    cholesky = candidateCholesky;
+                    alpha = candidateAlpha;
+                }
+            }
+        }
+    }
+
+    public double getLengthScale() {
+        return lengthScale;
+    }
+
+    public double getNoiseVariance() {
+        return noiseVariance;
+    }
+
+    /**
+     * Returns the mean and the standard deviation of the value predicted at the point.
+     */
+    public double[] predict(double[] point) {
+        int size = points.length;
+        double[] covariance = new double[size];
+        double predictedMean = 0;
+        for (int index = 0; index < size; index++) {
+            covariance[index] = kernel(point, points[index], lengthScale);
+            predictedMean += covariance[index] * alpha[index];
+        }
+
+        double[] v = solve(cholesky, covariance);
+        double predictedVariance = 1;
+        for (double element : v) {
+            predictedVariance -= element * element;
+        }
+
+        double standardDeviation = Math.sqrt(Math.max(MIN_VARIANCE, predictedVariance));
+        return new double[]{mean + scale * predictedMean, scale * standardDeviation};
+    }
+
+    /**
+     * Returns the expected improvement of the value at the point over the best value.
+     */
+    public double getExpectedImprovement(double[] point, double bestValue) {
+        double[] prediction = predict(point);
+        double improvement = prediction[0] - bestValue;
+        double standardDeviation = prediction[1];
+        double z = improvement / standardDeviation;
+        return improvement * getNormalDistribution(z) + standardDeviation * Math.exp(-0.5 * z * z) / Math.sqrt(2 * Math.PI);
+    }
+
+    static double kernel(double[] point1, double[] point2, double lengthScale) {
+        double distance = 0;
+        for (int dimension = 0; dimension < point1.length; dimension++) {
+            double difference = point1[dimension] - point2[dimension];
+            distance += difference * difference;
+        }
+        return Math.exp(-distance / (2 * lengthScale * lengthScale));
+    }
+
+    private double[][] getCovariance(double lengthScale, double noiseVariance) {
+        int size = points.length;
+        double[][] covariance = new double[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < row; column++) {
+                covariance[row][column] = covariance[column][row] = kernel(points[row], points[column], lengthScale);
+            }
+            covariance[row][row] = 1 + noiseVariance;
+        }
+        return covariance;
+    }
+
+    /**
+     * Returns the lower triangular Cholesky factor of the matrix, or null if the matrix is not
+     * positive definite.
+     */
+    private static double[][] decompose(double[][] matrix) {
+        int size = matrix.length;
+        double[][] lower = new double[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column <= row; column++) {
+                double sum = matrix[row][column];
+                for (int k = 0; k < column; k++) {
+                    sum -= lower[row][k] * lower[column][k];
+                }
+                if (row == column) {
+                    if (sum <= 0) {
+                        return null;
+                    }
+                    lower[row][row] = Math.sqrt(sum);
+                } else {
+                    lower[row][column] = sum / lower[column][column];
+                }
+            }
+        }
+        return lower;
+    }
+
+    /**
+     * Solves L x = b by forward substitution.
+     */
+    private static double[] solve(double[][] lower, double[] b) {
+        int size = b.length;
+        double[] x = new double[size];
+        for (int row = 0; row < size; row++) {
+            double sum = b[row];
+            for (int column = 0; column < row; column++) {
+                sum -= lower[row][column] * x[column];
+            }
+            x[row] = sum / lower[row][row];
+        }
+        return x;
+    }
+
+    /**
+     * Solves transpose(L) x = b by back substitution.
+     */
+    private static double[] solveTransposed(double[][] lower, double[] b) {
+        int size = b.length;
+        double[] x = new double[size];
+        for (int row = size - 1; row >= 0; row--) {
+            double sum = b[row];
+            for (int column = row + 1; column < size; column++) {
+                sum -= lower[column][row] * x[column];
+            }
+            x[row] = sum / lower[row][row];
+        }
+        return x;
+    }
+
+    /**
+     * Cumulative distribution function of the standard normal distribution, using the
+     * approximation of the error function by Abramowitz and Stegun.
+     */
+    private static double getNormalDistribution(double z) {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double polynomial = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+        double erf = 1 - polynomial * Math.exp(-x * x);
+        return (z >= 0) ? 0.5 * (1 + erf) : 0.5 * (1 - erf);
+    }
+}
@@ -0,0 +1,147 @@
+package com.jbooktrader.platform.optimizer;
+
+import java.util.*;
+
+/**
+ * The genetic operators of the genetic optimizer, and the fitness of the parameter sets evaluated so
+ * far. Each individual of the population is a parameter set, whose genes are the parameter values on
+ * the grid defined by the min, max, and step of each parameter. The fitness of an individual is its
+ * optimization result, ranked by the result comparator, and the individuals without a result are the
+ * least fit. The elite individuals pass to the next generation unchanged, and the rest of it is bred
+ * from the parents chosen by tournament selection, by the uniform crossover of their genes and the
+ * random mutation of the genes of the offspring.
+ *
+ * @author Eugene Kononov
+ */
+public class GeneticAlgorithm {
+    private static final int TOURNAMENT_SIZE = 3;
+    private final Map<String, OptimizationResult> fitnessCache;
+    private final Comparator<StrategyParams> fitnessComparator;
+    private final Random random;
+    private final int elitism;
+    private final double crossoverRate, mutationRate;
+
+    public GeneticAlgorithm(Random random, int elitism, double crossoverRate, double mutationRate,
+                            final Comparator<OptimizationResult> resultComparator) {
+        this.random = random;
+        this.elitism = elitism;
+        this.crossoverRate = crossoverRate;
+        this.mutationRate = mutationRate;
+
+        fitnessCache = new HashMap<>();
+        fitnessComparator = new Comparator<StrategyParams>() {
+            public int compare(StrategyParams params1, StrategyParams params2) {
+                OptimizationResult result1 = fitnessCache.get(params1.getKey());
+                OptimizationResult result2 = fitnessCache.get(params2.getKey());
+                if (result1 == null || result2 == null) {
+                    return (result1 == null) ? ((result2 == null) ? 0 : 1) : -1;
+                }
+                return resultComparator.compare(result1, result2);
+            }
+        };
+    }
+
+    /**
+     * Creates the first generation of distinct individuals with random genes. The population is smaller
+     * than requested if the parameter grid is.
+     */
+    public List<StrategyParams> createPopulation(StrategyParams strategyParams, int populationSize) {
+        long searchSpaceSize = 1;
+        for (StrategyParam param : strategyParams.getAll()) {
+            searchSpaceSize = Math.min(Integer.MAX_VALUE, searchSpaceSize * param.getValueCount());
+        }
+
+        List<StrategyParams> population = new ArrayList<>();
+        Set<String> uniqueParams = new HashSet<>();
+        while (population.size() < Math.min(populationSize, searchSpaceSize)) {
+            StrategyParams individual = new StrategyParams(strategyParams);
+            for (StrategyParam param : individual.getAll()) {
+                mutate(param);
+            }
+            if (uniqueParams.add(individual.getKey())) {
+                population.add(individual);
+            }
+        }
+        return population;
+    }
+
+    /**
+     * Returns the individuals of the population which have not been evaluated yet, each parameter set
+     * once, and marks them as evaluated, so that they are never evaluated again.
+     */
+    public List<StrategyParams> getNewIndividuals(List<StrategyParams> population) {
+        List<StrategyParams> newIndividuals = new ArrayList<>();
+        for (StrategyParams individual : population) {
+            String key = individual.getKey();
+            if (!fitnessCache.containsKey(key)) {
+                fitnessCache.put(key, null);
+                newIndividuals.add(individual);
+            }
+        }
+        return newIndividuals;
+    }
+
+    /**
+     * Records the fitness of the evaluated individuals. The individuals excluded from the results
+     * remain without a result, as the least fit.
+     */
+    public void setFitness(List<OptimizationResult> results) {
+        for (OptimizationResult result : results) {
+            fitnessCache.put(result.getParams().getKey(), result);
+        }
+    }
+
+    /**
+     * Returns the number of distinct parameter sets evaluated so far.
+     */
+    public int getEvaluated() {
+        return fitnessCache.size();
+    }
+
+    /**
+     * Sorts the population by fitness, the fittest first.
+     */
+    public void rank(List<StrategyParams> population) {
+        Collections.sort(population, fitnessComparator);
+    }
+
+    /**
+     * Breeds the next generation from the population, which is sorted by fitness.
+     */
+    public List<StrategyParams> breed(List<StrategyParams> population) {
+        List<StrategyParams> nextPopulation = new ArrayList<>(population.subList(0, Math.min(elitism, population.size())));
+        while (nextPopulation.size() < population.size()) {
+            StrategyParams parent1 = select(population);
+            StrategyParams parent2 = select(population);
+            StrategyParams offspring = new StrategyParams(parent1);
+            boolean isCrossover = random.nextDouble() < crossoverRate;
+            for (int index = 0; index < offspring.size(); index++) {
+                StrategyParam param = offspring.get(index);
+                if (isCrossover && random.nextBoolean()) {
+                    param.setValue(parent2.get(index).getValue());
+                }
+                if (random.nextDouble() < mutationRate) {
+                    mutate(param);
+                }
+            }
+            nextPopulation.add(offspring);
+        }
+        return nextPopulation;
+    }
+
+    /**
+     * Selects the fittest of the randomly chosen individuals of the population, which is sorted by
+     * fitness, so that the fittest is the one with the lowest index.
+     */
+    private StrategyParams select(List<StrategyParams> population) {
+        int fittest = population.size();
+        for (int contestant = 0; contestant < TOURNAMENT_SIZE; contestant++) {
+            fittest = Math.min(fittest, random.nextInt(population.size()));
+        }
+        return population.get(fittest);
+    }
+
+    private void mutate(StrategyParam param) {
+        param.setValue(param.getMin() + random.nextInt(param.getValueCount()) * param.getStep());
+    }
+}
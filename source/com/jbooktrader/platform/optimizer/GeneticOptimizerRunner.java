@@ -0,0 +1,79 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.preferences.*;
+import com.jbooktrader.platform.strategy.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Searches the strategy parameter space with a genetic algorithm (see GeneticAlgorithm). The
+ * individuals of a generation are evaluated in parallel by the optimizer workers, and the fitness
+ * of each parameter set is cached, so that it is never evaluated twice.
+ *
+ * @author Eugene Kononov
+ */
+public class GeneticOptimizerRunner extends OptimizerRunner {
+    private final GeneticAlgorithm geneticAlgorithm;
+    private final List<OptimizationResult> generationResults;
+    private final int populationSize, generations;
+
+    public GeneticOptimizerRunner(OptimizerDialog optimizerDialog, Strategy strategy, StrategyParams params) throws JBookTraderException {
+        super(optimizerDialog, strategy, params);
+
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        populationSize = prefs.getInt(JBTPreferences.GeneticPopulationSize);
+        generations = prefs.getInt(JBTPreferences.GeneticGenerations);
+        double crossoverRate = prefs.getInt(JBTPreferences.GeneticCrossoverRate) / 100.0;
+        double mutationRate = prefs.getInt(JBTPreferences.GeneticMutationRate) / 100.0;
+        int elitism = prefs.getInt(JBTPreferences.GeneticElitism);
+        if (populationSize < 2 || generations < 1 || elitism < 0 || elitism >= populationSize) {
+            throw new JBookTraderException("The genetic population size must be at least 2, the number of generations at least 1, and the elite size less than the population size.");
+        }
+
+        generationResults = new ArrayList<>();
+        ResultComparator resultComparator = new ResultComparator(optimizerDialog.getSelectionCriteria());
+        geneticAlgorithm = new GeneticAlgorithm(new Random(), elitism, crossoverRate, mutationRate, resultComparator);
+    }
+
+    @Override
+    public void optimize() throws JBookTraderException {
+        List<StrategyParams> population = geneticAlgorithm.createPopulation(strategyParams, populationSize);
+
+        long completedSteps = 0;
+        for (int generation = 0; generation < generations && !cancelled.get(); generation++) {
+            if (generation > 0) {
+                population = geneticAlgorithm.breed(population);
+            }
+
+            Queue<StrategyParams> tasks = new LinkedBlockingQueue<>(geneticAlgorithm.getNewIndividuals(population));
+            int tasksSize = tasks.size();
+            setTotalSteps(completedSteps + snapshotCount * (tasksSize + (long) (generations - generation - 1) * populationSize));
+            setTotalStrategies(geneticAlgorithm.getEvaluated());
+            execute(tasks);
+            completedSteps += snapshotCount * tasksSize;
+
+            synchronized (generationResults) {
+                geneticAlgorithm.setFitness(generationResults);
+                generationResults.clear();
+            }
+            geneticAlgorithm.rank(population);
+        }
+
+        if (topResults.isEmpty() && !cancelled.get()) {
+            throw new JBookTraderException("No strategies found within the specified parameter boundaries.");
+        }
+    }
+
+    /**
+     * Collects the results of the generation being evaluated, for the fitness cache.
+     */
+    @Override
+    protected void addResults(List<OptimizationResult> results) {
+        super.addResults(results);
+        synchronized (generationResults) {
+            generationResults.addAll(results);
+        }
+    }
+}
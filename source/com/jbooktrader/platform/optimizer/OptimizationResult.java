@@ -27,6 +27,23 @@ public class OptimizationResult {
         bias = performanceManager.getBias();
     }
 
+    /**
+     * Creates the result from the values of the performance metrics, indexed by their ordinals.
+     */
+    public OptimizationResult(StrategyParams params, double[] values) {
+        this.params = params;
+        netProfit = values[PerformanceMetric.NetProfit.ordinal()];
+        maxSingleLoss = values[PerformanceMetric.MaxSL.ordinal()];
+        maxDrawdown = values[PerformanceMetric.MaxDD.ordinal()];
+        trades = (int) values[PerformanceMetric.Trades.ordinal()];
+        profitFactor = values[PerformanceMetric.PF.ordinal()];
+        kellyCriterion = values[PerformanceMetric.Kelly.ordinal()];
+        cpi = values[PerformanceMetric.CPI.ordinal()];
+        performanceIndex = values[PerformanceMetric.PI.ordinal()];
+        aveDuration = values[PerformanceMetric.Duration.ordinal()];
+        bias = values[PerformanceMetric.Bias.ordinal()];
+    }
+
     public StrategyParams getParams() {
         return params;
     }
@@ -0,0 +1,96 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.util.*;
+
+import static com.jbooktrader.platform.optimizer.RemoteOptimizerProtocol.*;
+
+/**
+ * All the results of an optimization run, streamed to a file as they come in, so that the memory
+ * taken by the optimizer does not grow with the parameter grid. Only the best results are kept in
+ * memory, by TopOptimizationResults. The full set of results is read back from the file when it is
+ * needed, such as by the optimization map.
+ *
+ * @author Eugene Kononov
+ */
+public class OptimizationResultsFile {
+    private final File file;
+    private DataOutputStream out;
+    private long size;
+
+    public OptimizationResultsFile(File file) {
+        this.file = file;
+        file.deleteOnExit();
+    }
+
+    /**
+     * Starts a new, empty file of results, discarding the results of the previous run.
+     */
+    public synchronized void open() throws JBookTraderException {
+        try {
+            close();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            size = 0;
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not write the optimization results file " + file + ": " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Appends the results. They are buffered until the next flush.
+     */
+    public synchronized void write(List<OptimizationResult> results) throws IOException {
+        if (out == null) {
+            return;
+        }
+        for (OptimizationResult result : results) {
+            writeResult(out, result);
+        }
+        size += results.size();
+    }
+
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Reads back all the results written so far, in the order they came in.
+     */
+    public synchronized List<OptimizationResult> readAll() throws JBookTraderException {
+        List<OptimizationResult> results = new ArrayList<>();
+        if (size == 0) {
+            return results;
+        }
+
+        try {
+            flush();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                for (long index = 0; index < size; index++) {
+                    results.add(readResult(in));
+                }
+            }
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not read the optimization results file " + file + ": " + ioe.getMessage(), ioe);
+        }
+        return results;
+    }
+}
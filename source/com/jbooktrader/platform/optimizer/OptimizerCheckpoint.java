@@ -0,0 +1,181 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import static com.jbooktrader.platform.optimizer.RemoteOptimizerProtocol.*;
+
+/**
+ * Journal of an optimization run, from which the run can be resumed if it is cancelled or crashes.
+ * The journal starts with the description of the run: the strategy, the parameter ranges, the data
+ * file, and the options which decide what goes into the results. Then, for each completed worker, it
+ * records the keys of the parameter sets the worker evaluated, followed by their results. A resumed
+ * run skips the parameter sets already evaluated, and takes their results from the journal. A record
+ * cut short by a crash is discarded when the journal is loaded.
+ *
+ * @author Eugene Kononov
+ */
+public class OptimizerCheckpoint {
+    private static final int MAGIC = 0x4A42544A;// "JBTJ"
+    private static final int VERSION = 2;
+    private final File file;
+    private final String description;
+    private final Set<String> evaluatedKeys;
+    private final Map<String, OptimizationResult> results;
+    private DataOutputStream out;
+
+    public OptimizerCheckpoint(File file, String description) {
+        this.file = file;
+        this.description = description;
+        evaluatedKeys = new HashSet<>();
+        results = new HashMap<>();
+    }
+
+    /**
+     * Returns true if there is a journal of an interrupted run with the same description.
+     */
+    public boolean exists() {
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readHeader(in);
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads the parameter sets evaluated by the interrupted run, and their results.
+     */
+    public void load() throws JBookTraderException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!readHeader(in)) {
+                throw new JBookTraderException("The optimization checkpoint " + file + " is for a different optimization.");
+            }
+
+            while (true) {
+                List<String> keys = new ArrayList<>();
+                List<OptimizationResult> recordResults = new ArrayList<>();
+                try {
+                    int size = in.readInt();
+                    for (int index = 0; index < size; index++) {
+                        keys.add(in.readUTF());
+                    }
+                    size = in.readInt();
+                    for (int index = 0; index < size; index++) {
+                        recordResults.add(readResult(in));
+                    }
+                } catch (EOFException eofe) {
+                    // the end of the journal, or a record cut short
+                    break;
+                }
+
+                evaluatedKeys.addAll(keys);
+                for (OptimizationResult result : recordResults) {
+                    results.put(result.getParams().getKey(), result);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not load the optimization checkpoint " + file + ": " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Starts a new journal, which retains the parameter sets and the results loaded from the
+     * journal of the interrupted run, if any.
+     */
+    public synchronized void open() throws JBookTraderException {
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            // the description lists every file of a data set, so it may be longer than writeUTF() allows
+            byte[] descriptionBytes = description.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(descriptionBytes.length);
+            out.write(descriptionBytes);
+            if (!evaluatedKeys.isEmpty()) {
+                out.writeInt(evaluatedKeys.size());
+                for (String key : evaluatedKeys) {
+                    out.writeUTF(key);
+                }
+                out.writeInt(results.size());
+                for (OptimizationResult result : results.values()) {
+                    writeResult(out, result);
+                }
+            }
+            out.flush();
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not write the optimization checkpoint " + file + ": " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public boolean isEvaluated(String key) {
+        return evaluatedKeys.contains(key);
+    }
+
+    /**
+     * Returns the result of the parameter set evaluated by the interrupted run, or null if it was
+     * left out of the results. The result is returned only once.
+     */
+    public OptimizationResult takeResult(String key) {
+        return results.remove(key);
+    }
+
+    /**
+     * Records the parameter sets evaluated by a worker, and their results. The record is buffered
+     * until the next flush.
+     */
+    public synchronized void write(List<StrategyParams> tasks, List<OptimizationResult> workerResults) throws IOException {
+        if (out == null) {
+            return;
+        }
+        out.writeInt(tasks.size());
+        for (StrategyParams params : tasks) {
+            out.writeUTF(params.getKey());
+        }
+        out.writeInt(workerResults.size());
+        for (OptimizationResult result : workerResults) {
+            writeResult(out, result);
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Deletes the journal of the completed run.
+     */
+    public void delete() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete the optimization checkpoint " + file);
+        }
+    }
+
+    private boolean readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return false;
+        }
+        byte[] descriptionBytes = description.getBytes(StandardCharsets.UTF_8);
+        if (in.readInt() != descriptionBytes.length) {
+            return false;
+        }
+        byte[] journalDescriptionBytes = new byte[descriptionBytes.length];
+        in.readFully(journalDescriptionBytes);
+        return Arrays.equals(journalDescriptionBytes, descriptionBytes);
+    }
+}
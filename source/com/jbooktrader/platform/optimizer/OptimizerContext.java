@@ -0,0 +1,42 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.indicator.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.strategy.*;
+
+import java.util.*;
+
+/**
+ * Provides the optimizer workers with the strategies to optimize, the historical market data,
+ * and the options of the optimization, and collects their results. It is implemented by the
+ * optimizer runner, and by the remote optimizer worker for the optimizations it runs on behalf
+ * of a remote optimizer runner.
+ *
+ * @author Eugene Kononov
+ */
+public interface OptimizerContext {
+    Strategy getStrategyInstance(StrategyParams params) throws JBookTraderException;
+
+    SnapshotSeries getSnapshots();
+
+    IndicatorSeriesCache getIndicatorSeriesCache();
+
+    int getMinTrades();
+
+    String getInclusionCriteria();
+
+    PruningRules getPruningRules();
+
+    boolean isCancelled();
+
+    void iterationsCompleted(long iterationsCompleted);
+
+    void strategiesPruned(int prunedStrategies);
+
+    /**
+     * Called with the results of the parameter sets of the tasks, some of which may have been left out
+     * of the results by the inclusion criteria, or pruned.
+     */
+    void workerCompleted(List<StrategyParams> tasks, List<OptimizationResult> results);
+}
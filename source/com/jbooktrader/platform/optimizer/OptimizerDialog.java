@@ -6,6 +6,7 @@ import com.jbooktrader.platform.dialog.*;
 import com.jbooktrader.platform.marketbook.*;
 import com.jbooktrader.platform.model.*;
 import com.jbooktrader.platform.preferences.*;
+import com.jbooktrader.platform.startup.*;
 import com.jbooktrader.platform.strategy.*;
 import com.jbooktrader.platform.util.classfinder.*;
 import com.jbooktrader.platform.util.format.*;
@@ -48,7 +49,7 @@ public class OptimizerDialog extends JBTDialog implements ProgressListener {
 
     private ParamTableModel paramTableModel;
     private Strategy strategy;
-    private List<OptimizationResult> optimizationResults;
+    private OptimizationResultsFile resultsFile;// all the results, for the optimization map
     private OptimizerRunner optimizerRunner;
 
     public OptimizerDialog(JFrame parent, String strategyName) {
@@ -128,7 +129,7 @@ public class OptimizerDialog extends JBTDialog implements ProgressListener {
     private void setParamTableColumns() {
         int optimizationMethod = optimizationMethodCombo.getSelectedIndex();
         int columnCount = paramTableColumnModel.getColumnCount();
-        if (optimizationMethod == 0) {
+        if (optimizationMethod != 1) {
             if (columnCount == 3) {
                 paramTableColumnModel.addColumn(stepColumn);
             }
@@ -162,6 +163,20 @@ public class OptimizerDialog extends JBTDialog implements ProgressListener {
                         optimizerRunner = new BruteForceOptimizerRunner(OptimizerDialog.this, strategy, params);
                     } else if (optimizationMethod == 1) {
                         optimizerRunner = new DivideAndConquerOptimizerRunner(OptimizerDialog.this, strategy, params);
+                    } else if (optimizationMethod == 2) {
+                        optimizerRunner = new GeneticOptimizerRunner(OptimizerDialog.this, strategy, params);
+                    } else if (optimizationMethod == 3) {
+                        optimizerRunner = new SurrogateOptimizerRunner(OptimizerDialog.this, strategy, params);
+                    } else if (optimizationMethod == 4) {
+                        optimizerRunner = new SuccessiveHalvingOptimizerRunner(OptimizerDialog.this, strategy, params);
+                    } else if (optimizationMethod == 5) {
+                        optimizerRunner = new WalkForwardOptimizerRunner(OptimizerDialog.this, strategy, params);
+                    }
+
+                    if (optimizerRunner.canResume()) {
+                        String question = "The previous optimization of " + strategy.getName() + " with the same parameters and data was interrupted." + "\n" + "Would you like to resume it?";
+                        int answer = JOptionPane.showConfirmDialog(OptimizerDialog.this, question, JBookTrader.APP_NAME, JOptionPane.YES_NO_OPTION);
+                        optimizerRunner.setResumed(answer == JOptionPane.YES_OPTION);
                     }
 
                     new Thread(optimizerRunner).start();
@@ -182,13 +197,14 @@ public class OptimizerDialog extends JBTDialog implements ProgressListener {
         optimizationMapButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 try {
-                    if (optimizationResults == null || optimizationResults.isEmpty()) {
+                    if (resultsFile == null || resultsFile.isEmpty()) {
                         MessageDialog.showMessage("There are no optimization results to map.");
                         return;
                     }
 
+                    List<OptimizationResult> mappedResults = resultsFile.readAll();
                     OptimizationMap optimizationMap = new OptimizationMap(OptimizerDialog.this, strategy,
-                        optimizationResults, getSelectionCriteria());
+                        mappedResults, getSelectionCriteria());
                     JDialog chartFrame = optimizationMap.getChartFrame();
                     chartFrame.setVisible(true);
                 } catch (Exception ex) {
@@ -237,6 +253,8 @@ public class OptimizerDialog extends JBTDialog implements ProgressListener {
             public void actionPerformed(ActionEvent e) {
                 JFileChooser fileChooser = new JFileChooser(Dispatcher.getInstance().getMarketDataDir());
                 fileChooser.setDialogTitle("Select Historical Data File");
+                // a directory of daily data files can also be selected as a data set
+                fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 
                 String filename = getFileName();
                 if (filename.length() != 0) {
@@ -351,7 +369,7 @@ public class OptimizerDialog extends JBTDialog implements ProgressListener {
         JPanel optimizationOptionsPanel = new JPanel(new SpringLayout());
 
         JLabel optimizationMethodLabel = new JLabel("Search method:");
-        optimizationMethodCombo = new JComboBox<>(new String[]{"Brute force", "Divide & Conquer"});
+        optimizationMethodCombo = new JComboBox<>(new String[]{"Brute force", "Divide & Conquer", "Genetic", "Surrogate model", "Successive halving", "Walk-forward"});
         String optimizerMethod = prefs.get(OptimizerMethod);
         optimizationMethodCombo.setSelectedItem(optimizerMethod);
 
@@ -478,9 +496,13 @@ public class OptimizerDialog extends JBTDialog implements ProgressListener {
         }
     }
 
-    public void setResults(List<OptimizationResult> optimizationResults) {
-        this.optimizationResults = optimizationResults;
-        ((ResultsTableModel) resultsTable.getModel()).setResults(optimizationResults);
+    /**
+     * Shows the best results in the results table, and keeps the file of all the results for the
+     * optimization map.
+     */
+    public void setResults(List<OptimizationResult> topResults, OptimizationResultsFile resultsFile) {
+        this.resultsFile = resultsFile;
+        ((ResultsTableModel) resultsTable.getModel()).setResults(topResults);
     }
 
 
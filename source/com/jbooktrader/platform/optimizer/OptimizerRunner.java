@@ -1,6 +1,7 @@
 package com.jbooktrader.platform.optimizer;
 
 import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.indicator.*;
 import com.jbooktrader.platform.marketbook.*;
 import com.jbooktrader.platform.model.*;
 import com.jbooktrader.platform.preferences.*;
@@ -11,6 +12,7 @@ import com.jbooktrader.platform.util.ui.*;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.net.*;
 import java.text.*;
 import java.util.*;
 import java.util.concurrent.*;
@@ -24,44 +26,56 @@ import static com.jbooktrader.platform.optimizer.PerformanceMetric.*;
  *
  * @author Eugene Kononov
  */
-public abstract class OptimizerRunner implements Runnable {
+public abstract class OptimizerRunner implements Runnable, OptimizerContext {
     private static final int MAX_SAVED_RESULTS = 100;// max number of results in the optimization results file
-    protected final List<OptimizationResult> optimizationResults;
+    private static final int MAX_DISPLAYED_RESULTS = 1000;// max number of results in the optimizer dialog
+    private static final long RESULTS_UPDATE_INTERVAL = 2 * 1000;// 2 seconds
+    protected final TopOptimizationResults topResults;
     protected final StrategyParams strategyParams;
     protected final AtomicBoolean cancelled;
     protected final int availableProcessors;
     private final ScheduledExecutorService progressExecutor;
     private final Constructor<?> strategyConstructor;
-    private final CompletionService<List<OptimizationResult>> completionService;
     private final NumberFormat nf2, nf0, gnf0;
     private final String strategyName;
     private final int minTrades;
+    private final String inclusionCriteria;
     private final AtomicLong completedSteps;
+    private final AtomicInteger prunedStrategies;
+    private final PruningRules pruningRules;
+    private final OptimizerCheckpoint checkpoint;
+    private final OptimizationResultsFile resultsFile;
     private final OptimizerDialog optimizerDialog;
     private final int strategiesPerProcessor;
     protected long snapshotCount;
-    private ExecutorService optimizationExecutor;
+    private final ForkJoinPool optimizationPool;
+    private final String strategyClassName;
+    private final List<InetSocketAddress> remoteWorkerAddresses;
+    private RemoteOptimizer remoteOptimizer;
     private ResultComparator resultComparator;
     private ComputationalTimeEstimator timeEstimator;
-    private List<MarketSnapshot> snapshots;
+    private SnapshotSeries snapshots;
+    private IndicatorSeriesCache indicatorSeriesCache;
     private long totalSteps;
     private String totalStrategiesString;
+    private boolean isResumed;
 
     protected OptimizerRunner(OptimizerDialog optimizerDialog, Strategy strategy, StrategyParams params) throws JBookTraderException {
         this.optimizerDialog = optimizerDialog;
         strategyName = strategy.getName();
         strategyParams = params;
-        optimizationResults = Collections.synchronizedList(new ArrayList<OptimizationResult>());
         nf2 = NumberFormatterFactory.getNumberFormatter(2);
         nf0 = NumberFormatterFactory.getNumberFormatter(0);
         gnf0 = NumberFormatterFactory.getNumberFormatter(0, true);
         availableProcessors = Runtime.getRuntime().availableProcessors();
         completedSteps = new AtomicLong();
+        prunedStrategies = new AtomicInteger();
         cancelled = new AtomicBoolean();
 
         Class<?> clazz;
+        strategyClassName = strategy.getClass().getName();
         try {
-            clazz = Class.forName(strategy.getClass().getName());
+            clazz = Class.forName(strategyClassName);
         } catch (ClassNotFoundException cnfe) {
             throw new JBookTraderException("Could not find class " + strategy.getClass().getName());
         }
@@ -73,11 +87,98 @@ public abstract class OptimizerRunner implements Runnable {
         }
 
         resultComparator = new ResultComparator(optimizerDialog.getSelectionCriteria());
+        topResults = new TopOptimizationResults(resultComparator, MAX_DISPLAYED_RESULTS);
         minTrades = optimizerDialog.getMinTrades();
+        inclusionCriteria = PreferencesHolder.getInstance().get(JBTPreferences.InclusionCriteria);
         progressExecutor = Executors.newSingleThreadScheduledExecutor();
-        optimizationExecutor = Executors.newFixedThreadPool(availableProcessors);
-        completionService = new ExecutorCompletionService<>(optimizationExecutor);
+        optimizationPool = new ForkJoinPool(availableProcessors);
         strategiesPerProcessor = PreferencesHolder.getInstance().getInt(JBTPreferences.StrategiesPerProcessor);
+        remoteWorkerAddresses = RemoteOptimizer.getAddresses(PreferencesHolder.getInstance().get(JBTPreferences.RemoteOptimizerWorkers));
+        pruningRules = getPruningRules(PreferencesHolder.getInstance());
+        File checkpointFile = new File(Dispatcher.getInstance().getReportsDir(), strategyName + "Optimizer.checkpoint");
+        checkpoint = new OptimizerCheckpoint(checkpointFile, getDescription());
+        resultsFile = new OptimizationResultsFile(new File(Dispatcher.getInstance().getReportsDir(), strategyName + "Optimizer.results"));
+    }
+
+    /**
+     * Describes the optimization run by everything which decides what goes into its results, so
+     * that an interrupted run is resumed only by the same optimization.
+     */
+    private String getDescription() throws JBookTraderException {
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        StringBuilder description = new StringBuilder(strategyClassName);
+        for (StrategyParam param : strategyParams.getAll()) {
+            description.append("\n").append(param.getName()).append(": ").append(param.getMin());
+            description.append(" to ").append(param.getMax()).append(" by ").append(param.getStep());
+        }
+
+        File dataFile = new File(optimizerDialog.getFileName());
+        description.append("\n").append(dataFile.getAbsolutePath());
+        if (BackTestDataset.isDataset(dataFile)) {
+            // the days of a data set may be added or rewritten, while its directory stays the same
+            BackTestDataset dataset = new BackTestDataset(dataFile);
+            dataset.load();
+            File manifestFile = new File(dataFile, BackTestDataset.MANIFEST_FILE_NAME);
+            appendFile(description, manifestFile);
+            for (File dayFile : dataset.getFiles(null)) {
+                appendFile(description, dayFile);
+            }
+        } else {
+            appendFile(description, dataFile);
+        }
+        if (prefs.get(JBTPreferences.UseDateRange).equals("true")) {
+            description.append("\n").append(prefs.get(JBTPreferences.DateRangeStart));
+            description.append(" to ").append(prefs.get(JBTPreferences.DateRangeEnd));
+        }
+
+        description.append("\nMinimum trades: ").append(minTrades);
+        description.append("\n").append(inclusionCriteria);
+        description.append("\nPruning: ").append(pruningRules.getMaxDrawdown()).append(", ");
+        description.append(pruningRules.getCheckpoint()).append(", ").append(pruningRules.getNetProfitFloor());
+        return description.toString();
+    }
+
+    private static void appendFile(StringBuilder description, File file) {
+        description.append("\n").append(file.getName()).append(", ").append(file.length());
+        description.append(" bytes, modified ").append(file.lastModified());
+    }
+
+    /**
+     * Returns true if the optimizer can be resumed from the checkpoint of an interrupted run of the
+     * same optimization.
+     */
+    public boolean canResume() {
+        return isResumable() && checkpoint.exists();
+    }
+
+    /**
+     * If set, the parameter sets evaluated by the interrupted run are not evaluated again.
+     */
+    public void setResumed(boolean isResumed) {
+        this.isResumed = isResumed;
+    }
+
+    /**
+     * Returns true if the optimizer keeps the checkpoint from which it can be resumed. Only the
+     * optimizers whose parameter sets are evaluated by execute() are resumable.
+     */
+    protected boolean isResumable() {
+        return true;
+    }
+
+    private static PruningRules getPruningRules(PreferencesHolder prefs) throws JBookTraderException {
+        int maxDrawdown = prefs.getInt(JBTPreferences.PruningMaxDrawdown);
+        int checkpoint = prefs.getInt(JBTPreferences.PruningCheckpoint);
+        if (maxDrawdown < 0 || checkpoint < 0 || checkpoint > 100) {
+            throw new JBookTraderException("The pruning max drawdown must not be negative, and the pruning checkpoint must be between 0 and 100%.");
+        }
+
+        String netProfitFloor = prefs.get(JBTPreferences.PruningNetProfitFloor).trim();
+        try {
+            return new PruningRules(maxDrawdown, checkpoint / 100.0, netProfitFloor.isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(netProfitFloor));
+        } catch (NumberFormatException nfe) {
+            throw new JBookTraderException("The pruning net profit floor must be a number, or empty for no floor.");
+        }
     }
 
     public Strategy getStrategyInstance(StrategyParams params) throws JBookTraderException {
@@ -108,44 +209,193 @@ public abstract class OptimizerRunner implements Runnable {
         return minTrades;
     }
 
-    public List<MarketSnapshot> getSnapshots() {
+    public String getInclusionCriteria() {
+        return inclusionCriteria;
+    }
+
+    public PruningRules getPruningRules() {
+        return pruningRules;
+    }
+
+    public SnapshotSeries getSnapshots() {
         return snapshots;
     }
 
+    public IndicatorSeriesCache getIndicatorSeriesCache() {
+        return indicatorSeriesCache;
+    }
+
+    /**
+     * Returns the persistent cache of indicator values, or null if it is disabled.
+     */
+    static IndicatorFileCache getIndicatorFileCache() throws JBookTraderException {
+        long cacheSize = PreferencesHolder.getInstance().getInt(JBTPreferences.IndicatorCacheSize) * 1024L * 1024L;
+        if (cacheSize <= 0) {
+            return null;
+        }
+        File directory = new File(Dispatcher.getInstance().getMarketDataDir(), "indicatorCache");
+        return new IndicatorFileCache(directory, cacheSize);
+    }
+
+    /**
+     * Optimizes the strategies with the parameter sets in the queue, which is emptied. The parameter
+     * sets are split between the pool threads by an OptimizerTask, and the idle threads steal the work
+     * of the busy ones. If the remote optimizer workers are specified, the parameter sets are split
+     * into batches of the minimum worker load, which are shared between the remote workers and the
+     * local threads. The results are shown as they come in, once every RESULTS_UPDATE_INTERVAL.
+     */
     void execute(Queue<StrategyParams> tasks) throws JBookTraderException {
-        int workerLoad = Math.min(strategiesPerProcessor, Math.max(1, tasks.size() / availableProcessors));
-        int submittedWorkers = 0;
+        List<StrategyParams> taskList = new ArrayList<>();
+        List<OptimizationResult> resumedResults = new ArrayList<>();
+        int resumedTasks = 0;
+        for (StrategyParams params : tasks) {
+            String key = params.getKey();
+            if (checkpoint.isEvaluated(key)) {
+                OptimizationResult result = checkpoint.takeResult(key);
+                if (result != null) {
+                    resumedResults.add(result);
+                }
+                resumedTasks++;
+            } else {
+                taskList.add(params);
+            }
+        }
+        tasks.clear();
+        addResults(resumedResults);
+        iterationsCompleted(snapshotCount * resumedTasks);
 
-        while (!tasks.isEmpty()) {
-            List<StrategyParams> workerTasks = new ArrayList<>();
-            while (!tasks.isEmpty() && workerTasks.size() < workerLoad) {
-                workerTasks.add(tasks.remove());
+        if (taskList.isEmpty()) {
+            publishResults();
+            return;
+        }
+
+        int maxLoad = getMaxLoad(taskList.size());
+        int minLoad = Math.max(1, maxLoad / 4);
+        Future<Void> optimizerTask;
+        if (remoteWorkerAddresses.isEmpty()) {
+            optimizerTask = optimizationPool.submit(new OptimizerTask(this, taskList, minLoad, maxLoad));
+        } else {
+            if (remoteOptimizer == null) {
+                remoteOptimizer = new RemoteOptimizer(this, strategyClassName, remoteWorkerAddresses, availableProcessors);
             }
-            completionService.submit(new OptimizerWorker(this, workerTasks));
-            submittedWorkers++;
+            optimizerTask = remoteOptimizer.submit(taskList, minLoad);
         }
 
         try {
-            if (submittedWorkers > 0) {
-                int divider = Math.max(1, submittedWorkers / 10);
-                for (int worker = 0; worker < submittedWorkers; worker++) {
-                    List<OptimizationResult> results = completionService.take().get();
-                    optimizationResults.addAll(results);
-
-                    if (worker % divider == 0) {
-                        Collections.sort(optimizationResults, resultComparator);
-                        optimizerDialog.setResults(optimizationResults);
-                    }
+            boolean isDone = false;
+            while (!isDone) {
+                try {
+                    optimizerTask.get(RESULTS_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+                    isDone = true;
+                } catch (TimeoutException te) {
+                    // the optimization is still running
                 }
-                Collections.sort(optimizationResults, resultComparator);
-                optimizerDialog.setResults(optimizationResults);
+                publishResults();
+                flushCheckpoint();
             }
+        } catch (ExecutionException ee) {
+            throw getException(ee);
+        } catch (InterruptedException ie) {
+            throw new JBookTraderException(ie.getMessage(), ie);
+        }
+    }
 
-        } catch (Exception e) {
-            throw new JBookTraderException(e.getMessage(), e);
+    /**
+     * Runs the tasks on the optimization pool, and waits for all of them to complete.
+     */
+    void invokeAll(List<? extends Callable<Void>> tasks) throws JBookTraderException {
+        try {
+            for (Future<Void> future : optimizationPool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException ee) {
+            throw getException(ee);
+        } catch (InterruptedException ie) {
+            throw new JBookTraderException(ie.getMessage(), ie);
+        }
+    }
+
+    /**
+     * Returns the number of parameter sets assigned to a worker when the optimization of the
+     * specified number of parameter sets is split between the processors.
+     */
+    protected int getMaxLoad(int tasksSize) {
+        return Math.min(strategiesPerProcessor, Math.max(1, tasksSize / availableProcessors));
+    }
+
+    /**
+     * Shows the best results in the optimizer dialog.
+     */
+    protected void publishResults() {
+        optimizerDialog.setResults(topResults.getSortedResults(), resultsFile);
+    }
+
+    private static JBookTraderException getException(ExecutionException ee) {
+        Throwable cause = ee.getCause();
+        while (cause != null && !(cause instanceof JBookTraderException)) {
+            cause = cause.getCause();
+        }
+        if (cause != null) {
+            return (JBookTraderException) cause;
+        }
+        return new JBookTraderException(ee.getMessage(), ee);
+    }
+
+    /**
+     * Called when an optimizer worker completes, locally or remotely.
+     */
+    public void workerCompleted(List<StrategyParams> tasks, List<OptimizationResult> results) {
+        addResults(results);
+        // the workers interrupted by the cancellation have not evaluated their parameter sets
+        if (!cancelled.get()) {
+            try {
+                checkpoint.write(tasks, results);
+            } catch (IOException ioe) {
+                checkpointFailed(ioe);
+            }
+        }
+    }
+
+    /**
+     * Adds the results of the evaluated parameter sets, as they come in from the workers or from
+     * the checkpoint of a resumed run. Only the best results are kept in memory, and all of them
+     * are streamed to the results file.
+     */
+    protected void addResults(List<OptimizationResult> results) {
+        topResults.addAll(results);
+        try {
+            resultsFile.write(results);
+        } catch (IOException ioe) {
+            // the optimization goes on without the full set of results
+            try {
+                resultsFile.close();
+            } catch (IOException closeException) {
+                // ignore
+            }
+            Dispatcher.getInstance().getEventReport().report(ioe);
+        }
+    }
+
+    private void flushCheckpoint() {
+        try {
+            checkpoint.flush();
+        } catch (IOException ioe) {
+            checkpointFailed(ioe);
         }
     }
 
+    /**
+     * The optimization goes on without the checkpoint, which can no longer be written.
+     */
+    private void checkpointFailed(IOException ioe) {
+        try {
+            checkpoint.close();
+        } catch (IOException closeException) {
+            // ignore
+        }
+        Dispatcher.getInstance().getEventReport().report(ioe);
+    }
+
     public void cancel() {
         optimizerDialog.setProgress("Stopping optimization...");
         cancelled.set(true);
@@ -156,7 +406,8 @@ public abstract class OptimizerRunner implements Runnable {
     }
 
     private void saveToFile() throws IOException {
-        if (optimizationResults.isEmpty()) {
+        List<OptimizationResult> sortedResults = topResults.getSortedResults();
+        if (sortedResults.isEmpty()) {
             return;
         }
 
@@ -171,7 +422,7 @@ public abstract class OptimizerRunner implements Runnable {
         optimizationReport.reportDescription("Back data file: " + optimizerDialog.getFileName());
 
         List<String> otpimizerReportHeaders = new ArrayList<>();
-        StrategyParams params = optimizationResults.iterator().next().getParams();
+        StrategyParams params = sortedResults.get(0).getParams();
         for (StrategyParam param : params.getAll()) {
             otpimizerReportHeaders.add(param.getName());
         }
@@ -181,9 +432,9 @@ public abstract class OptimizerRunner implements Runnable {
         }
         optimizationReport.reportHeaders(otpimizerReportHeaders);
 
-        int maxIndex = Math.min(MAX_SAVED_RESULTS, optimizationResults.size());
+        int maxIndex = Math.min(MAX_SAVED_RESULTS, sortedResults.size());
         for (int index = 0; index < maxIndex; index++) {
-            OptimizationResult optimizationResult = optimizationResults.get(index);
+            OptimizationResult optimizationResult = sortedResults.get(index);
             params = optimizationResult.getParams();
 
             List<String> columns = new ArrayList<>();
@@ -217,6 +468,10 @@ public abstract class OptimizerRunner implements Runnable {
         completedSteps.getAndAdd(iterationsCompleted);
     }
 
+    public void strategiesPruned(int prunedStrategies) {
+        this.prunedStrategies.getAndAdd(prunedStrategies);
+    }
+
     protected Queue<StrategyParams> getTasks(StrategyParams params) {
         for (StrategyParam param : params.getAll()) {
             param.setValue(param.getMin());
@@ -252,13 +507,22 @@ public abstract class OptimizerRunner implements Runnable {
 
     public void run() {
         try {
-            optimizationResults.clear();
-            optimizerDialog.setResults(optimizationResults);
+            resultsFile.open();
+            topResults.clear();
+            publishResults();
             optimizerDialog.enableProgress();
             BackTestFileReader backTestFileReader = new BackTestFileReader(optimizerDialog.getFileName(), optimizerDialog.getDateFilter());
             optimizerDialog.setProgress("Loading historical data file...");
             snapshots = backTestFileReader.load(optimizerDialog);
             snapshotCount = snapshots.size();
+            indicatorSeriesCache = new IndicatorSeriesCache(snapshots, getIndicatorFileCache());
+            if (isResumable()) {
+                if (isResumed) {
+                    optimizerDialog.setProgress("Loading optimization checkpoint...");
+                    checkpoint.load();
+                }
+                checkpoint.open();
+            }
 
             optimizerDialog.setProgress("Starting optimization ...");
             progressExecutor.scheduleWithFixedDelay(new ProgressRunner(), 0, 1, TimeUnit.SECONDS);
@@ -268,9 +532,10 @@ public abstract class OptimizerRunner implements Runnable {
 
             if (!cancelled.get()) {
                 optimizerDialog.setProgress("Setting optimization results ...");
-                optimizerDialog.setResults(optimizationResults);
+                publishResults();
                 optimizerDialog.setProgress("Saving optimization results ...");
                 saveToFile();
+                checkpoint.delete();
                 long end = System.currentTimeMillis();
                 long totalTimeInSecs = (end - start) / 1000;
                 showProgress(totalSteps, "Optimization");
@@ -280,7 +545,22 @@ public abstract class OptimizerRunner implements Runnable {
             MessageDialog.showException(t);
         } finally {
             progressExecutor.shutdownNow();
-            optimizationExecutor.shutdownNow();
+            optimizationPool.shutdownNow();
+            if (remoteOptimizer != null) {
+                remoteOptimizer.shutdown();
+            }
+            // the checkpoint of a cancelled or failed optimization is kept, so that it can be resumed
+            try {
+                checkpoint.close();
+            } catch (IOException ioe) {
+                Dispatcher.getInstance().getEventReport().report(ioe);
+            }
+            // the results file is kept for the optimization map
+            try {
+                resultsFile.close();
+            } catch (IOException ioe) {
+                Dispatcher.getInstance().getEventReport().report(ioe);
+            }
             optimizerDialog.signalCompleted();
         }
     }
@@ -290,7 +570,12 @@ public abstract class OptimizerRunner implements Runnable {
             if (!isCancelled()) {
                 long completed = completedSteps.get();
                 if (completed > 0) {
-                    showProgress(completed, "Optimizing " + totalStrategiesString + " strategies");
+                    String text = "Optimizing " + totalStrategiesString + " strategies";
+                    int pruned = prunedStrategies.get();
+                    if (pruned > 0) {
+                        text += ", " + gnf0.format(pruned) + " pruned";
+                    }
+                    showProgress(completed, text);
                 }
             }
         }
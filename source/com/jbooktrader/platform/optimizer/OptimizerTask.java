@@ -0,0 +1,56 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.strategy.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Fork/join task which optimizes a range of strategy parameter sets. A range larger than the
+ * maximum worker load is always split in halves. A smaller range is split further, down to the
+ * minimum worker load, only while the pool threads are running out of work to steal, so that
+ * the ranges become finer towards the end of the optimization, when the threads would otherwise
+ * be waiting for the last few workers to complete. The ranges which are not split are run by
+ * an OptimizerWorker, whose results are passed to the optimizer context.
+ *
+ * @author Eugene Kononov
+ */
+class OptimizerTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int SURPLUS_THRESHOLD = 2;
+    private final OptimizerContext optimizerContext;
+    private final List<StrategyParams> tasks;
+    private final int minLoad, maxLoad;
+
+    OptimizerTask(OptimizerContext optimizerContext, List<StrategyParams> tasks, int minLoad, int maxLoad) {
+        this.optimizerContext = optimizerContext;
+        this.tasks = tasks;
+        this.minLoad = minLoad;
+        this.maxLoad = maxLoad;
+    }
+
+    @Override
+    protected void compute() {
+        if (optimizerContext.isCancelled()) {
+            return;
+        }
+
+        int size = tasks.size();
+        boolean isSplit = size > maxLoad || (size >= 2 * minLoad && getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD);
+        if (isSplit) {
+            // the strategies with similar parameters are kept together, so that they share the indicators
+            int middle = size / 2;
+            invokeAll(new OptimizerTask(optimizerContext, tasks.subList(0, middle), minLoad, maxLoad),
+                    new OptimizerTask(optimizerContext, tasks.subList(middle, size), minLoad, maxLoad));
+        } else {
+            try {
+                List<StrategyParams> workerTasks = new ArrayList<>(tasks);
+                List<OptimizationResult> results = new OptimizerWorker(optimizerContext, workerTasks).call();
+                optimizerContext.workerCompleted(workerTasks, results);
+            } catch (JBookTraderException jbte) {
+                throw new CompletionException(jbte);
+            }
+        }
+    }
+}
@@ -4,7 +4,6 @@ import com.jbooktrader.platform.indicator.*;
 import com.jbooktrader.platform.marketbook.*;
 import com.jbooktrader.platform.model.*;
 import com.jbooktrader.platform.performance.*;
-import com.jbooktrader.platform.preferences.*;
 import com.jbooktrader.platform.schedule.*;
 import com.jbooktrader.platform.strategy.*;
 
@@ -12,64 +11,176 @@ import java.util.*;
 import java.util.concurrent.*;
 
 /**
+ * Runs the strategies with the parameter sets of the tasks through the snapshots. The strategies
+ * may be advanced through the snapshots in several steps, keeping their state between the steps,
+ * and the strategies which are no longer needed may be dropped between the steps. The strategies
+ * which fail the pruning rules are dropped as soon as they fail, and are left out of the results.
+ *
  * @author Eugene Kononov
  */
 public class OptimizerWorker implements Callable<List<OptimizationResult>> {
-    private final OptimizerRunner optimizerRunner;
+    private final OptimizerContext optimizerContext;
     private final List<StrategyParams> tasks;
-    private static final PreferencesHolder pref = PreferencesHolder.getInstance();
-    private static final String inclusionCriteria = pref.get(JBTPreferences.InclusionCriteria);
-
-    public OptimizerWorker(OptimizerRunner optimizerRunner, List<StrategyParams> tasks) {
-        this.optimizerRunner = optimizerRunner;
+    private final List<Strategy> strategies;
+    private final MarketBook marketBook;
+    private final IndicatorManager indicatorManager;
+    private TradingSchedule tradingSchedule;
+    private int position;// index of the next snapshot to process
+    private boolean isAcquired;
+
+    public OptimizerWorker(OptimizerContext optimizerContext, List<StrategyParams> tasks) {
+        this.optimizerContext = optimizerContext;
         this.tasks = tasks;
+        strategies = new ArrayList<>();
+        marketBook = new MarketBook();
+        indicatorManager = new IndicatorManager();
     }
 
     public List<OptimizationResult> call() throws JBookTraderException {
-        List<Strategy> strategies = new ArrayList<>();
-        List<OptimizationResult> optimizationResults = new LinkedList<>();
+        try {
+            advance(optimizerContext.getSnapshots().size());
+        } finally {
+            release();
+        }
+        return getResults();
+    }
 
-        MarketBook marketBook = new MarketBook();
-        IndicatorManager indicatorManager = new IndicatorManager();
+    /**
+     * Processes the snapshots up to, but not including, the snapshot with the specified index.
+     * The strategies are created on the first call.
+     */
+    public void advance(int end) throws JBookTraderException {
+        if (tradingSchedule == null) {
+            for (StrategyParams params : tasks) {
+                Strategy strategy = optimizerContext.getStrategyInstance(params);
+                strategy.setMarketBook(marketBook);
+                strategy.setIndicatorManager(indicatorManager);
+                strategy.setIndicators();
+                strategies.add(strategy);
+            }
+            tradingSchedule = strategies.get(0).getTradingSchedule();
+        }
 
-        for (StrategyParams params : tasks) {
-            Strategy strategy = optimizerRunner.getStrategyInstance(params);
-            strategy.setMarketBook(marketBook);
-            strategy.setIndicatorManager(indicatorManager);
-            strategy.setIndicators();
-            strategies.add(strategy);
+        if (!isAcquired) {
+            // the indicators shared with the other workers are calculated only once
+            indicatorManager.acquirePrecomputedValues(optimizerContext.getIndicatorSeriesCache());
+            isAcquired = true;
         }
 
-        TradingSchedule tradingSchedule = strategies.get(0).getTradingSchedule();
-        int strategiesCount = strategies.size();
-
-        List<MarketSnapshot> snapshots = optimizerRunner.getSnapshots();
-        long snapshotsCount = snapshots.size();
-        for (int count = 0; count < snapshotsCount; count++) {
-            MarketSnapshot marketSnapshot = snapshots.get(count);
-            marketBook.setSnapshot(marketSnapshot);
-            indicatorManager.updateIndicators();
-            boolean isInSchedule = tradingSchedule.contains(marketSnapshot.getTime());
-            if (count < snapshotsCount - 1) {
-                // ekk-needs optimization
-                isInSchedule = isInSchedule && !marketBook.isGapping(snapshots.get(count + 1));
+        SnapshotSeries snapshots = optimizerContext.getSnapshots();
+        int snapshotsCount = snapshots.size();
+        PruningRules pruningRules = optimizerContext.getPruningRules();
+        boolean isPruning = pruningRules.isEnabled();
+        int checkpointIndex = pruningRules.getCheckpointIndex(snapshotsCount);
+        for (; position < end; position++) {
+            marketBook.setSnapshot(snapshots, position);
+            indicatorManager.updateIndicators(position);
+            boolean isInSchedule = tradingSchedule.contains(marketBook.getTime());
+            if (position < snapshotsCount - 1) {
+                isInSchedule = isInSchedule && !marketBook.isGapping(snapshots.getTime(position + 1));
             }
 
             for (Strategy strategy : strategies) {
                 strategy.processInstant(isInSchedule);
             }
 
-            if (count % 5000 == 0) {
-                if (optimizerRunner.isCancelled()) {
+            if (isPruning) {
+                prune(pruningRules, position == checkpointIndex, snapshotsCount);
+                if (strategies.isEmpty()) {
+                    // the remaining snapshots were counted as completed by prune()
                     break;
                 }
-                optimizerRunner.iterationsCompleted(strategiesCount * 5000);
+            }
+
+            if (position % 5000 == 0) {
+                if (optimizerContext.isCancelled()) {
+                    break;
+                }
+                optimizerContext.iterationsCompleted(strategies.size() * 5000);
+            }
+        }
+    }
+
+    /**
+     * Drops the strategies which fail the pruning rules, and counts the snapshots they no longer
+     * have to process as completed.
+     */
+    private void prune(PruningRules pruningRules, boolean isCheckpoint, int snapshotsCount) {
+        int minTrades = optimizerContext.getMinTrades();
+        int prunedStrategies = 0;
+        Iterator<Strategy> iterator = strategies.iterator();
+        while (iterator.hasNext()) {
+            PerformanceManager performanceManager = iterator.next().getPerformanceManager();
+            if (pruningRules.isDrawdownExceeded(performanceManager) || (isCheckpoint && pruningRules.isCheckpointFailed(performanceManager, minTrades))) {
+                iterator.remove();
+                prunedStrategies++;
             }
         }
 
+        if (prunedStrategies > 0) {
+            optimizerContext.iterationsCompleted((long) prunedStrategies * (snapshotsCount - position - 1));
+            optimizerContext.strategiesPruned(prunedStrategies);
+        }
+    }
 
-        if (!optimizerRunner.isCancelled()) {
-            int minTrades = optimizerRunner.getMinTrades();
+    /**
+     * Releases the precomputed indicator values. The worker can not be advanced any further.
+     */
+    public void release() {
+        if (isAcquired) {
+            indicatorManager.releasePrecomputedValues();
+            isAcquired = false;
+        }
+    }
+
+    /**
+     * Drops the strategies whose parameter sets are not among the specified keys.
+     */
+    public void retain(Set<String> keys) {
+        Iterator<Strategy> iterator = strategies.iterator();
+        while (iterator.hasNext()) {
+            if (!keys.contains(iterator.next().getParams().getKey())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public List<StrategyParams> getTasks() {
+        return tasks;
+    }
+
+    public boolean isEmpty() {
+        return strategies.isEmpty();
+    }
+
+    /**
+     * Returns the number of strategies which have not been dropped.
+     */
+    public int size() {
+        return strategies.size();
+    }
+
+    /**
+     * Returns the performance of the strategies so far, without closing their positions, and
+     * without applying the inclusion criteria.
+     */
+    public List<OptimizationResult> getInterimResults() {
+        List<OptimizationResult> interimResults = new ArrayList<>();
+        for (Strategy strategy : strategies) {
+            interimResults.add(new OptimizationResult(strategy.getParams(), strategy.getPerformanceManager()));
+        }
+        return interimResults;
+    }
+
+    /**
+     * Closes the positions of the strategies, and returns the results of those which meet the
+     * inclusion criteria.
+     */
+    public List<OptimizationResult> getResults() {
+        List<OptimizationResult> optimizationResults = new LinkedList<>();
+        if (!optimizerContext.isCancelled()) {
+            int minTrades = optimizerContext.getMinTrades();
+            String inclusionCriteria = optimizerContext.getInclusionCriteria();
 
             for (Strategy strategy : strategies) {
                 strategy.closePosition();
@@ -0,0 +1,59 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.performance.*;
+
+/**
+ * Rules by which the optimizer workers stop simulating the strategies which can no longer make it
+ * into the optimization results. A strategy is pruned as soon as its maximum drawdown exceeds the
+ * limit. At the checkpoint, which is a fraction of the snapshots, a strategy is also pruned if its
+ * net profit is below the floor, or if its number of trades, projected to the end of the snapshots
+ * at the same rate, is below the minimum trades.
+ *
+ * @author Eugene Kononov
+ */
+public class PruningRules {
+    private final double maxDrawdown, checkpoint, netProfitFloor;
+
+    /**
+     * @param maxDrawdown    the drawdown limit, or 0 for no limit
+     * @param checkpoint     the fraction of the snapshots at which the checkpoint is, or 0 for no checkpoint
+     * @param netProfitFloor the net profit required at the checkpoint, or negative infinity for no floor
+     */
+    public PruningRules(double maxDrawdown, double checkpoint, double netProfitFloor) {
+        this.maxDrawdown = maxDrawdown;
+        this.checkpoint = checkpoint;
+        this.netProfitFloor = netProfitFloor;
+    }
+
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public double getCheckpoint() {
+        return checkpoint;
+    }
+
+    public double getNetProfitFloor() {
+        return netProfitFloor;
+    }
+
+    public boolean isEnabled() {
+        return maxDrawdown > 0 || checkpoint > 0;
+    }
+
+    /**
+     * Returns the index of the snapshot after which the checkpoint rules are applied, or -1 if
+     * there is no checkpoint.
+     */
+    public int getCheckpointIndex(int snapshotsCount) {
+        return (checkpoint > 0) ? (int) (snapshotsCount * checkpoint) - 1 : -1;
+    }
+
+    public boolean isDrawdownExceeded(PerformanceManager performanceManager) {
+        return maxDrawdown > 0 && performanceManager.getMaxDrawdown() > maxDrawdown;
+    }
+
+    public boolean isCheckpointFailed(PerformanceManager performanceManager, int minTrades) {
+        return performanceManager.getNetProfit() < netProfitFloor || performanceManager.getTrades() < minTrades * checkpoint;
+    }
+}
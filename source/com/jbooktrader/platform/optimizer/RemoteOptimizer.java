@@ -0,0 +1,307 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.indicator.*;
+import com.jbooktrader.platform.model.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.jbooktrader.platform.optimizer.RemoteOptimizerProtocol.*;
+
+/**
+ * Distributes the optimization of the strategy parameter sets between the remote optimizer workers
+ * and the local threads. The parameter sets are split into batches, which are taken from a shared
+ * queue by the local threads, and by the connections to the remote workers, which keep as many
+ * batches in flight as the worker has processors. A worker which closes the connection, or does not
+ * send a heartbeat within the HEARTBEAT_TIMEOUT, is dropped, and its batches in flight are put back
+ * in the queue to be reassigned, with the progress reported for them taken back. A worker which can
+ * not run the optimization, for example because its data set is different, is dropped as well. The
+ * optimization fails if a batch fails, or if all the workers are dropped and there are no local
+ * threads to complete it.
+ *
+ * @author Eugene Kononov
+ */
+public class RemoteOptimizer {
+    private final OptimizerContext optimizerContext;
+    private final String strategyClassName;
+    private final List<InetSocketAddress> workerAddresses;
+    private final int localThreads;
+    private final long datasetFingerprint;
+    private final ExecutorService executor;
+
+    public RemoteOptimizer(OptimizerContext optimizerContext, String strategyClassName, List<InetSocketAddress> workerAddresses, int localThreads) {
+        this.optimizerContext = optimizerContext;
+        this.strategyClassName = strategyClassName;
+        this.workerAddresses = workerAddresses;
+        this.localThreads = localThreads;
+        datasetFingerprint = IndicatorFileCache.getFingerprint(optimizerContext.getSnapshots());
+        executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Parses the comma-separated list of the worker addresses in the host:port format.
+     */
+    public static List<InetSocketAddress> getAddresses(String addresses) throws JBookTraderException {
+        List<InetSocketAddress> workerAddresses = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            address = address.trim();
+            if (address.isEmpty()) {
+                continue;
+            }
+            int separator = address.lastIndexOf(':');
+            try {
+                if (separator <= 0) {
+                    throw new NumberFormatException();
+                }
+                int port = Integer.parseInt(address.substring(separator + 1));
+                workerAddresses.add(new InetSocketAddress(address.substring(0, separator), port));
+            } catch (IllegalArgumentException iae) {
+                throw new JBookTraderException("Remote optimizer worker address " + address + " is not in the host:port format.");
+            }
+        }
+        return workerAddresses;
+    }
+
+    /**
+     * Starts the optimization of the parameter sets in batches of the specified size. The returned
+     * future completes when all the batches are completed, or when the optimization is cancelled.
+     */
+    public Future<Void> submit(List<StrategyParams> tasks, int batchSize) {
+        Optimization optimization = new Optimization();
+        int batchId = 0;
+        for (int from = 0; from < tasks.size(); from += batchSize) {
+            int to = Math.min(tasks.size(), from + batchSize);
+            optimization.pending.add(new Batch(batchId++, new ArrayList<>(tasks.subList(from, to))));
+        }
+        optimization.remaining = batchId;
+        return executor.submit(optimization);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static class Batch {
+        private final int id;
+        private final List<StrategyParams> tasks;
+        // the progress reported by the remote worker which has the batch in flight
+        private long iterationsCompleted;
+        private int strategiesPruned;
+
+        private Batch(int id, List<StrategyParams> tasks) {
+            this.id = id;
+            this.tasks = tasks;
+        }
+    }
+
+    /**
+     * A single run of the optimization, which waits for all of its batches to complete.
+     */
+    private class Optimization implements Callable<Void> {
+        private final BlockingDeque<Batch> pending = new LinkedBlockingDeque<>();
+        private final List<Socket> sockets = new ArrayList<>();
+        private final Object lock = new Object();
+        private int remaining, consumers;
+        private volatile boolean isFinished;
+        private JBookTraderException error;
+        private volatile String lastWorkerError = "";
+
+        public Void call() throws JBookTraderException, InterruptedException {
+            synchronized (lock) {
+                for (InetSocketAddress workerAddress : workerAddresses) {
+                    consumers++;
+                    executor.execute(new WorkerConnection(workerAddress));
+                }
+                for (int thread = 0; thread < localThreads; thread++) {
+                    consumers++;
+                    executor.execute(new LocalWorker());
+                }
+
+                try {
+                    while (remaining > 0 && error == null && consumers > 0 && !optimizerContext.isCancelled()) {
+                        lock.wait(HEARTBEAT_INTERVAL);
+                    }
+                } finally {
+                    isFinished = true;
+                    for (Socket socket : sockets) {
+                        close(socket);
+                    }
+                }
+
+                if (error != null) {
+                    throw error;
+                }
+                if (remaining > 0 && !optimizerContext.isCancelled()) {
+                    throw new JBookTraderException("All remote optimizer workers were lost. " + lastWorkerError);
+                }
+            }
+
+            return null;
+        }
+
+        private void completed(Batch batch, List<OptimizationResult> results) {
+            optimizerContext.workerCompleted(batch.tasks, results);
+            synchronized (lock) {
+                remaining--;
+                lock.notifyAll();
+            }
+        }
+
+        private void failed(JBookTraderException jbte) {
+            synchronized (lock) {
+                if (error == null) {
+                    error = jbte;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        private void consumerFinished() {
+            synchronized (lock) {
+                consumers--;
+                lock.notifyAll();
+            }
+        }
+
+        private void close(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+        }
+
+        /**
+         * Runs the batches in a local thread.
+         */
+        private class LocalWorker implements Runnable {
+            public void run() {
+                try {
+                    while (!isFinished) {
+                        Batch batch = pending.poll(HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+                        if (batch != null) {
+                            completed(batch, new OptimizerWorker(optimizerContext, batch.tasks).call());
+                        }
+                    }
+                } catch (JBookTraderException jbte) {
+                    failed(jbte);
+                } catch (InterruptedException ie) {
+                    // the optimizer is shut down
+                } catch (RuntimeException re) {
+                    failed(new JBookTraderException(re));
+                } finally {
+                    consumerFinished();
+                }
+            }
+        }
+
+        /**
+         * Sends the batches to a remote worker, and receives their results.
+         */
+        private class WorkerConnection implements Runnable {
+            private final InetSocketAddress workerAddress;
+            private final Map<Integer, Batch> batchesInFlight = new HashMap<>();
+
+            private WorkerConnection(InetSocketAddress workerAddress) {
+                this.workerAddress = workerAddress;
+            }
+
+            public void run() {
+                Socket socket = new Socket();
+                try {
+                    synchronized (lock) {
+                        if (isFinished) {
+                            return;
+                        }
+                        sockets.add(socket);
+                    }
+
+                    socket.connect(workerAddress, CONNECT_TIMEOUT);
+                    socket.setSoTimeout(HEARTBEAT_TIMEOUT);
+                    socket.setTcpNoDelay(true);
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(strategyClassName);
+                    out.writeLong(datasetFingerprint);
+                    out.writeInt(optimizerContext.getSnapshots().size());
+                    out.writeInt(optimizerContext.getMinTrades());
+                    out.writeUTF(optimizerContext.getInclusionCriteria());
+                    PruningRules pruningRules = optimizerContext.getPruningRules();
+                    out.writeDouble(pruningRules.getMaxDrawdown());
+                    out.writeDouble(pruningRules.getCheckpoint());
+                    out.writeDouble(pruningRules.getNetProfitFloor());
+                    out.flush();
+
+                    byte reply = in.readByte();
+                    if (reply == ERROR) {
+                        throw new IOException(in.readUTF());
+                    }
+                    if (reply != READY) {
+                        throw new IOException("Unexpected message " + reply);
+                    }
+                    int capacity = in.readInt();
+
+                    while (!isFinished) {
+                        while (batchesInFlight.size() < capacity) {
+                            Batch batch = pending.poll();
+                            if (batch == null) {
+                                break;
+                            }
+                            batchesInFlight.put(batch.id, batch);
+                            writeBatch(out, batch.id, batch.tasks);
+                        }
+
+                        // a message arrives at least once per heartbeat interval
+                        byte message = in.readByte();
+                        if (message == RESULTS) {
+                            Batch batch = batchesInFlight.remove(in.readInt());
+                            List<OptimizationResult> results = readResults(in);
+                            if (batch != null) {
+                                completed(batch, results);
+                            }
+                        } else if (message == HEARTBEAT) {
+                            int size = in.readInt();
+                            for (int index = 0; index < size; index++) {
+                                Batch batch = batchesInFlight.get(in.readInt());
+                                long iterations = in.readLong();
+                                int prunedStrategies = in.readInt();
+                                if (batch != null) {
+                                    batch.iterationsCompleted += iterations;
+                                    batch.strategiesPruned += prunedStrategies;
+                                    optimizerContext.iterationsCompleted(iterations);
+                                    optimizerContext.strategiesPruned(prunedStrategies);
+                                }
+                            }
+                        } else if (message == ERROR) {
+                            failed(new JBookTraderException("Remote optimizer worker " + workerAddress + ": " + in.readUTF()));
+                            return;
+                        } else {
+                            throw new IOException("Unexpected message " + message);
+                        }
+                    }
+                } catch (IOException ioe) {
+                    if (!isFinished) {
+                        lastWorkerError = "Remote optimizer worker " + workerAddress + ": " + ioe.getMessage();
+                    }
+                } finally {
+                    // the batches of a lost worker are reassigned first, and their progress is taken
+                    // back, so that it is not counted again by the worker they are reassigned to
+                    for (Batch batch : batchesInFlight.values()) {
+                        optimizerContext.iterationsCompleted(-batch.iterationsCompleted);
+                        optimizerContext.strategiesPruned(-batch.strategiesPruned);
+                        batch.iterationsCompleted = 0;
+                        batch.strategiesPruned = 0;
+                        pending.addFirst(batch);
+                    }
+                    close(socket);
+                    consumerFinished();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.jbooktrader.platform.optimizer;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Messages exchanged between the optimizer runner and the remote optimizer workers over TCP.
+ * <p/>
+ * The runner opens the connection with a HELLO, which describes the optimization: the strategy
+ * class, the fingerprint and the size of the data set, the results inclusion criteria, and the
+ * pruning rules. The worker replies with READY and the number of its processors, or with ERROR if
+ * it can not run the optimization, for example because its copy of the data set is different. The
+ * runner then sends the BATCH messages with the parameter sets to optimize, and the worker replies
+ * with the RESULTS of each batch. While connected, the worker sends a HEARTBEAT every
+ * HEARTBEAT_INTERVAL, and before the RESULTS of each batch, with the number of iterations completed
+ * and of the strategies pruned by each batch in flight since the previous one. A worker which fails
+ * to optimize a batch sends an ERROR. The optimization is over when the runner closes the
+ * connection.
+ *
+ * @author Eugene Kononov
+ */
+final class RemoteOptimizerProtocol {
+    static final int MAGIC = 0x4A42544F;// "JBTO"
+    static final int VERSION = 3;
+    static final long HEARTBEAT_INTERVAL = 1000;// 1 second
+    static final int HEARTBEAT_TIMEOUT = 15 * 1000;// 15 seconds
+    static final int CONNECT_TIMEOUT = 5 * 1000;// 5 seconds
+
+    static final byte READY = 1;
+    static final byte BATCH = 2;
+    static final byte RESULTS = 3;
+    static final byte HEARTBEAT = 4;
+    static final byte ERROR = 5;
+
+    private RemoteOptimizerProtocol() {
+    }
+
+    static void writeParams(DataOutputStream out, StrategyParams params) throws IOException {
+        out.writeInt(params.size());
+        for (StrategyParam param : params.getAll()) {
+            out.writeUTF(param.getName());
+            out.writeInt(param.getMin());
+            out.writeInt(param.getMax());
+            out.writeInt(param.getStep());
+            out.writeInt(param.getValue());
+        }
+    }
+
+    static StrategyParams readParams(DataInputStream in) throws IOException {
+        StrategyParams params = new StrategyParams();
+        int size = in.readInt();
+        for (int index = 0; index < size; index++) {
+            params.add(in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        }
+        return params;
+    }
+
+    static void writeBatch(DataOutputStream out, int batchId, List<StrategyParams> tasks) throws IOException {
+        out.writeByte(BATCH);
+        out.writeInt(batchId);
+        out.writeInt(tasks.size());
+        for (StrategyParams params : tasks) {
+            writeParams(out, params);
+        }
+        out.flush();
+    }
+
+    static List<StrategyParams> readBatch(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<StrategyParams> tasks = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            tasks.add(readParams(in));
+        }
+        return tasks;
+    }
+
+    static void writeResults(DataOutputStream out, int batchId, List<OptimizationResult> results) throws IOException {
+        out.writeByte(RESULTS);
+        out.writeInt(batchId);
+        out.writeInt(results.size());
+        for (OptimizationResult result : results) {
+            writeResult(out, result);
+        }
+        out.flush();
+    }
+
+    static List<OptimizationResult> readResults(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<OptimizationResult> results = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            results.add(readResult(in));
+        }
+        return results;
+    }
+
+    static void writeResult(DataOutputStream out, OptimizationResult result) throws IOException {
+        writeParams(out, result.getParams());
+        for (PerformanceMetric performanceMetric : PerformanceMetric.values()) {
+            out.writeDouble(result.get(performanceMetric));
+        }
+    }
+
+    static OptimizationResult readResult(DataInputStream in) throws IOException {
+        StrategyParams params = readParams(in);
+        double[] values = new double[PerformanceMetric.values().length];
+        for (int metric = 0; metric < values.length; metric++) {
+            values[metric] = in.readDouble();
+        }
+        return new OptimizationResult(params, values);
+    }
+}
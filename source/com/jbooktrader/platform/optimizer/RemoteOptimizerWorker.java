@@ -0,0 +1,370 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.indicator.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.strategy.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static com.jbooktrader.platform.optimizer.RemoteOptimizerProtocol.*;
+
+/**
+ * Optimizes the batches of strategy parameter sets sent by the optimizer runners on other machines,
+ * using its local copy of the historical data set. The batches are run by the optimizer workers on
+ * all processors of this machine, and their results are sent back as soon as they complete. Several
+ * workers can run on the same machine, listening on different ports, to test a distributed optimization
+ * without the remote machines.
+ * <p/>
+ * The worker does not authenticate the runners, so it listens on the loopback interface unless
+ * the address to listen on is specified, which should then be reachable from the trusted network
+ * only. The strategy class named by a runner is loaded only if it is a strategy.
+ * <p/>
+ * Usage: RemoteOptimizerWorker &lt;JBookTrader home directory&gt; &lt;port&gt; &lt;data file&gt; [&lt;bind address&gt;]
+ *
+ * @author Eugene Kononov
+ */
+public class RemoteOptimizerWorker {
+    private final SnapshotSeries snapshots;
+    private final IndicatorSeriesCache indicatorSeriesCache;
+    private final long datasetFingerprint;
+    private final ServerSocket serverSocket;
+    private final int availableProcessors;
+    private final ExecutorService sessionExecutor, optimizationExecutor;
+    private final ScheduledExecutorService heartbeatExecutor;
+    private final List<Session> sessions;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3 && args.length != 4) {
+            System.out.println("Usage: <JBookTrader home directory> <port> <data file> [<bind address>]");
+            System.exit(1);
+        }
+        InetAddress bindAddress = (args.length == 4) ? InetAddress.getByName(args[3]) : InetAddress.getLoopbackAddress();
+
+        Dispatcher dispatcher = Dispatcher.getInstance();
+        dispatcher.init(args[0]);
+        dispatcher.getTrader();
+        dispatcher.setMode(Mode.Optimization);
+
+        System.out.println("Loading historical data file " + args[2] + "...");
+        SnapshotSeries snapshots = new BackTestFileReader(args[2], null).load(new ProgressListener() {
+            public void setProgress(String progressText) {
+            }
+
+            public void setProgress(long count, long iterations, String progressText) {
+            }
+
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+
+        RemoteOptimizerWorker worker = new RemoteOptimizerWorker(snapshots, OptimizerRunner.getIndicatorFileCache(), bindAddress, Integer.parseInt(args[1]));
+        worker.start();
+        System.out.println("Listening on " + bindAddress.getHostAddress() + ":" + worker.getPort() + " with " + snapshots.size() + " snapshots.");
+    }
+
+    /**
+     * Creates the worker for the snapshots, listening on the specified address and port, or on any
+     * free port if the port is 0. The indicator file cache may be null.
+     */
+    public RemoteOptimizerWorker(SnapshotSeries snapshots, IndicatorFileCache indicatorFileCache, InetAddress bindAddress, int port) throws JBookTraderException {
+        this.snapshots = snapshots;
+        indicatorSeriesCache = new IndicatorSeriesCache(snapshots, indicatorFileCache);
+        datasetFingerprint = IndicatorFileCache.getFingerprint(snapshots);
+        try {
+            serverSocket = new ServerSocket(port, 0, bindAddress);
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not listen on " + bindAddress.getHostAddress() + ":" + port + ": " + ioe.getMessage(), ioe);
+        }
+
+        availableProcessors = Runtime.getRuntime().availableProcessors();
+        sessionExecutor = Executors.newCachedThreadPool();
+        optimizationExecutor = Executors.newFixedThreadPool(availableProcessors);
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+        sessions = new CopyOnWriteArrayList<>();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void start() {
+        heartbeatExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                for (Session session : sessions) {
+                    session.sendHeartbeat();
+                }
+            }
+        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+
+        sessionExecutor.execute(new Runnable() {
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        Session session = new Session(socket);
+                        sessions.add(session);
+                        sessionExecutor.execute(session);
+                    } catch (IOException ioe) {
+                        // the server socket is closed by stop()
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops accepting the connections, and drops the current ones, cancelling their optimizations.
+     */
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException ioe) {
+            // ignore
+        }
+        for (Session session : sessions) {
+            session.close();
+        }
+        heartbeatExecutor.shutdownNow();
+        sessionExecutor.shutdownNow();
+        optimizationExecutor.shutdownNow();
+    }
+
+    /**
+     * The optimization requested by an optimizer runner over a single connection.
+     */
+    private class Session implements Runnable {
+        private final Socket socket;
+        private final AtomicBoolean cancelled;
+        private final Map<Integer, BatchRunner> batchRunners;
+        private DataOutputStream out;
+        private volatile boolean isReady;
+        private Constructor<?> strategyConstructor;
+        private int minTrades;
+        private String inclusionCriteria;
+        private PruningRules pruningRules;
+
+        private Session(Socket socket) {
+            this.socket = socket;
+            cancelled = new AtomicBoolean();
+            batchRunners = new ConcurrentHashMap<>();
+        }
+
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                String error = readHello(in);
+                synchronized (out) {
+                    if (error != null) {
+                        out.writeByte(ERROR);
+                        out.writeUTF(error);
+                    } else {
+                        out.writeByte(READY);
+                        out.writeInt(availableProcessors);
+                    }
+                    out.flush();
+                }
+                isReady = (error == null);
+
+                while (error == null) {
+                    byte message = in.readByte();
+                    if (message != BATCH) {
+                        throw new IOException("Unexpected message " + message);
+                    }
+                    int batchId = in.readInt();
+                    List<StrategyParams> tasks = readBatch(in);
+                    BatchRunner batchRunner = new BatchRunner(batchId, tasks);
+                    batchRunners.put(batchId, batchRunner);
+                    optimizationExecutor.execute(batchRunner);
+                }
+            } catch (IOException ioe) {
+                // the connection was closed by the optimizer runner, or lost
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Reads the description of the optimization, and returns the reason why it can not be run,
+         * or null if it can.
+         */
+        private String readHello(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return "Remote optimizer protocol version mismatch.";
+            }
+
+            String strategyClassName = in.readUTF();
+            long fingerprint = in.readLong();
+            int snapshotCount = in.readInt();
+            minTrades = in.readInt();
+            inclusionCriteria = in.readUTF();
+            pruningRules = new PruningRules(in.readDouble(), in.readDouble(), in.readDouble());
+
+            if (fingerprint != datasetFingerprint || snapshotCount != snapshots.size()) {
+                return "The data set of the worker on port " + getPort() + " is different from the one being optimized.";
+            }
+
+            // the class is not initialized until it is known to be a strategy
+            Class<?> strategyClass;
+            try {
+                strategyClass = Class.forName(strategyClassName, false, RemoteOptimizerWorker.class.getClassLoader());
+            } catch (Exception e) {
+                return "Could not find strategy class " + strategyClassName;
+            }
+            if (!Strategy.class.isAssignableFrom(strategyClass)) {
+                return strategyClassName + " is not a strategy.";
+            }
+
+            try {
+                strategyConstructor = strategyClass.getConstructor(StrategyParams.class);
+            } catch (Exception e) {
+                return "Could not find strategy constructor for " + strategyClassName;
+            }
+
+            return null;
+        }
+
+        private void sendHeartbeat() {
+            if (!isReady || cancelled.get()) {
+                return;
+            }
+            try {
+                synchronized (out) {
+                    writeHeartbeat();
+                    out.flush();
+                }
+            } catch (IOException ioe) {
+                close();
+            }
+        }
+
+        /**
+         * Writes the heartbeat, without flushing it. The caller must hold the lock of the output.
+         */
+        private void writeHeartbeat() throws IOException {
+            List<BatchRunner> runners = new ArrayList<>(batchRunners.values());
+            out.writeByte(HEARTBEAT);
+            out.writeInt(runners.size());
+            for (BatchRunner runner : runners) {
+                out.writeInt(runner.batchId);
+                out.writeLong(runner.iterationsCompleted.getAndSet(0));
+                out.writeInt(runner.strategiesPruned.getAndSet(0));
+            }
+        }
+
+        private void close() {
+            cancelled.set(true);
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+        }
+
+        /**
+         * Runs a batch of the session, and sends its results, or the reason of its failure. The
+         * progress of the batch is reported separately from the other batches, so that the runner
+         * can take it back if the batch is reassigned.
+         */
+        private class BatchRunner implements Runnable, OptimizerContext {
+            private final int batchId;
+            private final List<StrategyParams> tasks;
+            private final AtomicLong iterationsCompleted;
+            private final AtomicInteger strategiesPruned;
+
+            private BatchRunner(int batchId, List<StrategyParams> tasks) {
+                this.batchId = batchId;
+                this.tasks = tasks;
+                iterationsCompleted = new AtomicLong();
+                strategiesPruned = new AtomicInteger();
+            }
+
+            public void run() {
+                if (cancelled.get()) {
+                    return;
+                }
+
+                try {
+                    try {
+                        List<OptimizationResult> results = new OptimizerWorker(this, tasks).call();
+                        if (!cancelled.get()) {
+                            synchronized (out) {
+                                // the progress of the batch is reported before its results
+                                writeHeartbeat();
+                                batchRunners.remove(batchId);
+                                writeResults(out, batchId, results);
+                            }
+                        }
+                    } catch (Exception e) {
+                        String message = e.getMessage();
+                        synchronized (out) {
+                            batchRunners.remove(batchId);
+                            out.writeByte(ERROR);
+                            out.writeUTF(message != null ? message : e.toString());
+                            out.flush();
+                        }
+                    }
+                } catch (IOException ioe) {
+                    close();
+                }
+            }
+
+            public Strategy getStrategyInstance(StrategyParams params) throws JBookTraderException {
+                try {
+                    return (Strategy) strategyConstructor.newInstance(params);
+                } catch (InvocationTargetException ite) {
+                    throw new JBookTraderException(ite.getCause());
+                } catch (Exception e) {
+                    throw new JBookTraderException(e);
+                }
+            }
+
+            public SnapshotSeries getSnapshots() {
+                return snapshots;
+            }
+
+            public IndicatorSeriesCache getIndicatorSeriesCache() {
+                return indicatorSeriesCache;
+            }
+
+            public int getMinTrades() {
+                return minTrades;
+            }
+
+            public String getInclusionCriteria() {
+                return inclusionCriteria;
+            }
+
+            public PruningRules getPruningRules() {
+                return pruningRules;
+            }
+
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+
+            public void iterationsCompleted(long iterations) {
+                iterationsCompleted.getAndAdd(iterations);
+            }
+
+            public void strategiesPruned(int prunedStrategies) {
+                strategiesPruned.getAndAdd(prunedStrategies);
+            }
+
+            public void workerCompleted(List<StrategyParams> tasks, List<OptimizationResult> results) {
+                // the results are sent by the batch runner along with the id of their batch
+            }
+        }
+    }
+}
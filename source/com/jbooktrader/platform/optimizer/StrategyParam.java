@@ -62,6 +62,13 @@ public class StrategyParam {
         this.step = step;
     }
 
+    /**
+     * Returns the number of values from min to max with the step.
+     */
+    public int getValueCount() {
+        return (max - min) / step + 1;
+    }
+
     public int getValue() {
         return value;
     }
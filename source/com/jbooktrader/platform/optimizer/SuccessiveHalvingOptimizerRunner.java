@@ -0,0 +1,211 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.preferences.*;
+import com.jbooktrader.platform.strategy.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Searches the strategy parameter space by successive halving. All the parameter sets of the grid
+ * are evaluated on the first, small, part of the snapshots. Then only the best of them, ranked by the
+ * selection criteria, are run through the next part of the snapshots, and so on, until the survivors
+ * of the last rung reach the end of the snapshots. The data parts grow, and the survivors shrink, by
+ * the reduction factor from one rung to the next. The strategies of the survivors keep their state
+ * between the rungs, so that the snapshots already processed are never processed again.
+ * <p/>
+ * The strategies of the first rung are created in waves, and after each wave only the strategies
+ * which may still survive the rung are kept. The number of strategies in memory is then bounded by
+ * the number of survivors of the first rung, which is limited to MAX_SURVIVORS.
+ *
+ * @author Eugene Kononov
+ */
+public class SuccessiveHalvingOptimizerRunner extends OptimizerRunner {
+    private static final int MAX_SURVIVORS = 100000;
+    private static final int WAVES_PER_SURVIVORS = 4;
+    private final PerformanceMetric selectionCriteria;
+    private final int reductionFactor, rungs;
+
+    public SuccessiveHalvingOptimizerRunner(OptimizerDialog optimizerDialog, Strategy strategy, StrategyParams params) throws JBookTraderException {
+        super(optimizerDialog, strategy, params);
+
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        reductionFactor = prefs.getInt(JBTPreferences.HalvingReductionFactor);
+        rungs = prefs.getInt(JBTPreferences.HalvingRungs);
+        if (reductionFactor < 2 || rungs < 1) {
+            throw new JBookTraderException("The successive halving reduction factor must be at least 2, and the number of rungs at least 1.");
+        }
+
+        selectionCriteria = optimizerDialog.getSelectionCriteria();
+    }
+
+    @Override
+    public void optimize() throws JBookTraderException {
+        List<StrategyParams> tasks = new ArrayList<>(getTasks(strategyParams));
+        int tasksSize = tasks.size();
+        int maxSurvivors = getSurvivors(tasksSize);
+        if (rungs > 1 && maxSurvivors > MAX_SURVIVORS) {
+            String msg = "The parameter grid of " + tasksSize + " strategies is too large for successive halving with the reduction factor of " + reductionFactor + ". ";
+            msg += "At most " + MAX_SURVIVORS + " strategies can be kept between the rungs. Narrow the parameter ranges, or increase the reduction factor.";
+            throw new JBookTraderException(msg);
+        }
+        setTotalStrategies(tasksSize);
+
+        // the end of the snapshots processed by each rung
+        int[] ends = new int[rungs];
+        for (int rung = 0; rung < rungs; rung++) {
+            ends[rung] = (int) Math.max(1, snapshotCount / Math.pow(reductionFactor, rungs - 1 - rung));
+        }
+        ends[rungs - 1] = (int) snapshotCount;
+
+        long totalSteps = 0;
+        int survivors = tasksSize;
+        for (int rung = 0; rung < rungs; rung++) {
+            totalSteps += (long) survivors * (ends[rung] - ((rung == 0) ? 0 : ends[rung - 1]));
+            survivors = getSurvivors(survivors);
+        }
+        setTotalSteps(totalSteps);
+
+        int load = getMaxLoad(tasksSize);
+        int waveSize = load * Math.max(availableProcessors, maxSurvivors / WAVES_PER_SURVIVORS / load);
+
+        List<OptimizerWorker> workers = new ArrayList<>();
+        try {
+            // the strategies of a wave are dropped as soon as they can no longer survive the first rung
+            int candidates = 0;
+            for (int waveStart = 0; waveStart < tasksSize && !cancelled.get(); waveStart += waveSize) {
+                // the strategies with similar parameters are kept together, so that they share the indicators
+                List<OptimizerWorker> wave = new ArrayList<>();
+                int waveEnd = Math.min(tasksSize, waveStart + waveSize);
+                for (int index = waveStart; index < waveEnd; index += load) {
+                    wave.add(new OptimizerWorker(this, tasks.subList(index, Math.min(waveEnd, index + load))));
+                }
+                workers.addAll(wave);
+                advance(wave, ends[0]);
+                if (cancelled.get()) {
+                    break;
+                }
+
+                candidates += getStrategies(wave);
+                if (rungs == 1) {
+                    complete(workers);
+                } else {
+                    prune(workers, ends[0], maxSurvivors);
+                }
+            }
+            if (rungs > 1 && !cancelled.get()) {
+                prune(workers, ends[0], getSurvivors(candidates));
+            }
+
+            for (int rung = 1; rung < rungs && !cancelled.get(); rung++) {
+                advance(workers, ends[rung]);
+                if (cancelled.get()) {
+                    break;
+                }
+
+                if (rung == rungs - 1) {
+                    complete(workers);
+                } else {
+                    prune(workers, ends[rung], getSurvivors(getStrategies(workers)));
+                }
+            }
+        } finally {
+            for (OptimizerWorker worker : workers) {
+                worker.release();
+            }
+        }
+
+        publishResults();
+        if (topResults.isEmpty() && !cancelled.get()) {
+            throw new JBookTraderException("No strategies found within the specified parameter boundaries.");
+        }
+    }
+
+    /**
+     * The strategies of the survivors can not be restored from a checkpoint.
+     */
+    @Override
+    protected boolean isResumable() {
+        return false;
+    }
+
+    private int getSurvivors(int candidates) {
+        return (candidates + reductionFactor - 1) / reductionFactor;
+    }
+
+    private static int getStrategies(List<OptimizerWorker> workers) {
+        int strategies = 0;
+        for (OptimizerWorker worker : workers) {
+            strategies += worker.size();
+        }
+        return strategies;
+    }
+
+    /**
+     * Reports the results of the workers which have reached the end of the snapshots, and drops them.
+     */
+    private void complete(List<OptimizerWorker> workers) {
+        for (OptimizerWorker worker : workers) {
+            workerCompleted(worker.getTasks(), worker.getResults());
+            worker.release();
+        }
+        workers.clear();
+    }
+
+    /**
+     * Advances the workers in parallel to the end of the rung.
+     */
+    private void advance(List<OptimizerWorker> workers, final int end) throws JBookTraderException {
+        List<Callable<Void>> advances = new ArrayList<>();
+        for (final OptimizerWorker worker : workers) {
+            advances.add(new Callable<Void>() {
+                public Void call() throws JBookTraderException {
+                    worker.advance(end);
+                    return null;
+                }
+            });
+        }
+        invokeAll(advances);
+    }
+
+    /**
+     * Keeps only the specified number of the best strategies of the rung, and drops the workers left
+     * without strategies. The strategies which have made fewer trades than the minimum trades prorated
+     * to the end of the rung are ranked below the rest.
+     */
+    private void prune(List<OptimizerWorker> workers, int end, int survivorsCount) {
+        List<OptimizationResult> interimResults = new ArrayList<>();
+        for (OptimizerWorker worker : workers) {
+            interimResults.addAll(worker.getInterimResults());
+        }
+
+        final int minTrades = (int) (getMinTrades() * (end / (double) snapshotCount));
+        final ResultComparator resultComparator = new ResultComparator(selectionCriteria);
+        Collections.sort(interimResults, new Comparator<OptimizationResult>() {
+            public int compare(OptimizationResult result1, OptimizationResult result2) {
+                boolean isIncluded1 = result1.get(PerformanceMetric.Trades) >= minTrades;
+                boolean isIncluded2 = result2.get(PerformanceMetric.Trades) >= minTrades;
+                if (isIncluded1 != isIncluded2) {
+                    return isIncluded1 ? -1 : 1;
+                }
+                return resultComparator.compare(result1, result2);
+            }
+        });
+
+        Set<String> survivors = new HashSet<>();
+        for (OptimizationResult result : interimResults.subList(0, Math.min(survivorsCount, interimResults.size()))) {
+            survivors.add(result.getParams().getKey());
+        }
+
+        Iterator<OptimizerWorker> iterator = workers.iterator();
+        while (iterator.hasNext()) {
+            OptimizerWorker worker = iterator.next();
+            worker.retain(survivors);
+            if (worker.isEmpty()) {
+                worker.release();
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.preferences.*;
+import com.jbooktrader.platform.strategy.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Searches the strategy parameter space with a surrogate model, for the strategies which are too
+ * expensive to evaluate exhaustively. The search starts with a Latin hypercube sample of the parameter
+ * grid. Then a Gaussian process is fitted to the values of the selection criteria evaluated so far, and
+ * the next batch of parameter sets is chosen from the candidates by their expected improvement over the
+ * best value. The expected improvement of the candidates near a parameter set already chosen for the
+ * batch is penalized, so that the batch, which is evaluated in parallel, is spread over the promising
+ * regions. The search stops when the evaluation budget is spent.
+ *
+ * @author Eugene Kononov
+ */
+public class SurrogateOptimizerRunner extends OptimizerRunner {
+    private static final int RANDOM_CANDIDATES = 500;
+    private static final int NEIGHBORHOOD_CANDIDATES = 20;// per each of the top parameter sets
+    private static final int TOP_PARAMS = 5;
+    private final Map<String, OptimizationResult> fitnessCache;
+    private final List<OptimizationResult> batchResults;
+    private final List<StrategyParams> evaluatedParams;
+    private final PerformanceMetric selectionCriteria;
+    private final Random random;
+    private final int budget, batchSize;
+
+    public SurrogateOptimizerRunner(OptimizerDialog optimizerDialog, Strategy strategy, StrategyParams params) throws JBookTraderException {
+        super(optimizerDialog, strategy, params);
+
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        budget = prefs.getInt(JBTPreferences.SurrogateBudget);
+        batchSize = prefs.getInt(JBTPreferences.SurrogateBatchSize);
+        if (budget < 1 || batchSize < 1) {
+            throw new JBookTraderException("The surrogate evaluation budget and batch size must be positive.");
+        }
+
+        selectionCriteria = optimizerDialog.getSelectionCriteria();
+        fitnessCache = new HashMap<>();
+        batchResults = new ArrayList<>();
+        evaluatedParams = new ArrayList<>();
+        random = new Random();
+    }
+
+    @Override
+    public void optimize() throws JBookTraderException {
+        int dimensions = strategyParams.size();
+        long searchSpaceSize = 1;
+        for (StrategyParam param : strategyParams.getAll()) {
+            searchSpaceSize = Math.min(Integer.MAX_VALUE, searchSpaceSize * param.getValueCount());
+        }
+        int maxEvaluations = (int) Math.min(budget, searchSpaceSize);
+        setTotalStrategies(maxEvaluations);
+        setTotalSteps(snapshotCount * maxEvaluations);
+
+        evaluate(getLatinHypercubeSample(Math.min(maxEvaluations, Math.max(batchSize, 2 * (dimensions + 1)))));
+
+        GaussianProcess gaussianProcess = new GaussianProcess();
+        while (evaluatedParams.size() < maxEvaluations && !cancelled.get()) {
+            double[][] points = new double[evaluatedParams.size()][];
+            double[] values = getValues();
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int index = 0; index < points.length; index++) {
+                points[index] = toPoint(evaluatedParams.get(index));
+                bestValue = Math.max(bestValue, values[index]);
+            }
+            gaussianProcess.fit(points, values);
+
+            List<StrategyParams> candidates = getCandidates();
+            int candidatesSize = candidates.size();
+            double[][] candidatePoints = new double[candidatesSize][];
+            double[] expectedImprovements = new double[candidatesSize];
+            for (int index = 0; index < candidatesSize; index++) {
+                candidatePoints[index] = toPoint(candidates.get(index));
+                expectedImprovements[index] = gaussianProcess.getExpectedImprovement(candidatePoints[index], bestValue);
+            }
+
+            List<StrategyParams> batch = new ArrayList<>();
+            int size = Math.min(candidatesSize, Math.min(batchSize, maxEvaluations - evaluatedParams.size()));
+            while (batch.size() < size) {
+                int selected = 0;
+                for (int index = 1; index < candidatesSize; index++) {
+                    if (expectedImprovements[index] > expectedImprovements[selected]) {
+                        selected = index;
+                    }
+                }
+                batch.add(candidates.get(selected));
+                for (int index = 0; index < candidatesSize; index++) {
+                    double similarity = GaussianProcess.kernel(candidatePoints[index], candidatePoints[selected], gaussianProcess.getLengthScale());
+                    expectedImprovements[index] *= (1 - similarity);
+                }
+                expectedImprovements[selected] = Double.NEGATIVE_INFINITY;
+            }
+
+            if (batch.isEmpty()) {
+                break;
+            }
+            evaluate(batch);
+        }
+
+        if (topResults.isEmpty() && !cancelled.get()) {
+            throw new JBookTraderException("No strategies found within the specified parameter boundaries.");
+        }
+    }
+
+    /**
+     * Evaluates the parameter sets in parallel, and caches their results.
+     */
+    private void evaluate(List<StrategyParams> batch) throws JBookTraderException {
+        Queue<StrategyParams> tasks = new LinkedBlockingQueue<>();
+        for (StrategyParams params : batch) {
+            fitnessCache.put(params.getKey(), null);
+            evaluatedParams.add(params);
+            tasks.add(params);
+        }
+        execute(tasks);
+
+        // the parameter sets excluded from the results remain in the cache without a result
+        synchronized (batchResults) {
+            for (OptimizationResult result : batchResults) {
+                fitnessCache.put(result.getParams().getKey(), result);
+            }
+            batchResults.clear();
+        }
+    }
+
+    /**
+     * Collects the results of the batch being evaluated, for the fitness cache.
+     */
+    @Override
+    protected void addResults(List<OptimizationResult> results) {
+        super.addResults(results);
+        synchronized (batchResults) {
+            batchResults.addAll(results);
+        }
+    }
+
+    /**
+     * Returns the values of the selection criteria of the evaluated parameter sets. The infinite values
+     * are replaced by the largest finite value, and the parameter sets excluded from the results are
+     * given the smallest value.
+     */
+    private double[] getValues() {
+        int size = evaluatedParams.size();
+        double[] values = new double[size];
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int index = 0; index < size; index++) {
+            OptimizationResult result = fitnessCache.get(evaluatedParams.get(index).getKey());
+            values[index] = (result == null) ? Double.NaN : result.get(selectionCriteria);
+            if (!Double.isNaN(values[index]) && !Double.isInfinite(values[index])) {
+                min = Math.min(min, values[index]);
+                max = Math.max(max, values[index]);
+            }
+        }
+
+        if (min > max) {
+            min = max = 0;
+        }
+        for (int index = 0; index < size; index++) {
+            if (Double.isNaN(values[index])) {
+                values[index] = min;
+            } else if (Double.isInfinite(values[index])) {
+                values[index] = (values[index] > 0) ? max : min;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the parameter sets not evaluated yet, sampled randomly from the whole grid, and from the
+     * neighborhoods of the best parameter sets evaluated so far.
+     */
+    private List<StrategyParams> getCandidates() {
+        Map<String, StrategyParams> candidates = new LinkedHashMap<>();
+        for (int candidate = 0; candidate < RANDOM_CANDIDATES; candidate++) {
+            StrategyParams params = new StrategyParams(strategyParams);
+            for (StrategyParam param : params.getAll()) {
+                param.setValue(param.getMin() + random.nextInt(param.getValueCount()) * param.getStep());
+            }
+            addCandidate(candidates, params);
+        }
+
+        List<OptimizationResult> sortedResults = topResults.getSortedResults();
+        for (OptimizationResult result : sortedResults.subList(0, Math.min(TOP_PARAMS, sortedResults.size()))) {
+            for (int candidate = 0; candidate < NEIGHBORHOOD_CANDIDATES; candidate++) {
+                StrategyParams params = new StrategyParams(result.getParams());
+                StrategyParam param = params.get(random.nextInt(params.size()));
+                int displacement = (1 + random.nextInt(2)) * (random.nextBoolean() ? 1 : -1) * param.getStep();
+                param.setValue(Math.max(param.getMin(), Math.min(param.getMax(), param.getValue() + displacement)));
+                addCandidate(candidates, params);
+            }
+        }
+
+        return new ArrayList<>(candidates.values());
+    }
+
+    private void addCandidate(Map<String, StrategyParams> candidates, StrategyParams params) {
+        String key = params.getKey();
+        if (!fitnessCache.containsKey(key)) {
+            candidates.put(key, params);
+        }
+    }
+
+    /**
+     * Returns the sample of the parameter grid in which each interval of each parameter, out of
+     * as many intervals as there are parameter sets in the sample, is represented once.
+     */
+    private List<StrategyParams> getLatinHypercubeSample(int size) {
+        List<StrategyParams> sample = new ArrayList<>();
+        for (int index = 0; index < size; index++) {
+            sample.add(new StrategyParams(strategyParams));
+        }
+
+        for (int dimension = 0; dimension < strategyParams.size(); dimension++) {
+            List<Integer> intervals = new ArrayList<>();
+            for (int interval = 0; interval < size; interval++) {
+                intervals.add(interval);
+            }
+            Collections.shuffle(intervals, random);
+
+            for (int index = 0; index < size; index++) {
+                StrategyParam param = sample.get(index).get(dimension);
+                int valueCount = param.getValueCount();
+                double position = (intervals.get(index) + random.nextDouble()) / size;
+                int valueIndex = Math.min(valueCount - 1, (int) (position * valueCount));
+                param.setValue(param.getMin() + valueIndex * param.getStep());
+            }
+        }
+
+        // the duplicates, which are possible in a coarse grid, are evaluated once
+        Map<String, StrategyParams> uniqueSample = new LinkedHashMap<>();
+        for (StrategyParams params : sample) {
+            uniqueSample.put(params.getKey(), params);
+        }
+        return new ArrayList<>(uniqueSample.values());
+    }
+
+    /**
+     * Returns the parameter values scaled to the unit hypercube.
+     */
+    private static double[] toPoint(StrategyParams params) {
+        double[] point = new double[params.size()];
+        int dimension = 0;
+        for (StrategyParam param : params.getAll()) {
+            int range = param.getMax() - param.getMin();
+            point[dimension++] = (range == 0) ? 0 : (param.getValue() - param.getMin()) / (double) range;
+        }
+        return point;
+    }
+}
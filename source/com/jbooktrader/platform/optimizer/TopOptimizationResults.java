@@ -0,0 +1,62 @@
+package com.jbooktrader.platform.optimizer;
+
+import java.util.*;
+
+/**
+ * Keeps the best optimization results, up to the capacity, ranked by the result comparator. The
+ * results are kept in a heap whose head is the worst of them, so that adding a result takes
+ * logarithmic time, and a result worse than all of the kept ones is rejected in constant time.
+ * The results are added by the optimizer workers concurrently, a worker at a time.
+ *
+ * @author Eugene Kononov
+ */
+public class TopOptimizationResults {
+    private final Comparator<OptimizationResult> comparator;
+    private final PriorityQueue<OptimizationResult> results;
+    private int capacity;
+
+    public TopOptimizationResults(Comparator<OptimizationResult> comparator, int capacity) {
+        this.comparator = comparator;
+        this.capacity = capacity;
+        results = new PriorityQueue<>(Math.min(capacity, 1024), Collections.reverseOrder(comparator));
+    }
+
+    /**
+     * Increases the capacity. The results rejected before the increase are not restored.
+     */
+    public synchronized void ensureCapacity(int capacity) {
+        this.capacity = Math.max(this.capacity, capacity);
+    }
+
+    public synchronized void add(OptimizationResult result) {
+        if (results.size() < capacity) {
+            results.add(result);
+        } else if (comparator.compare(result, results.peek()) < 0) {
+            results.poll();
+            results.add(result);
+        }
+    }
+
+    public synchronized void addAll(Collection<OptimizationResult> newResults) {
+        for (OptimizationResult result : newResults) {
+            add(result);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return results.isEmpty();
+    }
+
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * Returns the kept results, the best one first.
+     */
+    public synchronized List<OptimizationResult> getSortedResults() {
+        List<OptimizationResult> sortedResults = new ArrayList<>(results);
+        Collections.sort(sortedResults, comparator);
+        return sortedResults;
+    }
+}
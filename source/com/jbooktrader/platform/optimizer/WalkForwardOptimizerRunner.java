@@ -0,0 +1,348 @@
+package com.jbooktrader.platform.optimizer;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.chart.*;
+import com.jbooktrader.platform.indicator.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.performance.*;
+import com.jbooktrader.platform.preferences.*;
+import com.jbooktrader.platform.report.*;
+import com.jbooktrader.platform.strategy.*;
+import com.jbooktrader.platform.util.format.*;
+
+import javax.swing.*;
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Runs a walk-forward optimization. The snapshots are sliced into the trading sessions, and the
+ * sessions into rolling windows, each made of the in-sample sessions followed by the out-of-sample
+ * sessions. From one window to the next, the windows roll forward by the out-of-sample sessions, so
+ * that the out-of-sample periods follow each other. The parameter grid is optimized on the in-sample
+ * period of each window, and the best parameter set, by the selection criteria, is back tested on the
+ * out-of-sample period. The windows are independent of each other, and are optimized concurrently by
+ * the optimization pool. Each window works with a view of the snapshots loaded once for the whole run,
+ * and the precomputed indicator values of the windows share one memory limit.
+ * <p/>
+ * The out-of-sample results of the windows are shown in the results table in the order of the windows,
+ * rather than ranked among the best results, and written to the walk-forward report, along with the
+ * out-of-sample equity curve stitched from the windows, which is also charted.
+ *
+ * @author Eugene Kononov
+ */
+public class WalkForwardOptimizerRunner extends OptimizerRunner {
+    private final OptimizerDialog optimizerDialog;
+    private final String strategyName;
+    private final TimeZone timeZone;
+    private final PerformanceMetric selectionCriteria;
+    private final int inSampleSessions, outOfSampleSessions;
+    private final List<OptimizationResult> windowResults;
+
+    public WalkForwardOptimizerRunner(OptimizerDialog optimizerDialog, Strategy strategy, StrategyParams params) throws JBookTraderException {
+        super(optimizerDialog, strategy, params);
+        this.optimizerDialog = optimizerDialog;
+        strategyName = strategy.getName();
+        timeZone = strategy.getTradingSchedule().getTimeZone();
+        selectionCriteria = optimizerDialog.getSelectionCriteria();
+        windowResults = Collections.synchronizedList(new ArrayList<OptimizationResult>());
+
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        inSampleSessions = prefs.getInt(JBTPreferences.WalkForwardInSampleSessions);
+        outOfSampleSessions = prefs.getInt(JBTPreferences.WalkForwardOutOfSampleSessions);
+        if (inSampleSessions < 1 || outOfSampleSessions < 1) {
+            throw new JBookTraderException("The walk-forward in-sample and out-of-sample sessions must be positive.");
+        }
+    }
+
+    /**
+     * The windows are optimized in parallel, rather than by execute().
+     */
+    @Override
+    protected boolean isResumable() {
+        return false;
+    }
+
+    /**
+     * Shows the out-of-sample results of the windows, in the order of the windows. They are not
+     * mapped, since each of them comes from different data.
+     */
+    @Override
+    protected void publishResults() {
+        optimizerDialog.setResults(new ArrayList<>(windowResults), null);
+    }
+
+    @Override
+    public void optimize() throws JBookTraderException {
+        windowResults.clear();
+        SnapshotSeries snapshots = getSnapshots();
+        List<Integer> sessionStarts = BackTester.getSessionStarts(snapshots);
+        int sessions = sessionStarts.size();
+        List<StrategyParams> tasks = new ArrayList<>(getTasks(strategyParams));
+
+        AtomicLong indicatorMemory = new AtomicLong();
+        List<Window> windows = new ArrayList<>();
+        for (int[] bounds : getWindowBounds(sessionStarts, snapshots.size(), inSampleSessions, outOfSampleSessions)) {
+            SnapshotSeries inSample = snapshots.subSeries(bounds[0], bounds[1]);
+            SnapshotSeries outOfSample = snapshots.subSeries(bounds[1], bounds[2]);
+            windows.add(new Window(windows.size() + 1, tasks, inSample, outOfSample, indicatorMemory));
+        }
+
+        if (windows.isEmpty()) {
+            throw new JBookTraderException("The data contains " + sessions + " trading sessions, but a walk-forward window takes " + (inSampleSessions + 1) + " or more.");
+        }
+
+        long totalSteps = 0;
+        for (Window window : windows) {
+            totalSteps += (long) tasks.size() * window.inSample.size() + window.outOfSample.size();
+        }
+        setTotalSteps(totalSteps);
+        setTotalStrategies((long) tasks.size() * windows.size());
+
+        invokeAll(windows);
+        if (cancelled.get()) {
+            return;
+        }
+
+        List<Long> windowStarts = new ArrayList<>();
+        List<List<TimedValue>> windowEquities = new ArrayList<>();
+        List<Double> windowNetProfits = new ArrayList<>();
+        for (Window window : windows) {
+            windowStarts.add(window.outOfSample.getTime(0));
+            if (window.outOfSampleResult != null) {
+                windowEquities.add(window.equity);
+                windowNetProfits.add(window.outOfSampleResult.get(PerformanceMetric.NetProfit));
+                windowResults.add(window.outOfSampleResult);
+            }
+        }
+        List<TimedValue> equity = stitchEquity(windowEquities, windowNetProfits);
+        publishResults();
+
+        if (windowResults.isEmpty()) {
+            throw new JBookTraderException("No strategies found within the specified parameter boundaries in any of the walk-forward windows.");
+        }
+
+        try {
+            saveReport(windows, equity);
+        } catch (IOException ioe) {
+            throw new JBookTraderException("Could not write the walk-forward report: " + ioe.getMessage(), ioe);
+        }
+
+        final WalkForwardChart walkForwardChart = new WalkForwardChart(optimizerDialog, strategyName, equity, windowStarts);
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                walkForwardChart.getChartFrame().setVisible(true);
+            }
+        });
+    }
+
+    /**
+     * Slices the sessions into the walk-forward windows. Each window is returned as the index of its first
+     * in-sample snapshot, the index of its first out-of-sample snapshot, and the index following its last
+     * out-of-sample snapshot. The out-of-sample period of the last window may have fewer sessions.
+     */
+    public static List<int[]> getWindowBounds(List<Integer> sessionStarts, int snapshotsCount, int inSampleSessions, int outOfSampleSessions) {
+        List<int[]> windowBounds = new ArrayList<>();
+        int sessions = sessionStarts.size();
+        for (int session = 0; session + inSampleSessions < sessions; session += outOfSampleSessions) {
+            int inSampleStart = sessionStarts.get(session);
+            int outOfSampleStart = sessionStarts.get(session + inSampleSessions);
+            int outOfSampleSession = session + inSampleSessions + outOfSampleSessions;
+            int outOfSampleEnd = (outOfSampleSession < sessions) ? sessionStarts.get(outOfSampleSession) : snapshotsCount;
+            windowBounds.add(new int[]{inSampleStart, outOfSampleStart, outOfSampleEnd});
+        }
+        return windowBounds;
+    }
+
+    /**
+     * Stitches the out-of-sample equity curves of the windows, each of which starts from zero, into one
+     * curve, by adding the net profits of the preceding windows to each of them.
+     */
+    public static List<TimedValue> stitchEquity(List<List<TimedValue>> windowEquities, List<Double> windowNetProfits) {
+        List<TimedValue> equity = new ArrayList<>();
+        double netProfit = 0;
+        for (int window = 0; window < windowEquities.size(); window++) {
+            for (TimedValue value : windowEquities.get(window)) {
+                equity.add(new TimedValue(value.getTime(), netProfit + value.getValue()));
+            }
+            netProfit += windowNetProfits.get(window);
+        }
+        return equity;
+    }
+
+    private void saveReport(List<Window> windows, List<TimedValue> equity) throws IOException {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yy HH:mm");
+        dateFormat.setTimeZone(timeZone);
+        NumberFormat nf0 = NumberFormatterFactory.getNumberFormatter(0);
+        NumberFormat nf2 = NumberFormatterFactory.getNumberFormatter(2);
+
+        OptimizationReport windowsReport = new OptimizationReport(strategyName + "WalkForward");
+        windowsReport.reportDescription("Strategy parameters:");
+        for (StrategyParam param : strategyParams.getAll()) {
+            windowsReport.reportDescription(param.toString());
+        }
+        windowsReport.reportDescription("In-sample sessions: " + inSampleSessions + ", out-of-sample sessions: " + outOfSampleSessions);
+        windowsReport.reportDescription("Selection criteria: " + selectionCriteria.getName());
+        windowsReport.reportDescription("Back data file: " + optimizerDialog.getFileName());
+
+        List<String> headers = new ArrayList<>();
+        headers.add("Window");
+        headers.add("In-sample");
+        headers.add("Out-of-sample");
+        for (StrategyParam param : strategyParams.getAll()) {
+            headers.add(param.getName());
+        }
+        headers.add("In-sample " + selectionCriteria.getName());
+        headers.add("Out-of-sample trades");
+        headers.add("Out-of-sample net profit");
+        headers.add("Cumulative net profit");
+        windowsReport.reportHeaders(headers);
+
+        double netProfit = 0;
+        for (Window window : windows) {
+            List<String> columns = new ArrayList<>();
+            columns.add(String.valueOf(window.number));
+            columns.add(dateFormat.format(window.inSample.getTime(0)) + " - " + dateFormat.format(window.inSample.getTime(window.inSample.size() - 1)));
+            columns.add(dateFormat.format(window.outOfSample.getTime(0)) + " - " + dateFormat.format(window.outOfSample.getTime(window.outOfSample.size() - 1)));
+            if (window.outOfSampleResult == null) {
+                for (int column = 0; column < strategyParams.size() + 3; column++) {
+                    columns.add("-");
+                }
+            } else {
+                for (StrategyParam param : window.outOfSampleResult.getParams().getAll()) {
+                    columns.add(nf0.format(param.getValue()));
+                }
+                columns.add(nf2.format(window.inSampleResult.get(selectionCriteria)));
+                columns.add(nf0.format(window.outOfSampleResult.get(PerformanceMetric.Trades)));
+                netProfit += window.outOfSampleResult.get(PerformanceMetric.NetProfit);
+                columns.add(nf0.format(window.outOfSampleResult.get(PerformanceMetric.NetProfit)));
+            }
+            columns.add(nf0.format(netProfit));
+            windowsReport.report(columns);
+        }
+
+        OptimizationReport equityReport = new OptimizationReport(strategyName + "WalkForward");
+        equityReport.reportHeaders(Arrays.asList("Time", "Out-of-sample net profit"));
+        for (TimedValue value : equity) {
+            equityReport.report(Arrays.asList(dateFormat.format(value.getTime()), nf0.format(value.getValue())));
+        }
+    }
+
+    /**
+     * Walk-forward window, which optimizes the parameter grid on its in-sample snapshots, and back
+     * tests the best parameter set on its out-of-sample snapshots.
+     */
+    private class Window implements OptimizerContext, Callable<Void> {
+        private final int number;
+        private final List<StrategyParams> tasks;
+        private final SnapshotSeries inSample, outOfSample;
+        private final TopOptimizationResults topResults;
+        private final List<TimedValue> equity;
+        private final AtomicLong indicatorMemory;
+        private IndicatorSeriesCache indicatorSeriesCache;
+        private OptimizationResult inSampleResult, outOfSampleResult;
+
+        private Window(int number, List<StrategyParams> tasks, SnapshotSeries inSample, SnapshotSeries outOfSample, AtomicLong indicatorMemory) {
+            this.number = number;
+            this.tasks = tasks;
+            this.inSample = inSample;
+            this.outOfSample = outOfSample;
+            this.indicatorMemory = indicatorMemory;
+            topResults = new TopOptimizationResults(new ResultComparator(selectionCriteria), 1);
+            equity = new ArrayList<>();
+        }
+
+        public Void call() throws JBookTraderException {
+            List<StrategyParams> windowTasks = new ArrayList<>();
+            for (StrategyParams params : tasks) {
+                windowTasks.add(new StrategyParams(params));
+            }
+
+            // the windows are optimized concurrently, so their indicator values share the memory limit
+            indicatorSeriesCache = new IndicatorSeriesCache(inSample, null, indicatorMemory);
+            int maxLoad = getMaxLoad(windowTasks.size());
+            new OptimizerTask(this, windowTasks, Math.max(1, maxLoad / 4), maxLoad).invoke();
+            indicatorSeriesCache = null;
+
+            List<OptimizationResult> sortedResults = topResults.getSortedResults();
+            if (!sortedResults.isEmpty() && !isCancelled()) {
+                inSampleResult = sortedResults.get(0);
+                backTest(new StrategyParams(inSampleResult.getParams()));
+            }
+            return null;
+        }
+
+        /**
+         * Back tests the strategy on the out-of-sample snapshots, and records its net profit after
+         * each trade.
+         */
+        private void backTest(StrategyParams params) throws JBookTraderException {
+            Strategy strategy = getStrategyInstance(params);
+            strategy.setMarketBook(new MarketBook());
+            strategy.setIndicatorManager(new IndicatorManager());
+            strategy.setIndicators();
+            BackTester backTester = new BackTester(strategy, BarSize.Hour1);
+            PerformanceManager performanceManager = strategy.getPerformanceManager();
+
+            int trades = 0;
+            int snapshotsCount = outOfSample.size();
+            for (int index = 0; index < snapshotsCount; index++) {
+                backTester.run(outOfSample, index, index + 1);
+                if (performanceManager.getTrades() != trades) {
+                    trades = performanceManager.getTrades();
+                    equity.add(new TimedValue(outOfSample.getTime(index), performanceManager.getNetProfit()));
+                }
+            }
+
+            strategy.closePosition();
+            if (performanceManager.getTrades() != trades) {
+                equity.add(new TimedValue(outOfSample.getTime(snapshotsCount - 1), performanceManager.getNetProfit()));
+            }
+            iterationsCompleted(snapshotsCount);
+            outOfSampleResult = new OptimizationResult(params, performanceManager);
+        }
+
+        public Strategy getStrategyInstance(StrategyParams params) throws JBookTraderException {
+            return WalkForwardOptimizerRunner.this.getStrategyInstance(params);
+        }
+
+        public SnapshotSeries getSnapshots() {
+            return inSample;
+        }
+
+        public IndicatorSeriesCache getIndicatorSeriesCache() {
+            return indicatorSeriesCache;
+        }
+
+        public int getMinTrades() {
+            return WalkForwardOptimizerRunner.this.getMinTrades();
+        }
+
+        public String getInclusionCriteria() {
+            return WalkForwardOptimizerRunner.this.getInclusionCriteria();
+        }
+
+        public PruningRules getPruningRules() {
+            return WalkForwardOptimizerRunner.this.getPruningRules();
+        }
+
+        public boolean isCancelled() {
+            return WalkForwardOptimizerRunner.this.isCancelled();
+        }
+
+        public void iterationsCompleted(long iterationsCompleted) {
+            WalkForwardOptimizerRunner.this.iterationsCompleted(iterationsCompleted);
+        }
+
+        public void strategiesPruned(int prunedStrategies) {
+            WalkForwardOptimizerRunner.this.strategiesPruned(prunedStrategies);
+        }
+
+        public void workerCompleted(List<StrategyParams> tasks, List<OptimizationResult> results) {
+            topResults.addAll(results);
+        }
+    }
+}
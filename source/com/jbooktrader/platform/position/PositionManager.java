@@ -22,6 +22,7 @@ public class PositionManager {
     private final PerformanceManager performanceManager;
     private int currentPosition, targetPosition;
     private double avgFillPrice, expectedFillPrice;
+    private List<RecordedExecution> recordedExecutions;
 
     public PositionManager(Strategy strategy) {
         this.strategy = strategy;
@@ -66,6 +67,29 @@ public class PositionManager {
         return expectedFillPrice;
     }
 
+    /**
+     * Records the executions instead of reporting them, so that they can be replayed by the position
+     * manager of another instance of the strategy. This is used to simulate the trading sessions of
+     * a back test in parallel, and to merge their executions in time order.
+     */
+    public void recordExecutions() {
+        recordedExecutions = new ArrayList<>();
+    }
+
+    public List<RecordedExecution> getRecordedExecutions() {
+        return recordedExecutions;
+    }
+
+    /**
+     * Updates the position with an execution recorded by another position manager, as if the order
+     * was filled for this position manager at the time of the recorded market snapshot.
+     */
+    public void replay(RecordedExecution execution) {
+        strategy.getMarketBook().setSnapshot(execution.getMarketSnapshot());
+        expectedFillPrice = execution.getExpectedFillPrice();
+        update(execution.getOpenOrder());
+    }
+
     public synchronized void update(OpenOrder openOrder) {
         Order order = openOrder.getOrder();
         String action = order.m_action;
@@ -89,10 +113,12 @@ public class PositionManager {
 
         Mode mode = Dispatcher.getInstance().getMode();
         if (mode == Mode.BackTest) {
-            positionsHistory.add(new Position(strategy.getMarketBook().getSnapshot().getTime(), currentPosition, avgFillPrice));
+            positionsHistory.add(new Position(strategy.getMarketBook().getTime(), currentPosition, avgFillPrice));
         }
 
-        if (mode != Mode.Optimization) {
+        if (recordedExecutions != null) {
+            recordedExecutions.add(new RecordedExecution(strategy.getMarketBook().getSnapshot(), openOrder, expectedFillPrice));
+        } else if (mode != Mode.Optimization) {
             strategy.getStrategyReportManager().report();
         }
 
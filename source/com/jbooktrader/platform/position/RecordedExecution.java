@@ -0,0 +1,33 @@
+package com.jbooktrader.platform.position;
+
+import com.jbooktrader.platform.marketbook.*;
+
+/**
+ * Encapsulates a filled order recorded by a position manager, along with the market snapshot
+ * and the expected fill price at the time of the execution, so that it can be replayed later.
+ *
+ * @author Eugene Kononov
+ */
+public class RecordedExecution {
+    private final MarketSnapshot marketSnapshot;
+    private final OpenOrder openOrder;
+    private final double expectedFillPrice;
+
+    public RecordedExecution(MarketSnapshot marketSnapshot, OpenOrder openOrder, double expectedFillPrice) {
+        this.marketSnapshot = marketSnapshot;
+        this.openOrder = openOrder;
+        this.expectedFillPrice = expectedFillPrice;
+    }
+
+    public MarketSnapshot getMarketSnapshot() {
+        return marketSnapshot;
+    }
+
+    public OpenOrder getOpenOrder() {
+        return openOrder;
+    }
+
+    public double getExpectedFillPrice() {
+        return expectedFillPrice;
+    }
+}
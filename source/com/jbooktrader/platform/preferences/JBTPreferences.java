@@ -37,11 +37,19 @@ public enum JBTPreferences {
     // Data file for backtester and optimizer
     DataFileName("dataFileName"),
 
+    // Market data recording
+    MarketDataFileFormat("Market data file format", "Text"),
+    MarketDataPartitioning("Market data partitioning", "None"),
+
     // Date range
     DateRangeStart("dateRange.start", "January 1, 2011"),
     DateRangeEnd("dateRange.end", "March 11, 2011"),
     UseDateRange("dateRange.use", "false"),
 
+    // Back tester
+    BackTestStreaming("backTest.streaming", "false"),
+    BackTestParallel("backTest.parallel", "false"),
+
     // Optimizer
     OptimizerMinTrades("optimizer.minTrades", "50"),
     OptimizerSelectBy("optimizer.selectBy", "PI"),
@@ -60,8 +68,24 @@ public enum JBTPreferences {
 
     // Optimizer
     DivideAndConquerCoverage("Divide & Conquer coverage", "200"),
+    GeneticPopulationSize("Genetic population size", "100"),
+    GeneticGenerations("Genetic generations", "50"),
+    GeneticCrossoverRate("Genetic crossover rate, %", "80"),
+    GeneticMutationRate("Genetic mutation rate, %", "10"),
+    GeneticElitism("Genetic elite size", "2"),
+    SurrogateBudget("Surrogate evaluation budget", "200"),
+    SurrogateBatchSize("Surrogate batch size", "8"),
+    HalvingReductionFactor("Successive halving reduction factor", "3"),
+    HalvingRungs("Successive halving rungs", "4"),
+    PruningMaxDrawdown("Pruning max drawdown", "0"),
+    PruningCheckpoint("Pruning checkpoint, %", "0"),
+    PruningNetProfitFloor("Pruning net profit floor", ""),
+    WalkForwardInSampleSessions("Walk-forward in-sample sessions", "20"),
+    WalkForwardOutOfSampleSessions("Walk-forward out-of-sample sessions", "5"),
     StrategiesPerProcessor("Strategies per processor", "50"),
     InclusionCriteria("Results inclusion criteria", "Profitable strategies"),
+    IndicatorCacheSize("Indicator cache size, MB", "1024"),
+    RemoteOptimizerWorkers("Remote optimizer workers", ""),
 
     // Optimization Map
     OptimizationMapWidth("optimization.map.width", "720"),
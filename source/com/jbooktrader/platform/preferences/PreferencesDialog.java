@@ -177,6 +177,15 @@ public class PreferencesDialog extends JBTDialog {
         SpringUtilities.makeTwoColumnGrid(notificationsTab);
 
 
+        // market data recording
+        JPanel marketDataTab = new JPanel(new SpringLayout());
+        tabbedPane.addTab("Market Data", marketDataTab);
+        final JComboBox<String> marketDataFileFormatCombo = new JComboBox<>(new String[]{"Text", "Binary", "Compressed"});
+        add(marketDataTab, MarketDataFileFormat, marketDataFileFormatCombo);
+        final JComboBox<String> marketDataPartitioningCombo = new JComboBox<>(new String[]{"None", "Daily"});
+        add(marketDataTab, MarketDataPartitioning, marketDataPartitioningCombo);
+        SpringUtilities.makeTwoColumnGrid(marketDataTab);
+
         JPanel timeServerTab = new JPanel(new SpringLayout());
         tabbedPane.addTab("Time Server", timeServerTab);
         ntpTimeServer = new JTextField();
@@ -213,6 +222,10 @@ public class PreferencesDialog extends JBTDialog {
                     // FA
                     prefs.set(SubAccount, subAccount.getText());
 
+                    // market data
+                    prefs.set(MarketDataFileFormat, marketDataFileFormatCombo.getSelectedItem());
+                    prefs.set(MarketDataPartitioning, marketDataPartitioningCombo.getSelectedItem());
+
 
                     prefs.set(NTPTimeServer, ntpTimeServer.getText());
 
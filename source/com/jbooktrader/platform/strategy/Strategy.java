@@ -200,10 +200,9 @@ public abstract class Strategy implements Comparable<Strategy> {
     public void process() {
         if (!marketBook.isEmpty()) {
             indicatorManager.updateIndicators();
-            MarketSnapshot marketSnapshot = marketBook.getSnapshot();
-            long instant = marketSnapshot.getTime();
+            long instant = marketBook.getTime();
             processInstant(tradingSchedule.contains(instant));
-            performanceManager.updatePositionValue(marketSnapshot.getPrice(), positionManager.getCurrentPosition());
+            performanceManager.updatePositionValue(marketBook.getPrice(), positionManager.getCurrentPosition());
             dispatcher.fireModelChanged(Event.StrategyUpdate, this);
         }
     }
@@ -0,0 +1,112 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the binary snapshot file format
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestBinaryFileTest {
+    private final ProgressListener progressListener = new ProgressListener() {
+        public void setProgress(String progressText) {
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshots", BackTestBinaryFileReader.EXTENSION);
+        Assert.assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Tests that the snapshots written to a binary file, including the ones appended
+     * after the file is reopened, are read back unchanged.
+     */
+    @Test
+    public void testWriteAndRead() throws JBookTraderException, IOException {
+        TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+        String fileName = file.getAbsolutePath();
+
+        BackTestBinaryFileWriter writer = new BackTestBinaryFileWriter(fileName, timeZone);
+        writer.write(new MarketSnapshot(1000, 12.5, 1325.125, 3));
+        writer.write(new MarketSnapshot(2000, -7.75, 1325.25, 0));
+        writer.close();
+
+        writer = new BackTestBinaryFileWriter(fileName, TimeZone.getTimeZone("Europe/London"));
+        Assert.assertEquals(timeZone, writer.getTimeZone());
+        writer.write(new MarketSnapshot(3000, 0, 1325.375, 12));
+        writer.close();
+
+        Assert.assertTrue(BackTestBinaryFileReader.isBinary(fileName));
+        BackTestBinaryFileReader reader = new BackTestBinaryFileReader(fileName);
+        Assert.assertEquals(timeZone, reader.getTimeZone());
+        Assert.assertEquals(3, reader.size());
+
+        SnapshotSeries snapshots = reader.load(progressListener, null);
+        Assert.assertEquals(3, snapshots.size());
+        MarketSnapshot snapshot = snapshots.getSnapshot(1);
+        Assert.assertEquals(2000, snapshot.getTime());
+        Assert.assertEquals(-7.75, snapshot.getBalance(), 0);
+        Assert.assertEquals(1325.25, snapshot.getPrice(), 0);
+        Assert.assertEquals(0, snapshot.getVolume());
+        Assert.assertEquals(12, snapshots.getVolume(2));
+    }
+
+    /**
+     * Tests that only the snapshots within the date range of the filter are loaded.
+     */
+    @Test
+    public void testFilteredLoad() throws JBookTraderException, IOException {
+        String fileName = file.getAbsolutePath();
+        BackTestBinaryFileWriter writer = new BackTestBinaryFileWriter(fileName, TimeZone.getTimeZone("America/New_York"));
+        for (int second = 1; second <= 1000; second++) {
+            writer.write(second * 1000L, 0, 1300, second);
+        }
+        writer.close();
+
+        BackTestBinaryFileReader reader = new BackTestBinaryFileReader(fileName);
+        Assert.assertEquals(0, reader.indexOf(0));
+        Assert.assertEquals(99, reader.indexOf(100000));
+        Assert.assertEquals(100, reader.indexOf(100001));
+        Assert.assertEquals(1000, reader.indexOf(2000000));
+
+        SnapshotSeries snapshots = reader.load(progressListener, new MarketSnapshotFilter(100500, 200000));
+        Assert.assertEquals(100, snapshots.size());
+        Assert.assertEquals(101000, snapshots.getTime(0));
+        Assert.assertEquals(200000, snapshots.getTime(99));
+
+        Assert.assertEquals(0, reader.load(progressListener, new MarketSnapshotFilter(2000000, 3000000)).size());
+    }
+
+    /**
+     * Tests that a text file is not mistaken for a binary one.
+     */
+    @Test
+    public void testTextFileIsNotBinary() throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("timeZone=America/New_York");
+        }
+        Assert.assertFalse(BackTestBinaryFileReader.isBinary(file.getAbsolutePath()));
+    }
+}
@@ -0,0 +1,152 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the compressed snapshot file format
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestCompressedFileTest {
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/New_York");
+    private final ProgressListener progressListener = new ProgressListener() {
+        public void setProgress(String progressText) {
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshots", BackTestCompressedFileReader.EXTENSION);
+        Assert.assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void assertEquals(SnapshotSeries expected, SnapshotSeries actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int index = 0; index < expected.size(); index++) {
+            Assert.assertEquals(expected.getTime(index), actual.getTime(index));
+            Assert.assertEquals(Double.doubleToLongBits(expected.getBalance(index)), Double.doubleToLongBits(actual.getBalance(index)));
+            Assert.assertEquals(Double.doubleToLongBits(expected.getPrice(index)), Double.doubleToLongBits(actual.getPrice(index)));
+            Assert.assertEquals(expected.getVolume(index), actual.getVolume(index));
+        }
+    }
+
+    /**
+     * Tests that the snapshots are decoded to exactly the same values, including the runs of unchanged
+     * snapshots, the gaps in time, the values which are not decimal fractions, and the snapshots appended
+     * after the file is reopened.
+     */
+    @Test
+    public void testWriteAndRead() throws JBookTraderException, IOException {
+        SnapshotSeries snapshots = new SnapshotSeries();
+        Random random = new Random(1);
+        long time = 1000000;
+        double price = 1300;
+        for (int index = 0; index < 40000; index++) {
+            time += (index % 5000 == 0) ? 3600000 : 1000;
+            if (random.nextInt(4) == 0) {
+                price += 0.25 * (random.nextInt(5) - 2);
+            }
+            double balance = (random.nextInt(3) == 0) ? 0 : (random.nextInt(20001) - 10000) / 100.0;
+            int volume = (random.nextInt(3) == 0) ? 0 : random.nextInt(100);
+            snapshots.add(time, balance, price, volume);
+        }
+        snapshots.add(time + 1000, 1.0 / 3, Math.PI, Integer.MAX_VALUE);
+        snapshots.add(time + 1500, -1.0 / 3, Math.E, Integer.MIN_VALUE);
+
+        String fileName = file.getAbsolutePath();
+        BackTestCompressedFileWriter writer = new BackTestCompressedFileWriter(fileName, TIME_ZONE);
+        for (int index = 0; index < 30000; index++) {
+            writer.write(snapshots.getTime(index), snapshots.getBalance(index), snapshots.getPrice(index), snapshots.getVolume(index));
+        }
+        writer.close();
+
+        writer = new BackTestCompressedFileWriter(fileName, TimeZone.getTimeZone("Europe/London"));
+        Assert.assertEquals(TIME_ZONE, writer.getTimeZone());
+        for (int index = 30000; index < snapshots.size(); index++) {
+            writer.write(snapshots.getSnapshot(index));
+            if (index % 1000 == 0) {
+                writer.flush();
+            }
+        }
+        writer.close();
+
+        Assert.assertTrue(BackTestCompressedFileReader.isCompressed(fileName));
+        Assert.assertFalse(BackTestBinaryFileReader.isBinary(fileName));
+        BackTestCompressedFileReader reader = new BackTestCompressedFileReader(fileName);
+        Assert.assertEquals(TIME_ZONE, reader.getTimeZone());
+        Assert.assertEquals(snapshots.size(), reader.size());
+        assertEquals(snapshots, reader.load(progressListener, null));
+
+        SnapshotCache.getInstance().clear();
+        assertEquals(snapshots, new BackTestFileReader(fileName, null).load(progressListener));
+    }
+
+    /**
+     * Tests that only the snapshots within the date range of the filter are loaded.
+     */
+    @Test
+    public void testFilteredLoad() throws JBookTraderException, IOException {
+        String fileName = file.getAbsolutePath();
+        BackTestCompressedFileWriter writer = new BackTestCompressedFileWriter(fileName, TIME_ZONE);
+        for (int second = 1; second <= 50000; second++) {
+            writer.write(second * 1000L, 0, 1300, second);
+        }
+        writer.close();
+
+        BackTestCompressedFileReader reader = new BackTestCompressedFileReader(fileName);
+        SnapshotSeries snapshots = reader.load(progressListener, new MarketSnapshotFilter(20000500, 40000000));
+        Assert.assertEquals(20000, snapshots.size());
+        Assert.assertEquals(20001000, snapshots.getTime(0));
+        Assert.assertEquals(40000000, snapshots.getTime(19999));
+        Assert.assertEquals(40000, snapshots.getVolume(19999));
+
+        Assert.assertEquals(0, reader.load(progressListener, new MarketSnapshotFilter(60000000, 70000000)).size());
+    }
+
+    /**
+     * Tests that a block which was not completely written is ignored, and overwritten by the next writer.
+     */
+    @Test
+    public void testPartiallyWrittenBlock() throws JBookTraderException, IOException {
+        String fileName = file.getAbsolutePath();
+        BackTestCompressedFileWriter writer = new BackTestCompressedFileWriter(fileName, TIME_ZONE);
+        writer.write(1000, 1.5, 1300.25, 1);
+        writer.flush();
+        writer.write(2000, 2.5, 1300.5, 2);
+        writer.close();
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 1);
+        }
+        Assert.assertEquals(1, new BackTestCompressedFileReader(fileName).size());
+
+        writer = new BackTestCompressedFileWriter(fileName, TIME_ZONE);
+        writer.write(3000, 3.5, 1300.75, 3);
+        writer.close();
+
+        SnapshotSeries snapshots = new BackTestCompressedFileReader(fileName).load(progressListener, null);
+        Assert.assertEquals(2, snapshots.size());
+        Assert.assertEquals(3000, snapshots.getTime(1));
+        Assert.assertEquals(1300.75, snapshots.getPrice(1), 0);
+    }
+}
@@ -0,0 +1,130 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * unit tests for the slicing of text data files
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestDataToolTest {
+    private static final String HEADER = "# test file\r\ntimeZone=America/New_York\r\n";
+    private static final String DAY1 = "030413,093000,1,1300,1\r\n030413,120000,2,1300.25,2\r\n030413,160000,3,1300.5,3\r\n";
+    private static final String DAY2 = "030513,093000,4,1300,4\r\n# comment\r\n030513,120000,5,1300,5\r\n";
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("datatool", "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private String write(String name, String text) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.ISO_8859_1));
+        return file.getPath();
+    }
+
+    private String read(String fileName) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testStrip() throws IOException, JBookTraderException {
+        String fileName = write("in.txt", HEADER + DAY1 + DAY2);
+        String fileNameOut = new File(directory, "out.txt").getPath();
+        Assert.assertEquals(2, new BackTestDataTool(fileName).strip(fileNameOut, 10, 15));
+        Assert.assertEquals(HEADER + "030413,120000,2,1300.25,2\r\n# comment\r\n030513,120000,5,1300,5\r\n", read(fileNameOut));
+    }
+
+    @Test
+    public void testCut() throws IOException, JBookTraderException {
+        String fileName = write("in.txt", HEADER + DAY1 + DAY2);
+        String fileNameOut = new File(directory, "out.txt").getPath();
+        Assert.assertEquals(2, new BackTestDataTool(fileName).cut(fileNameOut, 20130305, 20130310));
+        Assert.assertEquals(HEADER + DAY2, read(fileNameOut));
+    }
+
+    @Test
+    public void testSplitAndMerge() throws IOException, JBookTraderException {
+        String fileName = write("ES.txt", HEADER + DAY1 + DAY2);
+        File days = new File(directory, "days");
+        Assert.assertEquals(5, new BackTestDataTool(fileName).split(days.getPath()));
+
+        BackTestDataset dataset = new BackTestDataset(days);
+        dataset.load();
+        Assert.assertEquals(Arrays.asList("20130304", "20130305"), new ArrayList<>(dataset.getDays()));
+        Assert.assertEquals(HEADER + DAY1, read(new File(days, "ES-20130304.txt").getPath()));
+        Assert.assertEquals(HEADER + DAY2, read(new File(days, "ES-20130305.txt").getPath()));
+
+        // the files are ordered by time, regardless of the order in which they are specified
+        String fileNameOut = new File(directory, "merged.txt").getPath();
+        List<String> fileNamesIn = Arrays.asList(new File(days, "ES-20130305.txt").getPath(), new File(days, "ES-20130304.txt").getPath());
+        Assert.assertEquals(5, BackTestDataTool.merge(fileNameOut, fileNamesIn));
+        Assert.assertEquals(HEADER + DAY1 + DAY2, read(fileNameOut));
+    }
+
+    /**
+     * Tests that a comment which ends a chunk goes to the file of the following record, as it does
+     * within a chunk. With two chunks, the first one ends with the "# day 2" comment.
+     */
+    @Test
+    public void testSplitCommentAtChunkEnd() throws IOException, JBookTraderException {
+        String day2 = "# day 2\r\n" + DAY2 + "030513,130000,6,1300,6\r\n";
+        String fileName = write("ES.txt", HEADER + DAY1 + day2);
+        long dataSize = (DAY1 + day2).length();
+        for (int chunks = 1; chunks <= 4; chunks++) {
+            File days = new File(directory, "days" + chunks);
+            BackTestDataTool dataTool = new BackTestDataTool(fileName);
+            dataTool.setMinChunkSize(dataSize / chunks);
+            Assert.assertEquals(6, dataTool.split(days.getPath()));
+            Assert.assertEquals(HEADER + DAY1, read(new File(days, "ES-20130304.txt").getPath()));
+            Assert.assertEquals(HEADER + day2, read(new File(days, "ES-20130305.txt").getPath()));
+        }
+    }
+
+    @Test
+    public void testMergeOverlappingFiles() throws IOException {
+        List<String> fileNamesIn = Arrays.asList(write("a.txt", HEADER + DAY1), write("b.txt", HEADER + DAY1));
+        try {
+            BackTestDataTool.merge(new File(directory, "merged.txt").getPath(), fileNamesIn);
+            Assert.fail();
+        } catch (JBookTraderException jbte) {
+            Assert.assertTrue(jbte.getMessage().contains("overlaps"));
+        }
+    }
+
+    @Test
+    public void testInvalidLine() throws IOException {
+        String fileName = write("in.txt", HEADER + DAY1 + "0305,093000,4,1300,4\r\n");
+        try {
+            new BackTestDataTool(fileName).cut(new File(directory, "out.txt").getPath(), 20130301, 20130310);
+            Assert.fail();
+        } catch (JBookTraderException jbte) {
+            Assert.assertTrue(jbte.getMessage().startsWith("Problem parsing line #6:"));
+        }
+    }
+}
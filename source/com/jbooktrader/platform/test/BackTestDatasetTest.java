@@ -0,0 +1,115 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the data sets of daily data files
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestDatasetTest {
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/New_York");
+    private final ProgressListener progressListener = new ProgressListener() {
+        public void setProgress(String progressText) {
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException, JBookTraderException {
+        directory = File.createTempFile("dataset", "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+
+        BackTestDataset dataset = new BackTestDataset(directory);
+        dataset.setTimeZone(TIME_ZONE);
+        for (int day = 4; day <= 7; day++) {
+            String fileName = "ES-2013030" + day + ".txt";
+            try (Writer writer = new FileWriter(new File(directory, fileName))) {
+                writer.write("timeZone=America/New_York\n");
+                writer.write("030" + day + "13,093000,1,1300," + day + "\n");
+                writer.write("030" + day + "13,160000,2,1301," + day + "\n");
+            }
+            dataset.setFileName("2013030" + day, fileName);
+        }
+        dataset.save();
+        SnapshotCache.getInstance().clear();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testManifest() throws JBookTraderException {
+        Assert.assertTrue(BackTestDataset.isDataset(directory));
+        BackTestDataset dataset = new BackTestDataset(directory);
+        dataset.load();
+        Assert.assertEquals(TIME_ZONE, dataset.getTimeZone());
+        Assert.assertEquals(Arrays.asList("20130304", "20130305", "20130306", "20130307"), new ArrayList<>(dataset.getDays()));
+        Assert.assertEquals(4, dataset.getFiles(null).size());
+        Assert.assertEquals("20130305", dataset.getDay(1362495600000L));
+    }
+
+    @Test
+    public void testLoad() throws JBookTraderException {
+        SnapshotSeries snapshots = new BackTestFileReader(directory.getAbsolutePath(), null).load(progressListener);
+        Assert.assertEquals(8, snapshots.size());
+        Assert.assertEquals(4, snapshots.getVolume(0));
+        Assert.assertEquals(7, snapshots.getVolume(7));
+    }
+
+    /**
+     * Tests that only the days within the date range of the filter are read.
+     */
+    @Test
+    public void testFilteredLoad() throws IOException, JBookTraderException {
+        // the data file of the first day is not valid, but it is outside of the date range
+        try (Writer writer = new FileWriter(new File(directory, "ES-20130304.txt"))) {
+            writer.write("not a data file\n");
+        }
+
+        BackTestDataset dataset = new BackTestDataset(directory);
+        dataset.load();
+        long from = 1362495600000L; // 2013-03-05 10:00 EST
+        long to = 1362596400000L; // 2013-03-06 14:00 EST
+        MarketSnapshotFilter filter = new MarketSnapshotFilter(from, to);
+        Assert.assertEquals(2, dataset.getFiles(filter).size());
+
+        BackTestFileReader reader = new BackTestFileReader(directory.getAbsolutePath(), filter);
+        SnapshotSeries snapshots = reader.load(progressListener);
+        Assert.assertEquals(2, snapshots.size());
+        Assert.assertEquals(5, snapshots.getVolume(0));
+        Assert.assertEquals(6, snapshots.getVolume(1));
+        Assert.assertEquals(TIME_ZONE, reader.getTimeZone());
+
+        BackTestFileStream stream = new BackTestFileReader(directory.getAbsolutePath(), filter).stream();
+        int streamedSnapshots = 0;
+        SnapshotSeries block;
+        while ((block = stream.take()) != null) {
+            streamedSnapshots += block.size();
+        }
+        Assert.assertEquals(2, streamedSnapshots);
+    }
+}
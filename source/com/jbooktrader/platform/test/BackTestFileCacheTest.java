@@ -0,0 +1,166 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.io.*;
+
+/**
+ * unit tests for the persistent cache of parsed text data files
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileCacheTest {
+    private final ProgressListener progressListener = new ProgressListener() {
+        public void setProgress(String progressText) {
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private File file, cacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshots", ".txt");
+        cacheFile = new File(file.getAbsolutePath() + BackTestFileCache.EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        new BackTestFileCache(file.getAbsolutePath()).delete();
+        file.delete();
+    }
+
+    private void write(String text, boolean append) throws IOException {
+        try (Writer writer = new FileWriter(file, append)) {
+            writer.write(text);
+        }
+        // make sure that the file is not served from the in-memory cache
+        SnapshotCache.getInstance().clear();
+    }
+
+    private SnapshotSeries load() throws JBookTraderException {
+        return new BackTestFileReader(file.getAbsolutePath(), null).load(progressListener);
+    }
+
+    @Test
+    public void testAppend() throws IOException, JBookTraderException {
+        write("# header\ntimeZone=America/New_York\n030413,093000,1,1300,1\n030413,093001,2,1300.25,2\n", false);
+        Assert.assertEquals(2, load().size());
+        Assert.assertTrue(cacheFile.isFile());
+        Assert.assertEquals(2, new BackTestBinaryFileReader(cacheFile.getAbsolutePath()).size());
+
+        // the last line is not terminated, so it is loaded but not cached
+        write("030413,093002,3,1300.5,3\n030413,093003,4,1300.75,4", true);
+        SnapshotSeries snapshots = load();
+        Assert.assertEquals(4, snapshots.size());
+        Assert.assertEquals(1300.75, snapshots.getPrice(3), 0);
+        Assert.assertEquals(3, new BackTestBinaryFileReader(cacheFile.getAbsolutePath()).size());
+
+        write("5\n030413,093004,5,1301,5\n", true);
+        snapshots = load();
+        Assert.assertEquals(5, snapshots.size());
+        Assert.assertEquals(45, snapshots.getVolume(3));
+        Assert.assertEquals(5, new BackTestBinaryFileReader(cacheFile.getAbsolutePath()).size());
+    }
+
+    /**
+     * Tests that the errors in the appended lines are reported with the line numbers of the whole file.
+     */
+    @Test
+    public void testAppendedLineError() throws IOException, JBookTraderException {
+        write("timeZone=America/New_York\n030413,093000,1,1300,1\n", false);
+        Assert.assertEquals(1, load().size());
+
+        write("030413,093000,2,1300,2\n", true);
+        try {
+            load();
+            Assert.fail();
+        } catch (RuntimeException re) {
+            Assert.assertTrue(re.getMessage().startsWith("Problem parsing line #3:"));
+        }
+    }
+
+    /**
+     * Tests that a date range is loaded from the cache, and from the lines appended after the file was cached.
+     */
+    @Test
+    public void testFilteredLoad() throws IOException, JBookTraderException {
+        write("timeZone=America/New_York\n030413,093000,1,1300,1\n030513,093000,2,1300,2\n030613,093000,3,1300,3\n", false);
+        SnapshotSeries snapshots = load();
+        Assert.assertEquals(3, snapshots.size());
+        long secondDay = snapshots.getTime(1);
+
+        write("030713,093000,4,1300,4\n", true);
+        MarketSnapshotFilter filter = new MarketSnapshotFilter(secondDay, secondDay + 3 * 24 * 60 * 60 * 1000L);
+        snapshots = new BackTestFileReader(file.getAbsolutePath(), filter).load(progressListener);
+        Assert.assertEquals(3, snapshots.size());
+        Assert.assertEquals(2, snapshots.getVolume(0));
+        Assert.assertEquals(4, snapshots.getVolume(2));
+        Assert.assertEquals(4, new BackTestBinaryFileReader(cacheFile.getAbsolutePath()).size());
+    }
+
+    @Test
+    public void testRewrittenFile() throws IOException, JBookTraderException {
+        write("timeZone=America/New_York\n030413,093000,1,1300,1\n030413,093001,2,1300,2\n", false);
+        Assert.assertEquals(2, load().size());
+
+        write("timeZone=America/New_York\n030513,093000,1,1400,1\n030513,093001,2,1400,2\n030513,093002,2,1400,2\n", false);
+        SnapshotSeries snapshots = load();
+        Assert.assertEquals(3, snapshots.size());
+        Assert.assertEquals(1400, snapshots.getPrice(0), 0);
+    }
+
+    private static String createLine(int second, int volume) {
+        int time = 90000 + (second / 3600) * 10000 + (second / 60 % 60) * 100 + second % 60;
+        return String.format("030413,%06d,1,1300,%d\n", time, volume);
+    }
+
+    /**
+     * Tests that a change in the middle of a large file is detected, even though the file has also grown.
+     */
+    @Test
+    public void testChangedMiddle() throws IOException, JBookTraderException {
+        StringBuilder text = new StringBuilder("timeZone=America/New_York\n");
+        for (int second = 0; second < 20000; second++) {
+            text.append(createLine(second, 1));
+        }
+        write(text.toString(), false);
+        Assert.assertEquals(20000, load().size());
+
+        // a line in the middle of the file is rewritten with the same length, and a line is appended
+        text = new StringBuilder("timeZone=America/New_York\n");
+        for (int second = 0; second <= 20000; second++) {
+            text.append(createLine(second, second == 10000 ? 7 : 1));
+        }
+        write(text.toString(), false);
+        SnapshotSeries snapshots = load();
+        Assert.assertEquals(20001, snapshots.size());
+        Assert.assertEquals(7, snapshots.getVolume(10000));
+        Assert.assertEquals(1, snapshots.getVolume(20000));
+    }
+
+    /**
+     * Tests that a file which has been modified without changing its size is parsed again.
+     */
+    @Test
+    public void testRewrittenInPlace() throws IOException, JBookTraderException {
+        write("timeZone=America/New_York\n030413,093000,1,1300,1\n030413,093001,2,1300,2\n", false);
+        Assert.assertEquals(2, load().size());
+        long lastModified = file.lastModified();
+
+        write("timeZone=America/New_York\n030413,093000,1,1300,1\n030413,093001,2,1300,9\n", false);
+        Assert.assertTrue(file.setLastModified(lastModified + 2000));
+        SnapshotSeries snapshots = load();
+        Assert.assertEquals(2, snapshots.size());
+        Assert.assertEquals(9, snapshots.getVolume(1));
+    }
+}
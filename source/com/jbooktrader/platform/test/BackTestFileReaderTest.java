@@ -0,0 +1,112 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.io.*;
+
+/**
+ * unit tests for the concurrent parsing of text data files split into several chunks
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileReaderTest {
+    // 8 data lines of 23 bytes each, split into chunks of at least 46 bytes. Each chunk ends at the
+    // first newline after the nominal boundary, so the chunks hold the data lines 1-3, 4-5, 6-7 and 8.
+    private static final long CHUNK_SIZE = 46;
+    private static final String HEADER = "timeZone=America/New_York\n";
+
+    private final ProgressListener progressListener = new ProgressListener() {
+        public void setProgress(String progressText) {
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshots", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        new BackTestFileCache(file.getAbsolutePath()).delete();
+        file.delete();
+    }
+
+    private void write(String... lines) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(HEADER);
+            for (String line : lines) {
+                writer.write(line + "\n");
+            }
+        }
+        new BackTestFileCache(file.getAbsolutePath()).delete();
+        SnapshotCache.getInstance().clear();
+    }
+
+    private SnapshotSeries load(long minChunkSize) throws JBookTraderException {
+        BackTestFileReader reader = new BackTestFileReader(file.getAbsolutePath(), null);
+        reader.setMinChunkSize(minChunkSize);
+        return reader.load(progressListener);
+    }
+
+    private void assertParsingError(int lineNumber) throws JBookTraderException {
+        try {
+            load(CHUNK_SIZE);
+            Assert.fail();
+        } catch (RuntimeException re) {
+            Assert.assertTrue(re.getMessage(), re.getMessage().startsWith("Problem parsing line #" + lineNumber + ":"));
+        }
+    }
+
+    @Test
+    public void testChunks() throws IOException, JBookTraderException {
+        write("030413,093000,1,1300,1", "030413,093001,2,1301,2", "030413,093002,3,1302,3", "030413,093003,4,1303,4",
+                "030413,093004,5,1304,5", "030413,093005,6,1305,6", "030413,093006,7,1306,7", "030413,093007,8,1307,8");
+        SnapshotSeries snapshots = load(CHUNK_SIZE);
+        Assert.assertEquals(8, snapshots.size());
+        for (int index = 0; index < 8; index++) {
+            Assert.assertEquals(1300 + index, snapshots.getPrice(index), 0);
+            Assert.assertEquals(index + 1, snapshots.getVolume(index));
+            if (index > 0) {
+                Assert.assertEquals(1000, snapshots.getTime(index) - snapshots.getTime(index - 1));
+            }
+        }
+    }
+
+    /**
+     * Tests that an error in a chunk other than the first is reported with the line number of the whole file.
+     */
+    @Test
+    public void testBadLineInLaterChunk() throws IOException, JBookTraderException {
+        write("030413,093000,1,1300,1", "030413,093001,2,1301,2", "030413,093002,3,1302,3", "030413,093003,4,1303,4",
+                "030413,093004,5,1304,5", "030413,093005,6,1305,6", "030413,093006,7,13x6,7", "030413,093007,8,1307,8");
+        assertParsingError(8);
+    }
+
+    /**
+     * Tests that the time going backwards from the last line of a chunk to the first line of the next
+     * one is reported, since the chunks are parsed independently of each other.
+     */
+    @Test
+    public void testTimeBackwardsAcrossChunks() throws IOException, JBookTraderException {
+        write("030413,093000,1,1300,1", "030413,093001,2,1301,2", "030413,093005,3,1302,3", "030413,093003,4,1303,4",
+                "030413,093006,5,1304,5", "030413,093007,6,1305,6", "030413,093008,7,1306,7", "030413,093009,8,1307,8");
+        assertParsingError(5);
+
+        // the same time on both sides of a boundary is also an error
+        write("030413,093000,1,1300,1", "030413,093001,2,1301,2", "030413,093002,3,1302,3", "030413,093003,4,1303,4",
+                "030413,093004,5,1304,5", "030413,093004,6,1305,6", "030413,093006,7,1306,7", "030413,093007,8,1307,8");
+        assertParsingError(7);
+    }
+}
@@ -0,0 +1,100 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+/**
+ * unit tests for the resampling of historical data
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileResamplerTest {
+    private static final String HEADER = "timeZone=America/New_York\n";
+    private static final String DATA = "030413,093000,1,1300,1\n030413,093003,9,1300.25,2\n030413,093004,-2,1300.5,3\n030413,093013,6,1301,4\n";
+    private final ProgressListener progressListener = new ProgressListener() {
+        public void setProgress(String progressText) {
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("resampler", "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        SnapshotCache.getInstance().clear();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private String write(String text) throws IOException {
+        File file = new File(directory, "in.txt");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.ISO_8859_1));
+        return file.getPath();
+    }
+
+    private SnapshotSeries resample(String extension) throws IOException, JBookTraderException {
+        String fileNameOut = new File(directory, "out" + extension).getPath();
+        Assert.assertEquals(2, new BackTestFileResampler(write(HEADER + DATA), fileNameOut, 5).process());
+        return new BackTestFileReader(fileNameOut, null).load(progressListener);
+    }
+
+    private void assertResampled(SnapshotSeries snapshots) {
+        Assert.assertEquals(2, snapshots.size());
+
+        // 09:30:00 - 09:30:04: balance 1 for 3 seconds, 9 for 1 second and -2 for 1 second
+        Assert.assertEquals(1362407404000L, snapshots.getTime(0));
+        Assert.assertEquals(2, snapshots.getBalance(0), 0);
+        Assert.assertEquals(1300.5, snapshots.getPrice(0), 0);
+        Assert.assertEquals(6, snapshots.getVolume(0));
+
+        // 09:30:10 - 09:30:14
+        Assert.assertEquals(1362407414000L, snapshots.getTime(1));
+        Assert.assertEquals(6, snapshots.getBalance(1), 0);
+        Assert.assertEquals(1301, snapshots.getPrice(1), 0);
+        Assert.assertEquals(4, snapshots.getVolume(1));
+    }
+
+    @Test
+    public void testTextOutput() throws IOException, JBookTraderException {
+        assertResampled(resample(".txt"));
+    }
+
+    @Test
+    public void testCompressedOutput() throws IOException, JBookTraderException {
+        assertResampled(resample(BackTestCompressedFileReader.EXTENSION));
+    }
+
+    @Test
+    public void testInvalidInterval() {
+        try {
+            new BackTestFileResampler("in.txt", "out.txt", 7);
+            Assert.fail();
+        } catch (JBookTraderException jbte) {
+            Assert.assertTrue(jbte.getMessage().startsWith("The resampling interval"));
+        }
+    }
+}
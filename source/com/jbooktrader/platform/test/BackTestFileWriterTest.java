@@ -0,0 +1,109 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.preferences.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+import static com.jbooktrader.platform.preferences.JBTPreferences.*;
+
+/**
+ * unit tests for the asynchronous writer of the recorded market data
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestFileWriterTest {
+    private static final String STRATEGY_NAME = "BackTestFileWriterTest";
+    private static final int THREADS = 4;
+    private static final int SNAPSHOTS_PER_THREAD = 2000;
+    private String previousFormat, previousPartitioning;
+
+    @BeforeClass
+    public static void setUpDispatcher() throws IOException, JBookTraderException {
+        RemoteOptimizerTest.setUpDispatcher();
+    }
+
+    @Before
+    public void setUp() {
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        previousFormat = prefs.get(MarketDataFileFormat);
+        previousPartitioning = prefs.get(MarketDataPartitioning);
+        prefs.set(MarketDataFileFormat, "Text");
+        prefs.set(MarketDataPartitioning, "None");
+    }
+
+    @After
+    public void tearDown() {
+        PreferencesHolder prefs = PreferencesHolder.getInstance();
+        prefs.set(MarketDataFileFormat, previousFormat);
+        prefs.set(MarketDataPartitioning, previousPartitioning);
+        new File(Dispatcher.getInstance().getMarketDataDir() + STRATEGY_NAME + ".txt").delete();
+    }
+
+    /**
+     * Tests that all the snapshots queued by several threads are in the file once the writer is closed,
+     * each thread's snapshots in the order in which they were queued.
+     */
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final BackTestFileWriter writer = new BackTestFileWriter(STRATEGY_NAME, TimeZone.getTimeZone("America/New_York"));
+        final long start = 1362407400000L;// March 4, 2013 9:30 ET
+
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            final int firstVolume = thread * SNAPSHOTS_PER_THREAD;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int volume = firstVolume; volume < firstVolume + SNAPSHOTS_PER_THREAD; volume++) {
+                        writer.write(new MarketSnapshot(start + volume * 1000L, 0, 1500, volume));
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.close();
+
+        // the snapshots queued after close() are discarded
+        writer.write(new MarketSnapshot(start - 1000, 0, 1500, -1));
+
+        Assert.assertEquals(THREADS * SNAPSHOTS_PER_THREAD, writer.getWrittenSnapshots());
+        Assert.assertEquals(0, writer.getQueueDepth());
+        Assert.assertEquals(0, writer.getErrors());
+        Assert.assertTrue(writer.getBatches() > 0);
+        Assert.assertTrue(writer.getAverageWriteTime() >= 0);
+
+        int[] lastVolumes = new int[THREADS];
+        Arrays.fill(lastVolumes, -1);
+        int lines = 0;
+        File file = new File(Dispatcher.getInstance().getMarketDataDir() + STRATEGY_NAME + ".txt");
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!BackTestLineParser.isMarketDepthLine(line)) {
+                    continue;
+                }
+                String[] columns = line.split(",");
+                Assert.assertEquals(BackTestFileReader.COLUMNS, columns.length);
+                int volume = Integer.parseInt(columns[4]);
+                int thread = volume / SNAPSHOTS_PER_THREAD;
+                Assert.assertTrue(volume > lastVolumes[thread]);
+                lastVolumes[thread] = volume;
+                lines++;
+            }
+        }
+        Assert.assertEquals(THREADS * SNAPSHOTS_PER_THREAD, lines);
+        for (int thread = 0; thread < THREADS; thread++) {
+            Assert.assertEquals((thread + 1) * SNAPSHOTS_PER_THREAD - 1, lastVolumes[thread]);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.model.*;
+import org.junit.*;
+
+import java.nio.charset.*;
+import java.text.*;
+import java.util.*;
+
+/**
+ * unit tests for the historical data line parser
+ *
+ * @author Eugene Kononov
+ */
+public class BackTestLineParserTest {
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/New_York");
+    private BackTestLineParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new BackTestLineParser(TIME_ZONE);
+    }
+
+    private void parse(String line) throws JBookTraderException {
+        byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+        parser.parse(bytes, 0, bytes.length);
+    }
+
+    private long getTime(String dateTime) throws ParseException {
+        SimpleDateFormat sdf = new SimpleDateFormat("MMddyyHHmmss");
+        sdf.setTimeZone(TIME_ZONE);
+        sdf.setLenient(false);
+        return sdf.parse(dateTime).getTime();
+    }
+
+    @Test
+    public void testParse() throws JBookTraderException, ParseException {
+        parse("030413,093000,-12.34,1300.125,7");
+        Assert.assertEquals(getTime("030413093000"), parser.getTime());
+        Assert.assertEquals(-12.34, parser.getBalance(), 0);
+        Assert.assertEquals(1300.125, parser.getPrice(), 0);
+        Assert.assertEquals(7, parser.getVolume());
+
+        parse("030413,093001,1e1,1300.25,0");
+        Assert.assertEquals(10, parser.getBalance(), 0);
+    }
+
+    /**
+     * Tests the days on which the daylight saving time starts and ends.
+     */
+    @Test
+    public void testDaylightSavingTransitions() throws JBookTraderException, ParseException {
+        String[] dateTimes = {"031013015959", "031013030000", "110313005959", "110313010000", "110313020000"};
+        for (String dateTime : dateTimes) {
+            parse(dateTime.substring(0, 6) + "," + dateTime.substring(6) + ",0,1300,0");
+            Assert.assertEquals(getTime(dateTime), parser.getTime());
+        }
+    }
+
+    @Test(expected = JBookTraderException.class)
+    public void testNonExistentTime() throws JBookTraderException {
+        parse("031013,023000,0,1300,0");
+    }
+
+    @Test(expected = JBookTraderException.class)
+    public void testInvalidDate() throws JBookTraderException {
+        parse("023013,093000,0,1300,0");
+    }
+
+    @Test(expected = JBookTraderException.class)
+    public void testTimestampNotIncreasing() throws JBookTraderException {
+        parse("030413,093000,0,1300,0");
+        parse("030413,093000,0,1300,0");
+    }
+
+    @Test
+    public void testIsMarketDepthLine() {
+        byte[] comment = "# comment".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] property = "timeZone=America/New_York".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] blank = " \t".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] data = "030413,093000,0,1300,0".getBytes(StandardCharsets.ISO_8859_1);
+        Assert.assertFalse(BackTestLineParser.isMarketDepthLine(comment, 0, comment.length));
+        Assert.assertFalse(BackTestLineParser.isMarketDepthLine(property, 0, property.length));
+        Assert.assertFalse(BackTestLineParser.isMarketDepthLine(blank, 0, blank.length));
+        Assert.assertTrue(BackTestLineParser.isMarketDepthLine(data, 0, data.length));
+    }
+}
@@ -0,0 +1,187 @@
+package com.jbooktrader.platform.test;
+
+import com.ib.client.*;
+import com.jbooktrader.indicator.balance.*;
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.chart.*;
+import com.jbooktrader.platform.commission.*;
+import com.jbooktrader.platform.indicator.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.optimizer.*;
+import com.jbooktrader.platform.performance.*;
+import com.jbooktrader.platform.position.*;
+import com.jbooktrader.platform.schedule.*;
+import com.jbooktrader.platform.strategy.*;
+import com.jbooktrader.platform.util.contract.*;
+import org.jfree.data.xy.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the parallel simulation of the trading sessions in a back test
+ *
+ * @author Eugene Kononov
+ */
+public class BackTesterTest {
+    private static final long DAY = 24 * 60 * 60 * 1000;
+    private static Mode previousMode;
+    private SnapshotSeries snapshots;
+
+    public static class VelocityStrategy extends Strategy {
+        private Indicator balanceVelocityInd;
+
+        public VelocityStrategy(StrategyParams params) throws JBookTraderException {
+            super(params);
+
+            Contract contract = ContractFactory.makeFutureContract("ES", "GLOBEX");
+            TradingSchedule tradingSchedule = new TradingSchedule("9:35", "15:55", "America/New_York");
+            int multiplier = 50;// contract multiplier
+            Commission commission = CommissionFactory.getBundledNorthAmericaFutureCommission();
+            setStrategy(contract, tradingSchedule, multiplier, commission, 0.25);
+        }
+
+        @Override
+        public void onBookSnapshot() {
+            double balanceVelocity = balanceVelocityInd.getValue();
+            if (balanceVelocity >= getParam("Entry")) {
+                goLong();
+            } else if (balanceVelocity <= -getParam("Entry")) {
+                goShort();
+            } else if (Math.abs(balanceVelocity) < 1) {
+                goFlat();
+            }
+        }
+
+        @Override
+        protected void setParams() {
+            addParam("Entry", 1, 20, 1, 8);
+        }
+
+        @Override
+        public void setIndicators() {
+            balanceVelocityInd = addIndicator(new BalanceVelocity(5, 200));
+        }
+    }
+
+    @BeforeClass
+    public static void setUpDispatcher() throws IOException, JBookTraderException {
+        File homeDir = File.createTempFile("jbt", "");
+        Assert.assertTrue(homeDir.delete());
+        Assert.assertTrue(homeDir.mkdir());
+        Dispatcher dispatcher = Dispatcher.getInstance();
+        dispatcher.init(homeDir.getPath());
+        dispatcher.getTrader();
+        previousMode = dispatcher.getMode();
+        dispatcher.setMode(Mode.BackTest);
+    }
+
+    @AfterClass
+    public static void restoreMode() throws JBookTraderException {
+        // the dispatcher is shared by the tests which run in the same JVM
+        Dispatcher.getInstance().setMode(previousMode);
+    }
+
+    @Before
+    public void setUp() {
+        // three trading days, with a gap of 10 minutes in the middle of the second day
+        snapshots = new SnapshotSeries();
+        Random random = new Random(11);
+        long dayStart = 1362407400000L;// March 4, 2013 9:30 ET
+        double price = 1500;
+        int balance = 0;
+        for (int day = 0; day < 3; day++) {
+            for (int second = 0; second < 5 * 60 * 60; second++) {
+                if (day == 1 && second >= 2 * 60 * 60 && second < 2 * 60 * 60 + 600) {
+                    continue;
+                }
+                balance = Math.max(-100, Math.min(100, balance + random.nextInt(21) - 10));
+                price += 0.25 * (random.nextInt(3) - 1);
+                snapshots.add(dayStart + day * DAY + second * 1000L, balance, price, random.nextInt(20));
+            }
+        }
+    }
+
+    private Strategy createStrategy() throws JBookTraderException {
+        Strategy strategy = new VelocityStrategy(new StrategyParams());
+        strategy.setMarketBook(new MarketBook());
+        strategy.setIndicatorManager(new IndicatorManager());
+        strategy.setIndicators();
+        return strategy;
+    }
+
+    private static class ProgressCounter implements ProgressListener {
+        private long count;
+
+        public void setProgress(String progressText) {
+        }
+
+        public void setProgress(long count, long iterations, String progressText) {
+            this.count = count;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private static void assertSameItems(OHLCDataset expected, OHLCDataset actual) {
+        Assert.assertEquals(expected.getItemCount(0), actual.getItemCount(0));
+        for (int item = 0; item < expected.getItemCount(0); item++) {
+            Assert.assertEquals(expected.getXValue(0, item), actual.getXValue(0, item), 0);
+            Assert.assertEquals(expected.getOpenValue(0, item), actual.getOpenValue(0, item), 0);
+            Assert.assertEquals(expected.getHighValue(0, item), actual.getHighValue(0, item), 0);
+            Assert.assertEquals(expected.getLowValue(0, item), actual.getLowValue(0, item), 0);
+            Assert.assertEquals(expected.getCloseValue(0, item), actual.getCloseValue(0, item), 0);
+        }
+    }
+
+    @Test
+    public void testParallelSessions() throws JBookTraderException {
+        Strategy sequential = createStrategy();
+        new BackTester(sequential, BarSize.Minute1).run(snapshots, 0, snapshots.size());
+        sequential.closePosition();
+
+        Strategy parallel = createStrategy();
+        ProgressCounter progressCounter = new ProgressCounter();
+        new BackTester(parallel, BarSize.Minute1).runParallel(snapshots, progressCounter);
+        parallel.closePosition();
+        Assert.assertEquals(snapshots.size(), progressCounter.count);
+
+        PerformanceManager expected = sequential.getPerformanceManager();
+        PerformanceManager actual = parallel.getPerformanceManager();
+        Assert.assertTrue(expected.getTrades() > 10);
+        Assert.assertEquals(expected.getTrades(), actual.getTrades());
+        Assert.assertEquals(expected.getNetProfit(), actual.getNetProfit(), 0);
+        Assert.assertEquals(expected.getMaxDrawdown(), actual.getMaxDrawdown(), 0);
+        Assert.assertEquals(expected.getPerformanceIndex(), actual.getPerformanceIndex(), 0);
+        Assert.assertEquals(expected.getAveDuration(), actual.getAveDuration(), 0);
+        Assert.assertEquals(expected.getBias(), actual.getBias(), 0);
+
+        List<Position> expectedPositions = sequential.getPositionManager().getPositionsHistory();
+        List<Position> actualPositions = parallel.getPositionManager().getPositionsHistory();
+        Assert.assertEquals(expectedPositions.size(), actualPositions.size());
+        for (int index = 0; index < expectedPositions.size(); index++) {
+            Assert.assertEquals(expectedPositions.get(index).getTime(), actualPositions.get(index).getTime());
+            Assert.assertEquals(expectedPositions.get(index).getPosition(), actualPositions.get(index).getPosition());
+            Assert.assertEquals(expectedPositions.get(index).getAvgFillPrice(), actualPositions.get(index).getAvgFillPrice(), 0);
+        }
+
+        PerformanceChartData expectedChart = expected.getPerformanceChartData();
+        PerformanceChartData actualChart = actual.getPerformanceChartData();
+        assertSameItems(expectedChart.getPriceDataset(), actualChart.getPriceDataset());
+        Indicator expectedIndicator = sequential.getIndicatorManager().getIndicators().get(0);
+        Indicator actualIndicator = parallel.getIndicatorManager().getIndicators().get(0);
+        assertSameItems(expectedChart.getIndicatorDataset(expectedIndicator), actualChart.getIndicatorDataset(actualIndicator));
+
+        List<TimedValue> expectedProfits = expectedChart.getProfits();
+        List<TimedValue> actualProfits = actualChart.getProfits();
+        Assert.assertEquals(expectedProfits.size(), actualProfits.size());
+        for (int index = 0; index < expectedProfits.size(); index++) {
+            Assert.assertEquals(expectedProfits.get(index).getTime(), actualProfits.get(index).getTime());
+            Assert.assertEquals(expectedProfits.get(index).getValue(), actualProfits.get(index).getValue(), 0);
+        }
+    }
+}
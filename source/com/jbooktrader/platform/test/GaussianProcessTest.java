@@ -0,0 +1,58 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.optimizer.*;
+import org.junit.*;
+
+/**
+ * unit tests for the surrogate model of the surrogate optimizer
+ *
+ * @author Eugene Kononov
+ */
+public class GaussianProcessTest {
+    private static final int SAMPLES = 11;
+
+    private static double function(double x) {
+        return 100 * Math.sin(3 * x) + 20;
+    }
+
+    private GaussianProcess fit() {
+        double[][] points = new double[SAMPLES][];
+        double[] values = new double[SAMPLES];
+        for (int index = 0; index < SAMPLES; index++) {
+            double x = index / (SAMPLES - 1.0);
+            points[index] = new double[]{x};
+            values[index] = function(x);
+        }
+
+        GaussianProcess gaussianProcess = new GaussianProcess();
+        gaussianProcess.fit(points, values);
+        return gaussianProcess;
+    }
+
+    @Test
+    public void testPrediction() {
+        GaussianProcess gaussianProcess = fit();
+        for (int index = 0; index < 2 * SAMPLES - 1; index++) {
+            double x = index / (2 * SAMPLES - 2.0);
+            double[] prediction = gaussianProcess.predict(new double[]{x});
+            Assert.assertEquals(function(x), prediction[0], 1);
+            Assert.assertTrue(prediction[1] < 1);
+        }
+
+        // far from the samples, the prediction is uncertain
+        double[] prediction = gaussianProcess.predict(new double[]{3});
+        Assert.assertTrue(prediction[1] > 20);
+    }
+
+    @Test
+    public void testExpectedImprovement() {
+        GaussianProcess gaussianProcess = fit();
+        double best = function(0.5);
+
+        // the maximum of the function is at x = pi / 6, between the samples at 0.5 and 0.6
+        double expectedImprovement = gaussianProcess.getExpectedImprovement(new double[]{Math.PI / 6}, best);
+        Assert.assertTrue(expectedImprovement > 0);
+        Assert.assertTrue(expectedImprovement > gaussianProcess.getExpectedImprovement(new double[]{0.9}, best));
+        Assert.assertEquals(0, gaussianProcess.getExpectedImprovement(new double[]{0.1}, best), 1e-3);
+    }
+}
@@ -0,0 +1,112 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.optimizer.*;
+import org.junit.*;
+
+import java.util.*;
+
+/**
+ * unit tests for the genetic operators of the genetic optimizer
+ *
+ * @author Eugene Kononov
+ */
+public class GeneticAlgorithmTest {
+    private static final int POPULATION_SIZE = 20;
+    private static final int GENERATIONS = 30;
+    private static final int ELITISM = 3;
+    private StrategyParams strategyParams;
+
+    @Before
+    public void setUp() {
+        strategyParams = new StrategyParams();
+        strategyParams.add("X", 0, 100, 1, 0);
+        strategyParams.add("Y", 0, 50, 2, 0);
+    }
+
+    /**
+     * Evaluates the individuals with a fitness which peaks at X = 37, Y = 12. The individuals with X
+     * divisible by 5 are excluded from the results, as if they had too few trades.
+     */
+    private static List<OptimizationResult> evaluate(List<StrategyParams> individuals) {
+        List<OptimizationResult> results = new ArrayList<>();
+        for (StrategyParams individual : individuals) {
+            int x = individual.get("X").getValue();
+            int y = individual.get("Y").getValue();
+            if (x % 5 != 0) {
+                double[] values = new double[PerformanceMetric.values().length];
+                values[PerformanceMetric.NetProfit.ordinal()] = -Math.abs(x - 37) - Math.abs(y - 12);
+                results.add(new OptimizationResult(new StrategyParams(individual), values));
+            }
+        }
+        return results;
+    }
+
+    private static List<String> getKeys(List<StrategyParams> population) {
+        List<String> keys = new ArrayList<>();
+        for (StrategyParams individual : population) {
+            keys.add(individual.getKey());
+        }
+        return keys;
+    }
+
+    @Test
+    public void testGenerations() {
+        GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm(new Random(7), ELITISM, 0.8, 0.2, new ResultComparator(PerformanceMetric.NetProfit));
+        List<StrategyParams> population = geneticAlgorithm.createPopulation(strategyParams, POPULATION_SIZE);
+        Assert.assertEquals(POPULATION_SIZE, population.size());
+        Assert.assertEquals(POPULATION_SIZE, new HashSet<>(getKeys(population)).size());
+
+        Set<String> evaluatedKeys = new HashSet<>();
+        Map<String, Double> fitness = new HashMap<>();
+        for (int generation = 0; generation < GENERATIONS; generation++) {
+            if (generation > 0) {
+                // the elite individuals pass to the next generation unchanged
+                List<String> eliteKeys = getKeys(population.subList(0, ELITISM));
+                List<StrategyParams> elite = new ArrayList<>(population.subList(0, ELITISM));
+                population = geneticAlgorithm.breed(population);
+                Assert.assertEquals(POPULATION_SIZE, population.size());
+                Assert.assertEquals(elite, population.subList(0, ELITISM));
+                Assert.assertEquals(eliteKeys, getKeys(population.subList(0, ELITISM)));
+            }
+
+            // no parameter set is evaluated twice, even if it appears in several generations
+            List<StrategyParams> newIndividuals = geneticAlgorithm.getNewIndividuals(population);
+            for (StrategyParams individual : newIndividuals) {
+                Assert.assertTrue(evaluatedKeys.add(individual.getKey()));
+            }
+            Assert.assertTrue(geneticAlgorithm.getNewIndividuals(population).isEmpty());
+            Assert.assertEquals(evaluatedKeys.size(), geneticAlgorithm.getEvaluated());
+
+            List<OptimizationResult> results = evaluate(newIndividuals);
+            for (OptimizationResult result : results) {
+                fitness.put(result.getParams().getKey(), result.get(PerformanceMetric.NetProfit));
+            }
+            geneticAlgorithm.setFitness(results);
+            geneticAlgorithm.rank(population);
+
+            // the population is sorted by fitness, and the individuals without a result are the least fit
+            Double previousFitness = Double.MAX_VALUE;
+            for (StrategyParams individual : population) {
+                Double individualFitness = fitness.get(individual.getKey());
+                if (previousFitness == null) {
+                    Assert.assertNull(individualFitness);
+                } else if (individualFitness != null) {
+                    Assert.assertTrue(individualFitness <= previousFitness);
+                }
+                previousFitness = individualFitness;
+            }
+        }
+
+        // the search has converged close to the peak
+        Assert.assertTrue(fitness.get(population.get(0).getKey()) >= -3);
+    }
+
+    @Test
+    public void testSmallGrid() {
+        StrategyParams smallParams = new StrategyParams();
+        smallParams.add("X", 1, 3, 1, 1);
+        GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm(new Random(7), 1, 0.8, 0.2, new ResultComparator(PerformanceMetric.NetProfit));
+        List<StrategyParams> population = geneticAlgorithm.createPopulation(smallParams, POPULATION_SIZE);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), new HashSet<>(getKeys(population)));
+    }
+}
@@ -0,0 +1,176 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.indicator.balance.*;
+import com.jbooktrader.indicator.combo.*;
+import com.jbooktrader.indicator.price.*;
+import com.jbooktrader.indicator.volume.*;
+import com.jbooktrader.platform.indicator.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.util.movingwindow.*;
+import org.junit.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * unit tests for the precomputed indicator values shared by the optimizer workers
+ *
+ * @author Eugene Kononov
+ */
+public class IndicatorSeriesCacheTest {
+    private SnapshotSeries snapshots;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("indicators", "");
+        Assert.assertTrue(directory.delete());
+        snapshots = new SnapshotSeries();
+        Random random = new Random(7);
+        long time = 1362407400000L;
+        double price = 1300;
+        for (int index = 0; index < 10000; index++) {
+            // a gap of 10 minutes in the middle of the data resets the indicators
+            time += (index == 5000) ? 10 * 60 * 1000 : 1000;
+            price += 0.25 * (random.nextInt(3) - 1);
+            snapshots.add(time, random.nextInt(200) - 100, price, random.nextInt(10));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private List<Indicator> addIndicators(IndicatorManager indicatorManager) {
+        List<Indicator> indicators = new ArrayList<>();
+        indicators.add(indicatorManager.addIndicator(new BalanceVelocity(1, 300)));
+        indicators.add(indicatorManager.addIndicator(new Tension(200, 15)));
+        indicators.add(indicatorManager.addIndicator(new PriceBollinger(100)));
+        return indicators;
+    }
+
+    @Test
+    public void testPrecomputedValues() throws JBookTraderException {
+        MarketBook marketBook = new MarketBook();
+        IndicatorManager indicatorManager = new IndicatorManager();
+        indicatorManager.setMarketBook(marketBook);
+        List<Indicator> indicators = addIndicators(indicatorManager);
+
+        MarketBook precomputedMarketBook = new MarketBook();
+        IndicatorManager precomputedIndicatorManager = new IndicatorManager();
+        precomputedIndicatorManager.setMarketBook(precomputedMarketBook);
+        List<Indicator> precomputedIndicators = addIndicators(precomputedIndicatorManager);
+
+        IndicatorSeriesCache indicatorSeriesCache = new IndicatorSeriesCache(snapshots);
+        precomputedIndicatorManager.acquirePrecomputedValues(indicatorSeriesCache);
+        // PriceBollinger is not precomputable
+        Assert.assertEquals(2, indicatorSeriesCache.size());
+
+        for (int index = 0; index < snapshots.size(); index++) {
+            marketBook.setSnapshot(snapshots, index);
+            indicatorManager.updateIndicators();
+            precomputedMarketBook.setSnapshot(snapshots, index);
+            precomputedIndicatorManager.updateIndicators(index);
+
+            for (int indicator = 0; indicator < indicators.size(); indicator++) {
+                Assert.assertEquals(indicators.get(indicator).getValue(), precomputedIndicators.get(indicator).getValue(), 0);
+            }
+            Assert.assertEquals(indicatorManager.hasValidIndicators(), precomputedIndicatorManager.hasValidIndicators());
+        }
+
+        precomputedIndicatorManager.releasePrecomputedValues();
+        Assert.assertEquals(0, indicatorSeriesCache.size());
+    }
+
+    @Test
+    public void testSharedValues() throws JBookTraderException {
+        IndicatorSeriesCache indicatorSeriesCache = new IndicatorSeriesCache(snapshots);
+        DoubleBuffer values = indicatorSeriesCache.acquire(new BalanceVelocity(1, 300));
+        Assert.assertSame(values, indicatorSeriesCache.acquire(new BalanceVelocity(1, 300)));
+        Assert.assertNotSame(values, indicatorSeriesCache.acquire(new BalanceVelocity(1, 400)));
+        Assert.assertEquals(2, indicatorSeriesCache.size());
+
+        indicatorSeriesCache.release("BalanceVelocity(1,300)");
+        indicatorSeriesCache.release("BalanceVelocity(1,400)");
+        Assert.assertEquals(1, indicatorSeriesCache.size());
+        indicatorSeriesCache.release("BalanceVelocity(1,300)");
+        Assert.assertEquals(0, indicatorSeriesCache.size());
+    }
+
+    @Test
+    public void testFileCache() throws JBookTraderException {
+        long fileSize = 32 + 8L * snapshots.size();
+        IndicatorFileCache indicatorFileCache = new IndicatorFileCache(directory, 2 * (fileSize + 8));
+        DoubleBuffer values = new IndicatorSeriesCache(snapshots).acquire(new Tension(200, 15));
+        DoubleBuffer calculatedValues = new IndicatorSeriesCache(snapshots, indicatorFileCache).acquire(new Tension(200, 15));
+        Assert.assertEquals(1, directory.listFiles().length);
+
+        // a later run reads the values from the file
+        DoubleBuffer cachedValues = new IndicatorSeriesCache(snapshots, indicatorFileCache).acquire(new Tension(200, 15));
+        Assert.assertTrue(cachedValues.isDirect());
+        for (int index = 0; index < snapshots.size(); index++) {
+            Assert.assertEquals(values.get(index), calculatedValues.get(index), 0);
+            Assert.assertEquals(values.get(index), cachedValues.get(index), 0);
+        }
+
+        // different snapshots have a different fingerprint
+        snapshots.add(snapshots.getTime(snapshots.size() - 1) + 1000, 0, 1300, 1);
+        Assert.assertNull(indicatorFileCache.load(new Tension(200, 15), IndicatorFileCache.getFingerprint(snapshots), snapshots.size()));
+
+        // the least recently used file is evicted when the size limit is exceeded
+        File tensionFile = directory.listFiles()[0];
+        Assert.assertTrue(tensionFile.setLastModified(System.currentTimeMillis() - 60 * 1000));
+        IndicatorSeriesCache indicatorSeriesCache = new IndicatorSeriesCache(snapshots, indicatorFileCache);
+        indicatorSeriesCache.acquire(new BalanceVelocity(1, 300));
+        indicatorSeriesCache.acquire(new BalanceVelocity(1, 400));
+        Assert.assertEquals(2, directory.listFiles().length);
+        Assert.assertFalse(tensionFile.exists());
+    }
+
+    /**
+     * Tests that the caches created with the same counter of the used memory share the memory limit.
+     */
+    @Test
+    public void testSharedMemory() throws JBookTraderException {
+        AtomicLong usedMemory = new AtomicLong();
+        IndicatorSeriesCache cache1 = new IndicatorSeriesCache(snapshots, null, usedMemory);
+        IndicatorSeriesCache cache2 = new IndicatorSeriesCache(snapshots.subSeries(0, 100), null, usedMemory);
+        Indicator indicator = new BalanceVelocity(1, 300);
+        cache1.acquire(indicator);
+        cache2.acquire(indicator);
+        Assert.assertEquals(8L * snapshots.size() + 8 * 100, usedMemory.get());
+
+        cache1.release(indicator.getKey());
+        Assert.assertEquals(8 * 100, usedMemory.get());
+        cache2.release(indicator.getKey());
+        Assert.assertEquals(0, usedMemory.get());
+    }
+
+    /**
+     * Tests that the code fingerprint of the cached values covers the helper classes of the indicators.
+     */
+    @Test
+    public void testCodeClasses() throws IOException {
+        Set<String> classNames = IndicatorFileCache.getCode(PriceVolatility.class).keySet();
+        Assert.assertTrue(classNames.contains(PriceVolatility.class.getName()));
+        Assert.assertTrue(classNames.contains(Indicator.class.getName()));
+        Assert.assertTrue(classNames.contains(IndicatorManager.class.getName()));
+        Assert.assertTrue(classNames.contains(MovingWindowStDev.class.getName()));
+        Assert.assertTrue(classNames.contains(MovingWindow.class.getName()));
+        Assert.assertFalse(classNames.contains(MarketSnapshot.class.getName()));
+
+        classNames = IndicatorFileCache.getCode(VolumeVelocitySMA.class).keySet();
+        Assert.assertTrue(classNames.contains(MovingWindowMean.class.getName()));
+        Assert.assertFalse(classNames.contains(MovingWindowStDev.class.getName()));
+    }
+}
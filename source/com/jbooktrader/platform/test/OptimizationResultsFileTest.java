@@ -0,0 +1,67 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.optimizer.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the file to which all the optimization results are streamed
+ *
+ * @author Eugene Kononov
+ */
+public class OptimizationResultsFileTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("jbt", ".results");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static List<OptimizationResult> createResults(int from, int to) {
+        List<OptimizationResult> results = new ArrayList<>();
+        for (int entry = from; entry < to; entry++) {
+            StrategyParams params = new StrategyParams();
+            params.add("Entry", 0, 100, 1, entry);
+            double[] values = new double[PerformanceMetric.values().length];
+            values[PerformanceMetric.NetProfit.ordinal()] = entry * 10;
+            results.add(new OptimizationResult(params, values));
+        }
+        return results;
+    }
+
+    @Test
+    public void testReadAll() throws IOException, JBookTraderException {
+        OptimizationResultsFile resultsFile = new OptimizationResultsFile(file);
+        resultsFile.open();
+        Assert.assertTrue(resultsFile.isEmpty());
+        resultsFile.write(createResults(0, 30));
+        resultsFile.write(createResults(30, 50));
+
+        // the results written so far are read back while the file is still being written
+        List<OptimizationResult> results = resultsFile.readAll();
+        Assert.assertEquals(50, resultsFile.size());
+        Assert.assertEquals(50, results.size());
+        for (int entry = 0; entry < 50; entry++) {
+            OptimizationResult result = results.get(entry);
+            Assert.assertEquals(entry, result.getParams().get(0).getValue());
+            Assert.assertEquals(entry * 10, result.get(PerformanceMetric.NetProfit), 0);
+        }
+        resultsFile.write(createResults(50, 60));
+        resultsFile.close();
+        Assert.assertEquals(60, resultsFile.readAll().size());
+
+        // a new run discards the results of the previous one
+        resultsFile.open();
+        Assert.assertTrue(resultsFile.isEmpty());
+        Assert.assertTrue(resultsFile.readAll().isEmpty());
+        resultsFile.close();
+    }
+}
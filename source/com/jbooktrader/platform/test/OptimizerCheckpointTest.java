@@ -0,0 +1,131 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.optimizer.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the journal from which an interrupted optimization is resumed
+ *
+ * @author Eugene Kononov
+ */
+public class OptimizerCheckpointTest {
+    private static final String DESCRIPTION = "Strategy\nEntry: 1 to 24 by 1";
+    private File file;
+    private RemoteOptimizerTest.TestContext context;
+
+    @BeforeClass
+    public static void setUpDispatcher() throws IOException, JBookTraderException {
+        RemoteOptimizerTest.setUpDispatcher();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        context = new RemoteOptimizerTest.TestContext(RemoteOptimizerTest.createSnapshots(11));
+        file = File.createTempFile("jbt", ".checkpoint");
+        Assert.assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static List<StrategyParams> getTasks(int from, int to) {
+        List<StrategyParams> tasks = new ArrayList<>();
+        for (int entry = from; entry < to; entry++) {
+            StrategyParams params = new StrategyParams();
+            params.add("Entry", 1, 24, 1, entry);
+            tasks.add(params);
+        }
+        return tasks;
+    }
+
+    private List<OptimizationResult> getResults(List<StrategyParams> tasks) throws JBookTraderException {
+        // only the odd entries make it into the results
+        List<OptimizationResult> results = new ArrayList<>();
+        for (OptimizationResult result : new OptimizerWorker(context, tasks).call()) {
+            if (result.getParams().get(0).getValue() % 2 == 1) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    @Test
+    public void testResume() throws IOException, JBookTraderException {
+        OptimizerCheckpoint checkpoint = new OptimizerCheckpoint(file, DESCRIPTION);
+        Assert.assertFalse(checkpoint.exists());
+        checkpoint.open();
+        List<StrategyParams> tasks = getTasks(1, 9);
+        List<OptimizationResult> results = getResults(tasks);
+        checkpoint.write(tasks, results);
+        checkpoint.write(getTasks(9, 13), getResults(getTasks(9, 13)));
+        checkpoint.close();
+
+        // the second record is cut short by a crash
+        long length = file.length();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length - 10);
+        }
+
+        Assert.assertFalse(new OptimizerCheckpoint(file, DESCRIPTION + " by 2").exists());
+        checkpoint = new OptimizerCheckpoint(file, DESCRIPTION);
+        Assert.assertTrue(checkpoint.exists());
+        checkpoint.load();
+        checkpoint.open();
+        checkpoint.close();
+
+        // the journal rewritten by the resumed run retains the first record only
+        checkpoint = new OptimizerCheckpoint(file, DESCRIPTION);
+        checkpoint.load();
+        for (StrategyParams params : getTasks(1, 13)) {
+            String key = params.getKey();
+            int entry = params.get(0).getValue();
+            Assert.assertEquals(entry < 9, checkpoint.isEvaluated(key));
+            OptimizationResult result = checkpoint.takeResult(key);
+            if (entry < 9 && entry % 2 == 1) {
+                OptimizationResult expected = results.get(entry / 2);
+                for (PerformanceMetric performanceMetric : PerformanceMetric.values()) {
+                    Assert.assertEquals(expected.get(performanceMetric), result.get(performanceMetric), 0);
+                }
+                Assert.assertNull(checkpoint.takeResult(key));
+            } else {
+                Assert.assertNull(result);
+            }
+        }
+
+        checkpoint.delete();
+        Assert.assertFalse(file.exists());
+    }
+
+    /**
+     * Tests a description longer than the 64 KB which DataOutput.writeUTF() can write, such as that
+     * of a data set with many day files.
+     */
+    @Test
+    public void testLongDescription() throws IOException, JBookTraderException {
+        StringBuilder description = new StringBuilder(DESCRIPTION);
+        for (int day = 0; day < 5000; day++) {
+            description.append("\nES-").append(20130304 + day).append(".txt, 12345678 bytes, modified 1362407400000");
+        }
+        Assert.assertTrue(description.length() > 65535);
+
+        OptimizerCheckpoint checkpoint = new OptimizerCheckpoint(file, description.toString());
+        checkpoint.open();
+        checkpoint.write(getTasks(1, 5), getResults(getTasks(1, 5)));
+        checkpoint.close();
+
+        Assert.assertFalse(new OptimizerCheckpoint(file, description.substring(0, description.length() - 1) + "1").exists());
+        Assert.assertFalse(new OptimizerCheckpoint(file, DESCRIPTION).exists());
+        checkpoint = new OptimizerCheckpoint(file, description.toString());
+        Assert.assertTrue(checkpoint.exists());
+        checkpoint.load();
+        Assert.assertTrue(checkpoint.isEvaluated(getTasks(3, 4).get(0).getKey()));
+        Assert.assertNotNull(checkpoint.takeResult(getTasks(3, 4).get(0).getKey()));
+        Assert.assertFalse(checkpoint.isEvaluated(getTasks(5, 6).get(0).getKey()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.optimizer.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the optimizer worker advanced through the snapshots in steps, and pruning strategies
+ *
+ * @author Eugene Kononov
+ */
+public class OptimizerWorkerTest {
+    private SnapshotSeries snapshots;
+    private List<StrategyParams> tasks;
+
+    @BeforeClass
+    public static void setUpDispatcher() throws IOException, JBookTraderException {
+        RemoteOptimizerTest.setUpDispatcher();
+    }
+
+    @Before
+    public void setUp() {
+        snapshots = RemoteOptimizerTest.createSnapshots(11);
+        tasks = new ArrayList<>();
+        for (int entry = 1; entry <= 12; entry++) {
+            StrategyParams params = new StrategyParams();
+            params.add("Entry", 1, 12, 1, entry);
+            tasks.add(params);
+        }
+    }
+
+    private static Map<String, OptimizationResult> toMap(List<OptimizationResult> results) {
+        Map<String, OptimizationResult> resultsMap = new HashMap<>();
+        for (OptimizationResult result : results) {
+            resultsMap.put(result.getParams().getKey(), result);
+        }
+        return resultsMap;
+    }
+
+    @Test
+    public void testStagedWorker() throws JBookTraderException {
+        Map<String, OptimizationResult> expectedResults = toMap(new OptimizerWorker(new RemoteOptimizerTest.TestContext(snapshots), tasks).call());
+
+        OptimizerWorker worker = new OptimizerWorker(new RemoteOptimizerTest.TestContext(snapshots), tasks);
+        Set<String> survivors = new HashSet<>();
+        try {
+            worker.advance(snapshots.size() / 3);
+            Assert.assertEquals(tasks.size(), worker.getInterimResults().size());
+
+            for (int index = 0; index < tasks.size(); index += 2) {
+                survivors.add(tasks.get(index).getKey());
+            }
+            worker.retain(survivors);
+            Assert.assertEquals(survivors.size(), worker.getInterimResults().size());
+
+            worker.advance(snapshots.size());
+        } finally {
+            worker.release();
+        }
+
+        Map<String, OptimizationResult> actualResults = toMap(worker.getResults());
+        Assert.assertEquals(survivors, actualResults.keySet());
+        for (OptimizationResult result : actualResults.values()) {
+            OptimizationResult expected = expectedResults.get(result.getParams().getKey());
+            for (PerformanceMetric performanceMetric : PerformanceMetric.values()) {
+                Assert.assertEquals(expected.get(performanceMetric), result.get(performanceMetric), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testPruning() throws JBookTraderException {
+        List<OptimizationResult> results = new OptimizerWorker(new RemoteOptimizerTest.TestContext(snapshots), tasks).call();
+        Map<String, OptimizationResult> expectedResults = toMap(results);
+        double[] drawdowns = new double[results.size()];
+        for (int index = 0; index < drawdowns.length; index++) {
+            drawdowns[index] = results.get(index).get(PerformanceMetric.MaxDD);
+        }
+        Arrays.sort(drawdowns);
+        double maxDrawdown = drawdowns[drawdowns.length / 2];
+
+        RemoteOptimizerTest.TestContext context = new RemoteOptimizerTest.TestContext(snapshots);
+        context.pruningRules = new PruningRules(maxDrawdown, 0, Double.NEGATIVE_INFINITY);
+        Map<String, OptimizationResult> actualResults = toMap(new OptimizerWorker(context, tasks).call());
+        Assert.assertTrue(context.prunedStrategies.get() > 0);
+        Assert.assertEquals(tasks.size(), actualResults.size() + context.prunedStrategies.get());
+
+        // the strategies which are not pruned are not affected by the pruning of the others
+        for (StrategyParams params : tasks) {
+            OptimizationResult expected = expectedResults.get(params.getKey());
+            OptimizationResult actual = actualResults.get(params.getKey());
+            if (actual == null) {
+                Assert.assertTrue(expected.get(PerformanceMetric.MaxDD) > maxDrawdown);
+            } else {
+                for (PerformanceMetric performanceMetric : PerformanceMetric.values()) {
+                    Assert.assertEquals(expected.get(performanceMetric), actual.get(performanceMetric), 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.indicator.*;
+import com.jbooktrader.platform.marketbook.*;
+import com.jbooktrader.platform.model.*;
+import com.jbooktrader.platform.optimizer.*;
+import com.jbooktrader.platform.strategy.*;
+import org.junit.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * unit tests for the optimization distributed between the remote optimizer workers
+ *
+ * @author Eugene Kononov
+ */
+public class RemoteOptimizerTest {
+    private static final String STRATEGY_CLASS_NAME = BackTesterTest.VelocityStrategy.class.getName();
+    private static final AtomicBoolean isNotStrategyInitialized = new AtomicBoolean();
+    private final List<RemoteOptimizerWorker> workers = new ArrayList<>();
+    private SnapshotSeries snapshots;
+    private List<StrategyParams> tasks;
+
+    static class NotStrategy {
+        static {
+            isNotStrategyInitialized.set(true);
+        }
+    }
+
+    static class TestContext implements OptimizerContext {
+        private final SnapshotSeries snapshots;
+        private final IndicatorSeriesCache indicatorSeriesCache;
+        final List<OptimizationResult> results;
+        final AtomicInteger prunedStrategies;
+        final AtomicLong iterationsCompleted;
+        PruningRules pruningRules;
+
+        TestContext(SnapshotSeries snapshots) {
+            this.snapshots = snapshots;
+            indicatorSeriesCache = new IndicatorSeriesCache(snapshots);
+            results = Collections.synchronizedList(new ArrayList<OptimizationResult>());
+            prunedStrategies = new AtomicInteger();
+            iterationsCompleted = new AtomicLong();
+            pruningRules = new PruningRules(0, 0, Double.NEGATIVE_INFINITY);
+        }
+
+        public Strategy getStrategyInstance(StrategyParams params) throws JBookTraderException {
+            return new BackTesterTest.VelocityStrategy(params);
+        }
+
+        public SnapshotSeries getSnapshots() {
+            return snapshots;
+        }
+
+        public IndicatorSeriesCache getIndicatorSeriesCache() {
+            return indicatorSeriesCache;
+        }
+
+        public int getMinTrades() {
+            return 0;
+        }
+
+        public String getInclusionCriteria() {
+            return "All strategies";
+        }
+
+        public PruningRules getPruningRules() {
+            return pruningRules;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public void iterationsCompleted(long iterationsCompleted) {
+            this.iterationsCompleted.getAndAdd(iterationsCompleted);
+        }
+
+        public void strategiesPruned(int prunedStrategies) {
+            this.prunedStrategies.getAndAdd(prunedStrategies);
+        }
+
+        public void workerCompleted(List<StrategyParams> tasks, List<OptimizationResult> results) {
+            this.results.addAll(results);
+        }
+    }
+
+    @BeforeClass
+    public static void setUpDispatcher() throws IOException, JBookTraderException {
+        File homeDir = File.createTempFile("jbt", "");
+        Assert.assertTrue(homeDir.delete());
+        Assert.assertTrue(homeDir.mkdir());
+        Dispatcher dispatcher = Dispatcher.getInstance();
+        dispatcher.init(homeDir.getPath());
+        dispatcher.getTrader();
+        dispatcher.setMode(Mode.Optimization);
+    }
+
+    @Before
+    public void setUp() {
+        snapshots = createSnapshots(11);
+        tasks = new ArrayList<>();
+        for (int entry = 1; entry <= 24; entry++) {
+            StrategyParams params = new StrategyParams();
+            params.add("Entry", 1, 24, 1, entry);
+            tasks.add(params);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (RemoteOptimizerWorker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    static SnapshotSeries createSnapshots(long seed) {
+        SnapshotSeries snapshots = new SnapshotSeries();
+        Random random = new Random(seed);
+        long dayStart = 1362407400000L;// March 4, 2013 9:30 ET
+        double price = 1500;
+        int balance = 0;
+        for (int day = 0; day < 2; day++) {
+            for (int second = 0; second < 3 * 60 * 60; second++) {
+                balance = Math.max(-100, Math.min(100, balance + random.nextInt(21) - 10));
+                price += 0.25 * (random.nextInt(3) - 1);
+                snapshots.add(dayStart + day * 24 * 60 * 60 * 1000L + second * 1000L, balance, price, random.nextInt(20));
+            }
+        }
+        return snapshots;
+    }
+
+    private RemoteOptimizerWorker startWorker(SnapshotSeries workerSnapshots) throws JBookTraderException {
+        RemoteOptimizerWorker worker = new RemoteOptimizerWorker(workerSnapshots, null, InetAddress.getLoopbackAddress(), 0);
+        worker.start();
+        workers.add(worker);
+        return worker;
+    }
+
+    private List<InetSocketAddress> getAddresses() throws JBookTraderException {
+        StringBuilder addresses = new StringBuilder();
+        for (RemoteOptimizerWorker worker : workers) {
+            addresses.append(InetAddress.getLoopbackAddress().getHostAddress()).append(":").append(worker.getPort()).append(", ");
+        }
+        return RemoteOptimizer.getAddresses(addresses.toString());
+    }
+
+    private void assertSameResults(TestContext context) throws JBookTraderException {
+        TestContext localContext = new TestContext(snapshots);
+        localContext.pruningRules = context.pruningRules;
+        Map<String, OptimizationResult> expectedResults = new HashMap<>();
+        for (OptimizationResult result : new OptimizerWorker(localContext, tasks).call()) {
+            expectedResults.put(result.getParams().getKey(), result);
+        }
+
+        List<OptimizationResult> actualResults = context.results;
+        Assert.assertEquals(expectedResults.size(), actualResults.size());
+        Assert.assertEquals(localContext.prunedStrategies.get(), context.prunedStrategies.get());
+        // the progress of the batches reassigned from a lost worker is not counted twice
+        Assert.assertEquals(localContext.iterationsCompleted.get(), context.iterationsCompleted.get());
+        for (OptimizationResult result : actualResults) {
+            OptimizationResult expected = expectedResults.remove(result.getParams().getKey());
+            Assert.assertNotNull(expected);
+            for (PerformanceMetric performanceMetric : PerformanceMetric.values()) {
+                Assert.assertEquals(expected.get(performanceMetric), result.get(performanceMetric), 0);
+            }
+        }
+        Assert.assertTrue(expectedResults.isEmpty());
+    }
+
+    @Test
+    public void testRemoteWorkers() throws Exception {
+        for (int worker = 0; worker < 3; worker++) {
+            startWorker(snapshots);
+        }
+
+        TestContext context = new TestContext(snapshots);
+        RemoteOptimizer remoteOptimizer = new RemoteOptimizer(context, STRATEGY_CLASS_NAME, getAddresses(), 0);
+        try {
+            remoteOptimizer.submit(tasks, 2).get();
+        } finally {
+            remoteOptimizer.shutdown();
+        }
+        assertSameResults(context);
+    }
+
+    @Test
+    public void testLostWorker() throws Exception {
+        final RemoteOptimizerWorker lostWorker = startWorker(snapshots);
+        startWorker(snapshots);
+
+        // the first worker is stopped as soon as the first batch completes
+        TestContext context = new TestContext(snapshots) {
+            @Override
+            public void workerCompleted(List<StrategyParams> tasks, List<OptimizationResult> results) {
+                super.workerCompleted(tasks, results);
+                lostWorker.stop();
+            }
+        };
+        RemoteOptimizer remoteOptimizer = new RemoteOptimizer(context, STRATEGY_CLASS_NAME, getAddresses(), 0);
+        try {
+            remoteOptimizer.submit(tasks, 2).get();
+        } finally {
+            remoteOptimizer.shutdown();
+        }
+        assertSameResults(context);
+    }
+
+    @Test
+    public void testLostWorkerProgress() throws Exception {
+        // a worker which reports some progress on its first batch, and is lost before completing it
+        final ServerSocket lostWorker = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        Thread lostWorkerThread = new Thread(new Runnable() {
+            public void run() {
+                try (Socket socket = lostWorker.accept()) {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    // HELLO: magic, version, strategy class, fingerprint, size, min trades, inclusion, pruning rules
+                    in.readInt();
+                    in.readInt();
+                    in.readUTF();
+                    in.readLong();
+                    in.readInt();
+                    in.readInt();
+                    in.readUTF();
+                    in.readDouble();
+                    in.readDouble();
+                    in.readDouble();
+                    out.writeByte(1);// READY
+                    out.writeInt(1);
+                    in.readByte();// BATCH
+                    int batchId = in.readInt();
+                    out.writeByte(4);// HEARTBEAT
+                    out.writeInt(1);
+                    out.writeInt(batchId);
+                    out.writeLong(1000000);
+                    out.writeInt(1);
+                    out.flush();
+                } catch (IOException ioe) {
+                    // the connection is closed when the worker is lost
+                }
+            }
+        });
+        lostWorkerThread.start();
+        startWorker(snapshots);
+
+        TestContext context = new TestContext(snapshots);
+        List<InetSocketAddress> addresses = new ArrayList<>(getAddresses());
+        addresses.add(0, new InetSocketAddress(InetAddress.getLoopbackAddress(), lostWorker.getLocalPort()));
+        RemoteOptimizer remoteOptimizer = new RemoteOptimizer(context, STRATEGY_CLASS_NAME, addresses, 0);
+        try {
+            remoteOptimizer.submit(tasks, 2).get();
+        } finally {
+            remoteOptimizer.shutdown();
+            lostWorker.close();
+            lostWorkerThread.join();
+        }
+
+        // the progress of the batch reassigned from the lost worker is not counted twice
+        assertSameResults(context);
+    }
+
+    @Test
+    public void testDifferentDataset() throws Exception {
+        startWorker(createSnapshots(12));
+
+        TestContext context = new TestContext(snapshots);
+        RemoteOptimizer remoteOptimizer = new RemoteOptimizer(context, STRATEGY_CLASS_NAME, getAddresses(), 0);
+        try {
+            remoteOptimizer.submit(tasks, 2).get();
+            Assert.fail("The worker with a different data set must be dropped.");
+        } catch (ExecutionException ee) {
+            Assert.assertTrue(ee.getCause() instanceof JBookTraderException);
+            Assert.assertTrue(ee.getCause().getMessage().contains("different"));
+        } finally {
+            remoteOptimizer.shutdown();
+        }
+
+        // the local threads complete the optimization without the remote workers
+        remoteOptimizer = new RemoteOptimizer(context, STRATEGY_CLASS_NAME, getAddresses(), 1);
+        try {
+            remoteOptimizer.submit(tasks, 2).get();
+        } finally {
+            remoteOptimizer.shutdown();
+        }
+        assertSameResults(context);
+    }
+
+    @Test
+    public void testPruning() throws Exception {
+        startWorker(snapshots);
+        startWorker(snapshots);
+
+        TestContext context = new TestContext(snapshots);
+        context.pruningRules = new PruningRules(0, 0.5, 0);
+        RemoteOptimizer remoteOptimizer = new RemoteOptimizer(context, STRATEGY_CLASS_NAME, getAddresses(), 0);
+        try {
+            remoteOptimizer.submit(tasks, 2).get();
+        } finally {
+            remoteOptimizer.shutdown();
+        }
+        Assert.assertTrue(context.prunedStrategies.get() > 0);
+        Assert.assertEquals(tasks.size(), context.results.size() + context.prunedStrategies.get());
+        assertSameResults(context);
+    }
+
+    @Test
+    public void testNotStrategy() throws Exception {
+        startWorker(snapshots);
+
+        TestContext context = new TestContext(snapshots);
+        RemoteOptimizer remoteOptimizer = new RemoteOptimizer(context, NotStrategy.class.getName(), getAddresses(), 0);
+        try {
+            remoteOptimizer.submit(tasks, 2).get();
+            Assert.fail("The worker must refuse to load a class which is not a strategy.");
+        } catch (ExecutionException ee) {
+            Assert.assertTrue(ee.getCause().getMessage().contains("is not a strategy"));
+        } finally {
+            remoteOptimizer.shutdown();
+        }
+        Assert.assertFalse(isNotStrategyInitialized.get());
+    }
+}
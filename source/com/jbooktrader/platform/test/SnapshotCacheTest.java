@@ -0,0 +1,74 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.backtest.*;
+import com.jbooktrader.platform.marketbook.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * unit tests for the bounded snapshot cache
+ *
+ * @author Eugene Kononov
+ */
+public class SnapshotCacheTest {
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/New_York");
+    private static final File FILE_A = new File("a.txt");
+    private static final File FILE_B = new File("b.txt");
+    private static final File FILE_C = new File("c.txt");
+
+    private SnapshotSeries createSeries(int size) {
+        SnapshotSeries series = new SnapshotSeries(size);
+        for (int index = 0; index < size; index++) {
+            series.add(1000 * (index + 1), 0, 100, 0);
+        }
+        return series;
+    }
+
+    /**
+     * Tests that the least recently used data set is evicted when the cache is full.
+     */
+    @Test
+    public void testEviction() {
+        SnapshotCache cache = new SnapshotCache(28 * 250);
+        cache.put(FILE_A, 1, 1, createSeries(100), TIME_ZONE);
+        cache.put(FILE_B, 1, 1, createSeries(100), TIME_ZONE);
+        Assert.assertNotNull(cache.get(FILE_A, 1, 1));
+
+        cache.put(FILE_C, 1, 1, createSeries(100), TIME_ZONE);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get(FILE_A, 1, 1));
+        Assert.assertNull(cache.get(FILE_B, 1, 1));
+        Assert.assertNotNull(cache.get(FILE_C, 1, 1));
+        Assert.assertEquals(28 * 200, cache.getUsedBytes());
+
+        cache.put(FILE_B, 1, 1, createSeries(1000), TIME_ZONE);
+        Assert.assertNull(cache.get(FILE_B, 1, 1));
+        Assert.assertEquals(2, cache.size());
+    }
+
+    /**
+     * Tests that a data set is discarded when its file has changed.
+     */
+    @Test
+    public void testInvalidation() {
+        SnapshotCache cache = new SnapshotCache(1024 * 1024);
+        cache.put(FILE_A, 1, 1, createSeries(100), TIME_ZONE);
+        Assert.assertEquals(TIME_ZONE, cache.get(FILE_A, 1, 1).getTimeZone());
+        Assert.assertNull(cache.get(FILE_A, 2, 1));
+        Assert.assertNull(cache.get(FILE_A, 1, 1));
+        Assert.assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void testFilteredView() {
+        SnapshotSeries series = createSeries(100);
+        SnapshotSeries view = new MarketSnapshotFilter(10500, 20000).apply(series);
+        Assert.assertEquals(10, view.size());
+        Assert.assertEquals(11000, view.getTime(0));
+        Assert.assertEquals(20000, view.getTime(9));
+
+        Assert.assertEquals(0, new MarketSnapshotFilter(200000, 300000).apply(series).size());
+    }
+}
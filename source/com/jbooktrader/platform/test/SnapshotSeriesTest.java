@@ -0,0 +1,71 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.marketbook.*;
+import org.junit.*;
+
+/**
+ * @author Eugene Kononov
+ */
+public class SnapshotSeriesTest {
+    private final double delta = 0;
+
+    private SnapshotSeries createSeries(int size) {
+        SnapshotSeries series = new SnapshotSeries(2);
+        for (int index = 0; index < size; index++) {
+            series.add(1000 * (index + 1), index, 100 + index, index % 3);
+        }
+        return series;
+    }
+
+    @Test
+    public void testAddAndGet() {
+        SnapshotSeries series = createSeries(10);
+        Assert.assertEquals(10, series.size());
+        Assert.assertEquals(4000, series.getTime(3));
+        Assert.assertEquals(3, series.getBalance(3), delta);
+        Assert.assertEquals(103, series.getPrice(3), delta);
+        Assert.assertEquals(0, series.getVolume(3));
+
+        MarketSnapshot snapshot = series.getSnapshot(9);
+        Assert.assertEquals(10000, snapshot.getTime());
+        Assert.assertEquals(109, snapshot.getPrice(), delta);
+    }
+
+    @Test
+    public void testSubSeries() {
+        SnapshotSeries series = createSeries(10);
+        SnapshotSeries view = series.subSeries(2, 7);
+        Assert.assertEquals(5, view.size());
+        Assert.assertEquals(3000, view.getTime(0));
+        Assert.assertEquals(7000, view.getTime(4));
+
+        SnapshotSeries viewOfView = view.subSeries(1, 3);
+        Assert.assertEquals(2, viewOfView.size());
+        Assert.assertEquals(4000, viewOfView.getTime(0));
+        Assert.assertEquals(103, viewOfView.getPrice(0), delta);
+
+        SnapshotSeries copy = new SnapshotSeries();
+        copy.addAll(view);
+        Assert.assertEquals(5, copy.size());
+        Assert.assertEquals(7000, copy.getTime(4));
+    }
+
+    @Test
+    public void testIndexOf() {
+        SnapshotSeries series = createSeries(10);
+        Assert.assertEquals(0, series.indexOf(0));
+        Assert.assertEquals(2, series.indexOf(3000));
+        Assert.assertEquals(3, series.indexOf(3001));
+        Assert.assertEquals(10, series.indexOf(11000));
+
+        SnapshotSeries view = series.subSeries(2, 7);
+        Assert.assertEquals(0, view.indexOf(1000));
+        Assert.assertEquals(1, view.indexOf(4000));
+        Assert.assertEquals(5, view.indexOf(9000));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAddToView() {
+        createSeries(10).subSeries(0, 5).add(20000, 0, 0, 0);
+    }
+}
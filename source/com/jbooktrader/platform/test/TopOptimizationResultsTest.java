@@ -0,0 +1,89 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.optimizer.*;
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * unit tests for the store of the best optimization results
+ *
+ * @author Eugene Kononov
+ */
+public class TopOptimizationResultsTest {
+    private static final int CAPACITY = 100;
+
+    private static List<OptimizationResult> createResults(int size) {
+        Random random = new Random(7);
+        List<OptimizationResult> results = new ArrayList<>();
+        for (int index = 0; index < size; index++) {
+            StrategyParams params = new StrategyParams();
+            params.add("Entry", 0, size, 1, index);
+            double[] values = new double[PerformanceMetric.values().length];
+            values[PerformanceMetric.NetProfit.ordinal()] = random.nextInt(1000000);
+            results.add(new OptimizationResult(params, values));
+        }
+        return results;
+    }
+
+    private static void assertSameResults(List<OptimizationResult> expectedResults, List<OptimizationResult> actualResults) {
+        Assert.assertEquals(expectedResults.size(), actualResults.size());
+        for (int index = 0; index < expectedResults.size(); index++) {
+            Assert.assertEquals(expectedResults.get(index).get(PerformanceMetric.NetProfit), actualResults.get(index).get(PerformanceMetric.NetProfit), 0);
+        }
+    }
+
+    @Test
+    public void testConcurrentWorkers() throws Exception {
+        List<OptimizationResult> results = createResults(20000);
+        ResultComparator resultComparator = new ResultComparator(PerformanceMetric.NetProfit);
+        final TopOptimizationResults topResults = new TopOptimizationResults(resultComparator, CAPACITY);
+
+        // each worker adds the results of its batches
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < results.size(); from += 50) {
+                final List<OptimizationResult> batch = results.subList(from, from + 50);
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        topResults.addAll(batch);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<OptimizationResult> sortedResults = new ArrayList<>(results);
+        Collections.sort(sortedResults, resultComparator);
+        assertSameResults(sortedResults.subList(0, CAPACITY), topResults.getSortedResults());
+    }
+
+    @Test
+    public void testCapacity() {
+        List<OptimizationResult> results = createResults(10);
+        ResultComparator resultComparator = new ResultComparator(PerformanceMetric.NetProfit);
+        TopOptimizationResults topResults = new TopOptimizationResults(resultComparator, 3);
+        Assert.assertTrue(topResults.isEmpty());
+
+        topResults.addAll(results.subList(0, 5));
+        topResults.ensureCapacity(6);
+        topResults.addAll(results.subList(5, 10));
+
+        // the results rejected before the capacity was increased are not restored
+        List<OptimizationResult> expectedResults = new ArrayList<>(results.subList(0, 5));
+        Collections.sort(expectedResults, resultComparator);
+        expectedResults = new ArrayList<>(expectedResults.subList(0, 3));
+        expectedResults.addAll(results.subList(5, 10));
+        Collections.sort(expectedResults, resultComparator);
+        assertSameResults(expectedResults.subList(0, 6), topResults.getSortedResults());
+
+        topResults.clear();
+        Assert.assertTrue(topResults.isEmpty());
+    }
+}
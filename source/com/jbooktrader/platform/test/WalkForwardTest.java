@@ -0,0 +1,61 @@
+package com.jbooktrader.platform.test;
+
+import com.jbooktrader.platform.chart.*;
+import com.jbooktrader.platform.optimizer.*;
+import org.junit.*;
+
+import java.util.*;
+
+/**
+ * unit tests for the slicing of the sessions into walk-forward windows, and for the out-of-sample
+ * equity curve stitched from the windows
+ *
+ * @author Eugene Kononov
+ */
+public class WalkForwardTest {
+    // six sessions of 10 snapshots each
+    private static final List<Integer> SESSION_STARTS = Arrays.asList(0, 10, 20, 30, 40, 50);
+    private static final int SNAPSHOTS = 60;
+
+    private static void assertWindows(List<int[]> windowBounds, int[]... expectedBounds) {
+        Assert.assertEquals(expectedBounds.length, windowBounds.size());
+        for (int window = 0; window < expectedBounds.length; window++) {
+            Assert.assertArrayEquals(expectedBounds[window], windowBounds.get(window));
+        }
+    }
+
+    @Test
+    public void testWindowBounds() {
+        // the windows roll forward by the out-of-sample sessions, so that the out-of-sample periods follow each other
+        assertWindows(WalkForwardOptimizerRunner.getWindowBounds(SESSION_STARTS, SNAPSHOTS, 2, 1),
+                new int[]{0, 20, 30}, new int[]{10, 30, 40}, new int[]{20, 40, 50}, new int[]{30, 50, 60});
+        assertWindows(WalkForwardOptimizerRunner.getWindowBounds(SESSION_STARTS, SNAPSHOTS, 2, 2),
+                new int[]{0, 20, 40}, new int[]{20, 40, 60});
+
+        // the out-of-sample period of the last window is cut short by the end of the data
+        assertWindows(WalkForwardOptimizerRunner.getWindowBounds(SESSION_STARTS, SNAPSHOTS, 3, 2),
+                new int[]{0, 30, 50}, new int[]{20, 50, 60});
+
+        // a window needs at least one session after the in-sample sessions
+        assertWindows(WalkForwardOptimizerRunner.getWindowBounds(SESSION_STARTS, SNAPSHOTS, 5, 1), new int[]{0, 50, 60});
+        assertWindows(WalkForwardOptimizerRunner.getWindowBounds(SESSION_STARTS, SNAPSHOTS, 6, 1));
+    }
+
+    @Test
+    public void testStitchedEquity() {
+        List<List<TimedValue>> windowEquities = new ArrayList<>();
+        windowEquities.add(Arrays.asList(new TimedValue(1000, 100), new TimedValue(2000, 50)));
+        windowEquities.add(new ArrayList<TimedValue>());
+        windowEquities.add(Arrays.asList(new TimedValue(5000, -20), new TimedValue(6000, 30)));
+        List<Double> windowNetProfits = Arrays.asList(50.0, 0.0, 30.0);
+
+        List<TimedValue> equity = WalkForwardOptimizerRunner.stitchEquity(windowEquities, windowNetProfits);
+        long[] times = {1000, 2000, 5000, 6000};
+        double[] values = {100, 50, 30, 80};
+        Assert.assertEquals(times.length, equity.size());
+        for (int index = 0; index < times.length; index++) {
+            Assert.assertEquals(times[index], equity.get(index).getTime());
+            Assert.assertEquals(values[index], equity.get(index).getValue(), 0);
+        }
+    }
+}
@@ -325,7 +325,7 @@ public class TraderAssistant {
                 return;
             }
 
-            long remainingTime = strategy.getTradingSchedule().getRemainingTime(strategy.getMarketBook().getSnapshot().getTime());
+            long remainingTime = strategy.getTradingSchedule().getRemainingTime(strategy.getMarketBook().getTime());
             long remainingMinutes = remainingTime / (1000 * 60);
             if (strategy.getPositionManager().getTargetPosition() != 0 && remainingMinutes < 15) {
                 return;
@@ -343,7 +343,7 @@ public class TraderAssistant {
 
             openOrders.put(orderID, new OpenOrder(orderID, order, strategy));
 
-            double midPrice = strategy.getMarketBook().getSnapshot().getPrice();
+            double midPrice = strategy.getMarketBook().getPrice();
             double bidAskSpread = strategy.getBidAskSpread();
             double expectedFillPrice = order.m_action.equalsIgnoreCase("BUY") ? (midPrice + bidAskSpread / 2) : (midPrice - bidAskSpread / 2);
             strategy.getPositionManager().setExpectedFillPrice(expectedFillPrice);